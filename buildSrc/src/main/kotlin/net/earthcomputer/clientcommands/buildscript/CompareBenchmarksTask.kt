@@ -0,0 +1,122 @@
+package net.earthcomputer.clientcommands.buildscript
+
+import com.google.gson.Gson
+import com.google.gson.JsonArray
+import com.google.gson.JsonObject
+import org.gradle.api.DefaultTask
+import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.provider.Property
+import org.gradle.api.tasks.Input
+import org.gradle.api.tasks.InputFile
+import org.gradle.api.tasks.Internal
+import org.gradle.api.tasks.TaskAction
+
+abstract class CompareBenchmarksTask : DefaultTask() {
+    @get:InputFile
+    abstract val resultsFile: RegularFileProperty
+
+    @get:Internal
+    abstract val baselineFile: RegularFileProperty
+
+    /**
+     * The fraction by which a benchmark may get worse than the baseline before it's considered a regression.
+     */
+    @get:Input
+    abstract val maxRegression: Property<Double>
+
+    @get:Input
+    abstract val updateBaseline: Property<Boolean>
+
+    init {
+        maxRegression.convention(0.15)
+        updateBaseline.convention(false)
+    }
+
+    @TaskAction
+    fun run() {
+        val results = resultsFile.get().asFile
+        val baseline = baselineFile.get().asFile
+
+        if (updateBaseline.get()) {
+            baseline.parentFile.mkdirs()
+            results.copyTo(baseline, overwrite = true)
+            logger.warn("Wrote benchmark baseline to $baseline, remember to commit it")
+            return
+        }
+        if (!baseline.exists()) {
+            throw IllegalStateException(
+                "No benchmark baseline at $baseline. Check out the commit to compare against and run " +
+                    "jmhCompare -PupdateBenchmarkBaseline there to create it."
+            )
+        }
+
+        val currentScores = readScores(results)
+        val baselineScores = readScores(baseline)
+
+        var regressed = false
+        for ((key, current) in currentScores) {
+            val expected = baselineScores[key]
+            if (expected == null) {
+                logger.warn("$key: no baseline, run with -PupdateBenchmarkBaseline to add it")
+                continue
+            }
+            if (current.unit != expected.unit) {
+                logger.error("$key: unit changed from ${expected.unit} to ${current.unit}, run with -PupdateBenchmarkBaseline to reset it")
+                regressed = true
+                continue
+            }
+
+            // error bounds are the 99.9% confidence intervals, give the benefit of the doubt where they overlap
+            val worsening = if (current.higherIsBetter) {
+                (expected.score - expected.error) - (current.score + current.error)
+            } else {
+                (current.score - current.error) - (expected.score + expected.error)
+            }
+            val relativeWorsening = worsening / expected.score
+            val change = "%+.1f%%".format((current.score - expected.score) / expected.score * 100)
+            if (relativeWorsening > maxRegression.get()) {
+                logger.error("$key: regressed from ${expected.format()} to ${current.format()} ($change)")
+                regressed = true
+            } else {
+                logger.lifecycle("$key: ${current.format()} ($change)")
+            }
+        }
+
+        for (key in baselineScores.keys - currentScores.keys) {
+            logger.warn("$key: in the baseline but was not run")
+        }
+
+        if (regressed) {
+            throw IllegalStateException("There were benchmark regressions")
+        }
+    }
+
+    private fun readScores(file: java.io.File): Map<String, Score> {
+        val json = file.reader().use { Gson().fromJson(it, JsonArray::class.java) }
+        return json.associate { element ->
+            val benchmark = element.asJsonObject
+            val params = benchmark.getAsJsonObject("params")
+                ?.entrySet()
+                ?.joinToString(",", "[", "]") { (name, value) -> "$name=${value.asString}" }
+                ?: ""
+            val metric = benchmark.getAsJsonObject("primaryMetric")
+            val key = benchmark["benchmark"].asString + params
+            key to Score(
+                metric["score"].asDouble,
+                metric.getFiniteOrZero("scoreError"),
+                metric["scoreUnit"].asString,
+                benchmark["mode"].asString == "thrpt",
+            )
+        }
+    }
+
+    private fun JsonObject.getFiniteOrZero(name: String): Double {
+        // JMH writes NaN errors for benchmarks with too few iterations
+        val value = get(name)?.takeIf { it.isJsonPrimitive && it.asJsonPrimitive.isNumber }?.asDouble ?: return 0.0
+        return if (value.isFinite()) value else 0.0
+    }
+
+    private class Score(val score: Double, val error: Double, val unit: String, val higherIsBetter: Boolean) {
+        fun format() = "%.3f ± %.3f %s".format(score, error, unit)
+    }
+}
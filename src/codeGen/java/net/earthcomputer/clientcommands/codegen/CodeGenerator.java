@@ -10,22 +10,34 @@ import net.earthcomputer.clientcommands.features.CCrackRng;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.IntStream;
 
 public class CodeGenerator {
     public static void main(String[] args) throws IOException {
-        if (args.length != 1) {
-            System.err.println("clientcommands-codegen <destinationDir>");
+        if (args.length < 2 || args.length > 3) {
+            System.err.println(
+                "clientcommands-codegen <destinationDir> <testDestinationDir> [ccrackrngObservationCounts]");
             return;
         }
 
         Path destDir = Path.of(args[0]);
-        genLattiCG(destDir);
+        Path testDestDir = Path.of(args[1]);
+        int[] observationCounts;
+        if (args.length > 2) {
+            observationCounts = Arrays.stream(args[2].split(",")).mapToInt(Integer::parseInt).toArray();
+        } else {
+            observationCounts = IntStream.rangeClosed(CCrackRng.MIN_THROWS, CCrackRng.MAX_THROWS).toArray();
+        }
+        // the LattiCG program is only the reference the lattice solvers are tested and benchmarked against
+        genLattiCG(testDestDir);
+        genLatticeSolvers(destDir, observationCounts);
     }
 
     private static void genLattiCG(Path destDir) throws IOException {
         ProgramBuilder program = Program.builder(LCG.JAVA);
-        program.skip(-CCrackRng.NUM_THROWS * 4);
-        for (int i = 0; i < CCrackRng.NUM_THROWS; i++) {
+        program.skip(-CCrackRng.MAX_THROWS * 4);
+        for (int i = 0; i < CCrackRng.MAX_THROWS; i++) {
             program.skip(1);
             program.add(JavaCalls.nextFloat().ranged(CCrackRng.MAX_ERROR * 2));
             program.skip(2);
@@ -34,6 +46,16 @@ public class CodeGenerator {
         writeLattiCGClass(program.build(), "net.earthcomputer.clientcommands.features.CCrackRngGen", destDir);
     }
 
+    private static void genLatticeSolvers(Path destDir, int[] observationCounts) throws IOException {
+        // each item throw makes 4 random calls, of which we observe the second. Allow for both bounds being rounded
+        long maxWidth = (long) Math.ceil(CCrackRng.MAX_ERROR * 2 * 0x1.0p24f + 1) << 24;
+        LcgLatticeGenerator generator = new LcgLatticeGenerator("net.earthcomputer.clientcommands.features.CCrackRngLattices");
+        for (int observationCount : observationCounts) {
+            generator.addSolver(observationCount, 4, 1, maxWidth);
+        }
+        generator.write(destDir);
+    }
+
     private static void writeLattiCGClass(Program program, String fqName, Path destDir) throws IOException {
         int dotIndex = fqName.lastIndexOf('.');
         assert dotIndex >= 0;
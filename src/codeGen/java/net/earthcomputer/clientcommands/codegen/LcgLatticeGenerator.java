@@ -0,0 +1,372 @@
+package net.earthcomputer.clientcommands.codegen;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates a class of {@code LcgLatticeSolver}s for observing the states of {@link java.util.Random} at regular
+ * intervals, with the lattice basis reduced and its inverse and Gram-Schmidt orthogonalization computed ahead of time.
+ */
+public final class LcgLatticeGenerator {
+    private static final BigInteger MODULUS = BigInteger.ONE.shiftLeft(48);
+    private static final long MULTIPLIER = 0x5deece66dL;
+    private static final long ADDEND = 0xbL;
+    private static final long MASK = (1L << 48) - 1;
+    private static final Fraction LLL_DELTA = new Fraction(BigInteger.valueOf(99), BigInteger.valueOf(100));
+
+    private final String packageName;
+    private final String className;
+    private final List<Solver> solvers = new ArrayList<>();
+
+    public LcgLatticeGenerator(String fqName) {
+        int dotIndex = fqName.lastIndexOf('.');
+        assert dotIndex >= 0;
+        this.packageName = fqName.substring(0, dotIndex);
+        this.className = fqName.substring(dotIndex + 1);
+    }
+
+    /**
+     * Adds a solver for observing the states after the call at {@code observedCall} of each of {@code groupCount}
+     * groups of {@code groupSize} calls, where the returned seed is the state after the last group.
+     *
+     * @param maxWidth The widest bounds on each state that the solver should be fast for
+     */
+    public LcgLatticeGenerator addSolver(int groupCount, int groupSize, int observedCall, long maxWidth) {
+        int dimensions = groupCount;
+        long[] multipliers = new long[dimensions];
+        long[] addends = new long[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            multipliers[i] = jumpMultiplier((long) i * groupSize);
+            addends[i] = jumpAddend((long) i * groupSize);
+        }
+
+        // the first state is after the observed call of the first group, and the seed is after the last group
+        long seedCalls = (long) groupCount * groupSize - observedCall - 1;
+
+        // rows: (1, a_1, ..., a_n-1) and 2^48 e_i
+        BigInteger[][] basis = new BigInteger[dimensions][dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            for (int j = 0; j < dimensions; j++) {
+                if (i == 0) {
+                    basis[i][j] = BigInteger.valueOf(multipliers[j]);
+                } else {
+                    basis[i][j] = i == j ? MODULUS : BigInteger.ZERO;
+                }
+            }
+        }
+        reduce(basis);
+
+        Fraction[][] gramSchmidt = new Fraction[dimensions][dimensions];
+        Fraction[][] mu = new Fraction[dimensions][dimensions];
+        Fraction[] normsSq = new Fraction[dimensions];
+        gramSchmidt(basis, gramSchmidt, mu, normsSq);
+
+        solvers.add(new Solver(groupCount, groupSize, observedCall, multipliers, addends, basis, invert(basis), mu, normsSq, jumpMultiplier(seedCalls), jumpAddend(seedCalls), maxWidth));
+        return this;
+    }
+
+    public void write(Path destDir) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(packageName).append(";\n\n");
+        sb.append("import net.earthcomputer.clientcommands.util.LcgLatticeSolver;\n");
+        sb.append("import org.jetbrains.annotations.Nullable;\n\n");
+        sb.append("// CLASS GENERATED BY CODEGEN, DO NOT EDIT MANUALLY\n");
+        sb.append("public final class ").append(className).append(" {\n");
+        sb.append("    private ").append(className).append("() {}\n");
+
+        for (Solver solver : solvers) {
+            sb.append("\n");
+            sb.append("    /**\n");
+            sb.append("     * Observes the state after call ").append(solver.observedCall).append(" of each of ").append(solver.groupCount)
+                .append(" groups of ").append(solver.groupSize).append(" calls\n");
+            sb.append("     */\n");
+            sb.append("    private static final LcgLatticeSolver SOLVER_").append(solver.groupCount).append(" = new LcgLatticeSolver(\n");
+            sb.append("        new long[] {").append(longs(solver.multipliers)).append("},\n");
+            sb.append("        new long[] {").append(longs(solver.addends)).append("},\n");
+            sb.append("        new long[] {").append(longs(flatten(solver.basis))).append("},\n");
+            sb.append("        new double[] {").append(doubles(flatten(solver.inverse))).append("},\n");
+            sb.append("        new double[] {").append(doubles(flatten(solver.mu))).append("},\n");
+            sb.append("        new double[] {").append(doubles(solver.normsSq)).append("},\n");
+            sb.append("        ").append(hex(solver.seedMultiplier)).append(", ").append(hex(solver.seedAddend)).append(", ").append(hex(solver.maxWidth)).append("\n");
+            sb.append("    );\n");
+        }
+
+        sb.append("\n");
+        sb.append("    /**\n");
+        sb.append("     * Returns the solver for the given number of observations, or {@code null} if none was generated\n");
+        sb.append("     */\n");
+        sb.append("    @Nullable\n");
+        sb.append("    public static LcgLatticeSolver getSolver(int observations) {\n");
+        sb.append("        return switch (observations) {\n");
+        for (Solver solver : solvers) {
+            sb.append("            case ").append(solver.groupCount).append(" -> SOLVER_").append(solver.groupCount).append(";\n");
+        }
+        sb.append("            default -> null;\n");
+        sb.append("        };\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+
+        Files.writeString(destDir.resolve((packageName + "." + className).replace('.', '/') + ".java"), sb.toString());
+    }
+
+    // ===== LATTICE REDUCTION ===== //
+
+    /**
+     * LLL-reduces the rows of the basis in place, in exact arithmetic
+     */
+    private static void reduce(BigInteger[][] basis) {
+        int n = basis.length;
+        Fraction[][] gramSchmidt = new Fraction[n][n];
+        Fraction[][] mu = new Fraction[n][n];
+        Fraction[] normsSq = new Fraction[n];
+        gramSchmidt(basis, gramSchmidt, mu, normsSq);
+
+        int k = 1;
+        while (k < n) {
+            for (int j = k - 1; j >= 0; j--) {
+                BigInteger q = mu[k][j].round();
+                if (q.signum() != 0) {
+                    for (int i = 0; i < n; i++) {
+                        basis[k][i] = basis[k][i].subtract(q.multiply(basis[j][i]));
+                    }
+                    gramSchmidt(basis, gramSchmidt, mu, normsSq);
+                }
+            }
+            Fraction lovasz = LLL_DELTA.subtract(mu[k][k - 1].multiply(mu[k][k - 1])).multiply(normsSq[k - 1]);
+            if (normsSq[k].compareTo(lovasz) >= 0) {
+                k++;
+            } else {
+                BigInteger[] temp = basis[k];
+                basis[k] = basis[k - 1];
+                basis[k - 1] = temp;
+                gramSchmidt(basis, gramSchmidt, mu, normsSq);
+                k = Math.max(k - 1, 1);
+            }
+        }
+    }
+
+    private static void gramSchmidt(BigInteger[][] basis, Fraction[][] gramSchmidt, Fraction[][] mu, Fraction[] normsSq) {
+        int n = basis.length;
+        for (int i = 0; i < n; i++) {
+            for (int c = 0; c < n; c++) {
+                gramSchmidt[i][c] = new Fraction(basis[i][c]);
+            }
+            for (int j = 0; j < i; j++) {
+                Fraction dot = Fraction.ZERO;
+                for (int c = 0; c < n; c++) {
+                    dot = dot.add(gramSchmidt[j][c].multiply(basis[i][c]));
+                }
+                mu[i][j] = dot.divide(normsSq[j]);
+                for (int c = 0; c < n; c++) {
+                    gramSchmidt[i][c] = gramSchmidt[i][c].subtract(mu[i][j].multiply(gramSchmidt[j][c]));
+                }
+            }
+            for (int j = i; j < n; j++) {
+                mu[i][j] = Fraction.ZERO;
+            }
+            Fraction normSq = Fraction.ZERO;
+            for (int c = 0; c < n; c++) {
+                normSq = normSq.add(gramSchmidt[i][c].multiply(gramSchmidt[i][c]));
+            }
+            normsSq[i] = normSq;
+        }
+    }
+
+    private static Fraction[][] invert(BigInteger[][] matrix) {
+        int n = matrix.length;
+        Fraction[][] left = new Fraction[n][n];
+        Fraction[][] right = new Fraction[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                left[i][j] = new Fraction(matrix[i][j]);
+                right[i][j] = i == j ? Fraction.ONE : Fraction.ZERO;
+            }
+        }
+
+        for (int col = 0; col < n; col++) {
+            int pivot = col;
+            while (left[pivot][col].signum() == 0) {
+                pivot++;
+            }
+            Fraction[] temp = left[pivot];
+            left[pivot] = left[col];
+            left[col] = temp;
+            temp = right[pivot];
+            right[pivot] = right[col];
+            right[col] = temp;
+
+            Fraction pivotValue = left[col][col];
+            for (int j = 0; j < n; j++) {
+                left[col][j] = left[col][j].divide(pivotValue);
+                right[col][j] = right[col][j].divide(pivotValue);
+            }
+            for (int row = 0; row < n; row++) {
+                if (row != col && left[row][col].signum() != 0) {
+                    Fraction factor = left[row][col];
+                    for (int j = 0; j < n; j++) {
+                        left[row][j] = left[row][j].subtract(factor.multiply(left[col][j]));
+                        right[row][j] = right[row][j].subtract(factor.multiply(right[col][j]));
+                    }
+                }
+            }
+        }
+        return right;
+    }
+
+    private static long jumpMultiplier(long calls) {
+        long multiplier = 1;
+        long stepMultiplier = MULTIPLIER;
+        for (; calls > 0; calls >>>= 1) {
+            if ((calls & 1) != 0) {
+                multiplier *= stepMultiplier;
+            }
+            stepMultiplier *= stepMultiplier;
+        }
+        return multiplier & MASK;
+    }
+
+    private static long jumpAddend(long calls) {
+        long addend = 0;
+        long stepMultiplier = MULTIPLIER;
+        long stepAddend = ADDEND;
+        for (; calls > 0; calls >>>= 1) {
+            if ((calls & 1) != 0) {
+                addend = addend * stepMultiplier + stepAddend;
+            }
+            stepAddend *= stepMultiplier + 1;
+            stepMultiplier *= stepMultiplier;
+        }
+        return addend & MASK;
+    }
+
+    // ===== OUTPUT ===== //
+
+    private static long[] flatten(BigInteger[][] matrix) {
+        long[] result = new long[matrix.length * matrix.length];
+        for (int i = 0; i < matrix.length; i++) {
+            for (int j = 0; j < matrix.length; j++) {
+                result[i * matrix.length + j] = matrix[i][j].longValueExact();
+            }
+        }
+        return result;
+    }
+
+    private static Fraction[] flatten(Fraction[][] matrix) {
+        Fraction[] result = new Fraction[matrix.length * matrix.length];
+        for (int i = 0; i < matrix.length; i++) {
+            System.arraycopy(matrix[i], 0, result, i * matrix.length, matrix.length);
+        }
+        return result;
+    }
+
+    private static String longs(long[] values) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i != 0) {
+                sb.append(", ");
+            }
+            sb.append(hex(values[i]));
+        }
+        return sb.toString();
+    }
+
+    private static String doubles(Fraction[] values) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i != 0) {
+                sb.append(", ");
+            }
+            sb.append(Double.toHexString(values[i].doubleValue()));
+        }
+        return sb.toString();
+    }
+
+    private static String hex(long value) {
+        return value < 0 ? "-0x" + Long.toHexString(-value) + "L" : "0x" + Long.toHexString(value) + "L";
+    }
+
+    private record Solver(
+        int groupCount,
+        int groupSize,
+        int observedCall,
+        long[] multipliers,
+        long[] addends,
+        BigInteger[][] basis,
+        Fraction[][] inverse,
+        Fraction[][] mu,
+        Fraction[] normsSq,
+        long seedMultiplier,
+        long seedAddend,
+        long maxWidth
+    ) {
+    }
+
+    private record Fraction(BigInteger numerator, BigInteger denominator) implements Comparable<Fraction> {
+        static final Fraction ZERO = new Fraction(BigInteger.ZERO);
+        static final Fraction ONE = new Fraction(BigInteger.ONE);
+
+        Fraction(BigInteger value) {
+            this(value, BigInteger.ONE);
+        }
+
+        Fraction {
+            if (denominator.signum() < 0) {
+                numerator = numerator.negate();
+                denominator = denominator.negate();
+            }
+            BigInteger gcd = numerator.gcd(denominator);
+            if (gcd.signum() != 0 && !gcd.equals(BigInteger.ONE)) {
+                numerator = numerator.divide(gcd);
+                denominator = denominator.divide(gcd);
+            }
+        }
+
+        Fraction add(Fraction other) {
+            return new Fraction(numerator.multiply(other.denominator).add(other.numerator.multiply(denominator)), denominator.multiply(other.denominator));
+        }
+
+        Fraction subtract(Fraction other) {
+            return new Fraction(numerator.multiply(other.denominator).subtract(other.numerator.multiply(denominator)), denominator.multiply(other.denominator));
+        }
+
+        Fraction multiply(Fraction other) {
+            return new Fraction(numerator.multiply(other.numerator), denominator.multiply(other.denominator));
+        }
+
+        Fraction multiply(BigInteger other) {
+            return new Fraction(numerator.multiply(other), denominator);
+        }
+
+        Fraction divide(Fraction other) {
+            return new Fraction(numerator.multiply(other.denominator), denominator.multiply(other.numerator));
+        }
+
+        int signum() {
+            return numerator.signum();
+        }
+
+        /**
+         * Rounds to the nearest integer, with halves rounded up
+         */
+        BigInteger round() {
+            BigInteger twice = numerator.shiftLeft(1).add(denominator);
+            BigInteger[] divRem = twice.divideAndRemainder(denominator.shiftLeft(1));
+            return divRem[1].signum() < 0 ? divRem[0].subtract(BigInteger.ONE) : divRem[0];
+        }
+
+        double doubleValue() {
+            return new BigDecimal(numerator).divide(new BigDecimal(denominator), MathContext.DECIMAL128).doubleValue();
+        }
+
+        @Override
+        public int compareTo(Fraction other) {
+            return numerator.multiply(other.denominator).compareTo(other.numerator.multiply(denominator));
+        }
+    }
+}
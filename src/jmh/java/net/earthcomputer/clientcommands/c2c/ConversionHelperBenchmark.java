@@ -0,0 +1,47 @@
+package net.earthcomputer.clientcommands.c2c;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConversionHelperBenchmark {
+    @Param({"256", "4096"})
+    public int size;
+
+    private byte[] bytes;
+    private String unicode;
+
+    @Setup
+    public void setup() {
+        bytes = new byte[size];
+        new Random(0).nextBytes(bytes);
+        unicode = ConversionHelper.BaseUTF8.toUnicode(bytes);
+    }
+
+    @Benchmark
+    public String encode() {
+        return ConversionHelper.BaseUTF8.toUnicode(bytes);
+    }
+
+    @Benchmark
+    public byte[] decode() {
+        return ConversionHelper.BaseUTF8.fromUnicode(unicode);
+    }
+}
@@ -0,0 +1,51 @@
+package net.earthcomputer.clientcommands.command.arguments;
+
+import com.mojang.brigadier.StringReader;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpressionArgumentBenchmark {
+    @Param({"1+2*3", "sqrt(2)^2-sin(pi/4)*cos(pi/4)", "(((1+2)*(3+4))/((5-6)*(7-8)))^2%1000"})
+    public String input;
+
+    private final ExpressionArgument argument = ExpressionArgument.expression();
+    private ExpressionArgument.Expression expression;
+
+    @Setup
+    public void setup() throws CommandSyntaxException {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+
+        expression = parse();
+    }
+
+    @Benchmark
+    public ExpressionArgument.Expression parse() throws CommandSyntaxException {
+        return argument.parse(new StringReader(input));
+    }
+
+    @Benchmark
+    public double eval() {
+        return expression.eval();
+    }
+}
@@ -0,0 +1,74 @@
+package net.earthcomputer.clientcommands.features;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CCrackRngBenchmark {
+    private static final int INPUT_COUNT = 16;
+
+    private final float[][] inputs = new float[INPUT_COUNT][];
+    private int index = 0;
+
+    @Setup
+    public void setup() {
+        Random seeds = new Random(0);
+        for (int i = 0; i < INPUT_COUNT; i++) {
+            // each item throw makes 4 random calls, of which we observe the second
+            Random rand = new Random(seeds.nextLong());
+            float[] nextFloats = new float[CCrackRng.MAX_THROWS];
+            for (int j = 0; j < CCrackRng.MAX_THROWS; j++) {
+                rand.nextInt();
+                nextFloats[j] = rand.nextFloat();
+                rand.nextInt();
+                rand.nextInt();
+            }
+            inputs[i] = nextFloats;
+        }
+    }
+
+    @Benchmark
+    public long[] findSeeds() {
+        return CCrackRng.findSeeds(inputs[index++ & (INPUT_COUNT - 1)]);
+    }
+
+    @Benchmark
+    public long[] findSeedsMinThrows() {
+        return CCrackRng.findSeeds(Arrays.copyOf(inputs[index++ & (INPUT_COUNT - 1)], CCrackRng.MIN_THROWS));
+    }
+
+    @Benchmark
+    public long[] findSeedsLattiCG() {
+        float[] nextFloats = inputs[index++ & (INPUT_COUNT - 1)];
+        float error = CCrackRng.MAX_ERROR;
+        return CCrackRngGen.getSeeds(
+            Math.max(0, nextFloats[0] - error), Math.min(1, nextFloats[0] + error),
+            Math.max(0, nextFloats[1] - error), Math.min(1, nextFloats[1] + error),
+            Math.max(0, nextFloats[2] - error), Math.min(1, nextFloats[2] + error),
+            Math.max(0, nextFloats[3] - error), Math.min(1, nextFloats[3] + error),
+            Math.max(0, nextFloats[4] - error), Math.min(1, nextFloats[4] + error),
+            Math.max(0, nextFloats[5] - error), Math.min(1, nextFloats[5] + error),
+            Math.max(0, nextFloats[6] - error), Math.min(1, nextFloats[6] + error),
+            Math.max(0, nextFloats[7] - error), Math.min(1, nextFloats[7] + error),
+            Math.max(0, nextFloats[8] - error), Math.min(1, nextFloats[8] + error),
+            Math.max(0, nextFloats[9] - error), Math.min(1, nextFloats[9] + error)
+        ).toArray();
+    }
+}
@@ -0,0 +1,74 @@
+package net.earthcomputer.clientcommands.features;
+
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.util.RandomSource;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.item.enchantment.EnchantmentHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the first round of XP seed filtering after opening an enchanting table. Only the enchantment cost check
+ * is run, since the enchantment clue check needs the enchantment registry from a world.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnchantmentCrackerBenchmark {
+    private static final int POWER = 15;
+
+    private final XpSeedSpace candidates = new XpSeedSpace();
+    private ItemStack item;
+    private final int[] costs = new int[3];
+
+    @Setup
+    public void setup() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+
+        item = new ItemStack(Items.DIAMOND_PICKAXE);
+        int xpSeed = new Random(0).nextInt();
+        candidates.fill(xpSeed);
+
+        RandomSource rand = RandomSource.create(xpSeed);
+        for (int slot = 0; slot < 3; slot++) {
+            costs[slot] = EnchantmentHelper.getEnchantmentCost(rand, slot, POWER, item);
+            if (costs[slot] < slot + 1) {
+                costs[slot] = 0;
+            }
+        }
+    }
+
+    @Benchmark
+    public XpSeedSpace filterSequential() {
+        XpSeedSpace result = candidates.copy();
+        RandomSource rand = RandomSource.create();
+        result.removeIf(xpSeed -> !EnchantmentCracker.areEnchantCostsConsistent(rand, xpSeed, item, POWER, costs));
+        return result;
+    }
+
+    @Benchmark
+    public XpSeedSpace filterParallel() throws CommandSyntaxException {
+        return XpSeedFilterEngine.submit(candidates, () -> {
+            RandomSource rand = RandomSource.create();
+            return xpSeed -> EnchantmentCracker.areEnchantCostsConsistent(rand, xpSeed, item, POWER, costs);
+        }).getExecutorJob().getResult();
+    }
+}
@@ -0,0 +1,54 @@
+package net.earthcomputer.clientcommands.features;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.util.Mth;
+import net.minecraft.util.RandomSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.OptionalLong;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks recovering the bobber seed from a fishing bobber's UUID. The bobber tick loop is not benchmarked here, as
+ * the simulator currently needs a client level.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FishingCrackerBenchmark {
+    private static final int UUID_COUNT = 64;
+
+    private final UUID[] uuids = new UUID[UUID_COUNT];
+    private int index = 0;
+
+    @Setup
+    public void setup() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+
+        Random seeds = new Random(0);
+        for (int i = 0; i < UUID_COUNT; i++) {
+            uuids[i] = Mth.createInsecureUUID(RandomSource.create(seeds.nextLong()));
+        }
+    }
+
+    @Benchmark
+    public OptionalLong getSeed() {
+        return FishingCracker.getSeed(uuids[index++ & (UUID_COUNT - 1)]);
+    }
+}
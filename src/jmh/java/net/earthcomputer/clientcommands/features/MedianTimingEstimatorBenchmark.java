@@ -0,0 +1,74 @@
+package net.earthcomputer.clientcommands.features;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of adding a catch to a full {@link MedianTimingEstimator}, as the fishing cracker does after every
+ * catch. The catches are from a jittery connection with some dropped catches and ambiguous loot.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MedianTimingEstimatorBenchmark {
+    private static final int MSPT = 50;
+    private static final int HALF_WINDOW = 10;
+    private static final int MAX_SAMPLES = 10;
+    private static final int SAMPLE_COUNT = 1024;
+    private static final int CORRECTION = 100;
+
+    private MedianTimingEstimator estimator;
+    private double[][] samples;
+    private int[] sampleSizes;
+    private int index;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        samples = new double[SAMPLE_COUNT][2 * HALF_WINDOW + 1];
+        sampleSizes = new int[SAMPLE_COUNT];
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            int caughtTick;
+            if (random.nextDouble() < 0.2) {
+                caughtTick = random.nextInt(2 * HALF_WINDOW + 1) - HALF_WINDOW;
+            } else {
+                caughtTick = Math.clamp(Math.round(random.nextGaussian() * 40 / MSPT), -HALF_WINDOW, HALF_WINDOW);
+            }
+            for (int tick = -HALF_WINDOW; tick <= HALF_WINDOW; tick++) {
+                if (tick == caughtTick || random.nextDouble() < 0.3 / (2 * HALF_WINDOW)) {
+                    samples[i][sampleSizes[i]++] = tick * MSPT + CORRECTION;
+                }
+            }
+        }
+
+        estimator = new MedianTimingEstimator(MAX_SAMPLES, 2 * HALF_WINDOW + 1);
+        for (int i = 0; i < MAX_SAMPLES; i++) {
+            addNextSample();
+        }
+    }
+
+    @Benchmark
+    public double addSample() {
+        addNextSample();
+        return estimator.getMu();
+    }
+
+    private void addNextSample() {
+        int i = index++ & (SAMPLE_COUNT - 1);
+        estimator.addSample(samples[i], sampleSizes[i], MSPT, CORRECTION - MSPT / 2 - HALF_WINDOW * MSPT, CORRECTION + MSPT / 2 + HALF_WINDOW * MSPT);
+    }
+}
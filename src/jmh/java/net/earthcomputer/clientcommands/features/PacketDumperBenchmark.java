@@ -0,0 +1,60 @@
+package net.earthcomputer.clientcommands.features;
+
+import com.google.gson.stream.JsonWriter;
+import net.minecraft.SharedConstants;
+import net.minecraft.network.chat.LastSeenMessages;
+import net.minecraft.network.protocol.game.ServerboundChatPacket;
+import net.minecraft.network.protocol.game.ServerboundMovePlayerPacket;
+import net.minecraft.server.Bootstrap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacketDumperBenchmark {
+    private ServerboundMovePlayerPacket.PosRot movePacket;
+    private ServerboundChatPacket chatPacket;
+
+    @Setup
+    public void setup() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+
+        movePacket = new ServerboundMovePlayerPacket.PosRot(123.5, 64, -456.25, 90, 45, true, false);
+        BitSet acknowledged = new BitSet();
+        acknowledged.set(0, 20, true);
+        chatPacket = new ServerboundChatPacket("Hello, world!", Instant.ofEpochMilli(1700000000000L), 12345, null, new LastSeenMessages.Update(0, acknowledged));
+    }
+
+    @Benchmark
+    public String dumpMovePacket() throws IOException {
+        StringWriter writer = new StringWriter();
+        PacketDumper.dumpPacket(movePacket, ServerboundMovePlayerPacket.PosRot.STREAM_CODEC, new JsonWriter(writer));
+        return writer.toString();
+    }
+
+    @Benchmark
+    public String dumpChatPacket() throws IOException {
+        StringWriter writer = new StringWriter();
+        PacketDumper.dumpPacket(chatPacket, ServerboundChatPacket.STREAM_CODEC, new JsonWriter(writer));
+        return writer.toString();
+    }
+}
@@ -0,0 +1,285 @@
+package net.earthcomputer.clientcommands.features;
+
+import com.google.gson.stream.JsonWriter;
+import com.mojang.datafixers.util.Pair;
+import io.netty.buffer.Unpooled;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.GlobalPos;
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.core.SectionPos;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtOps;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.syncher.EntityDataAccessor;
+import net.minecraft.network.syncher.EntityDataSerializers;
+import net.minecraft.network.syncher.SynchedEntityData;
+import net.minecraft.network.protocol.common.ClientboundKeepAlivePacket;
+import net.minecraft.network.protocol.common.ClientboundPingPacket;
+import net.minecraft.network.protocol.game.ClientboundBlockChangedAckPacket;
+import net.minecraft.network.protocol.game.ClientboundBlockDestructionPacket;
+import net.minecraft.network.protocol.game.ClientboundChunkBatchFinishedPacket;
+import net.minecraft.network.protocol.game.ClientboundEntityPositionSyncPacket;
+import net.minecraft.network.protocol.game.ClientboundForgetLevelChunkPacket;
+import net.minecraft.network.protocol.game.ClientboundLevelChunkWithLightPacket;
+import net.minecraft.network.protocol.game.ClientboundMoveEntityPacket;
+import net.minecraft.network.protocol.game.ClientboundRemoveEntitiesPacket;
+import net.minecraft.network.protocol.game.ClientboundSectionBlocksUpdatePacket;
+import net.minecraft.network.protocol.game.ClientboundSetChunkCacheCenterPacket;
+import net.minecraft.network.protocol.game.ClientboundSetEntityDataPacket;
+import net.minecraft.network.protocol.game.ClientboundSetEntityMotionPacket;
+import net.minecraft.network.protocol.game.ClientboundSetEquipmentPacket;
+import net.minecraft.network.protocol.game.ClientboundSetTimePacket;
+import net.minecraft.network.protocol.game.ClientboundTeleportEntityPacket;
+import net.minecraft.network.protocol.game.ServerboundClientTickEndPacket;
+import net.minecraft.network.protocol.game.ServerboundMovePlayerPacket;
+import net.minecraft.network.protocol.game.ServerboundPlayerInputPacket;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.entity.EquipmentSlot;
+import net.minecraft.world.entity.PositionMoveRotation;
+import net.minecraft.world.entity.player.Input;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.item.component.DyedItemColor;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.phys.Vec3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dumps the packets which are most frequent in a typical play session. Packets whose codecs need registry access are
+ * encoded through a {@link RegistryFriendlyByteBuf} over the built-in registries, the way the play protocol does. The
+ * {@code with_codec} case writes a value with a {@link com.mojang.serialization.Codec}, which is the only part of a dump
+ * that {@code includeNbt} affects.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacketDumperFrequentPacketsBenchmark {
+    @Param({
+        "level_chunk_with_light",
+        "set_entity_data",
+        "section_blocks_update",
+        "set_equipment",
+        "move_entity_pos",
+        "move_entity_pos_rot",
+        "move_entity_rot",
+        "set_entity_motion",
+        "entity_position_sync",
+        "teleport_entity",
+        "set_time",
+        "keep_alive",
+        "remove_entities",
+        "forget_level_chunk",
+        "set_chunk_cache_center",
+        "block_changed_ack",
+        "block_destruction",
+        "chunk_batch_finished",
+        "ping",
+        "move_player_pos",
+        "move_player_pos_rot",
+        "move_player_rot",
+        "client_tick_end",
+        "player_input",
+        "with_codec",
+    })
+    public String packetType;
+
+    @Param({"false", "true"})
+    public boolean includeNbt;
+
+    private DumpCase<?> dumpCase;
+
+    @Setup
+    public void setup() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+        RegistryAccess registryAccess = RegistryAccess.fromRegistryOfRegistries(BuiltInRegistries.REGISTRY);
+
+        dumpCase = switch (packetType) {
+            case "level_chunk_with_light" -> new DumpCase<>(levelChunkWithLight(registryAccess), ClientboundLevelChunkWithLightPacket.STREAM_CODEC.mapStream(RegistryFriendlyByteBuf.decorator(registryAccess)));
+            case "set_entity_data" -> new DumpCase<>(setEntityData(), ClientboundSetEntityDataPacket.STREAM_CODEC.mapStream(RegistryFriendlyByteBuf.decorator(registryAccess)));
+            case "section_blocks_update" -> new DumpCase<>(sectionBlocksUpdate(), ClientboundSectionBlocksUpdatePacket.STREAM_CODEC);
+            case "set_equipment" -> new DumpCase<>(setEquipment(), ClientboundSetEquipmentPacket.STREAM_CODEC.mapStream(RegistryFriendlyByteBuf.decorator(registryAccess)));
+            case "move_entity_pos" -> new DumpCase<>(new ClientboundMoveEntityPacket.Pos(123, (short) 40, (short) 0, (short) -12, true), ClientboundMoveEntityPacket.Pos.STREAM_CODEC);
+            case "move_entity_pos_rot" -> new DumpCase<>(new ClientboundMoveEntityPacket.PosRot(123, (short) 40, (short) 0, (short) -12, (byte) 64, (byte) -10, true), ClientboundMoveEntityPacket.PosRot.STREAM_CODEC);
+            case "move_entity_rot" -> new DumpCase<>(new ClientboundMoveEntityPacket.Rot(123, (byte) 64, (byte) -10, true), ClientboundMoveEntityPacket.Rot.STREAM_CODEC);
+            case "set_entity_motion" -> new DumpCase<>(new ClientboundSetEntityMotionPacket(123, new Vec3(0.1, -0.0784, 0.05)), ClientboundSetEntityMotionPacket.STREAM_CODEC);
+            case "entity_position_sync" -> new DumpCase<>(new ClientboundEntityPositionSyncPacket(123, positionMoveRotation(), true), ClientboundEntityPositionSyncPacket.STREAM_CODEC);
+            case "teleport_entity" -> new DumpCase<>(new ClientboundTeleportEntityPacket(123, positionMoveRotation(), Set.of(), false), ClientboundTeleportEntityPacket.STREAM_CODEC);
+            case "set_time" -> new DumpCase<>(new ClientboundSetTimePacket(1234567L, 6000L, true), ClientboundSetTimePacket.STREAM_CODEC);
+            case "keep_alive" -> new DumpCase<>(new ClientboundKeepAlivePacket(1700000000000L), ClientboundKeepAlivePacket.STREAM_CODEC);
+            case "remove_entities" -> new DumpCase<>(new ClientboundRemoveEntitiesPacket(123, 456, 789), ClientboundRemoveEntitiesPacket.STREAM_CODEC);
+            case "forget_level_chunk" -> new DumpCase<>(new ClientboundForgetLevelChunkPacket(new ChunkPos(12, -34)), ClientboundForgetLevelChunkPacket.STREAM_CODEC);
+            case "set_chunk_cache_center" -> new DumpCase<>(new ClientboundSetChunkCacheCenterPacket(12, -34), ClientboundSetChunkCacheCenterPacket.STREAM_CODEC);
+            case "block_changed_ack" -> new DumpCase<>(new ClientboundBlockChangedAckPacket(42), ClientboundBlockChangedAckPacket.STREAM_CODEC);
+            case "block_destruction" -> new DumpCase<>(new ClientboundBlockDestructionPacket(123, new BlockPos(100, 64, -200), 5), ClientboundBlockDestructionPacket.STREAM_CODEC);
+            case "chunk_batch_finished" -> new DumpCase<>(new ClientboundChunkBatchFinishedPacket(25), ClientboundChunkBatchFinishedPacket.STREAM_CODEC);
+            case "ping" -> new DumpCase<>(new ClientboundPingPacket(42), ClientboundPingPacket.STREAM_CODEC);
+            case "move_player_pos" -> new DumpCase<>(new ServerboundMovePlayerPacket.Pos(123.5, 64, -456.25, true, false), ServerboundMovePlayerPacket.Pos.STREAM_CODEC);
+            case "move_player_pos_rot" -> new DumpCase<>(new ServerboundMovePlayerPacket.PosRot(123.5, 64, -456.25, 90, 45, true, false), ServerboundMovePlayerPacket.PosRot.STREAM_CODEC);
+            case "move_player_rot" -> new DumpCase<>(new ServerboundMovePlayerPacket.Rot(90, 45, true, false), ServerboundMovePlayerPacket.Rot.STREAM_CODEC);
+            case "client_tick_end" -> new DumpCase<>(ServerboundClientTickEndPacket.INSTANCE, ServerboundClientTickEndPacket.STREAM_CODEC);
+            case "player_input" -> new DumpCase<>(new ServerboundPlayerInputPacket(new Input(true, false, false, true, false, false, true)), ServerboundPlayerInputPacket.STREAM_CODEC);
+            case "with_codec" -> new DumpCase<>(GlobalPos.of(Level.OVERWORLD, new BlockPos(100, 64, -200)), globalPosWithCodec());
+            default -> throw new IllegalArgumentException("Unknown packet type " + packetType);
+        };
+    }
+
+    /**
+     * Decodes a chunk packet, since building one from a chunk needs a level. The section data is dumped as an opaque
+     * byte array, so only its size matters.
+     */
+    private static ClientboundLevelChunkWithLightPacket levelChunkWithLight(RegistryAccess registryAccess) {
+        Random rand = new Random(0);
+        RegistryFriendlyByteBuf buf = new RegistryFriendlyByteBuf(Unpooled.buffer(), registryAccess);
+        buf.writeInt(12);
+        buf.writeInt(-34);
+
+        CompoundTag heightmaps = new CompoundTag();
+        heightmaps.putLongArray("MOTION_BLOCKING", rand.longs(37).toArray());
+        heightmaps.putLongArray("WORLD_SURFACE", rand.longs(37).toArray());
+        buf.writeNbt(heightmaps);
+        byte[] sectionData = new byte[8192];
+        rand.nextBytes(sectionData);
+        buf.writeVarInt(sectionData.length);
+        buf.writeBytes(sectionData);
+        buf.writeVarInt(0); // block entities
+
+        // sky light in the sections above the surface, block light in none
+        BitSet skyYMask = new BitSet();
+        skyYMask.set(10, 26);
+        buf.writeBitSet(skyYMask);
+        buf.writeBitSet(new BitSet());
+        buf.writeBitSet(new BitSet());
+        BitSet emptyBlockYMask = new BitSet();
+        emptyBlockYMask.set(0, 26);
+        buf.writeBitSet(emptyBlockYMask);
+        List<byte[]> skyUpdates = new ArrayList<>();
+        for (int i = 0; i < skyYMask.cardinality(); i++) {
+            byte[] light = new byte[2048];
+            rand.nextBytes(light);
+            skyUpdates.add(light);
+        }
+        buf.writeCollection(skyUpdates, FriendlyByteBuf::writeByteArray);
+        buf.writeCollection(List.<byte[]>of(), FriendlyByteBuf::writeByteArray);
+
+        try {
+            return ClientboundLevelChunkWithLightPacket.STREAM_CODEC.decode(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static ClientboundSetEntityDataPacket setEntityData() {
+        // the data of a dropped item
+        return new ClientboundSetEntityDataPacket(123, List.of(
+            SynchedEntityData.DataValue.create(new EntityDataAccessor<>(0, EntityDataSerializers.BYTE), (byte) 0),
+            SynchedEntityData.DataValue.create(new EntityDataAccessor<>(1, EntityDataSerializers.INT), 300),
+            SynchedEntityData.DataValue.create(new EntityDataAccessor<>(8, EntityDataSerializers.ITEM_STACK), new ItemStack(Items.COBBLESTONE, 37))
+        ));
+    }
+
+    /**
+     * Decodes the packet, since building one from positions needs a chunk section
+     */
+    private static ClientboundSectionBlocksUpdatePacket sectionBlocksUpdate() {
+        BlockState[] states = {Blocks.AIR.defaultBlockState(), Blocks.STONE.defaultBlockState(), Blocks.WATER.defaultBlockState()};
+        Random rand = new Random(0);
+        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+        buf.writeLong(SectionPos.asLong(12, 4, -34));
+        int count = 64;
+        buf.writeVarInt(count);
+        for (int i = 0; i < count; i++) {
+            long stateId = Block.BLOCK_STATE_REGISTRY.getId(states[rand.nextInt(states.length)]);
+            buf.writeVarLong(stateId << 12 | rand.nextInt(4096));
+        }
+
+        try {
+            return ClientboundSectionBlocksUpdatePacket.STREAM_CODEC.decode(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static ClientboundSetEquipmentPacket setEquipment() {
+        ItemStack sword = new ItemStack(Items.DIAMOND_SWORD);
+        sword.setDamageValue(12);
+        ItemStack boots = new ItemStack(Items.LEATHER_BOOTS);
+        boots.set(DataComponents.DYED_COLOR, new DyedItemColor(0xa06540, true));
+        return new ClientboundSetEquipmentPacket(123, List.of(
+            Pair.of(EquipmentSlot.MAINHAND, sword),
+            Pair.of(EquipmentSlot.OFFHAND, ItemStack.EMPTY),
+            Pair.of(EquipmentSlot.HEAD, ItemStack.EMPTY),
+            Pair.of(EquipmentSlot.CHEST, new ItemStack(Items.IRON_CHESTPLATE)),
+            Pair.of(EquipmentSlot.LEGS, ItemStack.EMPTY),
+            Pair.of(EquipmentSlot.FEET, boots)
+        ));
+    }
+
+    private static PositionMoveRotation positionMoveRotation() {
+        return new PositionMoveRotation(new Vec3(123.5, 64, -456.25), new Vec3(0.1, -0.0784, 0.05), 90, 45);
+    }
+
+    /**
+     * Writes a global position with its codec, which doesn't need registry access
+     */
+    @SuppressWarnings("deprecation")
+    private static StreamCodec<FriendlyByteBuf, GlobalPos> globalPosWithCodec() {
+        return StreamCodec.of(
+            (buf, pos) -> buf.writeWithCodec(NbtOps.INSTANCE, GlobalPos.CODEC, pos),
+            buf -> buf.readWithCodecTrusted(NbtOps.INSTANCE, GlobalPos.CODEC)
+        );
+    }
+
+    @Benchmark
+    public String dumpWithNewWriter() throws IOException {
+        return dumpCase.dumpWithNewWriter(includeNbt);
+    }
+
+    @Benchmark
+    public String dumpWithPooledWriter() throws IOException {
+        return dumpCase.dumpWithPooledWriter(includeNbt);
+    }
+
+    private record DumpCase<P>(P packet, StreamCodec<? super FriendlyByteBuf, P> codec) {
+        String dumpWithNewWriter(boolean includeNbt) throws IOException {
+            StringWriter writer = new StringWriter();
+            PacketDumper.dumpPacket(packet, codec, new JsonWriter(writer), includeNbt);
+            return writer.toString();
+        }
+
+        String dumpWithPooledWriter(boolean includeNbt) throws IOException {
+            return PacketDumper.dumpPacketToString(packet, codec, includeNbt);
+        }
+    }
+}
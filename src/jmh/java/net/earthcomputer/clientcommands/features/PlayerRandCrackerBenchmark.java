@@ -0,0 +1,50 @@
+package net.earthcomputer.clientcommands.features;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerRandCrackerBenchmark {
+    /**
+     * A condition that is never met in practice, so the whole search range is scanned
+     */
+    private static final Predicate<Random> UNSATISFIABLE = rand -> rand.nextInt() == 0 && rand.nextInt() == 0;
+
+    @Param({"1000", "100000"})
+    public int maxThrows;
+
+    private long seed;
+
+    @Setup
+    public void setup() {
+        seed = new Random(0).nextLong() & PlayerRandCracker.MASK;
+    }
+
+    @Benchmark
+    public int getItemsNeeded() {
+        return PlayerRandCracker.getItemsNeeded(seed, UNSATISFIABLE, maxThrows);
+    }
+
+    @Benchmark
+    public int getItemsNeededParallel() {
+        return PlayerRandCracker.getItemsNeededParallel(seed, UNSATISFIABLE, maxThrows);
+    }
+}
@@ -0,0 +1,135 @@
+package net.earthcomputer.clientcommands.util;
+
+import net.fabricmc.mappingio.MappingReader;
+import net.fabricmc.mappingio.format.MappingFormat;
+import net.fabricmc.mappingio.tree.MappingTree;
+import net.fabricmc.mappingio.tree.MemoryMappingTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compares loading the mappings at startup by parsing the text files, as on the first launch, against memory-mapping
+ * the binary cache, as on later launches. Each fork measures a single cold load followed by a lookup. The mappings are
+ * generated with about as many classes, fields and methods as the vanilla mappings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class MappingsCacheBenchmark {
+    private static final int CLASS_COUNT = 9000;
+    private static final int FIELDS_PER_CLASS = 7;
+    private static final int METHODS_PER_CLASS = 12;
+    private static final String CACHE_KEY = "benchmark";
+
+    private Path tempDir;
+    private Path proguardFile;
+    private Path tinyFile;
+    private Path cacheFile;
+    private String lookupClass;
+    private String lookupField;
+
+    @Setup
+    public void setup() throws IOException {
+        tempDir = Files.createTempDirectory("mappings-benchmark");
+        proguardFile = tempDir.resolve("mojmap.txt");
+        tinyFile = tempDir.resolve("mappings.tiny");
+        cacheFile = tempDir.resolve("mappings.cache");
+
+        StringBuilder proguard = new StringBuilder();
+        StringBuilder tiny = new StringBuilder("v1\tofficial\tintermediary\n");
+        MappingsCache.Builder cache = MappingsCache.builder();
+        for (int c = 0; c < CLASS_COUNT; c++) {
+            String official = obfuscatedName(c);
+            String mojmap = "net/minecraft/world/level/package" + c % 100 + "/SomeClass" + c;
+            String intermediary = "net/minecraft/class_" + c;
+            proguard.append(mojmap.replace('/', '.')).append(" -> ").append(official).append(":\n");
+            tiny.append("CLASS\t").append(official).append('\t').append(intermediary).append('\n');
+            int classIndex = cache.addClass(official, mojmap, intermediary, null);
+
+            for (int f = 0; f < FIELDS_PER_CLASS; f++) {
+                String officialField = obfuscatedName(f);
+                String mojmapField = "someField" + f;
+                String intermediaryField = "field_" + (c * FIELDS_PER_CLASS + f);
+                proguard.append("    int ").append(mojmapField).append(" -> ").append(officialField).append('\n');
+                tiny.append("FIELD\t").append(official).append("\tI\t").append(officialField).append('\t').append(intermediaryField).append('\n');
+                cache.addField(classIndex, officialField, mojmapField, intermediaryField, null);
+            }
+            for (int m = 0; m < METHODS_PER_CLASS; m++) {
+                String officialMethod = obfuscatedName(FIELDS_PER_CLASS + m);
+                proguard.append("    ").append(m).append(':').append(m).append(":void someMethod").append(m).append("(int) -> ").append(officialMethod).append('\n');
+                tiny.append("METHOD\t").append(official).append("\t(I)V\t").append(officialMethod).append("\tmethod_").append(c * METHODS_PER_CLASS + m).append('\n');
+            }
+        }
+        Files.writeString(proguardFile, proguard);
+        Files.writeString(tinyFile, tiny);
+        MappingsCache.write(cacheFile, cache.build(CACHE_KEY));
+
+        lookupClass = "net/minecraft/class_" + CLASS_COUNT / 2;
+        lookupField = "field_" + (CLASS_COUNT / 2 * FIELDS_PER_CLASS + 3);
+    }
+
+    private static String obfuscatedName(int index) {
+        StringBuilder name = new StringBuilder();
+        do {
+            name.append((char) ('a' + index % 26));
+            index /= 26;
+        } while (index > 0);
+        return name.toString();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> {
+                try {
+                    Files.delete(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public String textPath() throws IOException {
+        MemoryMappingTree mojmapOfficial = new MemoryMappingTree();
+        try (BufferedReader reader = Files.newBufferedReader(proguardFile)) {
+            MappingReader.read(reader, MappingFormat.PROGUARD_FILE, mojmapOfficial);
+        }
+        MemoryMappingTree officialIntermediary = new MemoryMappingTree();
+        try (BufferedReader reader = Files.newBufferedReader(tinyFile)) {
+            MappingReader.read(reader, MappingFormat.TINY_FILE, officialIntermediary);
+        }
+
+        MappingTree.ClassMapping officialClass = officialIntermediary.getClass(lookupClass, 0);
+        MappingTree.FieldMapping officialField = officialIntermediary.getField(lookupClass, lookupField, null, 0);
+        return mojmapOfficial.getField(officialClass.getSrcName(), officialField.getSrcName(), null, 0).getSrcName();
+    }
+
+    @Benchmark
+    public String mappedPath() throws IOException {
+        MappingsCache cache = MappingsCache.open(cacheFile, CACHE_KEY);
+        return cache.mapField(MappingsCache.INTERMEDIARY, MappingsCache.MOJMAP, lookupClass, lookupField);
+    }
+}
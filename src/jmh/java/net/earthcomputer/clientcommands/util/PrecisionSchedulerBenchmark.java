@@ -0,0 +1,129 @@
+package net.earthcomputer.clientcommands.util;
+
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares waiting for a deadline with the {@link PrecisionScheduler} against busy-spinning for the whole wait. Both
+ * report their average lateness and the CPU time used per wait as auxiliary counters. The scheduler also reports the
+ * 99th percentile of its lateness histogram, and how long it had calibrated itself to spin for.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrecisionSchedulerBenchmark {
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+    /**
+     * The spin calibration can approach the longer wait, so that one shows whether the scheduler still parks at all
+     */
+    @Param({"2", "5"})
+    public long waitMillis;
+
+    private long waitNanos;
+    private PrecisionScheduler scheduler;
+
+    @Setup
+    public void setup() {
+        waitNanos = TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        scheduler = new PrecisionScheduler("Benchmark Precision Scheduler");
+    }
+
+    @Setup(Level.Iteration)
+    public void resetHistograms() {
+        scheduler.getLatencyHistogram().reset();
+    }
+
+    @TearDown
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Benchmark
+    public long scheduler(Counters counters) throws InterruptedException {
+        counters.scheduler = scheduler;
+        long startCpu = scheduler.getWorkerCpuTimeNanos();
+        long[] runTime = new long[1];
+        CountDownLatch latch = new CountDownLatch(1);
+        long deadline = System.nanoTime() + waitNanos;
+        scheduler.schedule(deadline, () -> {
+            runTime[0] = System.nanoTime();
+            latch.countDown();
+        });
+        latch.await();
+        counters.record(runTime[0] - deadline, scheduler.getWorkerCpuTimeNanos() - startCpu);
+        return runTime[0];
+    }
+
+    @Benchmark
+    public long busySpin(Counters counters) {
+        long startCpu = THREAD_BEAN.getCurrentThreadCpuTime();
+        long deadline = System.nanoTime() + waitNanos;
+        long now;
+        while ((now = System.nanoTime()) - deadline < 0) {
+            Thread.onSpinWait();
+        }
+        counters.record(now - deadline, THREAD_BEAN.getCurrentThreadCpuTime() - startCpu);
+        return now;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        private long waits;
+        private long totalLatenessNanos;
+        private long totalCpuNanos;
+        @Nullable
+        private PrecisionScheduler scheduler;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            waits = 0;
+            totalLatenessNanos = 0;
+            totalCpuNanos = 0;
+        }
+
+        private void record(long latenessNanos, long cpuNanos) {
+            waits++;
+            totalLatenessNanos += latenessNanos;
+            totalCpuNanos += cpuNanos;
+        }
+
+        public double latenessMicros() {
+            return waits == 0 ? 0 : totalLatenessNanos / 1000.0 / waits;
+        }
+
+        public double cpuMicrosPerWait() {
+            return waits == 0 ? 0 : totalCpuNanos / 1000.0 / waits;
+        }
+
+        public double p99LatenessMicros() {
+            return scheduler == null ? 0 : scheduler.getLatencyHistogram().getPercentile(99) / 1000.0;
+        }
+
+        public double spinMicros() {
+            return scheduler == null ? 0 : scheduler.getSpinNanos() / 1000.0;
+        }
+    }
+}
@@ -9,6 +9,10 @@ import dev.xpple.betterconfig.api.BetterConfigAPI;
 import dev.xpple.betterconfig.api.ModConfigBuilder;
 import net.earthcomputer.clientcommands.command.*;
 import net.earthcomputer.clientcommands.event.ClientConnectionEvents;
+import net.earthcomputer.clientcommands.features.BlockEntityIndex;
+import net.earthcomputer.clientcommands.features.ChorusLandingCache;
+import net.earthcomputer.clientcommands.features.ChunkBlockIndex;
+import net.earthcomputer.clientcommands.features.ClientcommandsDataQueryHandler;
 import net.earthcomputer.clientcommands.features.CommandExecutionCustomPayload;
 import net.earthcomputer.clientcommands.features.FishingCracker;
 import net.earthcomputer.clientcommands.features.ServerBrandManager;
@@ -74,7 +78,12 @@ public class ClientCommands implements ClientModInitializer {
 
         // Events
         ClientCommandRegistrationCallback.EVENT.register(ClientCommands::registerCommands);
+        BlockEntityIndex.registerEvents();
+        ChorusLandingCache.registerEvents();
+        ChunkBlockIndex.registerEvents();
+        ClientcommandsDataQueryHandler.registerEvents();
         FishingCracker.registerEvents();
+        ListenCommand.registerEvents();
         PlayerRandCracker.registerEvents();
         ServerBrandManager.registerEvents();
         WaypointCommand.registerEvents();
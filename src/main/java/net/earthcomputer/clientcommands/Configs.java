@@ -3,6 +3,7 @@ package net.earthcomputer.clientcommands;
 import dev.xpple.betterconfig.api.Config;
 import net.earthcomputer.clientcommands.command.ReplyCommand;
 import net.earthcomputer.clientcommands.features.ChorusManipulation;
+import net.earthcomputer.clientcommands.features.ChunkBlockIndex;
 import net.earthcomputer.clientcommands.features.EnchantmentCracker;
 import net.earthcomputer.clientcommands.features.FishingCracker;
 import net.earthcomputer.clientcommands.features.PlayerRandCracker;
@@ -132,6 +133,15 @@ public class Configs {
         Configs.maxChorusItemThrows = Mth.clamp(maxChorusItemThrows, 0, 1000000);
     }
 
+    @Config(setter = @Config.Setter("setMaxRenderedShapes"))
+    private static int maxRenderedShapes = 8192;
+    public static int getMaxRenderedShapes() {
+        return maxRenderedShapes;
+    }
+    public static void setMaxRenderedShapes(int maxRenderedShapes) {
+        Configs.maxRenderedShapes = Mth.clamp(maxRenderedShapes, 0, 1000000);
+    }
+
     @Config(temporary = true)
     public static String autoPrefix = "";
 
@@ -147,6 +157,50 @@ public class Configs {
     @Config
     public static float itemThrowsPerTick = 1;
 
+    @Config(setter = @Config.Setter("setTaskTickBudgetMillis"))
+    private static int taskTickBudgetMillis = 10;
+    public static int getTaskTickBudgetMillis() {
+        return taskTickBudgetMillis;
+    }
+    public static void setTaskTickBudgetMillis(int taskTickBudgetMillis) {
+        Configs.taskTickBudgetMillis = Mth.clamp(taskTickBudgetMillis, 1, 50);
+    }
+
+    @Config(setter = @Config.Setter("setNbtQueriesPerTick"))
+    private static float nbtQueriesPerTick = 10;
+    public static float getNbtQueriesPerTick() {
+        return nbtQueriesPerTick;
+    }
+    public static void setNbtQueriesPerTick(float nbtQueriesPerTick) {
+        Configs.nbtQueriesPerTick = Mth.clamp(nbtQueriesPerTick, 0.05f, 1000);
+    }
+
+    @Config(setter = @Config.Setter("setMaxInFlightNbtQueries"))
+    private static int maxInFlightNbtQueries = 64;
+    public static int getMaxInFlightNbtQueries() {
+        return maxInFlightNbtQueries;
+    }
+    public static void setMaxInFlightNbtQueries(int maxInFlightNbtQueries) {
+        Configs.maxInFlightNbtQueries = Mth.clamp(maxInFlightNbtQueries, 1, 1024);
+    }
+
+    @Config(setter = @Config.Setter("setNbtQueryCacheTicks"))
+    private static int nbtQueryCacheTicks = 20;
+    public static int getNbtQueryCacheTicks() {
+        return nbtQueryCacheTicks;
+    }
+    public static void setNbtQueryCacheTicks(int nbtQueryCacheTicks) {
+        Configs.nbtQueryCacheTicks = Mth.clamp(nbtQueryCacheTicks, 0, 1200);
+    }
+
+    @Config(onChange = "onChangeChunkBlockIndex")
+    public static boolean chunkBlockIndex = false;
+    public static void onChangeChunkBlockIndex(boolean oldChunkBlockIndex, boolean chunkBlockIndex) {
+        if (!chunkBlockIndex) {
+            ChunkBlockIndex.clear();
+        }
+    }
+
     public static boolean conditionLessThan1_20() {
         return MultiVersionCompat.INSTANCE.getProtocolVersion() < MultiVersionCompat.V1_20;
     }
@@ -163,9 +217,29 @@ public class Configs {
         BYTE_BUF,
     }
 
+    @Config
+    public static boolean packetDumpIncludeNbt = true;
+
     @Config
     public static int maximumPacketFieldDepth = 10;
 
+    @Config(setter = @Config.Setter("setPacketCaptureBufferSize"))
+    private static int packetCaptureBufferSize = 4096;
+    public static int getPacketCaptureBufferSize() {
+        return packetCaptureBufferSize;
+    }
+    public static void setPacketCaptureBufferSize(int packetCaptureBufferSize) {
+        Configs.packetCaptureBufferSize = Mth.clamp(packetCaptureBufferSize, 16, 1 << 20);
+    }
+
+    @Config
+    public static PacketCaptureOverflowPolicy packetCaptureOverflowPolicy = PacketCaptureOverflowPolicy.DROP;
+
+    public enum PacketCaptureOverflowPolicy {
+        DROP,
+        BLOCK,
+    }
+
     @Config(temporary = true, setter = @Config.Setter("setMinimumReplyDelaySeconds"))
     public static float minimumReplyDelaySeconds = 0.5f;
     public static void setMinimumReplyDelaySeconds(float minimumReplyDelaySeconds) {
@@ -1,29 +1,58 @@
 package net.earthcomputer.clientcommands.command;
 
-import com.google.common.collect.Streams;
+import com.mojang.brigadier.Command;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import com.mojang.brigadier.exceptions.SimpleCommandExceptionType;
+import com.mojang.logging.LogUtils;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntMaps;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 import net.earthcomputer.clientcommands.render.RenderQueue;
+import net.earthcomputer.clientcommands.task.SimpleTask;
+import net.earthcomputer.clientcommands.task.TaskManager;
+import net.earthcomputer.clientcommands.util.CrackerExecutor;
 import net.fabricmc.fabric.api.client.command.v2.FabricClientCommandSource;
+import net.minecraft.client.Minecraft;
 import net.minecraft.client.multiplayer.ClientLevel;
 import net.minecraft.commands.CommandBuildContext;
 import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
 import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.ComponentUtils;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.chunk.ChunkSource;
 import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import net.minecraft.world.level.chunk.status.ChunkStatus;
+import net.minecraft.world.level.levelgen.structure.BoundingBox;
 import net.minecraft.world.phys.AABB;
+import org.slf4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
 
 import static dev.xpple.clientarguments.arguments.CBlockPosArgument.*;
+import static net.earthcomputer.clientcommands.command.ClientCommandHelper.*;
 import static net.earthcomputer.clientcommands.command.arguments.ClientBlockPredicateArgument.*;
 import static net.earthcomputer.clientcommands.command.arguments.ListArgument.*;
 import static net.fabricmc.fabric.api.client.command.v2.ClientCommandManager.*;
 
 public class AreaStatsCommand {
+    private static final Logger LOGGER = LogUtils.getLogger();
 
-    private static final SimpleCommandExceptionType NOT_LOADED_EXCEPTION = new SimpleCommandExceptionType(Component.translatable("commands.careastats.notLoaded"));
+    /**
+     * Areas up to this many blocks are counted straight away on the main thread, so that the count can be the command
+     * result. Larger areas are counted in the background.
+     */
+    private static final long MAX_SYNC_BLOCKS = 1 << 20;
 
-    private static ChunkSource chunkSource;
+    private static final SimpleCommandExceptionType NOT_LOADED_EXCEPTION = new SimpleCommandExceptionType(Component.translatable("commands.careastats.notLoaded"));
 
     public static void register(CommandDispatcher<FabricClientCommandSource> dispatcher, CommandBuildContext context) {
         dispatcher.register(literal("careastats")
@@ -36,159 +65,230 @@ public class AreaStatsCommand {
 
     private static int areaStats(FabricClientCommandSource source, BlockPos pos1, BlockPos pos2, ClientBlockPredicate blockPredicate) throws CommandSyntaxException {
         final ClientLevel level = source.getWorld();
-        chunkSource = level.getChunkSource();
-        assertChunkIsLoaded(pos1.getX() >> 4, pos1.getZ() >> 4);
-        assertChunkIsLoaded(pos2.getX() >> 4, pos2.getZ() >> 4);
-
-        final long startTime = System.nanoTime();
-
-        final LevelChunk chunk1 = level.getChunkAt(pos1);
-        final LevelChunk chunk2 = level.getChunkAt(pos2);
-
-        final int minX, maxX, minZ, maxZ, minY, maxY;
-        minX = Math.min(pos1.getX(), pos2.getX());
-        maxX = Math.max(pos1.getX(), pos2.getX());
-        minZ = Math.min(pos1.getZ(), pos2.getZ());
-        maxZ = Math.max(pos1.getZ(), pos2.getZ());
-        minY = Math.min(pos1.getY(), pos2.getY());
-        maxY = Math.max(pos1.getY(), pos2.getY());
-
-        final int minXShifted, maxXShifted, minZShifted, maxZShifted;
-        minXShifted = minX >> 4;
-        maxXShifted = maxX >> 4;
-        minZShifted = minZ >> 4;
-        maxZShifted = maxZ >> 4;
-
-        final BlockPos.MutableBlockPos mutablePos = new BlockPos.MutableBlockPos();
-
-        int blocks = 0;
-        int chunks;
-
-        if (chunk1.getPos().equals(chunk2.getPos())) {
-            chunks = 1;
-            blocks += loop(level, minX, maxX, minZ, maxZ, minY, maxY, blockPredicate, chunk1, mutablePos);
-        } else if (chunk1.getPos().x == chunk2.getPos().x) {
-            chunks = 2;
-            final LevelChunk minMinChunk = level.getChunk(minXShifted, minZShifted);
-            blocks += loop(level, minX, maxX, minZ, minZShifted * 16 + 15, minY, maxY, blockPredicate, minMinChunk, mutablePos);
-
-            final LevelChunk minMaxChunk = level.getChunk(minXShifted, maxZShifted);
-            blocks += loop(level, minX, maxX, maxZShifted * 16, maxZ, minY, maxY, blockPredicate, minMaxChunk, mutablePos);
-
-            for (int chunkZ = minMinChunk.getPos().z + 1; chunkZ < minMaxChunk.getPos().z; chunkZ++) {
-                assertChunkIsLoaded(minMinChunk.getPos().x, chunkZ);
-                chunks++;
-                final LevelChunk chunk = level.getChunk(minMinChunk.getPos().x, chunkZ);
-                blocks += loop(level, minX, maxX, 16 * chunkZ, 16 * chunkZ + 15, minY, maxY, blockPredicate, chunk, mutablePos);
+        final BoundingBox area = BoundingBox.fromCorners(pos1, pos2);
+
+        ChunkSource chunkSource = level.getChunkSource();
+        for (int chunkX = SectionPos.blockToSectionCoord(area.minX()); chunkX <= SectionPos.blockToSectionCoord(area.maxX()); chunkX++) {
+            for (int chunkZ = SectionPos.blockToSectionCoord(area.minZ()); chunkZ <= SectionPos.blockToSectionCoord(area.maxZ()); chunkZ++) {
+                if (!chunkSource.hasChunk(chunkX, chunkZ)) {
+                    throw NOT_LOADED_EXCEPTION.create();
+                }
             }
-        } else if (chunk1.getPos().z == chunk2.getPos().z) {
-            chunks = 2;
-            final LevelChunk minMinChunk = level.getChunk(minXShifted, minZShifted);
-            blocks += loop(level, minX, minXShifted * 16 + 15, minZ, maxZ, minY, maxY, blockPredicate, minMinChunk, mutablePos);
+        }
+
+        AABB box = AABB.of(area);
+        RenderQueue.addCuboid(RenderQueue.Layer.ON_TOP, box, box, 0xFFFF0000, 60 * 20);
 
-            final LevelChunk maxMinChunk = level.getChunk(maxXShifted, minZShifted);
-            blocks += loop(level, maxXShifted * 16, maxX, minZ, maxZ, minY, maxY, blockPredicate, maxMinChunk, mutablePos);
+        if ((long) area.getXSpan() * area.getYSpan() * area.getZSpan() <= MAX_SYNC_BLOCKS) {
+            return areaStatsNow(level, area, blockPredicate);
+        }
+
+        TaskManager.addTask("careastats", new AreaStatsTask(area, blockPredicate));
+        // The block count of a large area isn't known until the task finishes, so it can't be the command result.
+        // Like other task-based commands, this means that execute store result only sees whether the scan started.
+        return Command.SINGLE_SUCCESS;
+    }
 
-            for (int chunkX = minMinChunk.getPos().x + 1; chunkX < maxMinChunk.getPos().x; chunkX++) {
-                assertChunkIsLoaded(chunkX, minMinChunk.getPos().z);
+    private static int areaStatsNow(ClientLevel level, BoundingBox area, ClientBlockPredicate predicate) {
+        long startTime = System.nanoTime();
+        Reference2IntOpenHashMap<BlockState> stateCounts = new Reference2IntOpenHashMap<>();
+        CrackerExecutor.CancellationToken token = new CrackerExecutor.CancellationToken();
+        int chunks = 0;
+        for (int chunkX = SectionPos.blockToSectionCoord(area.minX()); chunkX <= SectionPos.blockToSectionCoord(area.maxX()); chunkX++) {
+            for (int chunkZ = SectionPos.blockToSectionCoord(area.minZ()); chunkZ <= SectionPos.blockToSectionCoord(area.maxZ()); chunkZ++) {
+                // the sections only change on the main thread, so they don't need to be copied
+                List<SectionSnapshot> sections = snapshotChunk(level.getChunk(chunkX, chunkZ), area, false);
+                for (Reference2IntMap.Entry<BlockState> entry : Reference2IntMaps.fastIterable(countStates(sections, token))) {
+                    stateCounts.addTo(entry.getKey(), entry.getIntValue());
+                }
                 chunks++;
-                final LevelChunk chunk = level.getChunk(chunkX, minMinChunk.getPos().z);
-                blocks += loop(level, 16 * chunkX, 16 * chunkX + 15, minZ, maxZ, minY, maxY, blockPredicate, chunk, mutablePos);
             }
-        } else {
-            chunks = 4;
-            final LevelChunk minMinChunk, minMaxChunk, maxMinChunk, maxMaxChunk;
-            assertChunkIsLoaded(minXShifted, minZShifted);
-            assertChunkIsLoaded(minXShifted, maxZShifted);
-            assertChunkIsLoaded(maxXShifted, minZShifted);
-            assertChunkIsLoaded(maxXShifted, maxZShifted);
-            minMinChunk = level.getChunk(minXShifted, minZShifted);
-            minMaxChunk = level.getChunk(minXShifted, maxZShifted);
-            maxMinChunk = level.getChunk(maxXShifted, minZShifted);
-            maxMaxChunk = level.getChunk(maxXShifted, maxZShifted);
+        }
 
-            blocks += loop(level, minX, minXShifted * 16 + 15, minZ, minZShifted * 16 + 15, minY, maxY, blockPredicate, minMinChunk, mutablePos);
+        // at most MAX_SYNC_BLOCKS, so it fits in an int
+        int matched = (int) countMatchedBlocks(stateCounts, predicate);
+        sendResults(level, area, chunks, startTime, matched);
+        return matched;
+    }
 
-            blocks += loop(level, minX, minXShifted * 16 + 15, maxZShifted * 16, maxZ, minY, maxY, blockPredicate, minMaxChunk, mutablePos);
+    /**
+     * Counts the block states in the area. Chunk sections are copied into snapshots on the main thread a few chunks at a
+     * time, and counted on the {@link CrackerExecutor} pool. The predicate disallows NBT, so it can be tested once per
+     * distinct block state at the end rather than once per block.
+     */
+    private static final class AreaStatsTask extends SimpleTask {
+        private static final int MAX_PENDING_JOBS = CrackerExecutor.getParallelism() * 2;
 
-            blocks += loop(level, maxXShifted * 16, maxX, minZ, minZShifted * 16 + 15, minY, maxY, blockPredicate, maxMinChunk, mutablePos);
+        private final BoundingBox area;
+        private final ClientBlockPredicate predicate;
+        private final long startTime = System.nanoTime();
+        private final int minChunkX;
+        private final int minChunkZ;
+        private final int chunkCountX;
+        private final int totalChunks;
+        private int nextChunkIndex = 0;
+        private int chunksScanned = 0;
+        private final ArrayDeque<CrackerExecutor.Job<Reference2IntOpenHashMap<BlockState>>> pendingJobs = new ArrayDeque<>();
+        private final Reference2IntOpenHashMap<BlockState> stateCounts = new Reference2IntOpenHashMap<>();
+        private boolean finished = false;
 
-            blocks += loop(level, maxXShifted * 16, maxX, maxZShifted * 16, maxZ, minY, maxY, blockPredicate, maxMaxChunk, mutablePos);
+        AreaStatsTask(BoundingBox area, ClientBlockPredicate predicate) {
+            this.area = area;
+            this.predicate = predicate;
+            this.minChunkX = SectionPos.blockToSectionCoord(area.minX());
+            this.minChunkZ = SectionPos.blockToSectionCoord(area.minZ());
+            this.chunkCountX = SectionPos.blockToSectionCoord(area.maxX()) - minChunkX + 1;
+            this.totalChunks = chunkCountX * (SectionPos.blockToSectionCoord(area.maxZ()) - minChunkZ + 1);
+        }
 
-            for (int minMinMaxMin = minMinChunk.getPos().x + 1; minMinMaxMin < maxMinChunk.getPos().x; minMinMaxMin++) {
-                assertChunkIsLoaded(minMinMaxMin, minMinChunk.getPos().z);
-                chunks++;
-                final LevelChunk chunk = level.getChunk(minMinMaxMin, minMinChunk.getPos().z);
-                blocks += loop(level, 16 * minMinMaxMin, 16 * minMinMaxMin + 15, minZ, minZShifted * 16 + 15, minY, maxY, blockPredicate, chunk, mutablePos);
+        @Override
+        public boolean condition() {
+            return !finished;
+        }
+
+        @Override
+        public Priority getPriority() {
+            return Priority.BACKGROUND;
+        }
+
+        @Override
+        protected void onTick() {
+            ClientLevel level = Minecraft.getInstance().level;
+            assert level != null;
+
+            while (!pendingJobs.isEmpty() && pendingJobs.peek().isDone()) {
+                Reference2IntOpenHashMap<BlockState> counts;
+                try {
+                    counts = pendingJobs.poll().getResult();
+                } catch (CompletionException | CancellationException e) {
+                    LOGGER.error("Failed to count block states", e);
+                    _break();
+                    return;
+                }
+                for (Reference2IntMap.Entry<BlockState> entry : Reference2IntMaps.fastIterable(counts)) {
+                    stateCounts.addTo(entry.getKey(), entry.getIntValue());
+                }
+                chunksScanned++;
             }
-            for (int minMinMinMax = minMinChunk.getPos().z + 1; minMinMinMax < minMaxChunk.getPos().z; minMinMinMax++) {
-                assertChunkIsLoaded(minMinChunk.getPos().x, minMinMinMax);
-                chunks++;
-                final LevelChunk chunk = level.getChunk(minMinChunk.getPos().x, minMinMinMax);
-                blocks += loop(level, minX, minXShifted * 16 + 15, 16 * minMinMinMax, 16 * minMinMinMax + 15, minY, maxY, blockPredicate, chunk, mutablePos);
+
+            while (nextChunkIndex < totalChunks && pendingJobs.size() < MAX_PENDING_JOBS && !shouldYield()) {
+                int chunkX = minChunkX + nextChunkIndex % chunkCountX;
+                int chunkZ = minChunkZ + nextChunkIndex / chunkCountX;
+                LevelChunk chunk = level.getChunkSource().getChunk(chunkX, chunkZ, ChunkStatus.FULL, false);
+                if (chunk == null) {
+                    sendError(Component.translatable("commands.careastats.notLoaded"));
+                    _break();
+                    return;
+                }
+
+                List<SectionSnapshot> snapshots = snapshotChunk(chunk, area, true);
+                try {
+                    pendingJobs.add(CrackerExecutor.submit(CrackerExecutor.Priority.NORMAL, token -> countStates(snapshots, token)));
+                } catch (CommandSyntaxException e) {
+                    sendError(ComponentUtils.fromMessage(e.getRawMessage()));
+                    _break();
+                    return;
+                }
+                nextChunkIndex++;
             }
-            for (int minMaxMaxMax = minMaxChunk.getPos().x + 1; minMaxMaxMax < maxMaxChunk.getPos().x; minMaxMaxMax++) {
-                assertChunkIsLoaded(minMaxMaxMax, minMaxChunk.getPos().z);
-                chunks++;
-                final LevelChunk chunk = level.getChunk(minMaxMaxMax, minMaxChunk.getPos().z);
-                blocks += loop(level, 16 * minMaxMaxMax, 16 * minMaxMaxMax + 15, maxZShifted * 16, maxZ, minY, maxY, blockPredicate, chunk, mutablePos);
+
+            if (nextChunkIndex == totalChunks && pendingJobs.isEmpty()) {
+                finished = true;
+                return;
             }
-            for (int maxMinMaxMax = maxMinChunk.getPos().z + 1; maxMinMaxMax < maxMaxChunk.getPos().z; maxMinMaxMax++) {
-                assertChunkIsLoaded(maxMinChunk.getPos().x, maxMinMaxMax);
-                chunks++;
-                final LevelChunk chunk = level.getChunk(maxMinChunk.getPos().x, maxMinMaxMax);
-                blocks += loop(level, maxXShifted * 16, maxX, 16 * maxMinMaxMax, 16 * maxMinMaxMax + 15, minY, maxY, blockPredicate, chunk, mutablePos);
+
+            Minecraft.getInstance().gui.setOverlayMessage(Component.translatable("commands.careastats.progress", chunksScanned, totalChunks, countMatchedBlocks(stateCounts, predicate)), false);
+        }
+
+        @Override
+        public void onCompleted() {
+            if (!finished) {
+                pendingJobs.forEach(CrackerExecutor.Job::cancel);
+                return;
             }
-            for (int chunkX = minMinChunk.getPos().x + 1; chunkX < maxMinChunk.getPos().x; chunkX++) {
-                for (int chunkZ = minMinChunk.getPos().z + 1; chunkZ < minMaxChunk.getPos().z; chunkZ++) {
-                    assertChunkIsLoaded(chunkX, chunkZ);
-                    chunks++;
-                    final LevelChunk chunk = level.getChunk(chunkX, chunkZ);
-                    blocks += loop(level, 16 * chunkX, 16 * chunkX + 15, 16 * chunkZ, 16 * chunkZ + 15, minY, maxY, blockPredicate, chunk, mutablePos);
-                }
+
+            ClientLevel level = Minecraft.getInstance().level;
+            assert level != null;
+            sendResults(level, area, chunksScanned, startTime, countMatchedBlocks(stateCounts, predicate));
+        }
+    }
+
+    /**
+     * Returns the sections of the chunk within the area. The block states are copied if they will be read off-thread.
+     */
+    private static List<SectionSnapshot> snapshotChunk(LevelChunk chunk, BoundingBox area, boolean copy) {
+        int chunkMinX = chunk.getPos().getMinBlockX();
+        int chunkMinZ = chunk.getPos().getMinBlockZ();
+        int minX = Math.max(area.minX(), chunkMinX) - chunkMinX;
+        int maxX = Math.min(area.maxX(), chunkMinX + 15) - chunkMinX;
+        int minZ = Math.max(area.minZ(), chunkMinZ) - chunkMinZ;
+        int maxZ = Math.min(area.maxZ(), chunkMinZ + 15) - chunkMinZ;
+
+        LevelChunkSection[] sections = chunk.getSections();
+        List<SectionSnapshot> snapshots = new ArrayList<>();
+        for (int sectionY = SectionPos.blockToSectionCoord(area.minY()); sectionY <= SectionPos.blockToSectionCoord(area.maxY()); sectionY++) {
+            int sectionIndex = chunk.getSectionIndexFromSectionY(sectionY);
+            if (sectionIndex < 0 || sectionIndex >= sections.length) {
+                continue;
             }
+            int sectionMinY = SectionPos.sectionToBlockCoord(sectionY);
+            int minY = Math.max(area.minY(), sectionMinY) - sectionMinY;
+            int maxY = Math.min(area.maxY(), sectionMinY + 15) - sectionMinY;
+            PalettedContainer<BlockState> states = sections[sectionIndex].getStates();
+            snapshots.add(new SectionSnapshot(copy ? states.copy() : states, minX, minY, minZ, maxX, maxY, maxZ));
         }
+        return snapshots;
+    }
 
-        final long entities = Streams.stream(level.entitiesForRendering())
-                .filter(entity ->
-                        entity.getX() >= minX && entity.getX() <= maxX &&
-                        entity.getZ() >= minZ && entity.getZ() <= maxZ &&
-                        entity.getY() >= minY && entity.getY() <= maxY)
-                .count();
+    private static long countMatchedBlocks(Reference2IntOpenHashMap<BlockState> stateCounts, ClientBlockPredicate predicate) {
+        long matched = 0;
+        for (Reference2IntMap.Entry<BlockState> entry : Reference2IntMaps.fastIterable(stateCounts)) {
+            if (predicate.canEverMatch(entry.getKey())) {
+                matched += entry.getIntValue();
+            }
+        }
+        return matched;
+    }
 
-        AABB box = new AABB(minX, minY, minZ, maxX + 1, maxY + 1, maxZ + 1);
-        RenderQueue.addCuboid(RenderQueue.Layer.ON_TOP, box, box, 0xFFFF0000, 60 * 20);
+    private static void sendResults(ClientLevel level, BoundingBox area, int chunks, long startTime, long matched) {
+        int entities = level.getEntities((Entity) null, AABB.of(area).inflate(1), entity ->
+            entity.getX() >= area.minX() && entity.getX() <= area.maxX() &&
+            entity.getZ() >= area.minZ() && entity.getZ() <= area.maxZ() &&
+            entity.getY() >= area.minY() && entity.getY() <= area.maxY()).size();
 
         long endTime = System.nanoTime();
 
-        source.sendFeedback(Component.translatable("commands.careastats.output.chunksScanned", chunks, endTime - startTime, (endTime - startTime) / 1000000));
-        source.sendFeedback(Component.translatable("commands.careastats.output.blocksMatched", blocks, (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1)));
-        source.sendFeedback(Component.translatable("commands.careastats.output.entitiesFound", entities));
-
-        return blocks;
+        sendFeedback(Component.translatable("commands.careastats.output.chunksScanned", chunks, endTime - startTime, (endTime - startTime) / 1000000));
+        sendFeedback(Component.translatable("commands.careastats.output.blocksMatched", matched, (long) area.getXSpan() * area.getYSpan() * area.getZSpan()));
+        sendFeedback(Component.translatable("commands.careastats.output.entitiesFound", entities));
     }
 
-    private static int loop(ClientLevel level, int start1, int end1, int start2, int end2, int start3, int end3, ClientBlockPredicate predicate, LevelChunk chunk, BlockPos.MutableBlockPos mutablePos) throws CommandSyntaxException {
-        int counter = 0;
-        for (int x = start1; x <= end1; x++) {
-            mutablePos.setX(x);
-            for (int z = start2; z <= end2; z++) {
-                mutablePos.setZ(z);
-                for (int y = start3; y <= end3; y++) {
-                    mutablePos.setY(y);
-                    if (predicate.test(level.registryAccess(), chunk, mutablePos)) {
-                        counter++;
+    private static Reference2IntOpenHashMap<BlockState> countStates(List<SectionSnapshot> snapshots, CrackerExecutor.CancellationToken token) {
+        Reference2IntOpenHashMap<BlockState> counts = new Reference2IntOpenHashMap<>();
+        for (SectionSnapshot snapshot : snapshots) {
+            token.throwIfCancelled();
+            if (snapshot.isWholeSection()) {
+                snapshot.states.count((state, count) -> counts.addTo(state, count));
+            } else {
+                for (int y = snapshot.minY; y <= snapshot.maxY; y++) {
+                    for (int z = snapshot.minZ; z <= snapshot.maxZ; z++) {
+                        for (int x = snapshot.minX; x <= snapshot.maxX; x++) {
+                            counts.addTo(snapshot.states.get(x, y, z), 1);
+                        }
                     }
                 }
             }
         }
-        return counter;
+        return counts;
     }
 
-    private static void assertChunkIsLoaded(int x, int z) throws CommandSyntaxException {
-        if (chunkSource.hasChunk(x, z)) {
-            return;
+    /**
+     * A chunk section's block states, copied if they are read off-thread, and the section-relative bounds of the area
+     * within it
+     */
+    private record SectionSnapshot(PalettedContainer<BlockState> states, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        boolean isWholeSection() {
+            return minX == 0 && minY == 0 && minZ == 0 && maxX == 15 && maxY == 15 && maxZ == 15;
         }
-        throw NOT_LOADED_EXCEPTION.create();
     }
 }
@@ -5,6 +5,7 @@ import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import com.mojang.datafixers.util.Either;
+import net.earthcomputer.clientcommands.features.BlockEntityIndex;
 import net.earthcomputer.clientcommands.features.ClientcommandsDataQueryHandler;
 import net.earthcomputer.clientcommands.util.CUtil;
 import net.earthcomputer.clientcommands.util.GuiBlocker;
@@ -50,7 +51,6 @@ import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.level.block.entity.ShulkerBoxBlockEntity;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.block.state.properties.ChestType;
-import net.minecraft.world.level.chunk.LevelChunk;
 import net.minecraft.world.level.chunk.status.ChunkStatus;
 import net.minecraft.world.phys.AABB;
 import net.minecraft.world.phys.BlockHitResult;
@@ -110,8 +110,6 @@ public class FindItemCommand {
     }
 
     private static abstract class AbstractFindItemsTask extends SimpleTask {
-        private static final Set<Object> MUTEX_KEYS = Set.of(TaskManager.INTENSIVE_TASK_MUTEX);
-
         protected final String searchingForName;
         protected final Predicate<ItemStack> searchingFor;
         protected final boolean searchShulkerBoxes;
@@ -183,12 +181,15 @@ public class FindItemCommand {
         }
 
         @Override
-        public Set<Object> getMutexKeys() {
-            return MUTEX_KEYS;
+        public Priority getPriority() {
+            return Priority.BACKGROUND;
         }
     }
 
     private static class ClickInventoriesFindItemsTask extends AbstractFindItemsTask {
+        // clicking on containers takes over the player's screen, so only one of these can run at once
+        private static final Set<Object> MUTEX_KEYS = Set.of(ClickInventoriesFindItemsTask.class);
+
         private final Set<BlockPos> searchedBlocks = new HashSet<>();
         private final Set<UUID> searchedEntities = new HashSet<>();
         private Either<BlockPos, Entity> currentlySearching = null;
@@ -199,6 +200,11 @@ public class FindItemCommand {
             super(searchingForName, searchingFor, searchShulkerBoxes, keepSearching);
         }
 
+        @Override
+        public Set<Object> getMutexKeys() {
+            return MUTEX_KEYS;
+        }
+
         @Override
         public boolean condition() {
             return true;
@@ -385,7 +391,6 @@ public class FindItemCommand {
     }
 
     private static class NbtQueryFindItemsTask extends AbstractFindItemsTask {
-        private static final long MAX_SCAN_TIME = 30_000_000L; // 30ms
         private static final int NO_RESPONSE_TIMEOUT = 100; // ticks
 
         private final Set<BlockPos> searchedBlocks = new HashSet<>();
@@ -423,8 +428,6 @@ public class FindItemCommand {
             assert packetListener != null;
 
             if (isScanning) {
-                long startTime = System.nanoTime();
-
                 for (Entity entity : level.entitiesForRendering()) {
                     if (canSearchEntity(entity) && searchedEntities.add(entity.getUUID())) {
                         waitingOnEntities.add(entity.getUUID());
@@ -440,7 +443,7 @@ public class FindItemCommand {
                             }
                             currentlySearchingTimeout = NO_RESPONSE_TIMEOUT;
                         });
-                        if (System.nanoTime() - startTime > MAX_SCAN_TIME) {
+                        if (shouldYield()) {
                             // wait a tick
                             return;
                         }
@@ -457,7 +460,7 @@ public class FindItemCommand {
                         scanChunk(new ChunkPos(chunkPosAsBlockPos.getX(), chunkPosAsBlockPos.getZ()), cameraEntity);
                     }
 
-                    if (System.nanoTime() - startTime > MAX_SCAN_TIME) {
+                    if (shouldYield()) {
                         // wait a tick
                         return;
                     }
@@ -508,63 +511,52 @@ public class FindItemCommand {
                 }
             }
 
-            LevelChunk chunk = level.getChunk(chunkToScan.x, chunkToScan.z);
-
-            int minSection = chunk.getMinSectionY();
-            int maxSection = chunk.getMaxSectionY();
-            for (int sectionY = minSection; sectionY < maxSection; sectionY++) {
-                if (!chunk.getSection(chunk.getSectionIndexFromSectionY(sectionY)).maybeHas(state -> state.is(Blocks.ENDER_CHEST) || state.hasBlockEntity())) {
+            for (BlockPos pos : BlockEntityIndex.getPositions(level, chunkToScan, BlockEntityIndex.Category.ENDER_CHEST)) {
+                if (!searchedBlocks.add(pos)) {
                     continue;
                 }
 
-                for (BlockPos pos : BlockPos.betweenClosed(chunkToScan.getMinBlockX(), sectionY << 4, chunkToScan.getMinBlockZ(), chunkToScan.getMaxBlockX(), (sectionY << 4) + 15, chunkToScan.getMaxBlockZ())) {
-                    if (searchedBlocks.contains(pos)) {
-                        continue;
-                    }
-                    BlockState state = chunk.getBlockState(pos);
-
-                    if (state.is(Blocks.ENDER_CHEST)) {
-                        BlockPos currentPos = pos.immutable();
-                        searchedBlocks.add(currentPos);
-                        if (enderChestPosition == null) {
-                            enderChestPosition = currentPos;
-                            currentlySearchingTimeout = NO_RESPONSE_TIMEOUT;
-                            ClientcommandsDataQueryHandler.get(packetListener).queryEntityNbt(player.getId(), playerNbt -> {
-                                int numItemsInEnderChest = 0;
-                                if (playerNbt != null && playerNbt.contains("EnderItems", Tag.TAG_LIST)) {
-                                    numItemsInEnderChest = countItems(playerNbt.getList("EnderItems", Tag.TAG_COMPOUND));
-                                }
-                                this.numItemsInEnderChest = numItemsInEnderChest;
-                                totalFound += numItemsInEnderChest;
-                                currentlySearchingTimeout = NO_RESPONSE_TIMEOUT;
-                            });
-                        } else if (!hasPrintedEnderChest) {
-                            Vec3 cameraPos = cameraEntity.getEyePosition(0);
-                            double currentDistanceSq = enderChestPosition.distToCenterSqr(cameraPos);
-                            double newDistanceSq = currentPos.distToCenterSqr(cameraPos);
-                            if (newDistanceSq < currentDistanceSq) {
-                                enderChestPosition = currentPos;
-                            }
+                if (enderChestPosition == null) {
+                    enderChestPosition = pos;
+                    currentlySearchingTimeout = NO_RESPONSE_TIMEOUT;
+                    ClientcommandsDataQueryHandler.get(packetListener).queryEntityNbt(player.getId(), playerNbt -> {
+                        int numItemsInEnderChest = 0;
+                        if (playerNbt != null && playerNbt.contains("EnderItems", Tag.TAG_LIST)) {
+                            numItemsInEnderChest = countItems(playerNbt.getList("EnderItems", Tag.TAG_COMPOUND));
                         }
-                    } else if (chunk.getBlockEntity(pos) instanceof Container) {
-                        BlockPos currentPos = pos.immutable();
-                        searchedBlocks.add(currentPos);
-                        waitingOnBlocks.add(currentPos);
+                        this.numItemsInEnderChest = numItemsInEnderChest;
+                        totalFound += numItemsInEnderChest;
                         currentlySearchingTimeout = NO_RESPONSE_TIMEOUT;
-                        ClientcommandsDataQueryHandler.get(packetListener).queryBlockNbt(currentPos, blockNbt -> {
-                            waitingOnBlocks.remove(currentPos);
-                            if (blockNbt != null && blockNbt.contains("Items", Tag.TAG_LIST)) {
-                                int count = countItems(blockNbt.getList("Items", Tag.TAG_COMPOUND));
-                                if (count > 0) {
-                                    totalFound += count;
-                                    printLocation(currentPos, count);
-                                }
-                            }
-                            currentlySearchingTimeout = NO_RESPONSE_TIMEOUT;
-                        });
+                    });
+                } else if (!hasPrintedEnderChest) {
+                    Vec3 cameraPos = cameraEntity.getEyePosition(0);
+                    double currentDistanceSq = enderChestPosition.distToCenterSqr(cameraPos);
+                    double newDistanceSq = pos.distToCenterSqr(cameraPos);
+                    if (newDistanceSq < currentDistanceSq) {
+                        enderChestPosition = pos;
                     }
                 }
             }
+
+            for (BlockPos pos : BlockEntityIndex.getPositions(level, chunkToScan, BlockEntityIndex.Category.CONTAINER)) {
+                if (!searchedBlocks.add(pos)) {
+                    continue;
+                }
+
+                waitingOnBlocks.add(pos);
+                currentlySearchingTimeout = NO_RESPONSE_TIMEOUT;
+                ClientcommandsDataQueryHandler.get(packetListener).queryBlockNbt(pos, blockNbt -> {
+                    waitingOnBlocks.remove(pos);
+                    if (blockNbt != null && blockNbt.contains("Items", Tag.TAG_LIST)) {
+                        int count = countItems(blockNbt.getList("Items", Tag.TAG_COMPOUND));
+                        if (count > 0) {
+                            totalFound += count;
+                            printLocation(pos, count);
+                        }
+                    }
+                    currentlySearchingTimeout = NO_RESPONSE_TIMEOUT;
+                });
+            }
         }
 
         @Override
@@ -5,16 +5,24 @@ import com.mojang.brigadier.Command;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.Message;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.mojang.brigadier.exceptions.DynamicCommandExceptionType;
 import com.mojang.brigadier.exceptions.SimpleCommandExceptionType;
 import com.mojang.logging.LogUtils;
 import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.earthcomputer.clientcommands.ClientCommands;
 import net.earthcomputer.clientcommands.Configs;
+import net.earthcomputer.clientcommands.event.ClientConnectionEvents;
 import net.earthcomputer.clientcommands.util.ReflectionUtils;
 import net.earthcomputer.clientcommands.util.UnsafeUtils;
 import net.earthcomputer.clientcommands.util.MappingsHelper;
+import net.earthcomputer.clientcommands.features.PacketCaptureFile;
+import net.earthcomputer.clientcommands.features.PacketCapturePipeline;
 import net.earthcomputer.clientcommands.features.PacketDumper;
 import net.fabricmc.fabric.api.client.command.v2.FabricClientCommandSource;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents;
 import net.minecraft.ChatFormatting;
+import net.minecraft.Util;
+import net.minecraft.client.Minecraft;
 import net.minecraft.core.Holder;
 import net.minecraft.core.Registry;
 import net.minecraft.network.chat.ClickEvent;
@@ -25,27 +33,39 @@ import net.minecraft.network.protocol.Packet;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.level.ChunkPos;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
-import java.lang.invoke.VarHandle;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Array;
+import java.lang.reflect.Field;
 import java.lang.reflect.InaccessibleObjectException;
 import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
+import static com.mojang.brigadier.arguments.StringArgumentType.*;
 import static net.earthcomputer.clientcommands.command.arguments.PacketTypeArgument.*;
 import static net.fabricmc.fabric.api.client.command.v2.ClientCommandManager.*;
+import static net.minecraft.commands.SharedSuggestionProvider.*;
 
 public class ListenCommand {
 
@@ -58,12 +78,26 @@ public class ListenCommand {
     private static final SimpleCommandExceptionType COMMAND_DISABLED_EXCEPTION = new SimpleCommandExceptionType(Component.translatable("commands.clisten.commandDisabled"));
     private static final SimpleCommandExceptionType ALREADY_LISTENING_EXCEPTION = new SimpleCommandExceptionType(Component.translatable("commands.clisten.add.failed"));
     private static final SimpleCommandExceptionType NOT_LISTENING_EXCEPTION = new SimpleCommandExceptionType(Component.translatable("commands.clisten.remove.failed"));
+    private static final SimpleCommandExceptionType ALREADY_CAPTURING_EXCEPTION = new SimpleCommandExceptionType(Component.translatable("commands.clisten.file.alreadyCapturing"));
+    private static final SimpleCommandExceptionType NOT_CAPTURING_EXCEPTION = new SimpleCommandExceptionType(Component.translatable("commands.clisten.file.notCapturing"));
+    private static final SimpleCommandExceptionType FILE_ERROR_EXCEPTION = new SimpleCommandExceptionType(Component.translatable("commands.clisten.file.ioError"));
+    private static final DynamicCommandExceptionType FILE_NOT_FOUND_EXCEPTION = new DynamicCommandExceptionType(arg -> Component.translatable("commands.clisten.file.notFound", arg));
+
+    private static final Path CAPTURES_DIR = ClientCommands.CONFIG_DIR.resolve("packet_captures");
+    private static final DateTimeFormatter CAPTURE_FILE_NAME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH.mm.ss");
 
     private static final Logger LOGGER = LogUtils.getLogger();
 
-    private static final Set<ResourceLocation> packets = new HashSet<>();
+    // read from the threads that packets are captured on
+    private static final Set<ResourceLocation> packets = ConcurrentHashMap.newKeySet();
+
+    private static volatile PacketCapturePipeline<PacketFlow> pipeline;
 
-    private static PacketCallback callback;
+    // while set, captured packets are written to this file rather than to chat
+    @Nullable
+    private static volatile PacketCaptureFile.Writer captureFile;
+    @Nullable
+    private static String captureFileName;
 
     public static void register(CommandDispatcher<FabricClientCommandSource> dispatcher) {
         dispatcher.register(literal("clisten")
@@ -76,7 +110,18 @@ public class ListenCommand {
             .then(literal("list")
                 .executes(ctx -> list(ctx.getSource())))
             .then(literal("clear")
-                .executes(ctx -> clear(ctx.getSource()))));
+                .executes(ctx -> clear(ctx.getSource())))
+            .then(literal("stats")
+                .executes(ctx -> stats(ctx.getSource())))
+            .then(literal("file")
+                .then(literal("start")
+                    .executes(ctx -> startFile(ctx.getSource())))
+                .then(literal("stop")
+                    .executes(ctx -> stopFile(ctx.getSource())))
+                .then(literal("replay")
+                    .then(argument("file", string())
+                        .suggests((ctx, builder) -> suggest(listCaptureFiles(), builder))
+                        .executes(ctx -> replayFile(ctx.getSource(), getString(ctx, "file")))))));
     }
 
     private static int add(FabricClientCommandSource source, ResourceLocation packetType) throws CommandSyntaxException {
@@ -87,46 +132,9 @@ public class ListenCommand {
 
         source.sendFeedback(Component.translatable("commands.clisten.add.success"));
 
-        if (callback == null) {
-            callback = (packet, side) -> {
-                String packetData;
-                Component packetDataPreview;
-                if (Configs.packetDumpMethod == Configs.PacketDumpMethod.BYTE_BUF) {
-                    StringWriter writer = new StringWriter();
-                    try {
-                        PacketDumper.dumpPacket(packet, new JsonWriter(writer));
-                    } catch (IOException e) {
-                        LOGGER.error("Could not dump packet", e);
-                        return;
-                    }
-                    packetData = writer.toString();
-                    packetDataPreview = Component.literal(packetData.replace("\u00a7", "\\u00a7"));
-                } else {
-                    try {
-                        packetDataPreview = serialize(packet, new ReferenceOpenHashSet<>(), 0);
-                        packetData = packetDataPreview.getString();
-                    } catch (StackOverflowError e) {
-                        LOGGER.error("Could not serialize packet into a Component", e);
-                        return;
-                    }
-                }
-
-                String packetClassName = packet.getClass().getName().replace('.', '/');
-                String mojmapPacketName = Objects.requireNonNullElse(MappingsHelper.namedOrIntermediaryToMojmap_class(packetClassName), packetClassName);
-                mojmapPacketName = mojmapPacketName.substring(mojmapPacketName.lastIndexOf('/') + 1);
-
-                MutableComponent packetComponent = Component.literal(mojmapPacketName).withStyle(s -> s
-                    .withUnderlined(true)
-                    .withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT, packetDataPreview))
-                    .withClickEvent(new ClickEvent(ClickEvent.Action.COPY_TO_CLIPBOARD, packetData)));
-
-                switch (side) {
-                    case SERVERBOUND -> source.sendFeedback(Component.translatable("commands.clisten.sentPacket", packetComponent));
-                    case CLIENTBOUND -> source.sendFeedback(Component.translatable("commands.clisten.receivedPacket", packetComponent));
-                    case C2C_OUTBOUND -> source.sendFeedback(Component.translatable("commands.clisten.sentC2CPacket", packetComponent));
-                    case C2C_INBOUND -> source.sendFeedback(Component.translatable("commands.clisten.receivedC2CPacket", packetComponent));
-                }
-            };
+        if (pipeline == null) {
+            // messages are posted in batches, so that chat isn't flooded with tasks on busy servers
+            pipeline = new PacketCapturePipeline<>(PacketFlow.class, Configs.getPacketCaptureBufferSize(), ListenCommand::serializePacket, messages -> Minecraft.getInstance().execute(() -> messages.forEach(source::sendFeedback)));
         }
 
         return Command.SINGLE_SUCCESS;
@@ -139,6 +147,9 @@ public class ListenCommand {
         }
 
         source.sendFeedback(Component.translatable("commands.clisten.remove.success"));
+        if (packets.isEmpty()) {
+            stopCapture();
+        }
         return Command.SINGLE_SUCCESS;
     }
 
@@ -161,10 +172,176 @@ public class ListenCommand {
         checkEnabled();
         int amount = packets.size();
         packets.clear();
+        stopCapture();
         source.sendFeedback(Component.translatable("commands.clisten.clear"));
         return amount;
     }
 
+    private static int stats(FabricClientCommandSource source) throws CommandSyntaxException {
+        checkEnabled();
+        PacketCapturePipeline<PacketFlow> pipeline = ListenCommand.pipeline;
+        if (pipeline == null) {
+            source.sendFeedback(Component.translatable("commands.clisten.list.none"));
+            return 0;
+        }
+
+        long processed = pipeline.getProcessedCount();
+        source.sendFeedback(Component.translatable("commands.clisten.stats", pipeline.getCapturedCount(), processed, pipeline.getDroppedCount(), pipeline.getQueuedCount()));
+        return (int) Math.min(processed, Integer.MAX_VALUE);
+    }
+
+    private static int startFile(FabricClientCommandSource source) throws CommandSyntaxException {
+        checkEnabled();
+        if (captureFile != null) {
+            throw ALREADY_CAPTURING_EXCEPTION.create();
+        }
+
+        String fileName = CAPTURE_FILE_NAME_FORMAT.format(LocalDateTime.now()) + PacketCaptureFile.EXTENSION;
+        try {
+            Files.createDirectories(CAPTURES_DIR);
+            captureFile = new PacketCaptureFile.Writer(CAPTURES_DIR.resolve(fileName));
+        } catch (IOException e) {
+            LOGGER.error("Could not create packet capture file", e);
+            throw FILE_ERROR_EXCEPTION.create();
+        }
+        captureFileName = fileName;
+
+        source.sendFeedback(Component.translatable("commands.clisten.file.start.success", fileName));
+        return Command.SINGLE_SUCCESS;
+    }
+
+    private static int stopFile(FabricClientCommandSource source) throws CommandSyntaxException {
+        checkEnabled();
+        PacketCaptureFile.Writer captureFile;
+        try {
+            captureFile = closeCaptureFile();
+        } catch (IOException e) {
+            LOGGER.error("Could not close packet capture file", e);
+            throw FILE_ERROR_EXCEPTION.create();
+        }
+        if (captureFile == null) {
+            throw NOT_CAPTURING_EXCEPTION.create();
+        }
+
+        long recordCount = captureFile.getRecordCount();
+        source.sendFeedback(Component.translatable("commands.clisten.file.stop.success", recordCount, captureFileName));
+        return (int) Math.min(recordCount, Integer.MAX_VALUE);
+    }
+
+    private static int replayFile(FabricClientCommandSource source, String fileName) throws CommandSyntaxException {
+        checkEnabled();
+        Path file = CAPTURES_DIR.resolve(fileName).normalize();
+        if (!fileName.endsWith(PacketCaptureFile.EXTENSION) || !CAPTURES_DIR.equals(file.getParent()) || !Files.isRegularFile(file)) {
+            throw FILE_NOT_FOUND_EXCEPTION.create(fileName);
+        }
+
+        String outputName = fileName.substring(0, fileName.length() - PacketCaptureFile.EXTENSION.length()) + ".json";
+        source.sendFeedback(Component.translatable("commands.clisten.file.replay.started", fileName));
+
+        // decoding and dumping a large capture can take a while, so don't block the client
+        CompletableFuture.supplyAsync(() -> {
+            try (PacketCaptureFile.Reader reader = new PacketCaptureFile.Reader(file);
+                 Writer output = Files.newBufferedWriter(CAPTURES_DIR.resolve(outputName))) {
+                JsonWriter jsonWriter = new JsonWriter(output);
+                jsonWriter.setIndent("  ");
+                long dumpedCount = PacketDumper.dumpCapture(reader, jsonWriter, PacketFlow.values(), PacketFlow::getProtocolFlow);
+                jsonWriter.flush();
+                return Component.translatable("commands.clisten.file.replay.success", dumpedCount, reader.getRecordCount(), outputName);
+            } catch (IOException e) {
+                LOGGER.error("Could not replay packet capture file {}", fileName, e);
+                return Component.translatable("commands.clisten.file.ioError").withStyle(ChatFormatting.RED);
+            }
+        }, Util.ioPool()).thenAcceptAsync(source::sendFeedback, Minecraft.getInstance());
+
+        return Command.SINGLE_SUCCESS;
+    }
+
+    private static Collection<String> listCaptureFiles() {
+        if (!Files.isDirectory(CAPTURES_DIR)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.list(CAPTURES_DIR)) {
+            return files.map(file -> file.getFileName().toString()).filter(name -> name.endsWith(PacketCaptureFile.EXTENSION)).toList();
+        } catch (IOException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    private static void stopCapture() {
+        PacketCapturePipeline<PacketFlow> pipeline = ListenCommand.pipeline;
+        if (pipeline != null) {
+            pipeline.shutdown();
+            ListenCommand.pipeline = null;
+        }
+        tryCloseCaptureFile();
+    }
+
+    /**
+     * Closes the capture file if there is one. The file's index is only written when it's closed.
+     *
+     * @return The closed file, or {@code null} if there wasn't one
+     */
+    @Nullable
+    private static PacketCaptureFile.Writer closeCaptureFile() throws IOException {
+        PacketCaptureFile.Writer captureFile = ListenCommand.captureFile;
+        if (captureFile == null) {
+            return null;
+        }
+        ListenCommand.captureFile = null;
+        captureFile.close();
+        return captureFile;
+    }
+
+    private static void tryCloseCaptureFile() {
+        try {
+            closeCaptureFile();
+        } catch (IOException e) {
+            LOGGER.error("Could not close packet capture file", e);
+        }
+    }
+
+    public static void registerEvents() {
+        ClientConnectionEvents.DISCONNECT.register(ListenCommand::tryCloseCaptureFile);
+        ClientLifecycleEvents.CLIENT_STOPPING.register(client -> tryCloseCaptureFile());
+    }
+
+    /**
+     * Turns a captured packet into a chat message, or writes it to the capture file if there is one. Called on the
+     * capture pipeline's background thread, so it only reads the packet's own decoded copy.
+     */
+    @Nullable
+    private static Component serializePacket(PacketCapturePipeline.CapturedPacket captured, PacketFlow side) throws IOException {
+        PacketCaptureFile.Writer captureFile = ListenCommand.captureFile;
+        if (captureFile != null) {
+            // the raw encoded bytes are much cheaper to write than a dump, and the file can be replayed later
+            captureFile.write(captured.timestamp(), side.ordinal(), captured.type().toString(), captured.bytes());
+            return null;
+        }
+
+        Packet<?> packet = captured.decode();
+        String packetData;
+        Component packetDataPreview;
+        if (Configs.packetDumpMethod == Configs.PacketDumpMethod.BYTE_BUF) {
+            packetData = PacketDumper.dumpPacketToString(packet, captured.codec(), Configs.packetDumpIncludeNbt);
+            packetDataPreview = Component.literal(packetData.replace("\u00a7", "\\u00a7"));
+        } else {
+            packetDataPreview = serialize(packet, new ReferenceOpenHashSet<>(), 0);
+            packetData = packetDataPreview.getString();
+        }
+
+        MutableComponent packetComponent = Component.literal(ClassPlan.PLANS.get(packet.getClass()).simpleName).withStyle(s -> s
+            .withUnderlined(true)
+            .withHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT, packetDataPreview))
+            .withClickEvent(new ClickEvent(ClickEvent.Action.COPY_TO_CLIPBOARD, packetData)));
+
+        return switch (side) {
+            case SERVERBOUND -> Component.translatable("commands.clisten.sentPacket", packetComponent);
+            case CLIENTBOUND -> Component.translatable("commands.clisten.receivedPacket", packetComponent);
+            case C2C_OUTBOUND -> Component.translatable("commands.clisten.sentC2CPacket", packetComponent);
+            case C2C_INBOUND -> Component.translatable("commands.clisten.receivedC2CPacket", packetComponent);
+        };
+    }
+
     private static void checkEnabled() throws CommandSyntaxException {
         if (!isEnabled) {
             throw COMMAND_DISABLED_EXCEPTION.create();
@@ -232,55 +409,200 @@ public class ListenCommand {
                     yield component.append(serialize(Array.get(object, lengthMinusOne), seen, depth + 1)).append("]");
                 }
 
-                String className = object.getClass().getName().replace(".", "/");
-                String mojmapClassName = Objects.requireNonNullElse(MappingsHelper.namedOrIntermediaryToMojmap_class(className), className);
-                mojmapClassName = mojmapClassName.substring(mojmapClassName.lastIndexOf('/') + 1);
-
-                MutableComponent component = Component.literal(mojmapClassName + '{');
-                component.append(ReflectionUtils.getAllFields(object.getClass())
-                    .filter(field -> !Modifier.isStatic(field.getModifiers()))
-                    .map(field -> {
-                        String fieldName = field.getName();
-                        String mojmapFieldName = Objects.requireNonNullElse(MappingsHelper.namedOrIntermediaryToMojmap_field(className, fieldName), fieldName);
-                        try {
-                            field.setAccessible(true);
-                            return Component.literal(mojmapFieldName + '=').append(serialize(field.get(object), seen, depth + 1));
-                        } catch (InaccessibleObjectException | ReflectiveOperationException e) {
-                            try {
-                                MethodHandles.Lookup implLookup = UnsafeUtils.getImplLookup();
-                                if (implLookup == null) {
-                                    return Component.literal(mojmapFieldName + '=').append(Component.translatable("commands.clisten.packetError").withStyle(ChatFormatting.DARK_RED));
-                                }
-                                VarHandle varHandle = implLookup.findVarHandle(object.getClass(), fieldName, field.getType());
-                                return Component.literal(mojmapFieldName + '=').append(serialize(varHandle.get(object), seen, depth + 1));
-                            } catch (ReflectiveOperationException ex) {
-                                return Component.literal(mojmapFieldName + '=').append(Component.translatable("commands.clisten.packetError").withStyle(ChatFormatting.DARK_RED));
-                            }
-                        }
-                    })
-                    .reduce((l, r) -> l.append(", ").append(r))
-                    .orElse(Component.empty()));
+                ClassPlan plan = ClassPlan.PLANS.get(object.getClass());
+                MutableComponent component = Component.literal(plan.simpleName + '{');
+                for (int i = 0; i < plan.fields.length; i++) {
+                    if (i > 0) {
+                        component.append(", ");
+                    }
+                    component.append(plan.fields[i].serialize(object, seen, depth));
+                }
                 yield component.append("}");
             }
         };
     }
 
+    /**
+     * How to serialize the fields of a class which has no special handling, worked out once per class. The mojmap names
+     * are looked up and the getters are resolved up front, so serializing an object is just a call to each getter.
+     */
+    private static final class ClassPlan {
+        private static final ClassValue<ClassPlan> PLANS = new ClassValue<>() {
+            @Override
+            protected ClassPlan computeValue(Class<?> type) {
+                return new ClassPlan(type);
+            }
+        };
+
+        private final String simpleName;
+        private final FieldPlan[] fields;
+
+        private ClassPlan(Class<?> clazz) {
+            String className = clazz.getName().replace('.', '/');
+            String mojmapClassName = Objects.requireNonNullElse(MappingsHelper.namedOrIntermediaryToMojmap_class(className), className);
+            this.simpleName = mojmapClassName.substring(mojmapClassName.lastIndexOf('/') + 1);
+            this.fields = ReflectionUtils.getAllFields(clazz)
+                .filter(field -> !Modifier.isStatic(field.getModifiers()))
+                .map(field -> {
+                    String mojmapFieldName = Objects.requireNonNullElse(MappingsHelper.namedOrIntermediaryToMojmap_field(className, field.getName()), field.getName());
+                    MethodHandle getter = createGetter(field);
+                    return new FieldPlan(mojmapFieldName + '=', getter, getter == null ? FieldKind.ERROR : FieldKind.of(field.getType()));
+                })
+                .toArray(FieldPlan[]::new);
+        }
+
+        /**
+         * Returns a getter of type {@code (Object) -> T}, where {@code T} is the field's type if it has a specialized
+         * {@link FieldKind}, or {@code Object} otherwise
+         */
+        @Nullable
+        private static MethodHandle createGetter(Field field) {
+            MethodHandle getter;
+            try {
+                field.setAccessible(true);
+                getter = MethodHandles.lookup().unreflectGetter(field);
+            } catch (InaccessibleObjectException | ReflectiveOperationException e) {
+                MethodHandles.Lookup implLookup = UnsafeUtils.getImplLookup();
+                if (implLookup == null) {
+                    return null;
+                }
+                try {
+                    getter = implLookup.findGetter(field.getDeclaringClass(), field.getName(), field.getType());
+                } catch (ReflectiveOperationException ex) {
+                    return null;
+                }
+            }
+            Class<?> type = FieldKind.of(field.getType()) == FieldKind.OBJECT ? Object.class : field.getType();
+            return getter.asType(MethodType.methodType(type, Object.class));
+        }
+    }
+
+    private record FieldPlan(String prefix, @Nullable MethodHandle getter, FieldKind kind) {
+        Component serialize(Object object, Set<Object> seen, int depth) {
+            MutableComponent component = Component.literal(prefix);
+            try {
+                return component.append(kind.serialize(getter, object, seen, depth + 1));
+            } catch (Throwable e) {
+                return component.append(Component.translatable("commands.clisten.packetError").withStyle(ChatFormatting.DARK_RED));
+            }
+        }
+    }
+
+    /**
+     * Serializes a field's value, with specialized handlers for primitives to avoid boxing them
+     */
+    private enum FieldKind {
+        BOOLEAN {
+            @Override
+            Component serialize(MethodHandle getter, Object object, Set<Object> seen, int depth) throws Throwable {
+                boolean value = (boolean) getter.invokeExact(object);
+                return depth <= Configs.maximumPacketFieldDepth ? Component.literal(Boolean.toString(value)) : Component.empty();
+            }
+        },
+        BYTE {
+            @Override
+            Component serialize(MethodHandle getter, Object object, Set<Object> seen, int depth) throws Throwable {
+                byte value = (byte) getter.invokeExact(object);
+                return depth <= Configs.maximumPacketFieldDepth ? Component.literal(Byte.toString(value)) : Component.empty();
+            }
+        },
+        SHORT {
+            @Override
+            Component serialize(MethodHandle getter, Object object, Set<Object> seen, int depth) throws Throwable {
+                short value = (short) getter.invokeExact(object);
+                return depth <= Configs.maximumPacketFieldDepth ? Component.literal(Short.toString(value)) : Component.empty();
+            }
+        },
+        INT {
+            @Override
+            Component serialize(MethodHandle getter, Object object, Set<Object> seen, int depth) throws Throwable {
+                int value = (int) getter.invokeExact(object);
+                return depth <= Configs.maximumPacketFieldDepth ? Component.literal(Integer.toString(value)) : Component.empty();
+            }
+        },
+        LONG {
+            @Override
+            Component serialize(MethodHandle getter, Object object, Set<Object> seen, int depth) throws Throwable {
+                long value = (long) getter.invokeExact(object);
+                return depth <= Configs.maximumPacketFieldDepth ? Component.literal(Long.toString(value)) : Component.empty();
+            }
+        },
+        FLOAT {
+            @Override
+            Component serialize(MethodHandle getter, Object object, Set<Object> seen, int depth) throws Throwable {
+                float value = (float) getter.invokeExact(object);
+                return depth <= Configs.maximumPacketFieldDepth ? Component.literal(Float.toString(value)) : Component.empty();
+            }
+        },
+        DOUBLE {
+            @Override
+            Component serialize(MethodHandle getter, Object object, Set<Object> seen, int depth) throws Throwable {
+                double value = (double) getter.invokeExact(object);
+                return depth <= Configs.maximumPacketFieldDepth ? Component.literal(Double.toString(value)) : Component.empty();
+            }
+        },
+        OBJECT {
+            @Override
+            Component serialize(MethodHandle getter, Object object, Set<Object> seen, int depth) throws Throwable {
+                return ListenCommand.serialize((Object) getter.invokeExact(object), seen, depth);
+            }
+        },
+        ERROR {
+            @Override
+            Component serialize(MethodHandle getter, Object object, Set<Object> seen, int depth) {
+                return Component.translatable("commands.clisten.packetError").withStyle(ChatFormatting.DARK_RED);
+            }
+        };
+
+        abstract Component serialize(MethodHandle getter, Object object, Set<Object> seen, int depth) throws Throwable;
+
+        static FieldKind of(Class<?> type) {
+            if (type == boolean.class) {
+                return BOOLEAN;
+            } else if (type == byte.class) {
+                return BYTE;
+            } else if (type == short.class) {
+                return SHORT;
+            } else if (type == int.class) {
+                return INT;
+            } else if (type == long.class) {
+                return LONG;
+            } else if (type == float.class) {
+                return FLOAT;
+            } else if (type == double.class) {
+                return DOUBLE;
+            } else {
+                // chars go through the generic path, like any other boxed value
+                return OBJECT;
+            }
+        }
+    }
+
     public enum PacketFlow {
         SERVERBOUND,
         CLIENTBOUND,
         C2C_OUTBOUND,
         C2C_INBOUND;
+
+        /**
+         * The direction of the connection which packets of this flow are encoded for
+         */
+        public net.minecraft.network.protocol.PacketFlow getProtocolFlow() {
+            return this == SERVERBOUND ? net.minecraft.network.protocol.PacketFlow.SERVERBOUND : net.minecraft.network.protocol.PacketFlow.CLIENTBOUND;
+        }
     }
 
+    /**
+     * Captures a packet if it is being listened to. Only queues the packet, which is serialized later on a background
+     * thread.
+     */
     public static void onPacket(Packet<?> packet, PacketFlow side) {
         if (!packets.contains(packet.type().id())) {
             return;
         }
-        callback.apply(packet, side);
-    }
-
-    @FunctionalInterface
-    private interface PacketCallback {
-        void apply(Packet<?> packet, PacketFlow side);
+        PacketCapturePipeline<PacketFlow> pipeline = ListenCommand.pipeline;
+        if (pipeline != null) {
+            pipeline.capture(packet, side);
+        }
     }
 }
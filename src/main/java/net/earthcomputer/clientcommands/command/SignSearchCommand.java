@@ -3,6 +3,7 @@ package net.earthcomputer.clientcommands.command;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import net.earthcomputer.clientcommands.command.arguments.ClientBlockPredicateArgument;
+import net.earthcomputer.clientcommands.features.BlockEntityIndex;
 import net.earthcomputer.clientcommands.util.CUtil;
 import net.earthcomputer.clientcommands.util.ThrowingPredicate;
 import net.fabricmc.fabric.api.client.command.v2.FabricClientCommandSource;
@@ -74,6 +75,11 @@ public class SignSearchCommand {
             public boolean canEverMatch(BlockState state) {
                 return state.getBlock() instanceof SignBlock;
             }
+
+            @Override
+            public BlockEntityIndex.Category getBlockEntityCategory() {
+                return BlockEntityIndex.Category.SIGN;
+            }
         };
     }
 }
@@ -38,7 +38,7 @@ public class TaskCommand {
         } else {
             source.sendFeedback(Component.translatable("commands.ctask.list.success", taskCount).withStyle(ChatFormatting.BOLD));
             for (String task : tasks) {
-                source.sendFeedback(Component.literal("- " + task));
+                source.sendFeedback(Component.translatable("commands.ctask.list.entry", task, TaskManager.getCpuTimeNanos(task) / 1_000_000));
             }
         }
 
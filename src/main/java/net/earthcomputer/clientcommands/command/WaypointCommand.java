@@ -10,6 +10,7 @@ import com.mojang.brigadier.exceptions.SimpleCommandExceptionType;
 import com.mojang.logging.LogUtils;
 import com.mojang.serialization.Dynamic;
 import net.earthcomputer.clientcommands.ClientCommands;
+import net.earthcomputer.clientcommands.features.WaypointIndex;
 import net.earthcomputer.clientcommands.render.RenderQueue;
 import net.fabricmc.fabric.api.client.command.v2.FabricClientCommandSource;
 import net.fabricmc.fabric.api.client.rendering.v1.HudRenderCallback;
@@ -27,8 +28,10 @@ import net.minecraft.client.multiplayer.ClientChunkCache;
 import net.minecraft.client.renderer.GameRenderer;
 import net.minecraft.client.renderer.LightTexture;
 import net.minecraft.client.renderer.ShapeRenderer;
+import net.minecraft.client.renderer.culling.Frustum;
 import net.minecraft.commands.SharedSuggestionProvider;
 import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.NbtIo;
 import net.minecraft.nbt.NbtOps;
@@ -39,12 +42,13 @@ import net.minecraft.network.chat.Component;
 import net.minecraft.network.chat.ComponentUtils;
 import net.minecraft.network.chat.HoverEvent;
 import net.minecraft.resources.ResourceKey;
+import net.minecraft.util.Mth;
 import net.minecraft.world.entity.Entity;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.phys.AABB;
 import net.minecraft.world.phys.Vec3;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.VisibleForTesting;
-import org.joml.Vector2d;
 import org.slf4j.Logger;
 
 import java.io.IOException;
@@ -68,6 +72,20 @@ import static net.fabricmc.fabric.api.client.command.v2.ClientCommandManager.*;
 public class WaypointCommand {
 
     private static final Map<String, Map<String, WaypointLocation>> waypoints = new HashMap<>();
+    private static int waypointsVersion = 0;
+
+    @Nullable
+    private static WaypointIndexKey waypointIndexKey = null;
+    private static WaypointIndex waypointIndex = WaypointIndex.builder().build();
+    /**
+     * The waypoints near enough to the camera and in front of it when the level was last rendered, which are the ones
+     * with a label on the HUD
+     */
+    private static final List<WaypointIndex.Waypoint> visibleWaypoints = new ArrayList<>();
+    @Nullable
+    private static WaypointIndex visibleWaypointsIndex = null;
+    @Nullable
+    private static WaypointLabelCache labelCache = null;
 
     private static final Logger LOGGER = LogUtils.getLogger();
 
@@ -137,6 +155,7 @@ public class WaypointCommand {
         if (worldWaypoints.putIfAbsent(name, new WaypointLocation(dimension, pos)) != null) {
             throw ALREADY_EXISTS_EXCEPTION.create(name);
         }
+        waypointsVersion++;
 
         saveFile();
         source.sendFeedback(Component.translatable("commands.cwaypoint.add.success", name, formatCoordinates(pos), dimension.location()));
@@ -155,6 +174,7 @@ public class WaypointCommand {
         if (worldWaypoints.remove(name) == null) {
             throw NOT_FOUND_EXCEPTION.create(name);
         }
+        waypointsVersion++;
 
         saveFile();
         source.sendFeedback(Component.translatable("commands.cwaypoint.remove.success", name));
@@ -177,6 +197,7 @@ public class WaypointCommand {
         if (worldWaypoints.computeIfPresent(name, (key, value) -> new WaypointLocation(dimension, pos)) == null) {
             throw NOT_FOUND_EXCEPTION.create(name);
         }
+        waypointsVersion++;
 
         saveFile();
         source.sendFeedback(Component.translatable("commands.cwaypoint.edit.success", name, formatCoordinates(pos), dimension.location()));
@@ -248,6 +269,7 @@ public class WaypointCommand {
 
     private static void loadFile() throws Exception {
         waypoints.clear();
+        waypointsVersion++;
         CompoundTag rootTag = NbtIo.read(ClientCommands.CONFIG_DIR.resolve("waypoints.dat"));
         if (rootTag == null) {
             return;
@@ -287,14 +309,34 @@ public class WaypointCommand {
         WorldRenderEvents.AFTER_ENTITIES.register(WaypointCommand::renderWaypointBoxes);
     }
 
+    /**
+     * Returns the waypoints in the given world and dimension, rebuilding the index if they have changed
+     */
+    private static WaypointIndex getWaypointIndex(String worldIdentifier, ResourceKey<Level> dimension) {
+        WaypointIndexKey key = new WaypointIndexKey(worldIdentifier, dimension, waypointsVersion);
+        if (!key.equals(waypointIndexKey)) {
+            WaypointIndex.Builder builder = WaypointIndex.builder();
+            Map<String, WaypointLocation> worldWaypoints = waypoints.get(worldIdentifier);
+            if (worldWaypoints != null) {
+                worldWaypoints.forEach((waypointName, waypoint) -> {
+                    if (waypoint.dimension().location().equals(dimension.location())) {
+                        builder.add(waypointName, waypoint.location());
+                    }
+                });
+            }
+            waypointIndex = builder.build();
+            waypointIndexKey = key;
+        }
+        return waypointIndex;
+    }
+
     private static void renderWaypointLabels(GuiGraphics guiGraphics, DeltaTracker deltaTracker) {
-        String worldIdentifier = getWorldIdentifier(Minecraft.getInstance());
-        Map<String, WaypointLocation> waypoints = WaypointCommand.waypoints.get(worldIdentifier);
-        if (waypoints == null) {
+        Minecraft minecraft = Minecraft.getInstance();
+        WaypointIndex index = getWaypointIndex(getWorldIdentifier(minecraft), minecraft.level.dimension());
+        if (index.size() == 0) {
             return;
         }
 
-        Minecraft minecraft = Minecraft.getInstance();
         GameRenderer gameRenderer = minecraft.gameRenderer;
         Camera camera = gameRenderer.getMainCamera();
         Entity cameraEntity = camera.getEntity();
@@ -304,117 +346,70 @@ public class WaypointCommand {
         double aspectRatio = (double) window.getGuiScaledWidth() / window.getGuiScaledHeight();
         double horizontalFovRad = 2 * Math.atan(Math.tan(verticalFovRad / 2) * aspectRatio);
 
-        Vec3 viewVector3 = cameraEntity.getViewVector(1.0f);
-        Vector2d viewVector = new Vector2d(viewVector3.x, viewVector3.z);
-        Vector2d position = new Vector2d(cameraEntity.getEyePosition().x, cameraEntity.getEyePosition().z);
-
-        List<WaypointLabelLocation> xPositions = new ArrayList<>();
-        waypoints.forEach((waypointName, waypoint) -> {
-            if (!waypoint.dimension().location().equals(minecraft.level.dimension().location())) {
-                return;
-            }
-
-            double distanceSquared = waypoint.location().distToCenterSqr(cameraEntity.position());
-            long distance = Math.round(Math.sqrt(distanceSquared));
-            Component label = ComponentUtils.wrapInSquareBrackets(Component.literal(waypointName + ' ' + distance).withStyle(ChatFormatting.YELLOW));
-
-            Vector2d waypointLocation = new Vector2d(waypoint.location().getX(), waypoint.location().getZ());
-            double angleRad = viewVector.angle(waypointLocation.sub(position, new Vector2d()));
-            boolean right = angleRad > 0;
-            angleRad = Math.abs(angleRad);
-
-            int x;
-            if (angleRad > horizontalFovRad / 2) {
-                int width = minecraft.font.width(label);
-                x = right ? guiGraphics.guiWidth() - width / 2 : width / 2;
-            } else {
-                // V is the view vector
-                // A is the leftmost visible direction
-                // B is the rightmost visible direction
-                // M is the intersection of the position -> waypoint line with AB
-                double mv = Math.tan(angleRad) * GameRenderer.PROJECTION_Z_NEAR;
-                double av = Math.tan(horizontalFovRad / 2) * GameRenderer.PROJECTION_Z_NEAR;
-                double ab = 2 * av;
-                double am = right ? mv + av : ab - (mv + av);
-                double perc = am / ab;
-                x = (int) (perc * guiGraphics.guiWidth());
-            }
-            xPositions.add(new WaypointLabelLocation(label, x));
-        });
-
-        xPositions.sort(Comparator.comparingInt(WaypointLabelLocation::location));
-
-        List<List<WaypointLabelLocation>> positions = new ArrayList<>();
-        positions.add(xPositions);
-
-        for (int line = 0; line < positions.size(); line++) {
-            List<WaypointLabelLocation> waypointLabelLocations = positions.get(line);
-            int i = 0;
-            while (i < waypointLabelLocations.size() - 1) {
-                WaypointLabelLocation left = waypointLabelLocations.get(i);
-                WaypointLabelLocation right = waypointLabelLocations.get(i + 1);
-                int leftX = left.location();
-                int rightX = right.location();
-                int leftWidth = minecraft.font.width(left.label());
-                int rightWidth = minecraft.font.width(right.label());
-                if (leftWidth / 2 + rightWidth / 2 > rightX - leftX) {
-                    if (line + 1 == positions.size()) {
-                        positions.add(new ArrayList<>());
-                    }
-                    List<WaypointLabelLocation> nextLevel = positions.get(line + 1);
-                    WaypointLabelLocation removed = waypointLabelLocations.remove(i + 1);
-                    nextLevel.add(removed);
-                } else {
-                    i++;
-                }
-            }
+        if (labelCache == null || labelCache.index != index) {
+            labelCache = new WaypointLabelCache(index);
         }
+        List<WaypointIndex.Waypoint> candidates = visibleWaypointsIndex == index ? visibleWaypoints : List.of();
+        labelCache.update(minecraft.font, cameraEntity, candidates, horizontalFovRad, guiGraphics.guiWidth(), guiGraphics.guiHeight());
 
-        for (int line = 0; line < positions.size(); line++) {
-            List<WaypointLabelLocation> w = positions.get(line);
-            for (WaypointLabelLocation waypoint : w) {
-                guiGraphics.drawCenteredString(minecraft.font, waypoint.label(), waypoint.location(), 1 + line * minecraft.font.lineHeight, 0xFFFFFF);
-            }
+        for (int i = 0; i < labelCache.layoutCount; i++) {
+            int id = labelCache.layoutIds[i];
+            guiGraphics.drawCenteredString(minecraft.font, labelCache.labels[id], labelCache.layoutX[i], 1 + labelCache.layoutLines[i] * minecraft.font.lineHeight, 0xFFFFFF);
         }
     }
 
     private static void renderWaypointBoxes(WorldRenderContext context) {
-        String worldIdentifier = getWorldIdentifier(Minecraft.getInstance());
-        Map<String, WaypointLocation> waypoints = WaypointCommand.waypoints.get(worldIdentifier);
-        if (waypoints == null) {
+        Minecraft minecraft = Minecraft.getInstance();
+        WaypointIndex index = getWaypointIndex(getWorldIdentifier(minecraft), context.world().dimension());
+        visibleWaypoints.clear();
+        visibleWaypointsIndex = index;
+        if (index.size() == 0) {
             return;
         }
 
         ClientChunkCache chunkSource = context.world().getChunkSource();
-        waypoints.forEach((waypointName, waypoint) -> {
-            if (!waypoint.dimension().location().equals(context.world().dimension().location())) {
-                return;
+        Frustum frustum = context.frustum();
+        Vec3 cameraPosition = context.camera().getPosition();
+        BlockPos cameraBlockPos = context.camera().getBlockPosition();
+        Font font = minecraft.font;
+        int renderDistance = minecraft.options.getEffectiveRenderDistance();
+        index.forEachInRange(SectionPos.blockToSectionCoord(cameraBlockPos.getX()), SectionPos.blockToSectionCoord(cameraBlockPos.getZ()), renderDistance, waypoint -> {
+            BlockPos waypointLocation = waypoint.pos();
+            // the HUD label only depends on the horizontal direction, so it is shown while any of the column is in view
+            AABB column = new AABB(waypointLocation.getX(), context.world().getMinY(), waypointLocation.getZ(), waypointLocation.getX() + 1, context.world().getMaxY() + 1, waypointLocation.getZ() + 1);
+            if (frustum == null || frustum.isVisible(column)) {
+                visibleWaypoints.add(waypoint);
             }
 
-            BlockPos waypointLocation = waypoint.location();
             if (!chunkSource.hasChunk(waypointLocation.getX() >> 4, waypointLocation.getZ() >> 4)) {
                 return;
             }
 
-            Vec3 cameraPosition = context.camera().getPosition();
             float distance = (float) waypointLocation.distToCenterSqr(cameraPosition);
             distance = (float) Math.sqrt(distance) / 6;
 
+            int width = font.width(waypoint.name()) / 2;
+            AABB box = new AABB(waypointLocation);
+            if (frustum != null) {
+                // the label keeps the same size on screen, so it sticks out further from the box the further away it is
+                double labelHalfWidth = (width + 1) * 0.025 * distance;
+                if (!frustum.isVisible(box.expandTowards(0, 1, 0).inflate(labelHalfWidth))) {
+                    return;
+                }
+            }
+
             PoseStack stack = context.matrixStack();
             stack.pushPose();
             stack.translate(cameraPosition.scale(-1));
 
-            AABB box = new AABB(waypointLocation);
             ShapeRenderer.renderLineBox(stack, context.consumers().getBuffer(RenderQueue.NO_DEPTH_LAYER), box, 1, 1, 1, 1);
 
             stack.translate(waypointLocation.getCenter().add(new Vec3(0, 1, 0)));
             stack.mulPose(context.camera().rotation());
             stack.scale(0.025f * distance, -0.025f * distance, 0.025f * distance);
 
-            Font font = Minecraft.getInstance().font;
-            int width = font.width(waypointName) / 2;
-            int backgroundColour = (int) (Minecraft.getInstance().options.getBackgroundOpacity(0.25f) * 255.0f) << 24;
-            font.drawInBatch(waypointName, -width, 0, 0xFFFFFF, false, stack.last().pose(), context.consumers(), Font.DisplayMode.SEE_THROUGH, backgroundColour, LightTexture.FULL_SKY);
+            int backgroundColour = (int) (minecraft.options.getBackgroundOpacity(0.25f) * 255.0f) << 24;
+            font.drawInBatch(waypoint.name(), -width, 0, 0xFFFFFF, false, stack.last().pose(), context.consumers(), Font.DisplayMode.SEE_THROUGH, backgroundColour, LightTexture.FULL_SKY);
 
             stack.popPose();
         });
@@ -424,6 +419,172 @@ public class WaypointCommand {
     public record WaypointLocation(ResourceKey<Level> dimension, BlockPos location) {
     }
 
-    record WaypointLabelLocation(Component label, int location) {
+    private record WaypointIndexKey(String worldIdentifier, ResourceKey<Level> dimension, int version) {
+    }
+
+    private record LabelPosition(int id, int width, int x) {
+    }
+
+    /**
+     * The labels of the waypoints in an index, and their layout from the last time they were laid out. Each label is
+     * only rebuilt when its rounded distance changes. Between layouts, the labels keep their lines and are only moved
+     * sideways as the camera turns, until the visible waypoints change, a label would overlap the one to its left, or
+     * the camera has moved or turned too far since the layout.
+     */
+    private static final class WaypointLabelCache {
+        private static final double RELAYOUT_DISTANCE_SQR = 1;
+        private static final float RELAYOUT_YAW = 10;
+
+        private final WaypointIndex index;
+        private final Component[] labels;
+        private final int[] widths;
+        private final long[] distances;
+
+        // the last layout, ordered by line and then from left to right
+        private int layoutCount = 0;
+        private int[] layoutIds = new int[0];
+        private int[] layoutLines = new int[0];
+        private int[] layoutX = new int[0];
+        @Nullable
+        private int[] layoutCandidates = null;
+        private Vec3 layoutPosition = Vec3.ZERO;
+        private float layoutYaw;
+        private double layoutFov;
+        private int layoutGuiWidth;
+        private int layoutGuiHeight;
+
+        private WaypointLabelCache(WaypointIndex index) {
+            this.index = index;
+            this.labels = new Component[index.size()];
+            this.widths = new int[index.size()];
+            this.distances = new long[index.size()];
+        }
+
+        private void update(Font font, Entity cameraEntity, List<WaypointIndex.Waypoint> candidates, double horizontalFovRad, int guiWidth, int guiHeight) {
+            Vec3 viewVector = cameraEntity.getViewVector(1.0f);
+            Vec3 position = cameraEntity.getEyePosition();
+            if (!isLayoutFor(candidates, position, cameraEntity.getYRot(), horizontalFovRad, guiWidth, guiHeight)
+                || !reproject(font, cameraEntity, viewVector, position, horizontalFovRad, guiWidth)
+            ) {
+                layout(font, cameraEntity, viewVector, position, candidates, horizontalFovRad, guiWidth, guiHeight);
+            }
+        }
+
+        private boolean isLayoutFor(List<WaypointIndex.Waypoint> candidates, Vec3 position, float yaw, double horizontalFovRad, int guiWidth, int guiHeight) {
+            if (layoutCandidates == null || layoutCandidates.length != candidates.size()) {
+                return false;
+            }
+            for (int i = 0; i < layoutCandidates.length; i++) {
+                if (layoutCandidates[i] != candidates.get(i).id()) {
+                    return false;
+                }
+            }
+            return position.distanceToSqr(layoutPosition) < RELAYOUT_DISTANCE_SQR
+                && Math.abs(Mth.wrapDegrees(yaw - layoutYaw)) < RELAYOUT_YAW
+                && horizontalFovRad == layoutFov
+                && guiWidth == layoutGuiWidth
+                && guiHeight == layoutGuiHeight;
+        }
+
+        /**
+         * Moves the labels of the last layout to where their waypoints are now, returning {@code false} if the layout
+         * needs to be redone
+         */
+        private boolean reproject(Font font, Entity cameraEntity, Vec3 viewVector, Vec3 position, double horizontalFovRad, int guiWidth) {
+            for (int i = 0; i < layoutCount; i++) {
+                int id = layoutIds[i];
+                int oldWidth = widths[id];
+                updateLabel(font, cameraEntity, id);
+                if (widths[id] != oldWidth) {
+                    return false;
+                }
+                layoutX[i] = getLabelX(index.get(id).pos(), widths[id], viewVector, position, horizontalFovRad, guiWidth);
+                if (i > 0 && layoutLines[i - 1] == layoutLines[i] && overlaps(widths[layoutIds[i - 1]], layoutX[i - 1], widths[id], layoutX[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void layout(Font font, Entity cameraEntity, Vec3 viewVector, Vec3 position, List<WaypointIndex.Waypoint> candidates, double horizontalFovRad, int guiWidth, int guiHeight) {
+            List<LabelPosition> xPositions = new ArrayList<>(candidates.size());
+            layoutCandidates = new int[candidates.size()];
+            for (int i = 0; i < candidates.size(); i++) {
+                WaypointIndex.Waypoint waypoint = candidates.get(i);
+                layoutCandidates[i] = waypoint.id();
+                updateLabel(font, cameraEntity, waypoint.id());
+                xPositions.add(new LabelPosition(waypoint.id(), widths[waypoint.id()], getLabelX(waypoint.pos(), widths[waypoint.id()], viewVector, position, horizontalFovRad, guiWidth)));
+            }
+
+            xPositions.sort(Comparator.comparingInt(LabelPosition::x));
+
+            // labels which overlap the last label kept on a line are moved down to the next line, until the screen is full
+            int maxLines = Math.max(1, guiHeight / font.lineHeight);
+            layoutIds = new int[xPositions.size()];
+            layoutLines = new int[xPositions.size()];
+            layoutX = new int[xPositions.size()];
+            layoutCount = 0;
+            List<LabelPosition> remaining = xPositions;
+            for (int line = 0; !remaining.isEmpty() && line < maxLines; line++) {
+                List<LabelPosition> nextLine = new ArrayList<>();
+                LabelPosition left = null;
+                for (LabelPosition right : remaining) {
+                    if (left != null && overlaps(left.width(), left.x(), right.width(), right.x())) {
+                        nextLine.add(right);
+                    } else {
+                        layoutIds[layoutCount] = right.id();
+                        layoutLines[layoutCount] = line;
+                        layoutX[layoutCount] = right.x();
+                        layoutCount++;
+                        left = right;
+                    }
+                }
+                remaining = nextLine;
+            }
+
+            layoutPosition = position;
+            layoutYaw = cameraEntity.getYRot();
+            layoutFov = horizontalFovRad;
+            layoutGuiWidth = guiWidth;
+            layoutGuiHeight = guiHeight;
+        }
+
+        private void updateLabel(Font font, Entity cameraEntity, int id) {
+            WaypointIndex.Waypoint waypoint = index.get(id);
+            long distance = Math.round(Math.sqrt(waypoint.pos().distToCenterSqr(cameraEntity.position())));
+            if (labels[id] == null || distances[id] != distance) {
+                labels[id] = ComponentUtils.wrapInSquareBrackets(Component.literal(waypoint.name() + ' ' + distance).withStyle(ChatFormatting.YELLOW));
+                widths[id] = font.width(labels[id]);
+                distances[id] = distance;
+            }
+        }
+
+        private static boolean overlaps(int leftWidth, int leftX, int rightWidth, int rightX) {
+            return leftWidth / 2 + rightWidth / 2 > rightX - leftX;
+        }
+
+        private static int getLabelX(BlockPos waypointPos, int width, Vec3 viewVector, Vec3 position, double horizontalFovRad, int guiWidth) {
+            // the signed angle from the view vector to the waypoint, in the horizontal plane
+            double dx = waypointPos.getX() - position.x;
+            double dz = waypointPos.getZ() - position.z;
+            double angleRad = Math.atan2(viewVector.x * dz - viewVector.z * dx, viewVector.x * dx + viewVector.z * dz);
+            boolean right = angleRad > 0;
+            angleRad = Math.abs(angleRad);
+
+            if (angleRad > horizontalFovRad / 2) {
+                return right ? guiWidth - width / 2 : width / 2;
+            }
+
+            // V is the view vector
+            // A is the leftmost visible direction
+            // B is the rightmost visible direction
+            // M is the intersection of the position -> waypoint line with AB
+            double mv = Math.tan(angleRad) * GameRenderer.PROJECTION_Z_NEAR;
+            double av = Math.tan(horizontalFovRad / 2) * GameRenderer.PROJECTION_Z_NEAR;
+            double ab = 2 * av;
+            double am = right ? mv + av : ab - (mv + av);
+            double perc = am / ab;
+            return (int) (perc * guiWidth);
+        }
     }
 }
@@ -7,6 +7,7 @@ import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import com.mojang.brigadier.suggestion.Suggestions;
 import com.mojang.brigadier.suggestion.SuggestionsBuilder;
 import com.mojang.datafixers.util.Either;
+import net.earthcomputer.clientcommands.features.BlockEntityIndex;
 import net.fabricmc.fabric.api.client.command.v2.FabricClientCommandSource;
 import net.minecraft.commands.CommandBuildContext;
 import net.minecraft.commands.arguments.blocks.BlockStateParser;
@@ -22,6 +23,7 @@ import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.block.state.properties.Property;
 import org.apache.commons.lang3.tuple.Pair;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.BitSet;
@@ -228,6 +230,14 @@ public class ClientBlockPredicateArgument implements ArgumentType<ClientBlockPre
         boolean test(HolderLookup.Provider holderLookupProvider, BlockGetter blockGetter, BlockPos pos) throws CommandSyntaxException;
         boolean canEverMatch(BlockState state);
 
+        /**
+         * If non-null, this predicate can only match blocks with a block entity in this category.
+         */
+        @Nullable
+        default BlockEntityIndex.Category getBlockEntityCategory() {
+            return null;
+        }
+
         static ClientBlockPredicate simple(Predicate<BlockState> delegate) {
             return new ClientBlockPredicate() {
                 @Override
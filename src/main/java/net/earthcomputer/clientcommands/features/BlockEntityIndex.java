@@ -0,0 +1,96 @@
+package net.earthcomputer.clientcommands.features;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.earthcomputer.clientcommands.event.ClientLevelEvents;
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.Container;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.entity.EnderChestBlockEntity;
+import net.minecraft.world.level.block.entity.SignBlockEntity;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.status.ChunkStatus;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * An index of the block entities in each loaded chunk by category, so that searches for e.g. signs or containers can
+ * visit just those positions rather than every block in the chunk.
+ *
+ * <p>A chunk's index is built from {@link LevelChunk#getBlockEntities()} the first time it is queried, and is thrown
+ * away when the chunk is loaded or unloaded, or when a block which has or had a block entity changes.
+ */
+public final class BlockEntityIndex {
+    private static final Long2ObjectOpenHashMap<Map<Category, List<BlockPos>>> chunks = new Long2ObjectOpenHashMap<>();
+
+    private BlockEntityIndex() {
+    }
+
+    public static void registerEvents() {
+        ClientLevelEvents.LOAD_LEVEL.register(level -> chunks.clear());
+        ClientLevelEvents.UNLOAD_LEVEL.register(isDisconnect -> chunks.clear());
+        ClientLevelEvents.LOAD_CHUNK.register((level, pos) -> chunks.remove(pos.toLong()));
+        ClientLevelEvents.UNLOAD_CHUNK.register((level, pos) -> chunks.remove(pos.toLong()));
+        ClientLevelEvents.CHUNK_UPDATE.register((level, pos, oldState, newState) -> {
+            if (oldState.hasBlockEntity() || newState.hasBlockEntity()) {
+                // the block entity itself is only added or removed after this event, so rebuild on the next query
+                chunks.remove(ChunkPos.asLong(SectionPos.blockToSectionCoord(pos.getX()), SectionPos.blockToSectionCoord(pos.getZ())));
+            }
+        });
+    }
+
+    /**
+     * Returns the positions of the block entities in the given category in the given chunk, or an empty list if the
+     * chunk is not loaded. The returned list must not be modified.
+     */
+    public static List<BlockPos> getPositions(ClientLevel level, ChunkPos chunkPos, Category category) {
+        long key = chunkPos.toLong();
+        Map<Category, List<BlockPos>> index = chunks.get(key);
+        if (index == null) {
+            LevelChunk chunk = level.getChunkSource().getChunk(chunkPos.x, chunkPos.z, ChunkStatus.FULL, false);
+            if (chunk == null) {
+                return List.of();
+            }
+            index = buildIndex(chunk);
+            chunks.put(key, index);
+        }
+        return index.getOrDefault(category, List.of());
+    }
+
+    private static Map<Category, List<BlockPos>> buildIndex(LevelChunk chunk) {
+        Map<Category, List<BlockPos>> index = new EnumMap<>(Category.class);
+        for (BlockEntity blockEntity : chunk.getBlockEntities().values()) {
+            for (Category category : Category.VALUES) {
+                if (category.test(blockEntity)) {
+                    index.computeIfAbsent(category, k -> new ArrayList<>()).add(blockEntity.getBlockPos());
+                }
+            }
+        }
+        return index;
+    }
+
+    public enum Category {
+        SIGN(blockEntity -> blockEntity instanceof SignBlockEntity),
+        CONTAINER(blockEntity -> blockEntity instanceof Container),
+        ENDER_CHEST(blockEntity -> blockEntity instanceof EnderChestBlockEntity),
+        ;
+
+        private static final Category[] VALUES = values();
+
+        private final Predicate<BlockEntity> test;
+
+        Category(Predicate<BlockEntity> test) {
+            this.test = test;
+        }
+
+        public boolean test(BlockEntity blockEntity) {
+            return test.test(blockEntity);
+        }
+    }
+}
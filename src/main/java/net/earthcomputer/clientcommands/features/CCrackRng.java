@@ -3,8 +3,11 @@ package net.earthcomputer.clientcommands.features;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import net.earthcomputer.clientcommands.Configs;
 import net.earthcomputer.clientcommands.command.ClientCommandHelper;
+import net.earthcomputer.clientcommands.task.CrackerJobTask;
 import net.earthcomputer.clientcommands.task.ItemThrowTask;
 import net.earthcomputer.clientcommands.task.TaskManager;
+import net.earthcomputer.clientcommands.util.CrackerExecutor;
+import net.earthcomputer.clientcommands.util.LcgLatticeSolver;
 import net.minecraft.ChatFormatting;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.player.LocalPlayer;
@@ -12,9 +15,20 @@ import net.minecraft.network.chat.Component;
 import net.minecraft.network.chat.ComponentUtils;
 import net.minecraft.network.protocol.game.ClientboundAddEntityPacket;
 import net.minecraft.network.protocol.game.ServerboundMovePlayerPacket;
+import org.jetbrains.annotations.VisibleForTesting;
+
+import java.util.Arrays;
 
 public class CCrackRng {
-    public static final int NUM_THROWS = 10;
+    /**
+     * The number of items thrown at first, which is usually enough to find a unique seed
+     */
+    public static final int MIN_THROWS = 9;
+    /**
+     * The number of items thrown before giving up on an attempt, throwing one more at a time while there are several
+     * possible seeds
+     */
+    public static final int MAX_THROWS = 10;
     // This value was computed by brute forcing all seeds
     public static final float MAX_ERROR = 0.00883889f;
 
@@ -25,19 +39,20 @@ public class CCrackRng {
 
 
     public static OnCrack callback;
-    public static float[] nextFloats = new float[NUM_THROWS];
+    public static float[] nextFloats = new float[MAX_THROWS];
     public static int expectedItems=0;
+    private static int observedItems = 0;
     private static int attemptCount = 0;
     private static final int MAX_ATTEMPTS = 5;
     private static String currentTaskName = null;
 
-    private static String throwItems() throws CommandSyntaxException {
+    private static String throwItems(int count) throws CommandSyntaxException {
         LocalPlayer player = Minecraft.getInstance().player;
         assert player != null;
         player.moveTo(player.getX(), player.getY(), player.getZ(), player.getYRot(), 90);
         // point to correct location
         player.connection.send(new ServerboundMovePlayerPacket.Rot(player.getYRot(), 90, player.onGround(), player.horizontalCollision));
-        ItemThrowTask task = new ItemThrowTask(NUM_THROWS) {
+        ItemThrowTask task = new ItemThrowTask(count) {
             @Override
             protected void onSuccess() {
                 try {
@@ -69,19 +84,69 @@ public class CCrackRng {
     }
 
     public static void attemptCrack() throws CommandSyntaxException {
-        long[] seeds = CCrackRngGen.getSeeds(
-            Math.max(0, nextFloats[0] - MAX_ERROR), Math.min(1, nextFloats[0] + MAX_ERROR),
-            Math.max(0, nextFloats[1] - MAX_ERROR), Math.min(1, nextFloats[1] + MAX_ERROR),
-            Math.max(0, nextFloats[2] - MAX_ERROR), Math.min(1, nextFloats[2] + MAX_ERROR),
-            Math.max(0, nextFloats[3] - MAX_ERROR), Math.min(1, nextFloats[3] + MAX_ERROR),
-            Math.max(0, nextFloats[4] - MAX_ERROR), Math.min(1, nextFloats[4] + MAX_ERROR),
-            Math.max(0, nextFloats[5] - MAX_ERROR), Math.min(1, nextFloats[5] + MAX_ERROR),
-            Math.max(0, nextFloats[6] - MAX_ERROR), Math.min(1, nextFloats[6] + MAX_ERROR),
-            Math.max(0, nextFloats[7] - MAX_ERROR), Math.min(1, nextFloats[7] + MAX_ERROR),
-            Math.max(0, nextFloats[8] - MAX_ERROR), Math.min(1, nextFloats[8] + MAX_ERROR),
-            Math.max(0, nextFloats[9] - MAX_ERROR), Math.min(1, nextFloats[9] + MAX_ERROR)
-        ).toArray();
+        float[] observedFloats = Arrays.copyOf(nextFloats, observedItems);
+        CrackerExecutor.Job<long[]> job = CrackerExecutor.submit(CrackerExecutor.Priority.HIGH, token -> findSeeds(observedFloats));
+
+        // replaces the item throw task under the same name, so it can still be cancelled
+        TaskManager.forceAddTask(currentTaskName, new CrackerJobTask<>(job) {
+            @Override
+            protected void onResult(long[] seeds) {
+                try {
+                    onSeedsFound(seeds);
+                } catch (CommandSyntaxException e) {
+                    ClientCommandHelper.sendError(ComponentUtils.fromMessage(e.getRawMessage()));
+                }
+            }
 
+            @Override
+            protected void onFailure(Throwable e) {
+                super.onFailure(e);
+                Configs.playerCrackState = PlayerRandCracker.CrackState.UNCRACKED;
+                currentTaskName = null;
+            }
+
+            @Override
+            protected void onCancelled() {
+                Configs.playerCrackState = PlayerRandCracker.CrackState.UNCRACKED;
+                currentTaskName = null;
+            }
+
+            @Override
+            public String toString() {
+                return "CCrackRng Seed Search";
+            }
+        });
+    }
+
+    @VisibleForTesting
+    public static long[] findSeeds(float[] nextFloats) {
+        int count = nextFloats.length;
+        long[] minStates = new long[count];
+        long[] maxStates = new long[count];
+        for (int i = 0; i < count; i++) {
+            // the states for which minNextFloat <= nextFloat < maxNextFloat
+            float minNextFloat = Math.max(0, nextFloats[i] - MAX_ERROR);
+            float maxNextFloat = Math.min(1, nextFloats[i] + MAX_ERROR);
+            minStates[i] = (long) Math.ceil(minNextFloat * 0x1.0p24) << 24;
+            maxStates[i] = (long) Math.ceil(maxNextFloat * 0x1.0p24) << 24;
+        }
+
+        LcgLatticeSolver solver = CCrackRngLattices.getSolver(count);
+        if (solver == null) {
+            throw new IllegalArgumentException("No solver for " + count + " observations");
+        }
+        // the bounds are never wider than the solvers were generated for
+        assert solver.canSolve(minStates, maxStates);
+        return solver.findSeeds(minStates, maxStates);
+    }
+
+    private static void onSeedsFound(long[] seeds) throws CommandSyntaxException {
+        if (seeds.length > 1 && observedItems < MAX_THROWS) {
+            // throwing one more item is usually enough to tell the seeds apart
+            currentTaskName = throwItems(1);
+            expectedItems = 1;
+            return;
+        }
         if (seeds.length != 1) {
             attemptCount++;
             if (attemptCount > MAX_ATTEMPTS) {
@@ -96,6 +161,7 @@ public class CCrackRng {
         }
 
         Configs.playerCrackState = PlayerRandCracker.CrackState.CRACKED;
+        currentTaskName = null;
         callback.callback(seeds[0]);
     }
 
@@ -107,9 +173,10 @@ public class CCrackRng {
     private static void doCrack(OnCrack Callback) throws CommandSyntaxException {
         callback=Callback;
         ClientCommandHelper.addOverlayMessage(Component.translatable("commands.ccrackrng.retries", attemptCount, MAX_ATTEMPTS), 100);
-        currentTaskName = throwItems();
+        currentTaskName = throwItems(MIN_THROWS);
         Configs.playerCrackState = PlayerRandCracker.CrackState.CRACKING;
-        expectedItems = NUM_THROWS;
+        expectedItems = MIN_THROWS;
+        observedItems = 0;
         if (attemptCount == 1) {
             Component message = Component.translatable("commands.ccrackrng.starting")
                 .append(" ")
@@ -122,7 +189,7 @@ public class CCrackRng {
         if (Configs.playerCrackState == PlayerRandCracker.CrackState.CRACKING) {
             if (CCrackRng.expectedItems > 0) {
                 float nextFloat = (float) Math.sqrt(packet.getXa() * packet.getXa() + packet.getZa() * packet.getZa()) * 50f;
-                CCrackRng.nextFloats[NUM_THROWS - CCrackRng.expectedItems] = nextFloat;
+                CCrackRng.nextFloats[CCrackRng.observedItems++] = nextFloat;
                 CCrackRng.expectedItems--;
             }
         }
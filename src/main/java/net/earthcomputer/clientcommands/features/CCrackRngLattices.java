@@ -0,0 +1,47 @@
+package net.earthcomputer.clientcommands.features;
+
+import net.earthcomputer.clientcommands.util.LcgLatticeSolver;
+import org.jetbrains.annotations.Nullable;
+
+// CLASS GENERATED BY CODEGEN, DO NOT EDIT MANUALLY
+public final class CCrackRngLattices {
+    private CCrackRngLattices() {}
+
+    /**
+     * Observes the state after call 1 of each of 9 groups of 4 calls
+     */
+    private static final LcgLatticeSolver SOLVER_9 = new LcgLatticeSolver(
+        new long[] {0x1L, 0x32eb772c5f11L, 0x75489f259f21L, 0x199c3838d031L, 0x6dc260740241L, 0xb05b0eb64551L, 0x35692ebfa961L, 0x230d6e413e71L, 0xfac6caed1481L},
+        new long[] {0x0L, 0x2d3873c4cd04L, 0x7cba449ae648L, 0xd4cf89e2cfccL, 0xd0352014d90L, 0x4c56a6636394L, 0x83f34bc255d8L, 0x9213c2a7a85cL, 0x1e4c4c311f20L},
+        new long[] {-0xc24231f5e9L, 0x3c07d613487L, 0x5c2e2695f7L, 0x153f9aa9e67L, -0x44002f4229L, 0x1e705436447L, 0x1aa98e401b7L, 0xa203b0627L, 0x703ae7e197L, 0x2f0f295d43L, 0x1b787df0e73L, -0x3c5430f5d5dL, 0x29a915949d3L, -0x717168cbfdL, -0xb316246ecdL, 0xf0ac3a9163L, -0x93d2249b6dL, 0x19a14283ac3L, -0x17312f2d0e8L, -0x27c1d85f768L, 0x14d756afa18L, 0x163a3098398L, -0x8b5e68dae8L, 0x3f659ed5e98L, 0x7f8fdb018L, 0x46b19519998L, 0x76048a9b18L, 0x1a98458be1cL, -0x4d96befc24L, 0x2d40b8fe59cL, -0xf5da6cdca4L, -0x4340f4b82e4L, -0x34084c64d24L, -0x8b65fb7b64L, 0x1853652b25cL, 0x294b77dfc1cL, 0x13302957b33L, -0x1e07996e49dL, 0x2a5a8288e93L, -0x168f221fb3dL, 0x18dc606adf3L, -0x106843d45ddL, 0x19dbe055953L, -0x60763b447dL, 0x5f3472a10b3L, 0x20fbd2c623cL, 0x49dceb6c9fcL, -0x2c95981244L, -0x1861d907284L, -0x1b9bc696c4L, -0x4c70fd2bf04L, 0x390d6ed4bcL, 0x449f99de47cL, -0x147eb69cfc4L, -0x4723b83dbe6L, 0x250681c0bbaL, 0x3fccc2ecd5aL, 0x2ad0ec808faL, -0x1fa086aa166L, -0x2b6488191c6L, -0xccfdbb2826L, -0x27bdddbc486L, 0x14fa572391aL, -0x43dee745cb6L, 0x23b72964deaL, -0xac72e2fd76L, -0x43d47699ed6L, 0xff494309caL, -0x15bad326396L, -0x4020b1546f6L, -0x1b62e070056L, 0x2844fa1104aL, 0x3f6239c52f3L, -0xf2691250ddL, 0x34d98ca9e53L, 0x27721795083L, 0x2dcf972f5b3L, 0x287a993bde3L, -0x505c1b526edL, 0x1f20dca7743L, 0xeeb137c873L},
+        new double[] {0x1.ep-45, -0x1.0p-48, -0x1.ap-44, 0x1.4p-44, -0x1.0p-48, -0x1.4p-46, -0x1.6p-44, -0x1.8p-45, 0x1.ep-45, 0x1.68p-43, -0x1.0p-48, -0x1.8p-45, 0x1.0p-46, -0x1.8p-46, 0x1.2p-45, -0x1.8p-47, 0x1.2p-45, 0x1.8p-46, 0x1.cp-45, -0x1.28p-43, -0x1.0p-46, 0x1.0p-48, 0x1.2p-45, 0x1.0p-47, 0x1.0p-44, -0x1.4p-45, 0x1.8p-46, -0x1.ep-45, 0x1.fp-44, 0x1.0p-45, -0x1.8p-45, -0x1.0p-47, 0x1.0p-47, 0x1.9p-44, -0x1.2p-44, 0x1.8p-45, -0x1.2p-44, -0x1.0p-46, 0x0.0p0, -0x1.9p-43, 0x1.ap-44, 0x1.5p-44, 0x1.4p-45, -0x1.0p-47, 0x1.0p-45, 0x1.58p-43, -0x1.6p-45, 0x1.4p-46, 0x1.4p-45, -0x1.2p-45, -0x1.7p-44, -0x1.5p-44, 0x1.cp-46, 0x1.4p-46, 0x1.cp-45, -0x1.4p-45, 0x1.0p-48, -0x1.ap-45, 0x1.5p-44, 0x1.8p-46, 0x0.0p0, -0x1.5p-44, -0x1.7p-44, -0x1.6p-45, 0x1.cp-46, 0x1.2p-43, -0x1.0p-46, 0x1.8p-47, 0x1.ap-44, -0x1.0p-48, 0x1.0p-47, -0x1.0p-48, 0x1.2p-45, 0x1.ap-44, 0x1.0p-45, 0x1.8p-45, 0x1.7p-44, -0x1.8p-46, -0x1.0p-46, 0x1.ap-45, 0x1.0p-46},
+        new double[] {0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x1.a0575ae6921e2p-2, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x1.84b9de9fb0c8ep-4, -0x1.cb32da503a3fdp-2, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, -0x1.485b801e132e5p-2, -0x1.20eb57f1c8a48p-3, -0x1.142b9ae3164d1p-4, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, -0x1.06736c4cc51b6p-2, -0x1.e90bb0f50a63fp-4, -0x1.6f6324513a2f8p-9, 0x1.b63fcd1b41342p-2, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x1.94f81a25dca81p-3, 0x1.6dfebfae65a04p-4, -0x1.93fc6a10d94f7p-2, 0x1.f7a9066d165d3p-2, -0x1.808807d759efcp-2, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x1.fdcf6d9a0e9ecp-2, -0x1.515de5a3822dap-3, -0x1.42667cfb1d98fp-2, 0x1.bb85a029f2c0dp-2, -0x1.524c6f762e747p-5, -0x1.c93764fb414b1p-2, 0x0.0p0, 0x0.0p0, 0x0.0p0, -0x1.e8fc79e1d2f1dp-4, -0x1.a9e980597469ap-4, -0x1.d62024e3a3d77p-2, -0x1.43625c2ee592dp-5, 0x1.2fea17b11b509p-3, -0x1.3af373a6f2dc4p-7, 0x1.d68b91cebb829p-2, 0x0.0p0, 0x0.0p0, -0x1.05847ea2c7354p-2, -0x1.efaf4a32f9369p-2, 0x1.97436c49f213p-2, -0x1.0d10e3ca5f8fep-6, 0x1.6022b6a28f3cap-3, 0x1.dbe382b2e314bp-4, -0x1.24d6de2724fdap-4, -0x1.1d8079d06a966p-3, 0x0.0p0},
+        new double[] {0x1.734d5cf95514fp84, 0x1.89c711915fe43p84, 0x1.53cdc6cadfb19p85, 0x1.71c31ebb678ebp85, 0x1.69ec3ff611e47p85, 0x1.6c7b459e70e37p85, 0x1.3c20657074371p85, 0x1.94d3e4a7caa0bp85, 0x1.e741aa59750e4p85},
+        0x35e8e26a72e9L, 0xc8d3eb8aeadaL, 0x48689000000L
+    );
+
+    /**
+     * Observes the state after call 1 of each of 10 groups of 4 calls
+     */
+    private static final LcgLatticeSolver SOLVER_10 = new LcgLatticeSolver(
+        new long[] {0x1L, 0x32eb772c5f11L, 0x75489f259f21L, 0x199c3838d031L, 0x6dc260740241L, 0xb05b0eb64551L, 0x35692ebfa961L, 0x230d6e413e71L, 0xfac6caed1481L, 0x8633f1863b91L},
+        new long[] {0x0L, 0x2d3873c4cd04L, 0x7cba449ae648L, 0xd4cf89e2cfccL, 0xd0352014d90L, 0x4c56a6636394L, 0x83f34bc255d8L, 0x9213c2a7a85cL, 0x1e4c4c311f20L, 0x40d8f714be24L},
+        new long[] {-0x11651502576L, -0x52a6e8146d6L, 0x950958e1caL, -0x2f8b0970b96L, 0x4e980e3910aL, 0x20c95a757aaL, -0x20fdf2317b6L, -0xfb84691d16L, -0x49f068e1876L, -0x1b38cb69d6L, 0x380ea2888baL, -0x477299e5a6L, 0x24a50725faL, -0x3f3a676b466L, 0x22779a42b3aL, 0x55063e964daL, 0x186ea64987aL, 0x319d03b661aL, -0x2797eb29246L, 0x4f8a3d44f5aL, -0x18dfb94e480L, -0x18bbaeac80L, 0x30091630b80L, -0x1241d27bc80L, 0xd46b68fb80L, 0x36ad14d3380L, 0x78e63ceb80L, -0x817208fdc80L, -0x57f2612480L, 0x50d15011380L, -0xb3fd43ad3L, -0x2f230303503L, -0x2a59863a233L, 0x31d526d4d9dL, -0x67aa4f49593L, -0xddc2037bc3L, -0x2db17ac94f3L, 0x5b2d37feeddL, -0x1beb1e12053L, 0x36a81ca0d7dL, 0x3162bb31c56L, 0x2973730cbb6L, 0xac631e1116L, 0x288e71e4c76L, 0x3ed95aaddd6L, 0x33ff3732536L, 0x53f64bc8296L, -0x39c2f3daa0aL, -0x6b8e4ea00aaL, 0x230d2fedeb6L, 0x245cd1223edL, 0x1cb14555bdL, -0x70ae8182b73L, 0x33ab181705dL, -0x461a2b906d3L, 0x67746ea3efdL, 0x106116a11cdL, -0x72211dbe63L, -0x15bfaa46193L, 0x154409bf83dL, -0x57f15a308aeL, 0x4bfb00bda72L, 0x249a071cf92L, 0x3806eadf6b2L, 0x1930cb16fd2L, -0x4679a0a50eL, -0x915327eeL, 0x4b3fec10732L, -0x216f8eaf7aeL, -0x4242d6c048eL, -0x5998e07f9ceL, -0x57f15a308aeL, 0x4bfb00bda72L, 0x249a071cf92L, 0x3806eadf6b2L, 0x1930cb16fd2L, -0x4679a0a50eL, -0x915327eeL, 0x4b3fec10732L, -0x216f8eaf7aeL, 0x42532c5b036L, 0xc51eccbd96L, -0x77aa44bf0aL, 0x511b2d29a56L, 0x26b880a29b6L, 0x1d4936f4f16L, -0x415157a958aL, 0x15e3ba5dbd6L, 0x288c5600336L, -0x71b9c26bf6aL, 0x31d8defac47L, -0x1ea04f33649L, 0x89327284e27L, 0x5c1e61a997L, -0x6066a0b3f9L, 0x4a8debea577L, 0x3cb4b8425e7L, 0x2e7f28b3d57L, -0x5483d09a439L, -0x3c45a610ec9L},
+        new double[] {-0x1.0p-45, 0x1.8p-46, -0x1.0p-46, 0x1.0p-46, 0x1.0p-45, -0x1.4p-45, -0x1.3p-44, -0x1.cp-46, 0x1.ep-45, 0x1.0p-46, -0x1.8p-45, 0x1.2p-45, 0x1.ap-45, -0x1.cp-46, -0x1.4p-46, -0x1.8p-47, 0x1.3p-44, -0x1.0p-44, 0x1.8p-46, -0x1.0p-46, -0x1.2p-45, 0x1.8p-47, 0x1.1p-44, 0x1.0p-45, -0x1.8p-47, -0x1.1p-44, 0x1.0p-47, 0x0.0p0, 0x1.8p-46, 0x1.ap-45, -0x1.4p-45, -0x1.cp-46, 0x1.0p-47, 0x1.4p-44, 0x1.8p-44, -0x1.0p-46, 0x0.0p0, 0x1.cp-45, 0x1.8p-45, -0x1.8p-46, 0x1.8p-46, 0x1.ap-45, -0x1.2p-45, -0x1.0p-46, 0x1.1p-44, -0x1.6p-45, 0x1.0p-48, 0x1.6p-45, 0x1.0p-45, -0x1.ep-45, 0x1.0p-47, 0x1.cp-45, 0x1.ap-45, -0x1.0p-45, -0x1.ap-45, 0x1.4p-44, 0x1.4p-45, 0x1.8p-47, 0x1.4p-46, 0x1.8p-46, -0x1.cp-45, -0x1.0p-46, -0x1.ap-44, -0x1.ep-45, 0x1.0p-44, 0x1.4p-45, -0x1.4p-45, 0x1.0p-44, -0x1.7p-44, 0x1.4p-46, -0x1.4p-46, 0x1.2p-44, -0x1.ep-45, 0x1.cp-46, -0x1.0p-48, -0x1.0p-46, 0x1.cp-46, 0x1.8p-46, -0x1.0p-48, -0x1.0p-48, -0x1.4p-44, 0x1.6p-45, -0x1.0p-47, -0x1.0p-45, -0x1.cp-46, 0x0.0p0, -0x1.0p-45, 0x1.ep-45, 0x1.0p-46, -0x1.8p-46, -0x1.4p-45, 0x1.1p-44, 0x1.6p-45, 0x1.3p-44, 0x1.8p-45, -0x1.ap-45, -0x1.0p-47, 0x1.8p-46, 0x0.0p0, -0x1.8p-45},
+        new double[] {0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x1.8cedec8a3f465p-2, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x1.265caad5e8b71p-2, 0x1.ed1b8ac054443p-4, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, -0x1.d6de4fdc4a351p-3, 0x1.16aefe7f29198p-3, -0x1.a798d2a79ee8bp-2, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x1.1d7bc282ab276p-2, 0x1.cb773eeb8c534p-2, 0x1.893171e2f9097p-2, -0x1.2b15535e341adp-2, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, -0x1.c9ba97b3b2876p-3, 0x1.a807e1ce9c1edp-2, 0x1.a8cb03db2ca42p-6, 0x1.c7e32de846f66p-2, 0x1.863273746b704p-2, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, -0x1.4d9c8a31f1248p-3, -0x1.35f8ce8fe8ca3p-2, -0x1.76c124b14c318p-2, -0x1.8206636f592d9p-3, 0x1.1cea8b91aee41p-2, -0x1.26c44a9a7fd21p-2, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x0.0p0, 0x1.4d5cb00413deep-2, -0x1.fc490bca6803cp-2, 0x1.03ff9ddf747fbp-3, -0x1.777458bb8d428p-4, -0x1.a9dc2fbcfcf04p-2, -0x1.1ccdee51e27a1p-3, 0x1.94d93d0f80ac2p-2, 0x0.0p0, 0x0.0p0, 0x0.0p0, -0x1.0caddb1d61e77p-3, -0x1.535b46bec87b6p-2, -0x1.cab1c6d1037edp-2, -0x1.3dd302168d4a8p-2, 0x1.ca6378779ae2dp-4, 0x1.b40187a34b109p-2, 0x1.aa8a518cd005ep-5, 0x1.3de1f7a3ca9bfp-2, 0x0.0p0, 0x0.0p0, 0x1.6735bfa55f3a1p-2, 0x1.6b0f05f06bd6cp-2, -0x1.2c127a245a135p-3, -0x1.8b8d7c85d5d15p-3, 0x1.b99a26d835be3p-2, -0x1.6a69350f12949p-2, 0x1.10d4cdf7563b3p-2, 0x1.ef9f5684ba9fp-2, 0x1.0e8ba2e8ba2e9p-2, 0x0.0p0},
+        new double[] {0x1.6fc9ec0fe5455p86, 0x1.6759bfcb27e06p86, 0x1.ae104703b2378p86, 0x1.8a25edc3cc96bp86, 0x1.68b33cdff3b2fp86, 0x1.3980be6f3012fp86, 0x1.29993aa7309bp86, 0x1.0de52b1c33e92p86, 0x1.fe933330e1139p85, 0x1.745d1745d1746p86},
+        0x641598c21879L, 0x60dd589d4b7eL, 0x48689000000L
+    );
+
+    /**
+     * Returns the solver for the given number of observations, or {@code null} if none was generated
+     */
+    @Nullable
+    public static LcgLatticeSolver getSolver(int observations) {
+        return switch (observations) {
+            case 9 -> SOLVER_9;
+            case 10 -> SOLVER_10;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,240 @@
+package net.earthcomputer.clientcommands.features;
+
+import net.earthcomputer.clientcommands.event.ClientLevelEvents;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.material.FluidState;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.Vec3;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * The landing positions of chorus fruit teleports starting in each block of the teleport box around the player, so
+ * that the item throw search doesn't probe the terrain again for every throw count it tries.
+ *
+ * <p>For each start block, the landing y is found by scanning down once, and the landing is marked as clear if a
+ * player landing anywhere in that block couldn't collide with blocks or liquids, which is also only checked once. Only
+ * landings next to obstacles, or near entities which could be collided with, fall back to the exact check in
+ * {@link ChorusManipulation#canTeleport}.
+ *
+ * <p>The cache is reused while the player stays in the same block, and is thrown away when a block in or below the
+ * box changes, or when a chunk is loaded or unloaded. Lookups may happen on several threads at once while the main
+ * thread is waiting for the search.
+ */
+public final class ChorusLandingCache {
+    /**
+     * Teleports start up to 8 blocks away from the player on each axis, and the start may be in the block at either
+     * end depending on the player's position within their block
+     */
+    private static final int RADIUS = 8;
+    private static final int SIZE = 2 * RADIUS + 1;
+
+    // each entry is the landing y shifted left by 2, or'd with the state
+    private static final int UNKNOWN = 0;
+    private static final int NO_LANDING = 1;
+    private static final int CLEAR = 2;
+    private static final int OBSTRUCTED = 3;
+    private static final int STATE_MASK = 3;
+
+    // the size of the bounding box checked by ChorusManipulation.canTeleport
+    private static final double HALF_WIDTH = 0.3;
+    private static final double HEIGHT = 1.8;
+
+    private static final int[] landings = new int[SIZE * SIZE * SIZE];
+    @Nullable
+    private static BlockPos origin = null;
+    private static boolean hasEntityCollisions = false;
+
+    private ChorusLandingCache() {
+    }
+
+    public static void registerEvents() {
+        ClientLevelEvents.LOAD_LEVEL.register(level -> invalidate());
+        ClientLevelEvents.UNLOAD_LEVEL.register(isDisconnect -> invalidate());
+        ClientLevelEvents.LOAD_CHUNK.register((level, pos) -> invalidate());
+        ClientLevelEvents.UNLOAD_CHUNK.register((level, pos) -> invalidate());
+        ClientLevelEvents.CHUNK_UPDATE.register((level, pos, oldState, newState) -> {
+            BlockPos origin = ChorusLandingCache.origin;
+            // landings are found by scanning down, and can be blocked by anything up to 2 blocks above the box
+            if (origin != null
+                && Math.abs(pos.getX() - origin.getX()) <= RADIUS + 2
+                && Math.abs(pos.getZ() - origin.getZ()) <= RADIUS + 2
+                && pos.getY() <= origin.getY() + RADIUS + 2
+            ) {
+                invalidate();
+            }
+        });
+    }
+
+    public static Terrain terrain(Level level) {
+        return new LevelTerrain(level);
+    }
+
+    /**
+     * Prepares the cache for a search from the given player position. Must be called on the main thread.
+     */
+    public static void prepare(Terrain terrain, Vec3 pos) {
+        BlockPos blockPos = BlockPos.containing(pos);
+        if (!blockPos.equals(origin)) {
+            invalidate();
+            origin = blockPos;
+        }
+        // entities may have moved since the last search, so this is checked every time
+        AABB box = new AABB(blockPos).inflate(RADIUS + 1);
+        hasEntityCollisions = terrain.hasEntityCollisions(box.setMinY(terrain.getMinY()));
+    }
+
+    private static void invalidate() {
+        origin = null;
+        Arrays.fill(landings, UNKNOWN);
+    }
+
+    /**
+     * Returns where a chorus fruit teleport to the given position would land, or {@code null} if it would fail. Gives
+     * the same result as {@link ChorusManipulation#canTeleport}.
+     */
+    @Nullable
+    public static Vec3 getLanding(Terrain terrain, AABB goalArea, Vec3 goalVec) {
+        BlockPos origin = ChorusLandingCache.origin;
+        BlockPos blockPos = BlockPos.containing(goalVec);
+        if (origin == null || hasEntityCollisions) {
+            return ChorusManipulation.canTeleport(terrain, goalArea, goalVec);
+        }
+        int dx = blockPos.getX() - origin.getX() + RADIUS;
+        int dy = blockPos.getY() - origin.getY() + RADIUS;
+        int dz = blockPos.getZ() - origin.getZ() + RADIUS;
+        if (dx < 0 || dx >= SIZE || dy < 0 || dy >= SIZE || dz < 0 || dz >= SIZE) {
+            return ChorusManipulation.canTeleport(terrain, goalArea, goalVec);
+        }
+
+        int index = (dy * SIZE + dz) * SIZE + dx;
+        int landing = landings[index];
+        if (landing == UNKNOWN) {
+            if (!terrain.hasChunkAt(blockPos)) {
+                return null;
+            }
+            landing = computeLanding(terrain, blockPos);
+            // racing threads compute the same value, so a plain write is fine
+            landings[index] = landing;
+        }
+
+        return switch (landing & STATE_MASK) {
+            case CLEAR -> {
+                Vec3 landingVec = new Vec3(goalVec.x(), landing >> 2, goalVec.z());
+                yield goalArea.contains(landingVec) ? landingVec : null;
+            }
+            case OBSTRUCTED -> ChorusManipulation.canTeleport(terrain, goalArea, goalVec);
+            default -> null;
+        };
+    }
+
+    private static int computeLanding(Terrain terrain, BlockPos blockPos) {
+        // same scan as ChorusManipulation.canTeleport
+        boolean blockBelowIsGround = false;
+        while (!blockBelowIsGround && blockPos.getY() > 0) {
+            BlockPos blockPos2 = blockPos.below();
+            if (terrain.getBlockState(blockPos2).blocksMotion()) {
+                blockBelowIsGround = true;
+            } else {
+                blockPos = blockPos2;
+            }
+        }
+        if (!blockBelowIsGround) {
+            return NO_LANDING;
+        }
+
+        // the union of the bounding boxes of every landing within this block
+        AABB box = new AABB(
+            blockPos.getX() - HALF_WIDTH,
+            blockPos.getY(),
+            blockPos.getZ() - HALF_WIDTH,
+            blockPos.getX() + 1 + HALF_WIDTH,
+            blockPos.getY() + HEIGHT,
+            blockPos.getZ() + 1 + HALF_WIDTH
+        );
+        boolean clear = terrain.noBlockCollision(box) && !terrain.containsAnyLiquid(box);
+        return (blockPos.getY() << 2) | (clear ? CLEAR : OBSTRUCTED);
+    }
+
+    /**
+     * The world that chorus fruit teleports land in
+     */
+    public interface Terrain extends BlockGetter {
+        boolean hasChunkAt(BlockPos pos);
+
+        /**
+         * Returns whether the box doesn't collide with any blocks or entities
+         */
+        boolean noCollision(AABB box);
+
+        /**
+         * Returns whether the box doesn't collide with any blocks, ignoring entities
+         */
+        boolean noBlockCollision(AABB box);
+
+        boolean containsAnyLiquid(AABB box);
+
+        /**
+         * Returns whether there are any entities in the box which could be collided with
+         */
+        boolean hasEntityCollisions(AABB box);
+    }
+
+    private record LevelTerrain(Level level) implements Terrain {
+        @Nullable
+        @Override
+        public BlockEntity getBlockEntity(BlockPos pos) {
+            return level.getBlockEntity(pos);
+        }
+
+        @Override
+        public BlockState getBlockState(BlockPos pos) {
+            return level.getBlockState(pos);
+        }
+
+        @Override
+        public FluidState getFluidState(BlockPos pos) {
+            return level.getFluidState(pos);
+        }
+
+        @Override
+        public int getHeight() {
+            return level.getHeight();
+        }
+
+        @Override
+        public int getMinY() {
+            return level.getMinY();
+        }
+
+        @Override
+        public boolean hasChunkAt(BlockPos pos) {
+            return level.hasChunkAt(pos);
+        }
+
+        @Override
+        public boolean noCollision(AABB box) {
+            return level.noCollision(box);
+        }
+
+        @Override
+        public boolean noBlockCollision(AABB box) {
+            return !level.getBlockCollisions(null, box).iterator().hasNext();
+        }
+
+        @Override
+        public boolean containsAnyLiquid(AABB box) {
+            return level.containsAnyLiquid(box);
+        }
+
+        @Override
+        public boolean hasEntityCollisions(AABB box) {
+            return !level.getEntityCollisions(null, box).isEmpty();
+        }
+    }
+}
@@ -11,12 +11,13 @@ import net.minecraft.client.player.LocalPlayer;
 import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.Component;
 import net.minecraft.util.Mth;
-import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.phys.AABB;
 import net.minecraft.world.phys.Vec3;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Random;
+
 import static net.earthcomputer.clientcommands.command.ClientCommandHelper.*;
 import static net.earthcomputer.clientcommands.features.PlayerRandCracker.*;
 
@@ -98,41 +99,50 @@ public class ChorusManipulation {
             return false;
         }
 
+        ClientLevel level = Minecraft.getInstance().level;
+        assert level != null;
+        ChorusLandingCache.Terrain terrain = ChorusLandingCache.terrain(level);
+        ChorusLandingCache.prepare(terrain, pos);
+
+        // The landing area is tested on several threads, so the feedback is sent once the search is done. The level is
+        // captured here rather than looked up on the worker threads. Reading blocks, fluids and entities from it there is
+        // safe, because the level is only changed on the main thread, which is blocked in the search until every test
+        // has finished. The only writes are to the landing cache, whose races are benign.
+        long seed = PlayerRandCracker.getSeed();
         var throwItemsState =
-                throwItemsUntil(rand -> {
-                    if (particleCount != 16 && itemUseTimeLeft >= 0) {
-                        //159 - (7-(itemUseTimeLeft/4)) * 18 = 33 + 4.5 * itemUseTimeLeft
-                        for (int i = 0; i < 33 + 4.5 * itemUseTimeLeft; i++) {
-                            rand.nextInt();
-                        }
-                    }
-
-                    final double x = (rand.nextDouble() - 0.5D) * 16.0D + pos.x();
-                    ClientLevel level = Minecraft.getInstance().level;
-                    assert level != null;
-                    final double y = Mth.clamp(pos.y() + (double) (rand.nextInt(16) - 8), level.getMinY(), level.getMaxY());
-                    final double z = (rand.nextDouble() - 0.5D) * 16.0D + pos.z();
-                    final Vec3 landingArea = canTeleport(area, new Vec3(x, y, z));
-
-                    if (landingArea != null) {
-                        if (itemUseTimeLeft == 24) { // || itemUseTimeLeft == 0
-                            sendFeedback(Component.translatable("chorusManip.landing.success", Math.round(landingArea.x() * 100) / 100.0,
-                                    Math.round(landingArea.y() * 100) / 100.0,
-                                    Math.round(landingArea.z() * 100) / 100.0));
-                        }
-                        return true;
-                    } else {
-                        return false;
-                    }
-                }, Configs.getMaxChorusItemThrows());
+                throwItemsUntil(rand -> getLandingArea(terrain, area, pos, particleCount, itemUseTimeLeft, rand) != null, Configs.getMaxChorusItemThrows());
         if (!throwItemsState.getType().isSuccess()) {
             sendError(throwItemsState.getMessage());
             Minecraft.getInstance().gui.setOverlayMessage(
                     Component.translatable("chorusManip.landing.failed").withStyle(ChatFormatting.RED), false);
             return false;
-        } else {
-            return true;
         }
+
+        if (itemUseTimeLeft == 24) { // || itemUseTimeLeft == 0
+            Random rand = new Random(advanceSeedByThrows(seed, throwItemsState.getItemsThrown()) ^ MULTIPLIER);
+            Vec3 landingArea = getLandingArea(terrain, area, pos, particleCount, itemUseTimeLeft, rand);
+            if (landingArea != null) {
+                sendFeedback(Component.translatable("chorusManip.landing.success", Math.round(landingArea.x() * 100) / 100.0,
+                        Math.round(landingArea.y() * 100) / 100.0,
+                        Math.round(landingArea.z() * 100) / 100.0));
+            }
+        }
+        return true;
+    }
+
+    @Nullable
+    private static Vec3 getLandingArea(ChorusLandingCache.Terrain terrain, AABB area, Vec3 pos, int particleCount, int itemUseTimeLeft, Random rand) {
+        if (particleCount != 16 && itemUseTimeLeft >= 0) {
+            //159 - (7-(itemUseTimeLeft/4)) * 18 = 33 + 4.5 * itemUseTimeLeft
+            for (int i = 0; i < 33 + 4.5 * itemUseTimeLeft; i++) {
+                rand.nextInt();
+            }
+        }
+
+        final double x = (rand.nextDouble() - 0.5D) * 16.0D + pos.x();
+        final double y = Mth.clamp(pos.y() + (double) (rand.nextInt(16) - 8), terrain.getMinY(), terrain.getMaxY());
+        final double z = (rand.nextDouble() - 0.5D) * 16.0D + pos.z();
+        return ChorusLandingCache.getLanding(terrain, area, new Vec3(x, y, z));
     }
 
     @Nullable
@@ -160,16 +170,15 @@ public class ChorusManipulation {
      * @return The Position, where the player lands
      * @see net.minecraft.world.entity.LivingEntity#randomTeleport(double, double, double, boolean)  (Vec3d)
      */
-    public static Vec3 canTeleport(AABB goalArea, Vec3 goalVec) {
+    public static Vec3 canTeleport(ChorusLandingCache.Terrain terrain, AABB goalArea, Vec3 goalVec) {
         BlockPos blockPos = BlockPos.containing(goalVec);
-        Level level = Minecraft.getInstance().level;
 
-        if (level != null && level.hasChunkAt(blockPos)) {
+        if (terrain.hasChunkAt(blockPos)) {
             boolean blockBelowIsGround = false;
 
             while (!blockBelowIsGround && blockPos.getY() > 0) {
                 BlockPos blockPos2 = blockPos.below();
-                BlockState blockState = level.getBlockState(blockPos2);
+                BlockState blockState = terrain.getBlockState(blockPos2);
                 if (blockState.blocksMotion()) {
                     blockBelowIsGround = true;
                 } else {
@@ -180,7 +189,7 @@ public class ChorusManipulation {
             if (blockBelowIsGround) {
                 goalVec = new Vec3(goalVec.x(), blockPos.getY(), goalVec.z());
                 final AABB boundingBox = new AABB(goalVec.x() - 0.3, goalVec.y(), goalVec.z() - 0.3, goalVec.x() + 0.3, goalVec.y() + 1.8, goalVec.z() + 0.3);
-                if (goalArea.contains(goalVec) && level.noCollision(boundingBox) && !level.containsAnyLiquid(boundingBox)) {
+                if (goalArea.contains(goalVec) && terrain.noCollision(boundingBox) && !terrain.containsAnyLiquid(boundingBox)) {
                     return goalVec;
                 }
             }
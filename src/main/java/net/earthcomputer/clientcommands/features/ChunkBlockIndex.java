@@ -0,0 +1,194 @@
+package net.earthcomputer.clientcommands.features;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.earthcomputer.clientcommands.Configs;
+import net.earthcomputer.clientcommands.event.ClientLevelEvents;
+import net.earthcomputer.clientcommands.util.PaletteScanner;
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.status.ChunkStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * An opt-in index of which block states appear in each section of the loaded chunks, so that repeated block searches
+ * can skip sections which can't match without looking at their blocks.
+ *
+ * <p>A chunk's summary is built the first time it is queried, thrown away when the chunk is loaded or unloaded, and
+ * kept up to date with single block updates in between. After blocks are removed a summary may still include their
+ * states, but it never misses a state that is present.
+ */
+public final class ChunkBlockIndex {
+    private static final Long2ObjectOpenHashMap<ChunkSummary> chunks = new Long2ObjectOpenHashMap<>();
+
+    private ChunkBlockIndex() {
+    }
+
+    public static void registerEvents() {
+        ClientLevelEvents.LOAD_LEVEL.register(level -> clear());
+        ClientLevelEvents.UNLOAD_LEVEL.register(isDisconnect -> clear());
+        ClientLevelEvents.LOAD_CHUNK.register((level, pos) -> chunks.remove(pos.toLong()));
+        ClientLevelEvents.UNLOAD_CHUNK.register((level, pos) -> chunks.remove(pos.toLong()));
+        ClientLevelEvents.CHUNK_UPDATE.register(ChunkBlockIndex::onBlockStateUpdate);
+    }
+
+    public static boolean isEnabled() {
+        return Configs.chunkBlockIndex;
+    }
+
+    public static void clear() {
+        chunks.clear();
+    }
+
+    private static void onBlockStateUpdate(ClientLevel level, BlockPos pos, BlockState oldState, BlockState newState) {
+        ChunkSummary summary = chunks.get(ChunkPos.asLong(SectionPos.blockToSectionCoord(pos.getX()), SectionPos.blockToSectionCoord(pos.getZ())));
+        if (summary != null) {
+            summary.add(level.getSectionIndex(pos.getY()), Block.getId(newState));
+        }
+    }
+
+    /**
+     * Returns {@code false} if the chunk definitely contains none of the given states. Chunks which aren't loaded
+     * always return {@code true}.
+     */
+    public static boolean mayContain(ClientLevel level, ChunkPos pos, StateSet states) {
+        ChunkSummary summary = getSummary(level, pos.x, pos.z);
+        return summary == null || states.intersects(summary.chunkStates);
+    }
+
+    /**
+     * Returns {@code false} if the section definitely contains none of the given states. Sections which aren't loaded
+     * always return {@code true}.
+     */
+    public static boolean mayContain(ClientLevel level, SectionPos pos, StateSet states) {
+        ChunkSummary summary = getSummary(level, pos.x(), pos.z());
+        if (summary == null) {
+            return true;
+        }
+        int sectionIndex = level.getSectionIndexFromSectionY(pos.y());
+        if (sectionIndex < 0 || sectionIndex >= summary.sectionStates.length) {
+            return true;
+        }
+        for (int id : summary.sectionStates[sectionIndex]) {
+            if (states.contains(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    private static ChunkSummary getSummary(ClientLevel level, int chunkX, int chunkZ) {
+        long key = ChunkPos.asLong(chunkX, chunkZ);
+        ChunkSummary summary = chunks.get(key);
+        if (summary == null) {
+            LevelChunk chunk = level.getChunkSource().getChunk(chunkX, chunkZ, ChunkStatus.FULL, false);
+            if (chunk == null) {
+                return null;
+            }
+            summary = ChunkSummary.of(chunk);
+            chunks.put(key, summary);
+        }
+        return summary;
+    }
+
+    /**
+     * A set of block states, stored as a bitset over {@link Block#BLOCK_STATE_REGISTRY} ids.
+     */
+    public static final class StateSet {
+        private final long[] bits;
+
+        private StateSet(long[] bits) {
+            this.bits = bits;
+        }
+
+        public static StateSet of(Predicate<? super BlockState> predicate) {
+            long[] bits = createBitset();
+            for (BlockState state : Block.BLOCK_STATE_REGISTRY) {
+                if (predicate.test(state)) {
+                    int id = Block.getId(state);
+                    bits[id >>> 6] |= 1L << id;
+                }
+            }
+            return new StateSet(bits);
+        }
+
+        public boolean contains(int id) {
+            return (id >>> 6) < bits.length && (bits[id >>> 6] & (1L << id)) != 0;
+        }
+
+        private boolean intersects(long[] other) {
+            int length = Math.min(bits.length, other.length);
+            for (int i = 0; i < length; i++) {
+                if ((bits[i] & other[i]) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static long[] createBitset() {
+        return new long[(Block.BLOCK_STATE_REGISTRY.size() + Long.SIZE - 1) / Long.SIZE];
+    }
+
+    private static final class ChunkSummary {
+        /**
+         * The union of the states in all sections, so whole chunks can be skipped at once
+         */
+        private final long[] chunkStates;
+        /**
+         * The sorted state ids in each section
+         */
+        private final int[][] sectionStates;
+
+        private ChunkSummary(long[] chunkStates, int[][] sectionStates) {
+            this.chunkStates = chunkStates;
+            this.sectionStates = sectionStates;
+        }
+
+        static ChunkSummary of(LevelChunk chunk) {
+            long[] chunkStates = createBitset();
+            LevelChunkSection[] sections = chunk.getSections();
+            int[][] sectionStates = new int[sections.length][];
+            IntArrayList ids = new IntArrayList();
+            for (int i = 0; i < sections.length; i++) {
+                ids.clear();
+                PaletteScanner.forEachDistinctValue(sections[i].getStates(), state -> ids.add(Block.getId(state)));
+                int[] sortedIds = ids.toIntArray();
+                Arrays.sort(sortedIds);
+                sectionStates[i] = sortedIds;
+                for (int id : sortedIds) {
+                    chunkStates[id >>> 6] |= 1L << id;
+                }
+            }
+            return new ChunkSummary(chunkStates, sectionStates);
+        }
+
+        void add(int sectionIndex, int id) {
+            if (sectionIndex < 0 || sectionIndex >= sectionStates.length) {
+                return;
+            }
+            chunkStates[id >>> 6] |= 1L << id;
+            int[] ids = sectionStates[sectionIndex];
+            int index = Arrays.binarySearch(ids, id);
+            if (index < 0) {
+                int insertionPoint = -index - 1;
+                int[] newIds = new int[ids.length + 1];
+                System.arraycopy(ids, 0, newIds, 0, insertionPoint);
+                newIds[insertionPoint] = id;
+                System.arraycopy(ids, insertionPoint, newIds, insertionPoint + 1, ids.length - insertionPoint);
+                sectionStates[sectionIndex] = newIds;
+            }
+        }
+    }
+}
@@ -1,5 +1,11 @@
 package net.earthcomputer.clientcommands.features;
 
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.earthcomputer.clientcommands.Configs;
+import net.earthcomputer.clientcommands.event.ClientLevelEvents;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.minecraft.client.Minecraft;
 import net.minecraft.client.multiplayer.ClientPacketListener;
 import net.minecraft.core.BlockPos;
 import net.minecraft.nbt.CompoundTag;
@@ -7,14 +13,39 @@ import net.minecraft.network.protocol.game.ServerboundBlockEntityTagQueryPacket;
 import net.minecraft.network.protocol.game.ServerboundEntityTagQueryPacket;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.function.Consumer;
 
+/**
+ * Sends block entity and entity NBT queries to the server without flooding it.
+ *
+ * <p>Queries wait in a queue until there is room in the in-flight window and the rate limit allows them to be sent.
+ * Queries for the same block or entity share a single request while they're waiting or in flight, and responses are
+ * cached for a short time so that repeated searches don't ask again. Cached block responses are dropped when the block
+ * changes.
+ */
 public class ClientcommandsDataQueryHandler {
+    private static final int RESPONSE_TIMEOUT = 200; // ticks
+
     private final ClientPacketListener packetListener;
-    private final List<CallbackEntry> callbacks = new ArrayList<>();
+
+    private final ArrayDeque<Query> waitingQueries = new ArrayDeque<>();
+    private final Int2ObjectOpenHashMap<Query> inFlightQueries = new Int2ObjectOpenHashMap<>();
+    /**
+     * Responses come back in the order the queries were sent, so all queries before this one are known to be answered
+     * or dropped
+     */
+    private int oldestInFlightId;
+    private final Long2ObjectOpenHashMap<Query> pendingBlockQueries = new Long2ObjectOpenHashMap<>();
+    private final Int2ObjectOpenHashMap<Query> pendingEntityQueries = new Int2ObjectOpenHashMap<>();
+
+    private final Long2ObjectOpenHashMap<CachedResponse> blockCache = new Long2ObjectOpenHashMap<>();
+    private final Int2ObjectOpenHashMap<CachedResponse> entityCache = new Int2ObjectOpenHashMap<>();
+
+    private float availableQueries = 0;
+    private long tickCount = 0;
 
     public ClientcommandsDataQueryHandler(ClientPacketListener packetListener) {
         this.packetListener = packetListener;
@@ -24,39 +55,167 @@ public class ClientcommandsDataQueryHandler {
         return ((IClientPlayNetworkHandler) packetListener).clientcommands_getCCDataQueryHandler();
     }
 
-    public boolean handleQueryResponse(int transactionId, @Nullable CompoundTag nbt) {
-        Iterator<CallbackEntry> callbacks = this.callbacks.iterator();
-        while (callbacks.hasNext()) {
-            CallbackEntry callback = callbacks.next();
-            if (callback.transactionId - transactionId > 0) {
+    public static void registerEvents() {
+        ClientTickEvents.START_CLIENT_TICK.register(mc -> {
+            ClientPacketListener packetListener = mc.getConnection();
+            if (packetListener != null) {
+                get(packetListener).tick();
+            }
+        });
+        ClientLevelEvents.LOAD_LEVEL.register(level -> {
+            ClientPacketListener packetListener = Minecraft.getInstance().getConnection();
+            if (packetListener != null) {
+                get(packetListener).clearCache();
+            }
+        });
+        ClientLevelEvents.CHUNK_UPDATE.register((level, pos, oldState, newState) -> {
+            ClientPacketListener packetListener = Minecraft.getInstance().getConnection();
+            if (packetListener != null) {
+                get(packetListener).blockCache.remove(pos.asLong());
+            }
+        });
+    }
+
+    private void tick() {
+        tickCount++;
+
+        // token bucket, which can hold at most a full window's worth of queries
+        float queriesPerTick = Configs.getNbtQueriesPerTick();
+        availableQueries = Math.min(availableQueries + queriesPerTick, Math.max(queriesPerTick, Configs.getMaxInFlightNbtQueries()));
+
+        while (!inFlightQueries.isEmpty()) {
+            Query oldest = inFlightQueries.get(oldestInFlightId);
+            if (oldest == null) {
+                oldestInFlightId++;
+            } else if (tickCount - oldest.sentTick > RESPONSE_TIMEOUT) {
+                // the server isn't going to answer this one, e.g. because we don't have permission
+                inFlightQueries.remove(oldestInFlightId++);
+                removePending(oldest);
+            } else {
                 break;
             }
-            callbacks.remove();
-            if (callback.transactionId == transactionId) {
-                callback.callback.accept(nbt);
-                return true;
+        }
+
+        blockCache.values().removeIf(response -> response.expiryTick <= tickCount);
+        entityCache.values().removeIf(response -> response.expiryTick <= tickCount);
+
+        sendWaitingQueries();
+    }
+
+    private void clearCache() {
+        blockCache.clear();
+        entityCache.clear();
+    }
+
+    public boolean handleQueryResponse(int transactionId, @Nullable CompoundTag nbt) {
+        Query query = inFlightQueries.remove(transactionId);
+        if (query == null) {
+            return false;
+        }
+
+        // any queries sent before this one were dropped by the server
+        for (int id = oldestInFlightId; id - transactionId < 0 && !inFlightQueries.isEmpty(); id++) {
+            Query droppedQuery = inFlightQueries.remove(id);
+            if (droppedQuery != null) {
+                removePending(droppedQuery);
             }
         }
-        return false;
+        oldestInFlightId = transactionId + 1;
+
+        removePending(query);
+        int cacheTicks = Configs.getNbtQueryCacheTicks();
+        if (cacheTicks > 0) {
+            CachedResponse response = new CachedResponse(nbt, tickCount + cacheTicks);
+            if (query.pos != null) {
+                blockCache.put(query.pos.asLong(), response);
+            } else {
+                entityCache.put(query.entityNetworkId, response);
+            }
+        }
+        for (Consumer<@Nullable CompoundTag> callback : query.callbacks) {
+            callback.accept(nbt);
+        }
+
+        sendWaitingQueries();
+        return true;
     }
 
-    private int nextQuery(Consumer<@Nullable CompoundTag> callback) {
-        int transactionId = ++packetListener.getDebugQueryHandler().transactionId;
-        callbacks.add(new CallbackEntry(transactionId, callback));
-        return transactionId;
+    private void removePending(Query query) {
+        if (query.pos != null) {
+            pendingBlockQueries.remove(query.pos.asLong());
+        } else {
+            pendingEntityQueries.remove(query.entityNetworkId);
+        }
+    }
+
+    private void sendWaitingQueries() {
+        int maxInFlight = Configs.getMaxInFlightNbtQueries();
+        while (!waitingQueries.isEmpty() && inFlightQueries.size() < maxInFlight && availableQueries >= 1) {
+            availableQueries--;
+            Query query = waitingQueries.poll();
+            int transactionId = ++packetListener.getDebugQueryHandler().transactionId;
+            if (inFlightQueries.isEmpty()) {
+                oldestInFlightId = transactionId;
+            }
+            query.sentTick = tickCount;
+            inFlightQueries.put(transactionId, query);
+            if (query.pos != null) {
+                packetListener.send(new ServerboundBlockEntityTagQueryPacket(transactionId, query.pos));
+            } else {
+                packetListener.send(new ServerboundEntityTagQueryPacket(transactionId, query.entityNetworkId));
+            }
+        }
     }
 
     public void queryEntityNbt(int entityNetworkId, Consumer<@Nullable CompoundTag> callback) {
-        int transactionId = nextQuery(callback);
-        packetListener.send(new ServerboundEntityTagQueryPacket(transactionId, entityNetworkId));
+        CachedResponse cached = entityCache.get(entityNetworkId);
+        if (cached != null && cached.expiryTick > tickCount) {
+            callback.accept(cached.nbt);
+            return;
+        }
+
+        Query query = pendingEntityQueries.get(entityNetworkId);
+        if (query == null) {
+            query = new Query(null, entityNetworkId);
+            pendingEntityQueries.put(entityNetworkId, query);
+            waitingQueries.add(query);
+        }
+        query.callbacks.add(callback);
+        sendWaitingQueries();
     }
 
     public void queryBlockNbt(BlockPos pos, Consumer<@Nullable CompoundTag> callback) {
-        int transactionId = nextQuery(callback);
-        packetListener.send(new ServerboundBlockEntityTagQueryPacket(transactionId, pos));
+        long key = pos.asLong();
+        CachedResponse cached = blockCache.get(key);
+        if (cached != null && cached.expiryTick > tickCount) {
+            callback.accept(cached.nbt);
+            return;
+        }
+
+        Query query = pendingBlockQueries.get(key);
+        if (query == null) {
+            query = new Query(pos.immutable(), 0);
+            pendingBlockQueries.put(key, query);
+            waitingQueries.add(query);
+        }
+        query.callbacks.add(callback);
+        sendWaitingQueries();
+    }
+
+    private static final class Query {
+        @Nullable
+        private final BlockPos pos;
+        private final int entityNetworkId;
+        private final List<Consumer<@Nullable CompoundTag>> callbacks = new ArrayList<>(1);
+        private long sentTick;
+
+        private Query(@Nullable BlockPos pos, int entityNetworkId) {
+            this.pos = pos;
+            this.entityNetworkId = entityNetworkId;
+        }
     }
 
-    private record CallbackEntry(int transactionId, Consumer<@Nullable CompoundTag> callback) {
+    private record CachedResponse(@Nullable CompoundTag nbt, long expiryTick) {
     }
 
     public interface IClientPlayNetworkHandler {
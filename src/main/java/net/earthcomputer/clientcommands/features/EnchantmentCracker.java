@@ -1,6 +1,5 @@
 package net.earthcomputer.clientcommands.features;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import com.mojang.logging.LogUtils;
 import com.seedfinding.mcseed.lcg.LCG;
@@ -8,6 +7,9 @@ import com.seedfinding.mcseed.rand.Rand;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import net.earthcomputer.clientcommands.Configs;
+import net.earthcomputer.clientcommands.command.ClientCommandHelper;
+import net.earthcomputer.clientcommands.task.CrackerJobTask;
+import net.earthcomputer.clientcommands.util.CrackerExecutor;
 import net.earthcomputer.clientcommands.util.MultiVersionCompat;
 import net.earthcomputer.clientcommands.task.ItemThrowTask;
 import net.earthcomputer.clientcommands.task.LongTask;
@@ -29,6 +31,7 @@ import net.minecraft.core.IdMap;
 import net.minecraft.core.Registry;
 import net.minecraft.core.registries.Registries;
 import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.ComponentUtils;
 import net.minecraft.network.chat.MutableComponent;
 import net.minecraft.network.protocol.game.ServerboundMovePlayerPacket;
 import net.minecraft.sounds.SoundEvents;
@@ -48,18 +51,15 @@ import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.EnchantingTableBlock;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
 import org.slf4j.Logger;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -113,6 +113,8 @@ public class EnchantmentCracker {
 
     public static final Logger LOGGER = LogUtils.getLogger();
     private static final int PROGRESS_BAR_WIDTH = 50;
+    private static final int MIN_MANIPULATE_BATCH_SIZE = 64;
+    private static final int MAX_MANIPULATE_BATCHES = 512;
 
     // RENDERING
     /*
@@ -133,9 +135,13 @@ public class EnchantmentCracker {
         lines.add("");
 
         if (crackState == CrackState.CRACKED) {
-            lines.add(I18n.get("enchCrack.xpSeed.one", String.format("%08X", possibleXPSeeds.iterator().next())));
+            lines.add(I18n.get("enchCrack.xpSeed.one", String.format("%08X", possibleXPSeeds.first())));
         } else if (crackState == CrackState.CRACKING) {
             lines.add(I18n.get("enchCrack.xpSeed.many", possibleXPSeeds.size()));
+            XpSeedFilterEngine.Job filterJob = seedFilterJob;
+            if (filterJob != null) {
+                lines.add(I18n.get("enchCrack.filtering", Math.round(filterJob.getProgress() * 100)));
+            }
         }
 
         lines.add("");
@@ -175,23 +181,21 @@ public class EnchantmentCracker {
      * This section is in charge of the logic of the cracking
      */
 
-    static Set<Integer> possibleXPSeeds = new HashSet<>(1 << 20);
+    static final XpSeedSpace possibleXPSeeds = new XpSeedSpace();
     private static int firstXpSeed;
     public static BlockPos enchantingTablePos = null;
     private static boolean doneEnchantment = false;
+    @Nullable
+    private static XpSeedFilterEngine.Job seedFilterJob = null;
 
     public static void resetCracker() {
+        cancelSeedFilter();
         Configs.enchCrackState = CrackState.UNCRACKED;
         possibleXPSeeds.clear();
     }
 
     private static void prepareForNextEnchantmentSeedCrack(int serverReportedXPSeed) {
-        serverReportedXPSeed &= 0x0000fff0;
-        for (int highBits = 0; highBits < 65536; highBits++) {
-            for (int low4Bits = 0; low4Bits < 16; low4Bits++) {
-                possibleXPSeeds.add((highBits << 16) | serverReportedXPSeed | low4Bits);
-            }
-        }
+        possibleXPSeeds.fill(serverReportedXPSeed);
     }
 
     public static void addEnchantmentSeedInfo(Level level, EnchantmentMenu menu) {
@@ -216,56 +220,66 @@ public class EnchantmentCracker {
         }
         int power = getEnchantPower(level, tablePos);
 
-        RandomSource rand = RandomSource.create();
-        int[] actualEnchantCosts = menu.costs;
-        int[] actualEnchantmentClues = menu.enchantClue;
-        int[] actualLevelClues = menu.levelClue;
+        ItemStack observedItem = itemToEnchant.copy();
+        int[] actualEnchantCosts = menu.costs.clone();
+        int[] actualEnchantmentClues = menu.enchantClue.clone();
+        int[] actualLevelClues = menu.levelClue.clone();
 
         Registry<Enchantment> enchantmentRegistry = level.registryAccess().lookupOrThrow(Registries.ENCHANTMENT);
         IdMap<Holder<Enchantment>> enchantmentIdMap = enchantmentRegistry.asHolderIdMap();
         int version = MultiVersionCompat.INSTANCE.getProtocolVersion();
 
-        // brute force the possible seeds
-        Iterator<Integer> xpSeedItr = possibleXPSeeds.iterator();
-        seedLoop: while (xpSeedItr.hasNext()) {
-            int xpSeed = xpSeedItr.next();
-            rand.setSeed(xpSeed);
+        // brute force the possible seeds off-thread, each worker gets its own random
+        cancelSeedFilter();
+        XpSeedFilterEngine.Job job;
+        try {
+            job = XpSeedFilterEngine.submit(possibleXPSeeds, () -> {
+                RandomSource rand = RandomSource.create();
+                return xpSeed -> isXpSeedConsistent(enchantmentRegistry, enchantmentIdMap, rand, xpSeed, observedItem, power, actualEnchantCosts, actualEnchantmentClues, actualLevelClues, version);
+            });
+        } catch (CommandSyntaxException e) {
+            ClientCommandHelper.sendError(ComponentUtils.fromMessage(e.getRawMessage()));
+            return;
+        }
+        seedFilterJob = job;
 
-            // check enchantment levels match
-            for (int slot = 0; slot < 3; slot++) {
-                int cost = EnchantmentHelper.getEnchantmentCost(rand, slot, power, itemToEnchant);
-                if (cost < slot + 1) {
-                    cost = 0;
-                }
-                if (cost != actualEnchantCosts[slot]) {
-                    xpSeedItr.remove();
-                    continue seedLoop;
+        TaskManager.addNonConflictingTask("enchantmentSeedFilter", new CrackerJobTask<>(job.getExecutorJob()) {
+            @Override
+            protected void onTick() {
+                LocalPlayer player = Minecraft.getInstance().player;
+                if (player != null && player.containerMenu == menu && (
+                    !ItemStack.matches(menu.getSlot(0).getItem(), observedItem)
+                        || !Arrays.equals(menu.costs, actualEnchantCosts)
+                        || !Arrays.equals(menu.enchantClue, actualEnchantmentClues)
+                        || !Arrays.equals(menu.levelClue, actualLevelClues)
+                )) {
+                    // the table contents changed before we finished, the observation can no longer be trusted
+                    _break();
                 }
             }
 
-            // generate enchantment clues and see if they match
-            for (int slot = 0; slot < 3; slot++) {
-                if (actualEnchantCosts[slot] > 0) {
-                    List<EnchantmentInstance> enchantments = getEnchantmentList(enchantmentRegistry, rand, xpSeed, itemToEnchant, slot, actualEnchantCosts[slot], version);
-                    if (enchantments == null || enchantments.isEmpty()) {
-                        // check that there is indeed no enchantment clue
-                        if (actualEnchantmentClues[slot] != -1 || actualLevelClues[slot] != -1) {
-                            xpSeedItr.remove();
-                            continue seedLoop;
-                        }
-                    } else {
-                        // check the right enchantment clue was generated
-                        EnchantmentInstance clue = enchantments.get(rand.nextInt(enchantments.size()));
-                        if (enchantmentIdMap.getId(clue.enchantment) != actualEnchantmentClues[slot]
-                                || clue.level != actualLevelClues[slot]) {
-                            xpSeedItr.remove();
-                            continue seedLoop;
-                        }
-                    }
+            @Override
+            public void onCompleted() {
+                if (seedFilterJob == job) {
+                    seedFilterJob = null;
                 }
+                super.onCompleted();
             }
-        }
 
+            @Override
+            protected void onResult(XpSeedSpace result) {
+                possibleXPSeeds.copyFrom(result);
+                onSeedsFiltered();
+            }
+
+            @Override
+            public String toString() {
+                return "Enchantment Cracker Seed Filter";
+            }
+        });
+    }
+
+    private static void onSeedsFiltered() {
         // test the outcome, see if we need to change state
         if (possibleXPSeeds.isEmpty()) {
             Configs.enchCrackState = CrackState.UNCRACKED;
@@ -273,8 +287,76 @@ public class EnchantmentCracker {
                     "Invalid enchantment seed information. Has the server got unknown mods, is there a desync, or is the client just bugged?");
         } else if (possibleXPSeeds.size() == 1) {
             Configs.enchCrackState = CrackState.CRACKED;
-            addPlayerRNGInfo(possibleXPSeeds.iterator().next());
+            addPlayerRNGInfo(possibleXPSeeds.first());
+        }
+    }
+
+    private static void cancelSeedFilter() {
+        XpSeedFilterEngine.Job job = seedFilterJob;
+        if (job != null) {
+            job.cancel();
+            seedFilterJob = null;
+        }
+    }
+
+    private static boolean isXpSeedConsistent(
+        Registry<Enchantment> enchantmentRegistry,
+        IdMap<Holder<Enchantment>> enchantmentIdMap,
+        RandomSource rand,
+        int xpSeed,
+        ItemStack itemToEnchant,
+        int power,
+        int[] actualEnchantCosts,
+        int[] actualEnchantmentClues,
+        int[] actualLevelClues,
+        int version
+    ) {
+        if (!areEnchantCostsConsistent(rand, xpSeed, itemToEnchant, power, actualEnchantCosts)) {
+            return false;
+        }
+
+        // generate enchantment clues and see if they match
+        for (int slot = 0; slot < 3; slot++) {
+            if (actualEnchantCosts[slot] > 0) {
+                List<EnchantmentInstance> enchantments = getEnchantmentList(enchantmentRegistry, rand, xpSeed, itemToEnchant, slot, actualEnchantCosts[slot], version);
+                if (enchantments == null || enchantments.isEmpty()) {
+                    // check that there is indeed no enchantment clue
+                    if (actualEnchantmentClues[slot] != -1 || actualLevelClues[slot] != -1) {
+                        return false;
+                    }
+                } else {
+                    // check the right enchantment clue was generated
+                    EnchantmentInstance clue = enchantments.get(rand.nextInt(enchantments.size()));
+                    if (enchantmentIdMap.getId(clue.enchantment) != actualEnchantmentClues[slot]
+                            || clue.level != actualLevelClues[slot]) {
+                        return false;
+                    }
+                }
+            }
         }
+
+        return true;
+    }
+
+    /**
+     * Checks that the enchantment levels generated by the given XP seed match, leaving {@code rand} ready to generate
+     * the enchantment clues.
+     */
+    @VisibleForTesting
+    static boolean areEnchantCostsConsistent(RandomSource rand, int xpSeed, ItemStack itemToEnchant, int power, int[] actualEnchantCosts) {
+        rand.setSeed(xpSeed);
+
+        for (int slot = 0; slot < 3; slot++) {
+            int cost = EnchantmentHelper.getEnchantmentCost(rand, slot, power, itemToEnchant);
+            if (cost < slot + 1) {
+                cost = 0;
+            }
+            if (cost != actualEnchantCosts[slot]) {
+                return false;
+            }
+        }
+
+        return true;
     }
 
     private static void addPlayerRNGInfo(int enchantmentSeed) {
@@ -313,9 +395,9 @@ public class EnchantmentCracker {
         if (Configs.playerCrackState == PlayerRandCracker.CrackState.UNCRACKED && !isEnchantingPredictionEnabled()) {
             return;
         }
+        cancelSeedFilter();
         if (Configs.playerCrackState.knowsSeed()) {
-            possibleXPSeeds.clear();
-            possibleXPSeeds.add(PlayerRandCracker.nextInt());
+            possibleXPSeeds.set(PlayerRandCracker.nextInt());
             Configs.playerCrackState = PlayerRandCracker.CrackState.CRACKED;
             Configs.enchCrackState = CrackState.CRACKED;
         } else if (Configs.playerCrackState == PlayerRandCracker.CrackState.HALF_CRACKED) {
@@ -345,60 +427,59 @@ public class EnchantmentCracker {
         LocalPlayer player = Minecraft.getInstance().player;
         assert player != null;
 
-        ExecutorService threadPool = Executors.newFixedThreadPool(
-            Math.max(1, Runtime.getRuntime().availableProcessors() - (Minecraft.getInstance().hasSingleplayerServer() ? 2 : 1)),
-            new ThreadFactoryBuilder().setNameFormat("Enchantment Cracker #%d").build()
-        );
-
-        int noDummyXpSeed = Configs.enchCrackState == CrackState.CRACKED ? possibleXPSeeds.iterator().next() : 0;
+        int noDummyXpSeed = Configs.enchCrackState == CrackState.CRACKED ? possibleXPSeeds.first() : 0;
 
         ItemStack stack = new ItemStack(item);
         long playerSeed = PlayerRandCracker.getSeed();
         Registry<Enchantment> enchantmentRegistry = player.registryAccess().lookupOrThrow(Registries.ENCHANTMENT);
         int version = MultiVersionCompat.INSTANCE.getProtocolVersion();
 
-        List<CompletableFuture<@Nullable ManipulateResult>> futures = new ArrayList<>();
+        int minThrows = Configs.enchCrackState == CrackState.CRACKED ? ManipulateResult.NO_DUMMY : 0;
+        int maxThrows = Configs.playerCrackState.knowsSeed() ? Configs.getMaxEnchantItemThrows() : 0;
+        int batchSize = Math.max(MIN_MANIPULATE_BATCH_SIZE, (maxThrows - minThrows + MAX_MANIPULATE_BATCHES - 1) / MAX_MANIPULATE_BATCHES);
 
-        for (int i = Configs.enchCrackState == CrackState.CRACKED ? ManipulateResult.NO_DUMMY : 0;
-             i < (Configs.playerCrackState.knowsSeed() ? Configs.getMaxEnchantItemThrows() : 0);
-             i++
-        ) {
-            int times = i;
-            futures.add(CompletableFuture.supplyAsync(() -> {
-                try {
-                    Rand playerRand = new Rand(LCG.JAVA, playerSeed);
-                    playerRand.advance(Math.max(times, 0) * 4L);
-                    int xpSeed = times == ManipulateResult.NO_DUMMY ?
-                        noDummyXpSeed
-                        : (int) playerRand.nextBits(32);
+        List<CrackerExecutor.Job<@Nullable ManipulateResult>> jobs = new ArrayList<>();
 
-                    int[] enchantLevels = new int[3];
+        try {
+            for (int batchStart = minThrows; batchStart < maxThrows; batchStart += batchSize) {
+                int start = batchStart;
+                int end = Math.min(maxThrows, batchStart + batchSize);
+                jobs.add(CrackerExecutor.submit(CrackerExecutor.Priority.NORMAL, token -> {
+                    Rand playerRand = new Rand(LCG.JAVA, playerSeed);
+                    playerRand.advance(Math.max(start, 0) * 4L);
                     RandomSource rand = RandomSource.create();
-                    for (int bookshelvesNeeded = Configs.getMinEnchantBookshelves(); bookshelvesNeeded <= Configs.getMaxEnchantBookshelves(); bookshelvesNeeded++) {
-                        rand.setSeed(xpSeed);
-                        for (int slot = 0; slot < 3; slot++) {
-                            int level = EnchantmentHelper.getEnchantmentCost(rand, slot, bookshelvesNeeded, stack);
-                            if (level < slot + 1) {
-                                level = 0;
-                            }
-                            enchantLevels[slot] = level;
+                    int[] enchantLevels = new int[3];
+
+                    for (int times = start; times < end; times++) {
+                        if (token.isCancelled()) {
+                            return null;
                         }
-                        for (int slot = 0; slot < 3; slot++) {
-                            List<EnchantmentInstance> enchantments = getEnchantmentList(enchantmentRegistry, rand, xpSeed, stack, slot, enchantLevels[slot], version);
-                            if (enchantmentsPredicate.test(enchantments)
-                                && enchantLevels[slot] >= Configs.getMinEnchantLevels()
-                                && enchantLevels[slot] <= Configs.getMaxEnchantLevels()
-                            ) {
-                                return new ManipulateResult(times, bookshelvesNeeded, slot, enchantments);
+
+                        int xpSeed;
+                        if (times == ManipulateResult.NO_DUMMY) {
+                            xpSeed = noDummyXpSeed;
+                        } else {
+                            xpSeed = (int) playerRand.nextBits(32);
+                            // the other 3 calls of this item throw
+                            playerRand.advance(3);
+                        }
+
+                        try {
+                            ManipulateResult result = simulateManipulation(enchantmentRegistry, rand, enchantLevels, times, xpSeed, stack, enchantmentsPredicate, version);
+                            if (result != null) {
+                                return result;
                             }
+                        } catch (Throwable e) {
+                            LOGGER.error("An error occurred simulating enchantments", e);
                         }
                     }
-                } catch (Throwable e) {
-                    LOGGER.error("An error occurred simulating enchantments", e);
-                }
 
-                return null;
-            }, threadPool));
+                    return null;
+                }));
+            }
+        } catch (CommandSyntaxException e) {
+            jobs.forEach(CrackerExecutor.Job::cancel);
+            throw e;
         }
 
         LongTaskList taskList = new LongTaskList() {
@@ -411,16 +492,15 @@ public class EnchantmentCracker {
         taskList.addTask(new SimpleTask() {
             private int index = 0;
             ManipulateResult finalResult = null;
-            private boolean hasShutDown = false;
 
             @Override
             protected void onTick() {
-                while (index < futures.size()) {
-                    var future = futures.get(index);
-                    if (!future.isDone()) {
+                while (index < jobs.size()) {
+                    var job = jobs.get(index);
+                    if (!job.isDone()) {
                         break;
                     }
-                    ManipulateResult result = future.join();
+                    ManipulateResult result = job.isCancelled() ? null : job.getResult();
                     if (result != null) {
                         finalResult = result;
                         _break();
@@ -433,24 +513,19 @@ public class EnchantmentCracker {
 
             @Override
             public boolean condition() {
-                return index < futures.size();
+                return index < jobs.size();
             }
 
             @Override
             public boolean stopOnLevelUnload(boolean isDisconnect) {
-                if (!hasShutDown) {
-                    threadPool.shutdownNow();
-                    hasShutDown = true;
-                }
+                jobs.forEach(CrackerExecutor.Job::cancel);
                 return true;
             }
 
             @Override
             public void onCompleted() {
-                if (!hasShutDown) {
-                    threadPool.shutdownNow();
-                    hasShutDown = true;
-                }
+                // cancel the jobs for higher item throw counts, we either found a result or were stopped
+                jobs.forEach(CrackerExecutor.Job::cancel);
 
                 if (!simulate && finalResult != null) {
                     int timesNeeded = finalResult.itemThrows();
@@ -554,6 +629,39 @@ public class EnchantmentCracker {
         return TaskManager.addTask("enchantmentCracker", taskList);
     }
 
+    @Nullable
+    private static ManipulateResult simulateManipulation(
+        Registry<Enchantment> enchantmentRegistry,
+        RandomSource rand,
+        int[] enchantLevels,
+        int times,
+        int xpSeed,
+        ItemStack stack,
+        Predicate<List<EnchantmentInstance>> enchantmentsPredicate,
+        int version
+    ) {
+        for (int bookshelvesNeeded = Configs.getMinEnchantBookshelves(); bookshelvesNeeded <= Configs.getMaxEnchantBookshelves(); bookshelvesNeeded++) {
+            rand.setSeed(xpSeed);
+            for (int slot = 0; slot < 3; slot++) {
+                int level = EnchantmentHelper.getEnchantmentCost(rand, slot, bookshelvesNeeded, stack);
+                if (level < slot + 1) {
+                    level = 0;
+                }
+                enchantLevels[slot] = level;
+            }
+            for (int slot = 0; slot < 3; slot++) {
+                List<EnchantmentInstance> enchantments = getEnchantmentList(enchantmentRegistry, rand, xpSeed, stack, slot, enchantLevels[slot], version);
+                if (enchantmentsPredicate.test(enchantments)
+                    && enchantLevels[slot] >= Configs.getMinEnchantLevels()
+                    && enchantLevels[slot] <= Configs.getMaxEnchantLevels()
+                ) {
+                    return new ManipulateResult(times, bookshelvesNeeded, slot, enchantments);
+                }
+            }
+        }
+        return null;
+    }
+
     // MISCELLANEOUS HELPER METHODS & ENCHANTING SIMULATION
 
     public static boolean isEnchantingPredictionEnabled() {
@@ -635,7 +743,7 @@ public class EnchantmentCracker {
         } else {
             // return the enchantments using our cracked seed
             RandomSource rand = RandomSource.create();
-            int xpSeed = possibleXPSeeds.iterator().next();
+            int xpSeed = possibleXPSeeds.first();
             ItemStack enchantingStack = enchContainer.getSlot(0).getItem();
             int enchantLevels = enchContainer.costs[slot];
             return getEnchantmentList(enchantmentRegistry, rand, xpSeed, enchantingStack, slot, enchantLevels, MultiVersionCompat.INSTANCE.getProtocolVersion());
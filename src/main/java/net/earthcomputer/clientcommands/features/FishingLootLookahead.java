@@ -0,0 +1,250 @@
+package net.earthcomputer.clientcommands.features;
+
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.seedfinding.mcbiome.biome.Biome;
+import com.seedfinding.mccore.version.MCVersion;
+import com.seedfinding.mcfeature.loot.LootContext;
+import com.seedfinding.mcfeature.loot.LootTable;
+import com.seedfinding.mcfeature.loot.MCLootTables;
+import it.unimi.dsi.fastutil.booleans.BooleanArrayList;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.earthcomputer.clientcommands.command.arguments.ClientItemPredicateArgument;
+import net.earthcomputer.clientcommands.util.CrackerExecutor;
+import net.earthcomputer.clientcommands.util.SeedfindingUtil;
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.enchantment.EnchantmentHelper;
+import net.minecraft.world.phys.Vec3;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+
+/**
+ * The loot of every tick in the catch window of a cast. While simulating the bobber, the main thread records what the
+ * loot of each tick depends on, and the loot for all of those ticks is then generated in one pass on the
+ * {@link CrackerExecutor} pool.
+ *
+ * <p>Each tick's result is stored in flat arrays of tick, item id and enchantment hash. Goals are matched by scanning
+ * the item ids, and the full predicate is only tested once per distinct item and enchantments that could match.
+ */
+public final class FishingLootLookahead {
+    /**
+     * The number of ticks generated by a single leaf task. Loot generation is fairly expensive, so this is small.
+     */
+    private static final int LEAF_SIZE = 4;
+
+    private static final ThreadLocal<LootTable> FISHING_LOOT_TABLE = ThreadLocal.withInitial(() -> MCLootTables.FISHING.get());
+
+    private final MCVersion version;
+    private final int luck;
+    private final int size;
+    private final int[] ticks;
+    private final long[] seeds;
+    private final Biome[] biomes;
+    private final boolean[] inOpenWater;
+    private final double[] positions;
+
+    private final int[] itemIds;
+    private final int[] enchantmentHashes;
+    private final ItemStack[] loot;
+    private final int[] experience;
+
+    private FishingLootLookahead(Builder builder) {
+        this(builder.version, builder.luck, builder.ticks.toIntArray(), builder.seeds.toLongArray(), builder.biomes.toArray(new Biome[0]), builder.inOpenWater.toBooleanArray(), builder.positions.toDoubleArray());
+    }
+
+    private FishingLootLookahead(MCVersion version, int luck, int[] ticks, long[] seeds, Biome[] biomes, boolean[] inOpenWater, double[] positions) {
+        this.version = version;
+        this.luck = luck;
+        this.size = ticks.length;
+        this.ticks = ticks;
+        this.seeds = seeds;
+        this.biomes = biomes;
+        this.inOpenWater = inOpenWater;
+        this.positions = positions;
+        this.itemIds = new int[size];
+        this.enchantmentHashes = new int[size];
+        this.loot = new ItemStack[size];
+        this.experience = new int[size];
+    }
+
+    /**
+     * Creates a lookahead with the given loot already generated, one per tick starting from tick 0
+     */
+    @VisibleForTesting
+    public static FishingLootLookahead ofLoot(List<ItemStack> loot) {
+        int size = loot.size();
+        FishingLootLookahead lookahead = new FishingLootLookahead(MCVersion.latest(), 0, IntStream.range(0, size).toArray(), new long[size], new Biome[size], new boolean[size], new double[size * 3]);
+        for (int index = 0; index < size; index++) {
+            lookahead.setLoot(index, loot.get(index), 0);
+        }
+        return lookahead;
+    }
+
+    /**
+     * Starts generating the loot for the ticks recorded in the builder
+     */
+    public static CrackerExecutor.Job<FishingLootLookahead> submit(Builder builder, RegistryAccess registryAccess) throws CommandSyntaxException {
+        FishingLootLookahead lookahead = new FishingLootLookahead(builder);
+        return CrackerExecutor.submit(CrackerExecutor.Priority.HIGH, token -> {
+            // forks onto the cracker pool, since we are running on it
+            new GenerateAction(lookahead, registryAccess, token, 0, lookahead.size).invoke();
+            token.throwIfCancelled();
+            return lookahead;
+        });
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getTick(int index) {
+        return ticks[index];
+    }
+
+    public Vec3 getBobberPos(int index) {
+        return new Vec3(positions[index * 3], positions[index * 3 + 1], positions[index * 3 + 2]);
+    }
+
+    public int getItemId(int index) {
+        return itemIds[index];
+    }
+
+    public int getEnchantmentHash(int index) {
+        return enchantmentHashes[index];
+    }
+
+    public FishingCracker.Catch getCatch(int index) {
+        return new FishingCracker.Catch(loot[index], experience[index]);
+    }
+
+    /**
+     * Returns the loot context that the loot at the given index was generated with
+     */
+    public LootContext getLootContext(int index) {
+        return new LootContext(seeds[index] ^ 0x5deece66dL, version)
+            .withBiome(biomes[index])
+            .withOpenWater(inOpenWater[index])
+            .withLuck(luck);
+    }
+
+    /**
+     * Returns the index of the first loot which matches the goal, or -1 if there is none
+     */
+    public int indexOfFirstMatch(ClientItemPredicateArgument.ClientItemPredicate goal) {
+        IntOpenHashSet possibleItemIds = new IntOpenHashSet();
+        for (Item item : goal.getPossibleItems()) {
+            possibleItemIds.add(BuiltInRegistries.ITEM.getId(item));
+        }
+
+        // the index of the first loot with each item and enchantment hash that has been tested and didn't match
+        Int2IntOpenHashMap testedLoot = new Int2IntOpenHashMap();
+        testedLoot.defaultReturnValue(-1);
+        for (int index = 0; index < size; index++) {
+            if (!possibleItemIds.contains(itemIds[index])) {
+                continue;
+            }
+            int key = 31 * itemIds[index] + enchantmentHashes[index];
+            int testedIndex = testedLoot.get(key);
+            if (testedIndex != -1 && ItemStack.matches(loot[testedIndex], loot[index])) {
+                continue;
+            }
+            if (goal.test(loot[index])) {
+                return index;
+            }
+            if (testedIndex == -1) {
+                testedLoot.put(key, index);
+            }
+        }
+
+        return -1;
+    }
+
+    private void generate(int index, RegistryAccess registryAccess) {
+        LootContext lootContext = getLootContext(index);
+        // the fishing loot table always generates a single item
+        ItemStack stack = SeedfindingUtil.fromSeedfindingItem(FISHING_LOOT_TABLE.get().generate(lootContext).getFirst(), registryAccess);
+        setLoot(index, stack, 1 + lootContext.nextInt(6));
+    }
+
+    private void setLoot(int index, ItemStack stack, int experience) {
+        this.loot[index] = stack;
+        this.experience[index] = experience;
+        this.itemIds[index] = BuiltInRegistries.ITEM.getId(stack.getItem());
+        this.enchantmentHashes[index] = EnchantmentHelper.getEnchantmentsForCrafting(stack).hashCode();
+    }
+
+    /**
+     * Records the ticks of a cast whose loot should be generated. Must be used on the main thread.
+     */
+    public static final class Builder {
+        private final MCVersion version = SeedfindingUtil.getMCVersion();
+        private final int luck;
+        private final IntArrayList ticks = new IntArrayList();
+        private final LongArrayList seeds = new LongArrayList();
+        private final List<Biome> biomes = new ArrayList<>();
+        private final BooleanArrayList inOpenWater = new BooleanArrayList();
+        private final DoubleArrayList positions = new DoubleArrayList();
+
+        public Builder(int luck) {
+            this.luck = luck;
+        }
+
+        public void add(int tick, SimulatedFishingBobber bobber, @Nullable Biome biome) {
+            ticks.add(tick);
+            seeds.add(bobber.getRandomSeed());
+            biomes.add(biome);
+            inOpenWater.add(bobber.isInOpenWater());
+            positions.add(bobber.getX());
+            positions.add(bobber.getY());
+            positions.add(bobber.getZ());
+        }
+
+        public boolean isEmpty() {
+            return ticks.isEmpty();
+        }
+    }
+
+    private static final class GenerateAction extends RecursiveAction {
+        private final FishingLootLookahead lookahead;
+        private final RegistryAccess registryAccess;
+        private final CrackerExecutor.CancellationToken token;
+        private final int from;
+        private final int to;
+
+        private GenerateAction(FishingLootLookahead lookahead, RegistryAccess registryAccess, CrackerExecutor.CancellationToken token, int from, int to) {
+            this.lookahead = lookahead;
+            this.registryAccess = registryAccess;
+            this.token = token;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (token.isCancelled()) {
+                return;
+            }
+
+            if (to - from > LEAF_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new GenerateAction(lookahead, registryAccess, token, from, mid), new GenerateAction(lookahead, registryAccess, token, mid, to));
+                return;
+            }
+
+            for (int index = from; index < to; index++) {
+                lookahead.generate(index, registryAccess);
+            }
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package net.earthcomputer.clientcommands.features;
+
+import java.util.Arrays;
+
+/**
+ * Estimates the timing offset of the server from samples of possible offsets, where each sample is the set of offsets
+ * that would explain one observation, e.g. the ticks at which the loot that was actually caught was expected. Some
+ * samples may be noise, for example due to lag spikes.
+ *
+ * <p>Adapted from the combined median EM by PseudoGravity:
+ * https://gist.github.com/pseudogravity/294f12225c18bf319e4c1923dd664bd5. First the offset which minimizes the sum of
+ * outlier-curbed absolute deviations from the nearest point of each sample is found, then one EM step is taken on a
+ * normal distribution plus uniform noise model.
+ *
+ * <p>Samples are kept sorted in a ring buffer of primitive arrays. The offset is searched for on the same 10 ms grid as
+ * the original, plus the median of the points nearest the previous estimate, and the best of those is refined with a
+ * golden section search. Each new sample only costs one search and one EM step.
+ */
+public final class MedianTimingEstimator {
+    private static final double MIN_PACKET_LOSS_RATE = 0.01;
+    private static final double MAX_PACKET_LOSS_RATE = 0.5;
+    private static final double MIN_SIGMA = 10;
+    private static final double MAX_SIGMA = 1000;
+    private static final double COARSE_STEP = 10;
+    private static final double INV_GOLDEN_RATIO = (Math.sqrt(5) - 1) / 2;
+    private static final double SEARCH_TOLERANCE = 0.5;
+
+    private final int maxSamples;
+    private final int maxPointsPerSample;
+
+    // the points of each sample in ascending order, at maxPointsPerSample intervals
+    private final double[] points;
+    private final int[] pointCounts;
+    private int firstSample = 0;
+    private int sampleCount = 0;
+
+    private final double[] masses;
+    private final double[] scratch;
+
+    private double width = 50;
+    private double windowLength = 2000;
+    private double packetLossRate = 0.2;
+    private double mu = 0;
+    private double sigma = 500;
+
+    public MedianTimingEstimator(int maxSamples, int maxPointsPerSample) {
+        this.maxSamples = maxSamples;
+        this.maxPointsPerSample = maxPointsPerSample;
+        this.points = new double[maxSamples * maxPointsPerSample];
+        this.pointCounts = new int[maxSamples];
+        this.masses = new double[maxSamples * maxPointsPerSample];
+        this.scratch = new double[maxSamples];
+    }
+
+    /**
+     * Adds a sample, replacing the oldest sample if there are too many, and updates the estimate.
+     *
+     * @param samplePoints The possible offsets, all of which lie between {@code beginTime} and {@code endTime}
+     * @param count The number of possible offsets
+     * @param width The width of the interval around each point which it stands for
+     */
+    public void addSample(double[] samplePoints, int count, double width, double beginTime, double endTime) {
+        if (count <= 0 || count > maxPointsPerSample) {
+            throw new IllegalArgumentException("Invalid sample size " + count);
+        }
+
+        int slot;
+        if (sampleCount == maxSamples) {
+            slot = firstSample;
+            firstSample = (firstSample + 1) % maxSamples;
+        } else {
+            slot = (firstSample + sampleCount++) % maxSamples;
+        }
+        int offset = slot * maxPointsPerSample;
+        System.arraycopy(samplePoints, 0, points, offset, count);
+        Arrays.sort(points, offset, offset + count);
+        pointCounts[slot] = count;
+
+        this.width = width;
+        this.windowLength = endTime - beginTime;
+        update(beginTime, endTime);
+    }
+
+    public double getMu() {
+        return mu;
+    }
+
+    public double getSigma() {
+        return sigma;
+    }
+
+    public double getPacketLossRate() {
+        return packetLossRate;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public void clear() {
+        firstSample = 0;
+        sampleCount = 0;
+    }
+
+    private void update(double beginTime, double endTime) {
+        // find the offset with the best score
+        double bestTime = beginTime;
+        double bestScore = Double.MAX_VALUE;
+        double seed = medianOfNearestPoints(mu);
+        if (seed >= beginTime && seed <= endTime) {
+            bestTime = seed;
+            bestScore = score(seed);
+        }
+        for (double time = beginTime; time <= endTime; time += COARSE_STEP) {
+            double score = score(time);
+            if (score < bestScore) {
+                bestScore = score;
+                bestTime = time;
+            }
+        }
+
+        double low = Math.max(beginTime, bestTime - COARSE_STEP);
+        double high = Math.min(endTime, bestTime + COARSE_STEP);
+        double mid1 = high - INV_GOLDEN_RATIO * (high - low);
+        double mid2 = low + INV_GOLDEN_RATIO * (high - low);
+        double score1 = score(mid1);
+        double score2 = score(mid2);
+        while (high - low > SEARCH_TOLERANCE) {
+            if (score1 < score2) {
+                high = mid2;
+                mid2 = mid1;
+                score2 = score1;
+                mid1 = high - INV_GOLDEN_RATIO * (high - low);
+                score1 = score(mid1);
+            } else {
+                low = mid1;
+                mid1 = mid2;
+                score1 = score2;
+                mid2 = low + INV_GOLDEN_RATIO * (high - low);
+                score2 = score(mid2);
+            }
+        }
+        double refinedTime = (low + high) / 2;
+        double refinedScore = score(refinedTime);
+        if (refinedScore < bestScore) {
+            bestScore = refinedScore;
+            bestTime = refinedTime;
+        }
+
+        mu = bestTime;
+        sigma = Math.clamp(bestScore / sampleCount, MIN_SIGMA, MAX_SIGMA);
+
+        emStep();
+    }
+
+    /**
+     * The sum over all samples of the outlier-curbed absolute deviation of its nearest point from the given time
+     */
+    private double score(double time) {
+        double score = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            int slot = (firstSample + i) % maxSamples;
+            double lambda = dropRate(slot) / width;
+            double absDev = Math.abs(nearestPoint(slot, time) - time);
+            score += (1 - Math.exp(-lambda * absDev)) / lambda;
+        }
+        return score;
+    }
+
+    /**
+     * The chance of a dropped catch landing on one of the sample's points. This is computed against the latest width
+     * and time window for every sample, rather than those the sample was taken with, as the original does.
+     */
+    private double dropRate(int slot) {
+        return pointCounts[slot] * width / windowLength;
+    }
+
+    private double nearestPoint(int slot, double time) {
+        int offset = slot * maxPointsPerSample;
+        int index = Arrays.binarySearch(points, offset, offset + pointCounts[slot], time);
+        if (index >= 0) {
+            return time;
+        }
+        int insertionPoint = -index - 1;
+        if (insertionPoint == offset) {
+            return points[offset];
+        }
+        if (insertionPoint == offset + pointCounts[slot]) {
+            return points[insertionPoint - 1];
+        }
+        double below = points[insertionPoint - 1];
+        double above = points[insertionPoint];
+        return time - below <= above - time ? below : above;
+    }
+
+    private double medianOfNearestPoints(double time) {
+        for (int i = 0; i < sampleCount; i++) {
+            scratch[i] = nearestPoint((firstSample + i) % maxSamples, time);
+        }
+        return median(scratch, sampleCount);
+    }
+
+    private void emStep() {
+        // E step
+        // calculate weights (and classifications)
+        for (int i = 0; i < sampleCount; i++) {
+            int slot = (firstSample + i) % maxSamples;
+            int offset = slot * maxPointsPerSample;
+            int count = pointCounts[slot];
+
+            double sum = 0;
+            for (int j = offset; j < offset + count; j++) {
+                masses[j] = mass(points[j]);
+                sum += masses[j];
+            }
+            double pXandNorm = Math.min(sum, 1) * (1 - packetLossRate); // cap at 1
+            double pXandUnif = dropRate(slot) * packetLossRate;
+            double pNorm = pXandNorm / (pXandNorm + pXandUnif);
+
+            for (int j = offset; j < offset + count; j++) {
+                masses[j] = sum == 0 ? 0 : masses[j] / sum * pNorm;
+            }
+        }
+
+        // M step
+        // compute new best estimate for parameters
+        double weightedSum = 0;
+        double sumOfWeights = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            int offset = ((firstSample + i) % maxSamples) * maxPointsPerSample;
+            for (int j = offset, end = offset + pointCounts[(firstSample + i) % maxSamples]; j < end; j++) {
+                weightedSum += points[j] * masses[j];
+                sumOfWeights += masses[j];
+            }
+        }
+        if (sumOfWeights == 0) {
+            // every sample looks like noise, so keep the search result
+            return;
+        }
+        double muNext = weightedSum / sumOfWeights;
+
+        double weightedSumOfSquareDeviations = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            int offset = ((firstSample + i) % maxSamples) * maxPointsPerSample;
+            for (int j = offset, end = offset + pointCounts[(firstSample + i) % maxSamples]; j < end; j++) {
+                double deviation = points[j] - muNext;
+                weightedSumOfSquareDeviations += deviation * deviation * masses[j];
+            }
+        }
+
+        mu = muNext;
+        sigma = Math.clamp(Math.sqrt(weightedSumOfSquareDeviations / sumOfWeights), MIN_SIGMA, MAX_SIGMA);
+        packetLossRate = Math.clamp((sampleCount - sumOfWeights) / sampleCount, MIN_PACKET_LOSS_RATE, MAX_PACKET_LOSS_RATE);
+    }
+
+    private double mass(double x) {
+        // should be cdf(x+width/2)-cdf(x-width/2) but is simplified to pdf(x)*width and
+        // capped at 1
+        // to avoid pesky erf() functions
+        double deviation = (x - mu) / sigma;
+        double pdf = 1 / (sigma * Math.sqrt(2 * Math.PI)) * Math.exp(-deviation * deviation / 2);
+        return Math.min(pdf * width, 1);
+    }
+
+    /**
+     * Returns the median of the first {@code count} values, using quickselect. The values are reordered.
+     */
+    public static double median(double[] values, int count) {
+        if (count == 0) {
+            throw new IllegalArgumentException("No values");
+        }
+        double upper = select(values, 0, count - 1, count / 2);
+        if ((count & 1) == 1) {
+            return upper;
+        }
+        // after selecting, everything before the middle is no greater than it
+        double lower = values[0];
+        for (int i = 1; i < count / 2; i++) {
+            lower = Math.max(lower, values[i]);
+        }
+        return (lower + upper) / 2;
+    }
+
+    private static double select(double[] values, int left, int right, int k) {
+        while (left < right) {
+            int mid = (left + right) >>> 1;
+            // median of three pivot, to avoid the worst case on sorted input
+            if (values[mid] < values[left]) {
+                swap(values, left, mid);
+            }
+            if (values[right] < values[left]) {
+                swap(values, left, right);
+            }
+            if (values[right] < values[mid]) {
+                swap(values, mid, right);
+            }
+            double pivot = values[mid];
+
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(values, i++, j--);
+                }
+            }
+
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return values[k];
+            }
+        }
+        return values[k];
+    }
+
+    private static void swap(double[] values, int i, int j) {
+        double temp = values[i];
+        values[i] = values[j];
+        values[j] = temp;
+    }
+}
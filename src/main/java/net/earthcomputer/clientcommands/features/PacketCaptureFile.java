@@ -0,0 +1,364 @@
+package net.earthcomputer.clientcommands.features;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A compact binary file of captured packets, which stores the raw encoded bytes of each packet so that capturing is
+ * cheap, and the packets can be decoded and dumped later.
+ *
+ * <p>The file starts with a header, followed by Deflate-compressed blocks of records and an index of the blocks:
+ * <pre>
+ * header:  int magic "CCPC", int version
+ * block:   int uncompressed size, int compressed size, compressed records
+ * record:  int length of the rest of the record, long timestamp, byte direction, UTF packet type id, raw packet bytes
+ * index:   int block count, then for each block: long file offset, long first timestamp, long last timestamp,
+ *          int record count
+ * trailer: long index offset, int magic "CCPI"
+ * </pre>
+ *
+ * <p>The index lets a reader seek to the block containing a given time without decompressing the blocks before it. If
+ * the game stopped before the file was closed, the index is missing and the reader rebuilds it by scanning the blocks.
+ */
+public final class PacketCaptureFile {
+    public static final String EXTENSION = ".ccpc";
+
+    private static final int MAGIC = 0x43435043; // CCPC
+    private static final int INDEX_MAGIC = 0x43435049; // CCPI
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int BLOCK_HEADER_SIZE = 8;
+    private static final int TRAILER_SIZE = 12;
+    private static final int INDEX_ENTRY_SIZE = 28;
+    private static final int MAX_BLOCK_SIZE = 1 << 26;
+
+    /**
+     * Records are collected until a block reaches this size before it's compressed and written
+     */
+    private static final int TARGET_BLOCK_SIZE = 64 * 1024;
+
+    private PacketCaptureFile() {
+    }
+
+    public record Record(long timestamp, int direction, String typeId, byte[] payload) {
+    }
+
+    public record BlockInfo(long offset, long firstTimestamp, long lastTimestamp, int recordCount) {
+    }
+
+    /**
+     * Writes a capture file. The file isn't complete until it's closed.
+     */
+    public static final class Writer implements Closeable {
+        private final FileChannel channel;
+        private final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream(TARGET_BLOCK_SIZE + 1024);
+        private final DataOutputStream blockOutput = new DataOutputStream(blockBytes);
+        private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+        private final DataOutputStream recordOutput = new DataOutputStream(recordBytes);
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final List<BlockInfo> blocks = new ArrayList<>();
+        private byte[] compressBuffer = new byte[0];
+        private long position;
+        private long blockFirstTimestamp;
+        private long blockLastTimestamp;
+        private int blockRecordCount = 0;
+        private long recordCount = 0;
+        private boolean closed = false;
+
+        public Writer(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+            writeFully(header);
+        }
+
+        /**
+         * @return Whether the record was written, which it isn't if the file has already been closed
+         */
+        public synchronized boolean write(long timestamp, int direction, String typeId, byte[] payload) throws IOException {
+            if (closed) {
+                return false;
+            }
+
+            recordBytes.reset();
+            recordOutput.writeLong(timestamp);
+            recordOutput.writeByte(direction);
+            recordOutput.writeUTF(typeId);
+            recordOutput.write(payload);
+            blockOutput.writeInt(recordBytes.size());
+            recordBytes.writeTo(blockOutput);
+
+            if (blockRecordCount == 0) {
+                blockFirstTimestamp = timestamp;
+            }
+            blockLastTimestamp = timestamp;
+            blockRecordCount++;
+            recordCount++;
+
+            if (blockBytes.size() >= TARGET_BLOCK_SIZE) {
+                flushBlock();
+            }
+            return true;
+        }
+
+        public synchronized long getRecordCount() {
+            return recordCount;
+        }
+
+        private void flushBlock() throws IOException {
+            if (blockRecordCount == 0) {
+                return;
+            }
+
+            byte[] uncompressed = blockBytes.toByteArray();
+            deflater.reset();
+            deflater.setInput(uncompressed);
+            deflater.finish();
+            int compressedSize = 0;
+            while (!deflater.finished()) {
+                if (compressedSize == compressBuffer.length) {
+                    compressBuffer = Arrays.copyOf(compressBuffer, Math.max(1024, compressBuffer.length * 2));
+                }
+                compressedSize += deflater.deflate(compressBuffer, compressedSize, compressBuffer.length - compressedSize);
+            }
+
+            blocks.add(new BlockInfo(position, blockFirstTimestamp, blockLastTimestamp, blockRecordCount));
+            ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_SIZE).putInt(uncompressed.length).putInt(compressedSize).flip();
+            writeFully(blockHeader);
+            writeFully(ByteBuffer.wrap(compressBuffer, 0, compressedSize));
+
+            blockBytes.reset();
+            blockRecordCount = 0;
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer);
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                flushBlock();
+                long indexOffset = position;
+                ByteBuffer index = ByteBuffer.allocate(4 + blocks.size() * INDEX_ENTRY_SIZE + TRAILER_SIZE);
+                index.putInt(blocks.size());
+                for (BlockInfo block : blocks) {
+                    index.putLong(block.offset()).putLong(block.firstTimestamp()).putLong(block.lastTimestamp()).putInt(block.recordCount());
+                }
+                index.putLong(indexOffset).putInt(INDEX_MAGIC);
+                writeFully(index.flip());
+            } finally {
+                deflater.end();
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Reads a capture file, one block at a time
+     */
+    public static final class Reader implements Closeable {
+        private final FileChannel channel;
+        private final List<BlockInfo> blocks;
+        private final Inflater inflater = new Inflater();
+
+        public Reader(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                ByteBuffer header = readFully(0, HEADER_SIZE);
+                if (header.getInt() != MAGIC) {
+                    throw new IOException("Not a packet capture file");
+                }
+                int version = header.getInt();
+                if (version != VERSION) {
+                    throw new IOException("Unsupported packet capture version " + version);
+                }
+                List<BlockInfo> index = readIndex();
+                this.blocks = index != null ? index : scanBlocks();
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        @Nullable
+        private List<BlockInfo> readIndex() throws IOException {
+            long size = channel.size();
+            if (size < HEADER_SIZE + 4 + TRAILER_SIZE) {
+                return null;
+            }
+            ByteBuffer trailer = readFully(size - TRAILER_SIZE, TRAILER_SIZE);
+            long indexOffset = trailer.getLong();
+            if (trailer.getInt() != INDEX_MAGIC || indexOffset < HEADER_SIZE || indexOffset > size - TRAILER_SIZE - 4) {
+                return null;
+            }
+            long indexSize = size - TRAILER_SIZE - indexOffset;
+            ByteBuffer index = readFully(indexOffset, (int) indexSize);
+            int blockCount = index.getInt();
+            if (indexSize != 4 + (long) blockCount * INDEX_ENTRY_SIZE) {
+                return null;
+            }
+            List<BlockInfo> blocks = new ArrayList<>(blockCount);
+            for (int i = 0; i < blockCount; i++) {
+                blocks.add(new BlockInfo(index.getLong(), index.getLong(), index.getLong(), index.getInt()));
+            }
+            return blocks;
+        }
+
+        /**
+         * Rebuilds the index of a file which wasn't closed properly, stopping at the first incomplete block
+         */
+        private List<BlockInfo> scanBlocks() throws IOException {
+            List<BlockInfo> blocks = new ArrayList<>();
+            long size = channel.size();
+            long offset = HEADER_SIZE;
+            while (offset + BLOCK_HEADER_SIZE <= size) {
+                ByteBuffer blockHeader = readFully(offset, BLOCK_HEADER_SIZE);
+                int uncompressedSize = blockHeader.getInt();
+                int compressedSize = blockHeader.getInt();
+                if (uncompressedSize < 0 || uncompressedSize > MAX_BLOCK_SIZE || compressedSize < 0 || offset + BLOCK_HEADER_SIZE + compressedSize > size) {
+                    break;
+                }
+                List<Record> records;
+                try {
+                    records = readRecords(offset);
+                } catch (IOException e) {
+                    break;
+                }
+                if (records.isEmpty()) {
+                    break;
+                }
+                blocks.add(new BlockInfo(offset, records.getFirst().timestamp(), records.getLast().timestamp(), records.size()));
+                offset += BLOCK_HEADER_SIZE + compressedSize;
+            }
+            return blocks;
+        }
+
+        public int getBlockCount() {
+            return blocks.size();
+        }
+
+        public BlockInfo getBlock(int block) {
+            return blocks.get(block);
+        }
+
+        public long getRecordCount() {
+            long count = 0;
+            for (BlockInfo block : blocks) {
+                count += block.recordCount();
+            }
+            return count;
+        }
+
+        /**
+         * Returns the first block which may contain records at or after the given timestamp, or the block count if
+         * there is none
+         */
+        public int findBlock(long timestamp) {
+            int low = 0;
+            int high = blocks.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (blocks.get(mid).lastTimestamp() < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        public List<Record> readBlock(int block) throws IOException {
+            return readRecords(blocks.get(block).offset());
+        }
+
+        private List<Record> readRecords(long offset) throws IOException {
+            ByteBuffer blockHeader = readFully(offset, BLOCK_HEADER_SIZE);
+            int uncompressedSize = blockHeader.getInt();
+            int compressedSize = blockHeader.getInt();
+            if (uncompressedSize < 0 || uncompressedSize > MAX_BLOCK_SIZE || compressedSize < 0) {
+                throw new IOException("Corrupt block at " + offset);
+            }
+            ByteBuffer compressed = readFully(offset + BLOCK_HEADER_SIZE, compressedSize);
+
+            byte[] uncompressed = new byte[uncompressedSize];
+            inflater.reset();
+            inflater.setInput(compressed);
+            try {
+                int inflated = 0;
+                while (inflated < uncompressedSize && !inflater.finished()) {
+                    int n = inflater.inflate(uncompressed, inflated, uncompressedSize - inflated);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    inflated += n;
+                }
+                if (inflated != uncompressedSize) {
+                    throw new IOException("Truncated block at " + offset);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt block at " + offset, e);
+            }
+
+            List<Record> records = new ArrayList<>();
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(uncompressed));
+            try {
+                while (input.available() > 0) {
+                    int length = input.readInt();
+                    int start = input.available();
+                    long timestamp = input.readLong();
+                    int direction = input.readUnsignedByte();
+                    String typeId = input.readUTF();
+                    int payloadLength = length - (start - input.available());
+                    if (payloadLength < 0) {
+                        throw new IOException("Corrupt record in block at " + offset);
+                    }
+                    byte[] payload = new byte[payloadLength];
+                    input.readFully(payload);
+                    records.add(new Record(timestamp, direction, typeId, payload));
+                }
+            } catch (EOFException e) {
+                throw new IOException("Truncated record in block at " + offset, e);
+            }
+            return records;
+        }
+
+        private ByteBuffer readFully(long position, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException();
+                }
+            }
+            return buffer.flip();
+        }
+
+        @Override
+        public void close() throws IOException {
+            inflater.end();
+            channel.close();
+        }
+    }
+}
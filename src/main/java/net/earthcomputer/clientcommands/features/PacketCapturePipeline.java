@@ -0,0 +1,256 @@
+package net.earthcomputer.clientcommands.features;
+
+import com.mojang.logging.LogUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.earthcomputer.clientcommands.Configs;
+import net.earthcomputer.clientcommands.c2c.C2CPacket;
+import net.earthcomputer.clientcommands.util.SpscRingBuffer;
+import net.minecraft.ChatFormatting;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.resources.ResourceLocation;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Moves the serialization of captured packets off the threads that send and receive them. Each packet flow has its own
+ * {@link SpscRingBuffer}, since each flow is only ever captured from one thread at a time, e.g. the netty I/O thread
+ * for packets to and from the server. A background thread drains the buffers, serializes the packets, and hands the
+ * resulting messages over in batches.
+ *
+ * <p>Packets are encoded when they are captured, and the background thread decodes its own copy. The game may still
+ * be reading or modifying the original packet by the time it's serialized, so it must not be touched off-thread.
+ *
+ * <p>When a buffer is full, the packet is either dropped straight away or the capturing thread waits a bounded time for
+ * space, depending on {@link Configs#packetCaptureOverflowPolicy}.
+ */
+public final class PacketCapturePipeline<F extends Enum<F>> {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private static final int MAX_BATCH_SIZE = 256;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long BACKPRESSURE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long MAX_BACKPRESSURE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final EnumMap<F, SpscRingBuffer<CapturedPacket>> buffers;
+    private final Serializer<F> serializer;
+    private final Consumer<List<Component>> output;
+    private final Thread worker;
+    private volatile boolean workerWaiting = false;
+    private volatile boolean shutdown = false;
+
+    private final LongAdder capturedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder processedCount = new LongAdder();
+
+    /**
+     * @param flowClass The class of the packet flows, one buffer is created for each
+     * @param capacity The capacity of each buffer
+     * @param serializer Serializes a packet and the time it was captured into a message, on the background thread
+     * @param output Receives each batch of messages, on the background thread
+     */
+    public PacketCapturePipeline(Class<F> flowClass, int capacity, Serializer<F> serializer, Consumer<List<Component>> output) {
+        this.buffers = new EnumMap<>(flowClass);
+        for (F flow : flowClass.getEnumConstants()) {
+            buffers.put(flow, new SpscRingBuffer<>(capacity));
+        }
+        this.serializer = serializer;
+        this.output = output;
+        this.worker = new Thread(this::run, "Packet Capture Serializer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Encodes a packet and queues it to be serialized. Must only be called from one thread at a time for each flow,
+     * while the packet can't be modified by another thread.
+     *
+     * @return Whether the packet was queued rather than dropped
+     */
+    public boolean capture(Packet<?> packet, F flow) {
+        if (shutdown) {
+            return false;
+        }
+
+        capturedCount.increment();
+        // record the time now rather than when the packet is serialized, which may be much later
+        CapturedPacket captured;
+        try {
+            captured = CapturedPacket.encode(packet, System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not encode captured packet {}", packet.type().id(), e);
+            droppedCount.increment();
+            return false;
+        }
+        if (captured == null) {
+            droppedCount.increment();
+            return false;
+        }
+
+        SpscRingBuffer<CapturedPacket> buffer = buffers.get(flow);
+        if (!buffer.offer(captured) && !waitToOffer(buffer, captured)) {
+            droppedCount.increment();
+            return false;
+        }
+
+        if (workerWaiting) {
+            LockSupport.unpark(worker);
+        }
+        return true;
+    }
+
+    private boolean waitToOffer(SpscRingBuffer<CapturedPacket> buffer, CapturedPacket packet) {
+        if (Configs.packetCaptureOverflowPolicy != Configs.PacketCaptureOverflowPolicy.BLOCK) {
+            return false;
+        }
+
+        // don't wait forever, in case the serializer is stuck on a packet
+        long startTime = System.nanoTime();
+        do {
+            LockSupport.unpark(worker);
+            LockSupport.parkNanos(this, BACKPRESSURE_PARK_NANOS);
+            if (buffer.offer(packet)) {
+                return true;
+            }
+        } while (!shutdown && System.nanoTime() - startTime < MAX_BACKPRESSURE_NANOS);
+        return false;
+    }
+
+    /**
+     * Stops the background thread. Packets which haven't been serialized yet are discarded.
+     */
+    public void shutdown() {
+        shutdown = true;
+        LockSupport.unpark(worker);
+    }
+
+    /**
+     * The number of packets passed to {@link #capture}, including dropped ones
+     */
+    public long getCapturedCount() {
+        return capturedCount.sum();
+    }
+
+    /**
+     * The number of packets dropped because their buffer was full or they couldn't be encoded
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * The number of packets which have been serialized
+     */
+    public long getProcessedCount() {
+        return processedCount.sum();
+    }
+
+    /**
+     * The number of packets waiting to be serialized
+     */
+    public int getQueuedCount() {
+        int queued = 0;
+        for (SpscRingBuffer<CapturedPacket> buffer : buffers.values()) {
+            queued += buffer.size();
+        }
+        return queued;
+    }
+
+    private void run() {
+        List<Component> batch = new ArrayList<>();
+        while (!shutdown) {
+            boolean drainedAny = false;
+            for (var entry : buffers.entrySet()) {
+                // take a bounded number from each flow so that a busy flow doesn't starve the others
+                for (int i = 0; i < MAX_BATCH_SIZE; i++) {
+                    CapturedPacket captured = entry.getValue().poll();
+                    if (captured == null) {
+                        break;
+                    }
+                    drainedAny = true;
+                    Component message = serialize(captured, entry.getKey());
+                    processedCount.increment();
+                    if (message != null) {
+                        batch.add(message);
+                    }
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                output.accept(batch);
+                batch = new ArrayList<>();
+            }
+
+            if (!drainedAny) {
+                workerWaiting = true;
+                // re-check after publishing that we're waiting, so that a packet captured in between isn't missed
+                if (getQueuedCount() == 0 && !shutdown) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                workerWaiting = false;
+            }
+        }
+    }
+
+    @Nullable
+    private Component serialize(CapturedPacket captured, F flow) {
+        try {
+            return serializer.serialize(captured, flow);
+        } catch (Throwable e) {
+            LOGGER.error("Could not serialize packet {}", captured.type(), e);
+            return Component.translatable("commands.clisten.serializeError", captured.type().toString()).withStyle(ChatFormatting.RED);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Serializer<F> {
+        @Nullable
+        Component serialize(CapturedPacket packet, F flow) throws Exception;
+    }
+
+    /**
+     * A packet's encoded bytes, along with the codec to decode them
+     *
+     * @param sender The sender of a C2C packet, which isn't part of its encoding
+     */
+    public record CapturedPacket(ResourceLocation type, StreamCodec<ByteBuf, Packet<?>> codec, byte[] bytes, long timestamp, @Nullable String sender) {
+        @Nullable
+        private static CapturedPacket encode(Packet<?> packet, long timestamp) {
+            ResourceLocation type = packet.type().id();
+            ByteBuf buf = PacketDumper.wrapForCodec(Unpooled.buffer(), type);
+            if (buf == null) {
+                return null;
+            }
+            try {
+                StreamCodec<ByteBuf, Packet<?>> codec = PacketDumper.getCodec(type, packet.type().flow());
+                codec.encode(buf, packet);
+                byte[] bytes = new byte[buf.readableBytes()];
+                buf.readBytes(bytes);
+                return new CapturedPacket(type, codec, bytes, timestamp, packet instanceof C2CPacket c2cPacket ? c2cPacket.sender() : null);
+            } finally {
+                buf.release();
+            }
+        }
+
+        /**
+         * Decodes a copy of the packet, which is safe to read on any thread
+         */
+        public Packet<?> decode() {
+            ByteBuf buf = PacketDumper.wrapForCodec(Unpooled.wrappedBuffer(bytes), type, sender);
+            if (buf == null) {
+                throw new IllegalStateException("Not connected to a server");
+            }
+            return codec.decode(buf);
+        }
+    }
+}
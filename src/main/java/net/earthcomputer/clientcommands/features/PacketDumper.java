@@ -17,14 +17,16 @@ import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelPipeline;
 import io.netty.handler.codec.EncoderException;
 import it.unimi.dsi.fastutil.ints.IntList;
+import net.earthcomputer.clientcommands.Configs;
 import net.earthcomputer.clientcommands.c2c.C2CPacketHandler;
-import net.earthcomputer.clientcommands.c2c.C2CPacketListener;
+import net.earthcomputer.clientcommands.interfaces.IConnection_Codecs;
 import net.earthcomputer.clientcommands.util.MappingsHelper;
 import net.minecraft.client.Minecraft;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.GlobalPos;
 import net.minecraft.core.SectionPos;
 import net.minecraft.nbt.Tag;
+import net.minecraft.network.Connection;
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.network.PacketDecoder;
 import net.minecraft.network.PacketEncoder;
@@ -32,68 +34,254 @@ import net.minecraft.network.ProtocolInfo;
 import net.minecraft.network.codec.StreamCodec;
 import net.minecraft.network.codec.StreamEncoder;
 import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.PacketFlow;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.phys.BlockHitResult;
 import net.minecraft.world.phys.Vec3;
 import org.apache.commons.io.function.IOBiConsumer;
+import org.apache.commons.io.function.IOConsumer;
 import org.apache.commons.io.function.IORunnable;
 import org.apache.commons.io.function.IOStream;
 import org.apache.commons.io.function.Uncheck;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
 import org.joml.Quaternionf;
 import org.joml.Vector3f;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringWriter;
 import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ScatteringByteChannel;
 import java.nio.charset.Charset;
 import java.security.PublicKey;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.Date;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.function.ToIntFunction;
 
 /**
  * @author Gaming32
  */
 public class PacketDumper {
+    private static final ThreadLocal<DumpBuffer> DUMP_BUFFERS = ThreadLocal.withInitial(DumpBuffer::new);
+
+    /**
+     * Mojmap simple names of classes, only cached once the mappings have been found
+     */
+    private static final Map<Class<?>, String> MOJMAP_SIMPLE_NAMES = new ConcurrentHashMap<>();
+
     public static void dumpPacket(Packet<?> packet, JsonWriter writer) throws IOException {
         writer.beginArray();
         try {
-            if (packet.type().id().getNamespace().equals("clientcommands")) {
-                //noinspection unchecked
-                C2CPacketHandler.C2C.codec().encode(new PacketDumpByteBuf(writer), (Packet<? super C2CPacketListener>) packet);
-            } else {
-                ChannelPipeline pipeline = Minecraft.getInstance().getConnection().getConnection().channel.pipeline();
-                @SuppressWarnings("unchecked")
-                StreamCodec<ByteBuf, Packet<?>> codec = switch (packet.type().flow()) {
-                    case CLIENTBOUND -> (StreamCodec<ByteBuf, Packet<?>>) ((PacketDecoder<?>) pipeline.get("decoder")).protocolInfo.codec();
-                    case SERVERBOUND -> (StreamCodec<ByteBuf, Packet<?>>) ((PacketEncoder<?>) pipeline.get("encoder")).protocolInfo.codec();
-                };
-                codec.encode(new PacketDumpByteBuf(writer), packet);
+            getCodec(packet.type().id(), packet.type().flow()).encode(new PacketDumpByteBuf(writer, Configs.packetDumpIncludeNbt), packet);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.endArray();
+    }
+
+    /**
+     * Dumps a packet to a JSON string, reusing a buffer owned by the calling thread. Safe to call from any thread, such
+     * as the netty thread and a background serializer at the same time.
+     */
+    public static String dumpPacketToString(Packet<?> packet) throws IOException {
+        return dumpToString(writer -> dumpPacket(packet, writer));
+    }
+
+    /**
+     * Dumps a packet to a JSON string using an explicit codec, rather than the one from the current connection
+     */
+    public static <P> String dumpPacketToString(P packet, StreamCodec<? super FriendlyByteBuf, P> codec, boolean includeNbt) throws IOException {
+        return dumpToString(writer -> dumpPacket(packet, codec, writer, includeNbt));
+    }
+
+    private static String dumpToString(IOConsumer<JsonWriter> dumper) throws IOException {
+        DumpBuffer buffer = DUMP_BUFFERS.get();
+        if (buffer.inUse) {
+            // called while dumping another packet on this thread, don't clobber its buffer
+            StringWriter output = new StringWriter();
+            dumper.accept(new JsonWriter(output));
+            return output.toString();
+        }
+
+        buffer.inUse = true;
+        try {
+            dumper.accept(new JsonWriter(buffer.output));
+            return buffer.output.toString();
+        } finally {
+            buffer.reset();
+        }
+    }
+
+    /**
+     * Gets the codec for packets of the given type. Vanilla packets use the codecs of the current connection, so the
+     * connection must be in the same protocol as the packet. C2C packets must be encoded to and decoded from a buffer
+     * returned by {@link #wrapForCodec}.
+     */
+    @SuppressWarnings("unchecked")
+    public static StreamCodec<ByteBuf, Packet<?>> getCodec(ResourceLocation packetType, PacketFlow flow) {
+        if (packetType.getNamespace().equals("clientcommands")) {
+            return (StreamCodec<ByteBuf, Packet<?>>) (StreamCodec<?, ?>) C2CPacketHandler.C2C.codec();
+        }
+        Connection connection = Minecraft.getInstance().getConnection().getConnection();
+        StreamCodec<ByteBuf, Packet<?>> codec = ((IConnection_Codecs) connection).clientcommands_getCodec(flow);
+        if (codec != null) {
+            return codec;
+        }
+        // the protocol is changing, only the pipeline knows which codec is in use right now
+        ChannelPipeline pipeline = connection.channel.pipeline();
+        return switch (flow) {
+            case CLIENTBOUND -> (StreamCodec<ByteBuf, Packet<?>>) ((PacketDecoder<?>) pipeline.get("decoder")).protocolInfo.codec();
+            case SERVERBOUND -> (StreamCodec<ByteBuf, Packet<?>>) ((PacketEncoder<?>) pipeline.get("encoder")).protocolInfo.codec();
+        };
+    }
+
+    /**
+     * Wraps a buffer for the codec returned by {@link #getCodec}, or returns {@code null} if the buffer can't be
+     * wrapped right now
+     */
+    @Nullable
+    public static ByteBuf wrapForCodec(ByteBuf buf, ResourceLocation packetType) {
+        return wrapForCodec(buf, packetType, null);
+    }
+
+    /**
+     * @param c2cSender The sender that C2C packets decoded from the buffer will have
+     */
+    @Nullable
+    public static ByteBuf wrapForCodec(ByteBuf buf, ResourceLocation packetType, @Nullable String c2cSender) {
+        if (packetType.getNamespace().equals("clientcommands")) {
+            return C2CPacketHandler.wrapByteBuf(buf, c2cSender, null);
+        }
+        return buf;
+    }
+
+    /**
+     * Replays a file written by {@link PacketCaptureFile.Writer}, decoding and dumping each packet with the codecs of
+     * the current connection. Each record is dumped as an object holding its timestamp, direction, type, and either the
+     * dumped packet or the reason it couldn't be dumped.
+     *
+     * @param directions The directions that were captured, indexed by the direction stored in each record
+     * @param protocolFlows Gets the direction of the connection that packets of each captured direction were encoded for
+     * @return The number of packets which were dumped successfully
+     */
+    public static <D extends Enum<D>> long dumpCapture(PacketCaptureFile.Reader reader, JsonWriter writer, D[] directions, Function<? super D, PacketFlow> protocolFlows) throws IOException {
+        // the connection's codecs can't change during the replay, so only look them up once
+        Map<CodecKey, StreamCodec<ByteBuf, Packet<?>>> codecs = new HashMap<>();
+        long dumpedCount = 0;
+        writer.beginArray();
+        for (int block = 0; block < reader.getBlockCount(); block++) {
+            for (PacketCaptureFile.Record record : reader.readBlock(block)) {
+                writer.beginObject();
+                writer.name("timestamp").value(Instant.ofEpochMilli(record.timestamp()).toString());
+                D direction = record.direction() < directions.length ? directions[record.direction()] : null;
+                writer.name("direction").value(direction == null ? String.valueOf(record.direction()) : direction.name());
+                writer.name("type").value(record.typeId());
+
+                try {
+                    ResourceLocation packetType = ResourceLocation.parse(record.typeId());
+                    if (direction == null) {
+                        throw new IllegalArgumentException("Unknown direction " + record.direction());
+                    }
+                    PacketFlow flow = protocolFlows.apply(direction);
+                    StreamCodec<ByteBuf, Packet<?>> codec = codecs.computeIfAbsent(new CodecKey(packetType.getNamespace().equals("clientcommands"), flow), k -> getCodec(packetType, flow));
+                    ByteBuf buf = wrapForCodec(Unpooled.wrappedBuffer(record.payload()), packetType);
+                    if (buf == null) {
+                        throw new IllegalStateException("Not connected to a server");
+                    }
+                    Packet<?> packet = codec.decode(buf);
+                    // dump into a separate buffer first, so that a packet which fails halfway doesn't corrupt the output
+                    String packetDump = dumpToString(packetWriter -> dumpPacket(packet, codec, packetWriter, Configs.packetDumpIncludeNbt));
+                    writer.name("packet").jsonValue(packetDump);
+                    dumpedCount++;
+                } catch (RuntimeException | IOException e) {
+                    writer.name("error").value(String.valueOf(e));
+                }
+                writer.endObject();
             }
+        }
+        writer.endArray();
+        return dumpedCount;
+    }
+
+    /**
+     * Dumps a packet using an explicit codec, rather than the one from the current connection.
+     */
+    @VisibleForTesting
+    public static <P> void dumpPacket(P packet, StreamCodec<? super FriendlyByteBuf, P> codec, JsonWriter writer) throws IOException {
+        dumpPacket(packet, codec, writer, Configs.packetDumpIncludeNbt);
+    }
+
+    /**
+     * @param includeNbt Whether to include the NBT encoding of values written with a codec, as well as the JSON one
+     */
+    @VisibleForTesting
+    public static <P> void dumpPacket(P packet, StreamCodec<? super FriendlyByteBuf, P> codec, JsonWriter writer, boolean includeNbt) throws IOException {
+        writer.beginArray();
+        try {
+            codec.encode(new PacketDumpByteBuf(writer, includeNbt), packet);
         } catch (UncheckedIOException e) {
             throw e.getCause();
         }
         writer.endArray();
     }
 
+    private static String getMojmapSimpleName(Class<?> clazz) {
+        String cached = MOJMAP_SIMPLE_NAMES.get(clazz);
+        if (cached != null) {
+            return cached;
+        }
+
+        String className = clazz.getName().replace('.', '/');
+        String mojmapClassName = MappingsHelper.namedOrIntermediaryToMojmap_class(className);
+        String simpleName = Objects.requireNonNullElse(mojmapClassName, className);
+        simpleName = simpleName.substring(simpleName.lastIndexOf('/') + 1);
+        // don't cache the fallback, the mappings may not have loaded yet
+        if (mojmapClassName != null) {
+            MOJMAP_SIMPLE_NAMES.put(clazz, simpleName);
+        }
+        return simpleName;
+    }
+
+    private record CodecKey(boolean c2c, PacketFlow flow) {
+    }
+
+    private static final class DumpBuffer {
+        private static final int MAX_RETAINED_CAPACITY = 1 << 20;
+
+        private StringWriter output = new StringWriter(1024);
+        private boolean inUse = false;
+
+        void reset() {
+            inUse = false;
+            // don't keep a huge buffer around after dumping an unusually large packet
+            if (output.getBuffer().capacity() > MAX_RETAINED_CAPACITY) {
+                output = new StringWriter(1024);
+            } else {
+                output.getBuffer().setLength(0);
+            }
+        }
+    }
+
     private static class PacketDumpByteBuf extends FriendlyByteBuf {
         private static final Gson GSON = new GsonBuilder()
             .registerTypeAdapter(UUID.class, new UUIDTypeAdapter())
@@ -103,13 +291,15 @@ public class PacketDumper {
             .registerTypeAdapter(PropertyMap.class, new PropertyMap.Serializer())
             .registerTypeAdapter(ProfileSearchResultsResponse.class, new ProfileSearchResultsResponse.Serializer())
             .create();
-        private static final DateFormat ISO_8601 = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm'Z'");
+        private static final DateTimeFormatter ISO_8601 = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm'Z'").withZone(ZoneOffset.UTC);
 
         private final JsonWriter writer;
+        private final boolean includeNbt;
 
-        public PacketDumpByteBuf(JsonWriter writer) {
+        public PacketDumpByteBuf(JsonWriter writer, boolean includeNbt) {
             super(Unpooled.buffer(0, 0)); // Uses singleton EmptyByteBuf
             this.writer = writer;
+            this.includeNbt = includeNbt;
         }
 
         @Override
@@ -118,8 +308,10 @@ public class PacketDumper {
             return dump("withCodec", () -> {
                 dumpValueClass(value);
                 writer.name("value").value(Objects.toString(value));
-                writer.name("encodedNbt").value(
-                    codec.encodeStart(ops, value).getOrThrow(message -> new EncoderException("Failed to encode: " + message + " " + value)).toString());
+                if (includeNbt) {
+                    writer.name("encodedNbt").value(
+                        codec.encodeStart(ops, value).getOrThrow(message -> new EncoderException("Failed to encode: " + message + " " + value)).toString());
+                }
                 writer.name("encodedJson");
                 GSON.toJson(
                     codec.encodeStart(JsonOps.INSTANCE, value).getOrThrow(message -> new EncoderException("Failed to encode: " + message + " " + value)),
@@ -184,10 +376,7 @@ public class PacketDumper {
         @Override
         public <E extends Enum<E>> void writeEnumSet(EnumSet<E> enumSet, Class<E> enumClass) {
             dump("enumSet", () -> {
-                String className = enumClass.getName().replace('.', '/');
-                String mojmapClassName = Objects.requireNonNullElse(MappingsHelper.namedOrIntermediaryToMojmap_class(className), className);
-                mojmapClassName = mojmapClassName.substring(mojmapClassName.lastIndexOf('/') + 1);
-                writer.name("enumClass").value(mojmapClassName);
+                writer.name("enumClass").value(getMojmapSimpleName(enumClass));
                 writer.name("size").value(enumSet.size());
                 writer.name("elements").beginArray();
                 for (final E element : enumSet) {
@@ -319,11 +508,8 @@ public class PacketDumper {
         @Override
         public @NotNull PacketDumpByteBuf writeEnum(Enum<?> value) {
             return dump("enum", () -> {
-                String className = value.getDeclaringClass().getName().replace('.', '/');
-                String mojmapClassName = Objects.requireNonNullElse(MappingsHelper.namedOrIntermediaryToMojmap_class(className), className);
-                mojmapClassName = mojmapClassName.substring(mojmapClassName.lastIndexOf('/') + 1);
                 writer
-                    .name("enum").value(mojmapClassName)
+                    .name("enum").value(getMojmapSimpleName(value.getDeclaringClass()))
                     .name("value").value(value.name());
             });
         }
@@ -387,7 +573,7 @@ public class PacketDumper {
 
         @Override
         public @NotNull PacketDumpByteBuf writeDate(Date time) {
-            return dumpSimple("date", ISO_8601.format(time), JsonWriter::value);
+            return dumpSimple("date", ISO_8601.format(time.toInstant()), JsonWriter::value);
         }
 
         @Override
@@ -606,10 +792,7 @@ public class PacketDumper {
         private void dumpValueClass(Object value) throws IOException {
             writer.name("valueClass");
             if (value != null) {
-                String className = value.getClass().getName().replace('.', '/');
-                String mojmapClassName = Objects.requireNonNullElse(MappingsHelper.namedOrIntermediaryToMojmap_class(className), className);
-                mojmapClassName = mojmapClassName.substring(mojmapClassName.lastIndexOf('/') + 1);
-                writer.value(mojmapClassName);
+                writer.value(getMojmapSimpleName(value.getClass()));
             } else {
                 writer.nullValue();
             }
@@ -1,8 +1,10 @@
 package net.earthcomputer.clientcommands.features;
 
 import com.demonwav.mcdev.annotations.Translatable;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import net.earthcomputer.clientcommands.Configs;
 import net.earthcomputer.clientcommands.util.CUtil;
+import net.earthcomputer.clientcommands.util.CrackerExecutor;
 import net.earthcomputer.clientcommands.util.MultiVersionCompat;
 import net.earthcomputer.clientcommands.command.ClientCommandHelper;
 import net.earthcomputer.clientcommands.event.ClientLevelEvents;
@@ -28,14 +30,17 @@ import net.minecraft.world.item.enchantment.EnchantmentHelper;
 import net.minecraft.world.item.enchantment.Enchantments;
 import net.minecraft.world.phys.Vec3;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.OptionalLong;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -48,6 +53,10 @@ public class PlayerRandCracker {
     public static final long ADDEND = 0xbL;
     public static final long MASK = (1L << 48) - 1;
 
+    // throwing an item makes four calls to the player RNG
+    private static final long THROW_MULTIPLIER = getJumpMultiplier(4);
+    private static final long THROW_ADDEND = getJumpAddend(4);
+
     private static long seed;
 
     private static int next(int bits) {
@@ -85,6 +94,46 @@ public class PlayerRandCracker {
         return seed;
     }
 
+    /**
+     * Returns the seed after the given number of calls to the RNG, in O(log n) time
+     */
+    public static long advanceSeed(long seed, long calls) {
+        return (seed * getJumpMultiplier(calls) + getJumpAddend(calls)) & MASK;
+    }
+
+    /**
+     * Returns the seed after the given number of items have been thrown
+     */
+    public static long advanceSeedByThrows(long seed, long throwCount) {
+        return advanceSeed(seed, throwCount * 4);
+    }
+
+    private static long getJumpMultiplier(long calls) {
+        long multiplier = 1;
+        long stepMultiplier = MULTIPLIER;
+        for (; calls != 0; calls >>>= 1) {
+            if ((calls & 1) != 0) {
+                multiplier *= stepMultiplier;
+            }
+            stepMultiplier *= stepMultiplier;
+        }
+        return multiplier & MASK;
+    }
+
+    private static long getJumpAddend(long calls) {
+        long addend = 0;
+        long stepMultiplier = MULTIPLIER;
+        long stepAddend = ADDEND;
+        for (; calls != 0; calls >>>= 1) {
+            if ((calls & 1) != 0) {
+                addend = addend * stepMultiplier + stepAddend;
+            }
+            stepAddend *= stepMultiplier + 1;
+            stepMultiplier *= stepMultiplier;
+        }
+        return addend & MASK;
+    }
+
 
     // ===== RESET DETECTION + PLAYER RNG MAINTENANCE ===== //
 
@@ -384,16 +433,7 @@ public class PlayerRandCracker {
         }
         Configs.playerCrackState = CrackState.CRACKED;
 
-        long seed = PlayerRandCracker.seed;
-        Random rand = new Random(seed ^ MULTIPLIER);
-
-        int itemsNeeded = 0;
-        for (; itemsNeeded <= max && !condition.test(rand); itemsNeeded++) {
-            for (int i = 0; i < 4; i++) {
-                seed = (seed * MULTIPLIER + ADDEND) & MASK;
-            }
-            rand.setSeed(seed ^ MULTIPLIER);
-        }
+        int itemsNeeded = getItemsNeededParallel(seed, condition, max);
         if (itemsNeeded > max) {
             return new ThrowItemsResult(ThrowItemsResult.Type.NOT_POSSIBLE, itemsNeeded);
         }
@@ -403,7 +443,67 @@ public class PlayerRandCracker {
             }
         }
 
-        return new ThrowItemsResult(ThrowItemsResult.Type.SUCCESS);
+        return ThrowItemsResult.success(itemsNeeded);
+    }
+
+    /**
+     * Returns the number of items that need to be thrown from the given player seed until the condition is met, or
+     * {@code max + 1} if it isn't met within {@code max} throws.
+     */
+    public static int getItemsNeeded(long seed, Predicate<Random> condition, int max) {
+        Random rand = new Random(seed ^ MULTIPLIER);
+
+        int itemsNeeded = 0;
+        for (; itemsNeeded <= max && !condition.test(rand); itemsNeeded++) {
+            seed = (seed * THROW_MULTIPLIER + THROW_ADDEND) & MASK;
+            rand.setSeed(seed ^ MULTIPLIER);
+        }
+        return itemsNeeded;
+    }
+
+    /**
+     * Like {@link #getItemsNeeded}, but splits large searches into segments which are searched on the
+     * {@link CrackerExecutor} pool as well as the calling thread, jumping straight to the seed at the start of each
+     * segment. Segments after a satisfying throw count that has already been found are skipped, and the smallest one
+     * is returned.
+     *
+     * <p>The condition may be tested on several threads at once, so it must not have side effects. This method blocks
+     * until the search is done, so the condition may read the client level if called from the main thread.
+     */
+    public static int getItemsNeededParallel(long seed, Predicate<Random> condition, int max) {
+        if (max < ThrowSearch.PARALLEL_THRESHOLD || CrackerExecutor.getParallelism() == 1) {
+            return getItemsNeeded(seed, condition, max);
+        }
+        return getItemsNeededSegmented(seed, condition, max, CrackerExecutor.getParallelism());
+    }
+
+    /**
+     * The segmented search of {@link #getItemsNeededParallel}, with at most the given number of helper jobs. Exposed
+     * so that it can be tested regardless of the number of CPUs.
+     */
+    @VisibleForTesting
+    public static int getItemsNeededSegmented(long seed, Predicate<Random> condition, int max, int maxHelpers) {
+        ThrowSearch search = new ThrowSearch(seed, condition, max);
+        int helperCount = Math.min(maxHelpers, search.segmentCount - 1);
+        List<CrackerExecutor.Job<?>> helpers = new ArrayList<>(helperCount);
+        for (int i = 0; i < helperCount; i++) {
+            try {
+                helpers.add(CrackerExecutor.submit(CrackerExecutor.Priority.HIGH, token -> {
+                    search.run();
+                    return null;
+                }));
+            } catch (CommandSyntaxException e) {
+                // the queue is full, so search with fewer threads
+                break;
+            }
+        }
+
+        // the calling thread searches too, so the search finishes even if the helpers are stuck behind other jobs
+        search.run();
+        for (CrackerExecutor.Job<?> helper : helpers) {
+            helper.cancel();
+        }
+        return search.awaitResult();
     }
 
     public static boolean throwItem() {
@@ -481,15 +581,87 @@ public class PlayerRandCracker {
         }
     }
 
+    private static final class ThrowSearch {
+        private static final int PARALLEL_THRESHOLD = 4096;
+        private static final int SEGMENT_SIZE = 1024;
+
+        private final long startSeed;
+        private final Predicate<Random> condition;
+        private final int end;
+        private final int segmentCount;
+        private final AtomicInteger nextSegment = new AtomicInteger();
+        private final AtomicInteger activeSearchers = new AtomicInteger();
+        private final AtomicInteger itemsNeeded;
+
+        private ThrowSearch(long startSeed, Predicate<Random> condition, int max) {
+            this.startSeed = startSeed;
+            this.condition = condition;
+            this.end = max + 1;
+            this.segmentCount = (end + SEGMENT_SIZE - 1) / SEGMENT_SIZE;
+            this.itemsNeeded = new AtomicInteger(end);
+        }
+
+        /**
+         * Searches segments in ascending order until there are none left which could contain a smaller result
+         */
+        private void run() {
+            activeSearchers.incrementAndGet();
+            try {
+                int segment;
+                while ((segment = nextSegment.getAndIncrement()) < segmentCount) {
+                    int from = segment * SEGMENT_SIZE;
+                    if (from >= itemsNeeded.get()) {
+                        return;
+                    }
+                    searchSegment(from, Math.min(from + SEGMENT_SIZE, end));
+                }
+            } finally {
+                activeSearchers.decrementAndGet();
+            }
+        }
+
+        private void searchSegment(int from, int to) {
+            long seed = advanceSeedByThrows(startSeed, from);
+            Random rand = new Random(seed ^ MULTIPLIER);
+            for (int throwCount = from; throwCount < to; throwCount++) {
+                if (condition.test(rand)) {
+                    itemsNeeded.accumulateAndGet(throwCount, Math::min);
+                    return;
+                }
+                seed = (seed * THROW_MULTIPLIER + THROW_ADDEND) & MASK;
+                rand.setSeed(seed ^ MULTIPLIER);
+            }
+        }
+
+        /**
+         * Waits for the segments that other threads are still searching. Segments are claimed in ascending order, so
+         * once the calling thread has run out of segments, nothing claimed later can contain a smaller result.
+         */
+        private int awaitResult() {
+            while (activeSearchers.get() != 0) {
+                Thread.onSpinWait();
+            }
+            return itemsNeeded.get();
+        }
+    }
+
     public static class ThrowItemsResult {
         private final Type type;
         private final MutableComponent message;
 
+        private int itemsThrown;
+
         public ThrowItemsResult(Type type, Object... args) {
             this.type = type;
             this.message = Component.translatable(type.getTranslationKey(), args);
         }
 
+        public static ThrowItemsResult success(int itemsThrown) {
+            ThrowItemsResult result = new ThrowItemsResult(Type.SUCCESS);
+            result.itemsThrown = itemsThrown;
+            return result;
+        }
+
         public Type getType() {
             return type;
         }
@@ -498,6 +670,13 @@ public class PlayerRandCracker {
             return message;
         }
 
+        /**
+         * The number of items that were thrown, if successful
+         */
+        public int getItemsThrown() {
+            return itemsThrown;
+        }
+
         public enum Type {
             NOT_ENOUGH_ITEMS(false, "playerManip.notEnoughItems"),
             NOT_POSSIBLE(false, "playerManip.throwError"),
@@ -0,0 +1,971 @@
+package net.earthcomputer.clientcommands.features;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import net.earthcomputer.clientcommands.util.CUtil;
+import net.minecraft.client.Minecraft;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.util.Mth;
+import net.minecraft.util.RandomSource;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.EntityDimensions;
+import net.minecraft.world.entity.EntityType;
+import net.minecraft.world.entity.projectile.FishingHook;
+import net.minecraft.world.entity.projectile.ProjectileUtil;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.enchantment.Enchantments;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.BaseFireBlock;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.border.WorldBorder;
+import net.minecraft.world.level.levelgen.LegacyRandomSource;
+import net.minecraft.world.level.material.FluidState;
+import net.minecraft.world.level.material.Fluids;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.HitResult;
+import net.minecraft.world.phys.Vec3;
+import net.minecraft.world.phys.shapes.BooleanOp;
+import net.minecraft.world.phys.shapes.CollisionContext;
+import net.minecraft.world.phys.shapes.Shapes;
+import net.minecraft.world.phys.shapes.VoxelShape;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Simulates the server-side ticking of a fishing bobber, to predict when and where it will catch something.
+ *
+ * <p>The state is kept in primitive fields so that ticking a bobber which is bobbing in water doesn't allocate. The
+ * block states and collision shapes around the bobber are cached column by column, and only looked up again once it
+ * moves out of the cached area. Collisions with the cached shapes follow the same steps as vanilla, so the result is
+ * the same. While flying, or while entities or the world border are nearby, collisions go through the vanilla code
+ * instead. A bobber is simulated from start to finish within a single tick, so the blocks can't change under the cache.
+ */
+public final class SimulatedFishingBobber {
+    public static final EntityDimensions DIMENSIONS = EntityType.FISHING_BOBBER.getDimensions();
+    private static final double HALF_WIDTH = DIMENSIONS.width() / 2.0F;
+    private static final double HEIGHT = DIMENSIONS.height();
+
+    private static final double COLLISION_EPSILON = 1.0E-7;
+    private static final int COLLISION_CACHE_MARGIN = 2;
+
+    private final Environment environment;
+    private final RandomSource random;
+    private final int lureLevel;
+    private final BlockPos.MutableBlockPos mutablePos = new BlockPos.MutableBlockPos();
+
+    // state variables
+    private double x;
+    private double y;
+    private double z;
+    private double minX;
+    private double minY;
+    private double minZ;
+    private double maxX;
+    private double maxY;
+    private double maxZ;
+    private double velX;
+    private double velY;
+    private double velZ;
+    private boolean onGround;
+    private State state = State.FLYING;
+    private int hookCountdown;
+    private int fishTravelCountdown;
+    private boolean inOpenWater = true;
+    private final LongLinkedOpenHashSet openWaterViolations = new LongLinkedOpenHashSet();
+    private int outOfOpenWaterTicks;
+    private boolean caughtFish;
+    private boolean horizontalCollision;
+    private boolean verticalCollision;
+    private int waitCountdown;
+    private boolean touchingWater;
+    private boolean firstUpdate;
+
+    private float fishAngle;
+
+    // scratch space, reused between ticks
+    private final LongArrayList aboveWaterBlocks = new LongArrayList();
+    private double collidedX;
+    private double collidedY;
+    private double collidedZ;
+
+    // collision cache, the blocks between the min (inclusive) and max (exclusive) coordinates, stored column by column
+    private int cacheMinX;
+    private int cacheMinY;
+    private int cacheMinZ;
+    private int cacheMaxX;
+    private int cacheMaxY;
+    private int cacheMaxZ;
+    private boolean hasCollisionCache = false;
+    private boolean cacheHasNonBlockColliders;
+    private BlockState[] cachedStates = new BlockState[0];
+    /**
+     * The collision shapes moved to their block positions, or {@code null} for blocks whose shape depends on the
+     * position of the bobber and has to be looked up each time
+     */
+    private VoxelShape[] cachedShapes = new VoxelShape[0];
+    private boolean[] cachedFullBlocks = new boolean[0];
+    /**
+     * Whether each column has any block that may collide with the bobber, so that empty columns can be skipped
+     */
+    private boolean[] cachedColumnColliders = new boolean[0];
+    private VoxelShape[] candidateShapes = new VoxelShape[16];
+    private int candidateShapeCount;
+
+    // output variables
+    @Nullable
+    private String failedReason;
+
+    @VisibleForTesting
+    public SimulatedFishingBobber(Environment environment, long seed, int lureLevel, double x, double y, double z, double velX, double velY, double velZ) {
+        this.environment = environment;
+        this.random = RandomSource.create(seed ^ 0x5deece66dL);
+        // entity UUID
+        Mth.createInsecureUUID(random);
+
+        // entity yaw and pitch (ProjectileEntity.setVelocity)
+        random.triangle(0, 1);
+        random.triangle(0, 1);
+        random.triangle(0, 1);
+
+        this.lureLevel = lureLevel;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.velX = velX;
+        this.velY = velY;
+        this.velZ = velZ;
+        updateBoundingBox();
+    }
+
+    public static SimulatedFishingBobber create(long seed, ItemStack tool, Vec3 pos, Vec3 velocity) {
+        Level level = Objects.requireNonNull(Minecraft.getInstance().level);
+        FishingHook fakeEntity = new FishingHook(Objects.requireNonNull(Minecraft.getInstance().player), level, 0, 0);
+        int lureLevel = CUtil.getEnchantmentLevel(level.registryAccess(), Enchantments.LURE, tool);
+        return new SimulatedFishingBobber(new LevelEnvironment(level, fakeEntity), seed, lureLevel, pos.x, pos.y, pos.z, velocity.x, velocity.y, velocity.z);
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getZ() {
+        return z;
+    }
+
+    public Vec3 getPos() {
+        return new Vec3(x, y, z);
+    }
+
+    public Vec3 getVelocity() {
+        return new Vec3(velX, velY, velZ);
+    }
+
+    public boolean isInOpenWater() {
+        return inOpenWater;
+    }
+
+    public long getRandomSeed() {
+        return ((LegacyRandomSource) random).seed.get();
+    }
+
+    @Nullable
+    public String getFailedReason() {
+        return failedReason;
+    }
+
+    public List<BlockPos> getOpenWaterViolations() {
+        List<BlockPos> violations = new ArrayList<>(openWaterViolations.size());
+        for (long pos : openWaterViolations) {
+            violations.add(BlockPos.of(pos));
+        }
+        return violations;
+    }
+
+    public boolean canCatchFish() {
+        return hookCountdown > 0;
+    }
+
+    private void updateBoundingBox() {
+        minX = x - HALF_WIDTH;
+        minY = y;
+        minZ = z - HALF_WIDTH;
+        maxX = x + HALF_WIDTH;
+        maxY = y + HEIGHT;
+        maxZ = z + HALF_WIDTH;
+    }
+
+    public void tick() {
+        onBaseTick();
+
+        if (this.onGround) {
+            failedReason = "onGround";
+        }
+
+        float f = 0.0F;
+        int blockX = Mth.floor(this.x);
+        int blockY = Mth.floor(this.y);
+        int blockZ = Mth.floor(this.z);
+        FluidState fluidState = environment.getFluidState(mutablePos.set(blockX, blockY, blockZ));
+        boolean isWater = isWater(fluidState);
+        if (isWater) {
+            f = getWaterHeight(fluidState, blockX, blockY, blockZ);
+        }
+
+        boolean bl = f > 0.0F;
+        if (this.state == State.FLYING) {
+            if (bl) {
+                this.velX *= 0.3D;
+                this.velY *= 0.2D;
+                this.velZ *= 0.3D;
+                this.state = State.BOBBING;
+                return;
+            }
+
+            this.checkForCollision();
+        } else {
+            if (this.state == State.BOBBING) {
+                double d = this.y + this.velY - (double) blockY - (double) f;
+                if (Math.abs(d) < 0.01D) {
+                    d += Math.signum(d) * 0.1D;
+                }
+
+                this.velX *= 0.9D;
+                this.velY = this.velY - d * (double) this.random.nextFloat() * 0.2D;
+                this.velZ *= 0.9D;
+                if (this.hookCountdown <= 0 && this.fishTravelCountdown <= 0) {
+                    this.inOpenWater = true;
+                } else {
+                    this.inOpenWater &= this.outOfOpenWaterTicks < 10 & this.isOpenOrWaterAround(blockX, blockY, blockZ);
+                }
+
+                if (bl) {
+                    this.outOfOpenWaterTicks = Math.max(0, this.outOfOpenWaterTicks - 1);
+                    // if caughtFish, the bobber is dragged down, which we don't care about
+
+                    this.tickFishingLogic(blockX, blockY, blockZ);
+                } else {
+                    this.outOfOpenWaterTicks = Math.min(10, this.outOfOpenWaterTicks + 1);
+                }
+            }
+        }
+
+        if (!isWater) {
+            this.velY -= 0.03D;
+        }
+
+        this.move(this.velX, this.velY, this.velZ);
+        if (this.state == State.FLYING && (this.onGround || this.horizontalCollision)) {
+            this.velX = 0;
+            this.velY = 0;
+            this.velZ = 0;
+        }
+
+        double e = 0.92D;
+        this.velX *= e;
+        this.velY *= e;
+        this.velZ *= e;
+
+        updateBoundingBox();
+    }
+
+    // the vanilla checks use the water fluid tag, but these are equivalent and don't need tags to be bound
+    private static boolean isWater(FluidState fluidState) {
+        return fluidState.getType().isSame(Fluids.WATER);
+    }
+
+    private float getWaterHeight(FluidState fluidState, int x, int y, int z) {
+        // FlowingFluid.getHeight without allocating the position above
+        FluidState fluidAbove = environment.getFluidState(mutablePos.set(x, y + 1, z));
+        return fluidState.getType().isSame(fluidAbove.getType()) ? 1.0F : fluidState.getOwnHeight();
+    }
+
+    private void onBaseTick() {
+        this.checkWaterState();
+
+        this.firstUpdate = false;
+    }
+
+    private void checkWaterState() {
+        if (this.updateMovementInWater()) {
+            if (!this.touchingWater && !this.firstUpdate) {
+                this.onSwimmingStart();
+            }
+
+            this.touchingWater = true;
+        } else {
+            if (this.touchingWater) {
+                failedReason = "outOfWater";
+            }
+            this.touchingWater = false;
+        }
+    }
+
+    private void onSwimmingStart() {
+        // splash sound volume and pitch
+        random.nextFloat();
+        random.nextFloat();
+
+        // bubble particles
+        for (int j = 0; (float) j < 1.0F + DIMENSIONS.width() * 20.0F; ++j) {
+            random.nextDouble();
+            random.nextDouble();
+            random.nextDouble();
+        }
+
+        // splash particles
+        for (int j = 0; (float) j < 1.0F + DIMENSIONS.width() * 20.0F; ++j) {
+            random.nextDouble();
+            random.nextDouble();
+        }
+    }
+
+    private boolean updateMovementInWater() {
+        double boxMinX = this.minX + 0.001D;
+        double boxMinY = this.minY + 0.001D;
+        double boxMinZ = this.minZ + 0.001D;
+        double boxMaxX = this.maxX - 0.001D;
+        double boxMaxY = this.maxY - 0.001D;
+        double boxMaxZ = this.maxZ - 0.001D;
+        int i = Mth.floor(boxMinX);
+        int j = Mth.ceil(boxMaxX);
+        int k = Mth.floor(boxMinY);
+        int l = Mth.ceil(boxMaxY);
+        int m = Mth.floor(boxMinZ);
+        int n = Mth.ceil(boxMaxZ);
+        if (!environment.hasChunksAt(i, k, m, j, l, n)) {
+            return false;
+        }
+
+        // the bobber isn't pushed by flowing water, since the flow vector is always zero for it
+        boolean touchingWater = false;
+        for (int p = i; p < j; ++p) {
+            for (int q = k; q < l; ++q) {
+                for (int r = m; r < n; ++r) {
+                    FluidState fluidState = environment.getFluidState(mutablePos.set(p, q, r));
+                    if (isWater(fluidState)) {
+                        double f = (float) q + getWaterHeight(fluidState, p, q, r);
+                        if (f >= boxMinY) {
+                            touchingWater = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        return touchingWater;
+    }
+
+    private void checkForCollision() {
+        if (environment.hitsSomethingWhileFlying(getPos(), new Vec3(velX, velY, velZ))) {
+            failedReason = "collision";
+        }
+    }
+
+    private void move(double movementX, double movementY, double movementZ) {
+        this.collide(movementX, movementY, movementZ);
+        double newMovementX = collidedX;
+        double newMovementY = collidedY;
+        double newMovementZ = collidedZ;
+        if (newMovementX * newMovementX + newMovementY * newMovementY + newMovementZ * newMovementZ > 1.0E-7D) {
+            this.minX += newMovementX;
+            this.minY += newMovementY;
+            this.minZ += newMovementZ;
+            this.maxX += newMovementX;
+            this.maxY += newMovementY;
+            this.maxZ += newMovementZ;
+            this.x = (minX + maxX) / 2.0D;
+            this.y = minY;
+            this.z = (minZ + maxZ) / 2.0D;
+        }
+
+        this.horizontalCollision = !Mth.equal(movementX, newMovementX) || !Mth.equal(movementZ, newMovementZ);
+        this.verticalCollision = movementY != newMovementY;
+        this.onGround = this.verticalCollision && movementY < 0.0D;
+        double oldVelX = this.velX;
+        double oldVelY = this.velY;
+        double oldVelZ = this.velZ;
+        if (movementX != newMovementX) {
+            this.velX = 0.0D;
+            this.velY = oldVelY;
+            this.velZ = oldVelZ;
+        }
+
+        if (movementZ != newMovementZ) {
+            this.velX = oldVelX;
+            this.velY = oldVelY;
+            this.velZ = 0.0D;
+        }
+
+        if (movementY != newMovementY) {
+            // block.onLanded
+            this.velY *= 0.0D;
+        }
+
+        float i = this.getVelocityMultiplier();
+        this.velX *= i;
+        this.velZ *= i;
+        if (this.isTouchingFire()) {
+            failedReason = "fire";
+        }
+    }
+
+    private boolean isTouchingFire() {
+        int minBlockX = Mth.floor(this.minX + 0.001D);
+        int minBlockY = Mth.floor(this.minY + 0.001D);
+        int minBlockZ = Mth.floor(this.minZ + 0.001D);
+        int maxBlockX = Mth.floor(this.maxX - 0.001D);
+        int maxBlockY = Mth.floor(this.maxY - 0.001D);
+        int maxBlockZ = Mth.floor(this.maxZ - 0.001D);
+        if (!environment.hasChunksAt(minBlockX, minBlockY, minBlockZ, maxBlockX, maxBlockY, maxBlockZ)) {
+            return false;
+        }
+        for (int blockX = minBlockX; blockX <= maxBlockX; blockX++) {
+            for (int blockY = minBlockY; blockY <= maxBlockY; blockY++) {
+                for (int blockZ = minBlockZ; blockZ <= maxBlockZ; blockZ++) {
+                    BlockState blockState = environment.getBlockState(mutablePos.set(blockX, blockY, blockZ));
+                    // equivalent to the fire block tag
+                    if (blockState.getBlock() instanceof BaseFireBlock || blockState.is(Blocks.LAVA)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stores the movement after collisions in {@link #collidedX}, {@link #collidedY} and {@link #collidedZ}
+     */
+    private void collide(double movementX, double movementY, double movementZ) {
+        if (movementX * movementX + movementY * movementY + movementZ * movementZ == 0.0D) {
+            collidedX = movementX;
+            collidedY = movementY;
+            collidedZ = movementZ;
+            return;
+        }
+
+        if (state == State.FLYING) {
+            collideVanilla(movementX, movementY, movementZ);
+            return;
+        }
+
+        // the box swept out by the movement, and the range of blocks vanilla checks for collisions with it
+        double sweptMinX = movementX < 0 ? minX + movementX : minX;
+        double sweptMinY = movementY < 0 ? minY + movementY : minY;
+        double sweptMinZ = movementZ < 0 ? minZ + movementZ : minZ;
+        double sweptMaxX = movementX > 0 ? maxX + movementX : maxX;
+        double sweptMaxY = movementY > 0 ? maxY + movementY : maxY;
+        double sweptMaxZ = movementZ > 0 ? maxZ + movementZ : maxZ;
+        int cursorMinX = Mth.floor(sweptMinX - COLLISION_EPSILON) - 1;
+        int cursorMinY = Mth.floor(sweptMinY - COLLISION_EPSILON) - 1;
+        int cursorMinZ = Mth.floor(sweptMinZ - COLLISION_EPSILON) - 1;
+        int cursorMaxX = Mth.floor(sweptMaxX + COLLISION_EPSILON) + 1;
+        int cursorMaxY = Mth.floor(sweptMaxY + COLLISION_EPSILON) + 1;
+        int cursorMaxZ = Mth.floor(sweptMaxZ + COLLISION_EPSILON) + 1;
+
+        if (!hasCollisionCache
+            || cursorMinX < cacheMinX || cursorMinY < cacheMinY || cursorMinZ < cacheMinZ
+            || cursorMaxX >= cacheMaxX || cursorMaxY >= cacheMaxY || cursorMaxZ >= cacheMaxZ
+        ) {
+            rebuildCollisionCache(cursorMinX, cursorMinY, cursorMinZ, cursorMaxX, cursorMaxY, cursorMaxZ);
+        }
+
+        if (cacheHasNonBlockColliders) {
+            collideVanilla(movementX, movementY, movementZ);
+            return;
+        }
+
+        findCandidateShapes(cursorMinX, cursorMinY, cursorMinZ, cursorMaxX, cursorMaxY, cursorMaxZ, sweptMinX, sweptMinY, sweptMinZ, sweptMaxX, sweptMaxY, sweptMaxZ);
+
+        if (candidateShapeCount == 0) {
+            // Nothing can block the movement. Vanilla still has the world border shape in the list, and Shapes.collide
+            // rounds tiny movements down to zero before checking each shape.
+            collidedX = Math.abs(movementX) < COLLISION_EPSILON ? 0.0D : movementX;
+            collidedY = Math.abs(movementY) < COLLISION_EPSILON ? 0.0D : movementY;
+            collidedZ = Math.abs(movementZ) < COLLISION_EPSILON ? 0.0D : movementZ;
+            return;
+        }
+
+        // same axis order as Entity.collideWithShapes
+        AABB box = new AABB(minX, minY, minZ, maxX, maxY, maxZ);
+        if (movementY != 0.0D) {
+            movementY = collideAlongAxis(Direction.Axis.Y, box, movementY);
+            if (movementY != 0.0D) {
+                box = box.move(0.0D, movementY, 0.0D);
+            }
+        }
+        boolean zFirst = Math.abs(movementX) < Math.abs(movementZ);
+        if (zFirst && movementZ != 0.0D) {
+            movementZ = collideAlongAxis(Direction.Axis.Z, box, movementZ);
+            if (movementZ != 0.0D) {
+                box = box.move(0.0D, 0.0D, movementZ);
+            }
+        }
+        if (movementX != 0.0D) {
+            movementX = collideAlongAxis(Direction.Axis.X, box, movementX);
+            if (!zFirst && movementX != 0.0D) {
+                box = box.move(movementX, 0.0D, 0.0D);
+            }
+        }
+        if (!zFirst && movementZ != 0.0D) {
+            movementZ = collideAlongAxis(Direction.Axis.Z, box, movementZ);
+        }
+        collidedX = movementX;
+        collidedY = movementY;
+        collidedZ = movementZ;
+    }
+
+    /**
+     * Equivalent to {@link Shapes#collide} with the world border shape followed by the candidate shapes
+     */
+    private double collideAlongAxis(Direction.Axis axis, AABB box, double movement) {
+        if (Math.abs(movement) < COLLISION_EPSILON) {
+            return 0.0D;
+        }
+        for (int i = 0; i < candidateShapeCount; i++) {
+            if (Math.abs(movement) < COLLISION_EPSILON) {
+                return 0.0D;
+            }
+            movement = candidateShapes[i].collide(axis, box, movement);
+        }
+        return movement;
+    }
+
+    /**
+     * Finds the same block collision shapes, in the same order, as vanilla's BlockCollisions would for the swept box
+     */
+    private void findCandidateShapes(
+        int cursorMinX, int cursorMinY, int cursorMinZ, int cursorMaxX, int cursorMaxY, int cursorMaxZ,
+        double sweptMinX, double sweptMinY, double sweptMinZ, double sweptMaxX, double sweptMaxY, double sweptMaxZ
+    ) {
+        candidateShapeCount = 0;
+        VoxelShape sweptShape = null;
+        for (int blockZ = cursorMinZ; blockZ <= cursorMaxZ; blockZ++) {
+            for (int blockY = cursorMinY; blockY <= cursorMaxY; blockY++) {
+                for (int blockX = cursorMinX; blockX <= cursorMaxX; blockX++) {
+                    if (!cachedColumnColliders[getCacheColumn(blockX, blockZ)]) {
+                        continue;
+                    }
+                    int cursorType = (blockX == cursorMinX || blockX == cursorMaxX ? 1 : 0)
+                        + (blockY == cursorMinY || blockY == cursorMaxY ? 1 : 0)
+                        + (blockZ == cursorMinZ || blockZ == cursorMaxZ ? 1 : 0);
+                    if (cursorType == 3) {
+                        continue;
+                    }
+                    int index = getCacheIndex(blockX, blockY, blockZ);
+                    BlockState blockState = cachedStates[index];
+                    if (cursorType == 1 && !blockState.hasLargeCollisionShape() || cursorType == 2 && !blockState.is(Blocks.MOVING_PISTON)) {
+                        continue;
+                    }
+
+                    VoxelShape shape = cachedShapes[index];
+                    boolean fullBlock = cachedFullBlocks[index];
+                    if (shape == null) {
+                        VoxelShape unmovedShape = environment.getCollisionShape(blockState, mutablePos.set(blockX, blockY, blockZ), x, y, z);
+                        fullBlock = unmovedShape == Shapes.block();
+                        shape = unmovedShape.move(blockX, blockY, blockZ);
+                    }
+                    if (fullBlock) {
+                        if (!(sweptMinX < blockX + 1.0D && sweptMaxX > blockX && sweptMinY < blockY + 1.0D && sweptMaxY > blockY && sweptMinZ < blockZ + 1.0D && sweptMaxZ > blockZ)) {
+                            continue;
+                        }
+                    } else {
+                        if (shape.isEmpty()) {
+                            continue;
+                        }
+                        if (sweptShape == null) {
+                            sweptShape = Shapes.create(sweptMinX, sweptMinY, sweptMinZ, sweptMaxX, sweptMaxY, sweptMaxZ);
+                        }
+                        if (!Shapes.joinIsNotEmpty(shape, sweptShape, BooleanOp.AND)) {
+                            continue;
+                        }
+                    }
+
+                    if (candidateShapeCount == candidateShapes.length) {
+                        candidateShapes = Arrays.copyOf(candidateShapes, candidateShapeCount * 2);
+                    }
+                    candidateShapes[candidateShapeCount++] = shape;
+                }
+            }
+        }
+    }
+
+    private void rebuildCollisionCache(int cursorMinX, int cursorMinY, int cursorMinZ, int cursorMaxX, int cursorMaxY, int cursorMaxZ) {
+        hasCollisionCache = true;
+        cacheMinX = cursorMinX - COLLISION_CACHE_MARGIN;
+        cacheMinY = cursorMinY - COLLISION_CACHE_MARGIN;
+        cacheMinZ = cursorMinZ - COLLISION_CACHE_MARGIN;
+        cacheMaxX = cursorMaxX + COLLISION_CACHE_MARGIN + 1;
+        cacheMaxY = cursorMaxY + COLLISION_CACHE_MARGIN + 1;
+        cacheMaxZ = cursorMaxZ + COLLISION_CACHE_MARGIN + 1;
+        cacheHasNonBlockColliders = environment.hasNonBlockColliders(new AABB(cacheMinX, cacheMinY, cacheMinZ, cacheMaxX, cacheMaxY, cacheMaxZ));
+
+        int columnCount = (cacheMaxX - cacheMinX) * (cacheMaxZ - cacheMinZ);
+        int blockCount = columnCount * (cacheMaxY - cacheMinY);
+        if (cachedStates.length < blockCount) {
+            cachedStates = new BlockState[blockCount];
+            cachedShapes = new VoxelShape[blockCount];
+            cachedFullBlocks = new boolean[blockCount];
+        }
+        if (cachedColumnColliders.length < columnCount) {
+            cachedColumnColliders = new boolean[columnCount];
+        }
+
+        for (int blockX = cacheMinX; blockX < cacheMaxX; blockX++) {
+            for (int blockZ = cacheMinZ; blockZ < cacheMaxZ; blockZ++) {
+                boolean columnColliders = false;
+                for (int blockY = cacheMinY; blockY < cacheMaxY; blockY++) {
+                    int index = getCacheIndex(blockX, blockY, blockZ);
+                    mutablePos.set(blockX, blockY, blockZ);
+                    BlockState blockState = environment.getBlockState(mutablePos);
+                    cachedStates[index] = blockState;
+                    if (blockState.getBlock().hasDynamicShape()) {
+                        // e.g. scaffolding and powder snow depend on where the bobber is
+                        cachedShapes[index] = null;
+                        cachedFullBlocks[index] = false;
+                        columnColliders = true;
+                    } else {
+                        VoxelShape shape = environment.getCollisionShape(blockState, mutablePos, x, y, z);
+                        cachedFullBlocks[index] = shape == Shapes.block();
+                        cachedShapes[index] = shape.isEmpty() ? shape : shape.move(blockX, blockY, blockZ);
+                        columnColliders |= !shape.isEmpty();
+                    }
+                }
+                cachedColumnColliders[getCacheColumn(blockX, blockZ)] = columnColliders;
+            }
+        }
+    }
+
+    private int getCacheColumn(int blockX, int blockZ) {
+        return (blockX - cacheMinX) * (cacheMaxZ - cacheMinZ) + (blockZ - cacheMinZ);
+    }
+
+    private int getCacheIndex(int blockX, int blockY, int blockZ) {
+        return getCacheColumn(blockX, blockZ) * (cacheMaxY - cacheMinY) + (blockY - cacheMinY);
+    }
+
+    private void collideVanilla(double movementX, double movementY, double movementZ) {
+        Vec3 result = environment.collide(
+            new AABB(minX, minY, minZ, maxX, maxY, maxZ),
+            getPos(),
+            new Vec3(velX, velY, velZ),
+            new Vec3(movementX, movementY, movementZ)
+        );
+        collidedX = result.x;
+        collidedY = result.y;
+        collidedZ = result.z;
+    }
+
+    private float getVelocityMultiplier() {
+        Block block = environment.getBlockState(mutablePos.set(Mth.floor(x), Mth.floor(y), Mth.floor(z))).getBlock();
+        float f = block.getSpeedFactor();
+        if (block != Blocks.WATER && block != Blocks.BUBBLE_COLUMN) {
+            return (double) f == 1.0D ? environment
+                .getBlockState(mutablePos.set(Mth.floor(this.x), Mth.floor(this.minY - 0.5000001D), Mth.floor(this.z))).getBlock().getSpeedFactor() : f;
+        } else {
+            return f;
+        }
+    }
+
+    private boolean isOpenOrWaterAround(int blockX, int blockY, int blockZ) {
+        PositionType positionType = PositionType.INVALID;
+
+        boolean valid = true;
+
+        for (int i = -1; i <= 2; ++i) {
+            PositionType positionType2 = this.getPositionType(blockX - 2, blockY + i, blockZ - 2, blockX + 2, blockZ + 2);
+            switch (positionType2) {
+                case INVALID:
+                    valid = false;
+                    break;
+                case ABOVE_WATER:
+                    if (positionType == PositionType.INVALID) {
+                        valid = false;
+                    }
+                    break;
+                case INSIDE_WATER:
+                    if (positionType == PositionType.ABOVE_WATER) {
+                        valid = false;
+                    }
+                    break;
+            }
+
+            if (!valid) {
+                aboveWaterBlocks.clear();
+                boolean foundWater = false;
+                for (int dx = -2; dx <= 2; dx++) {
+                    for (int dz = -2; dz <= 2; dz++) {
+                        long pos2 = BlockPos.asLong(blockX + dx, blockY + i, blockZ + dz);
+                        PositionType positionType3 = getPositionType(blockX + dx, blockY + i, blockZ + dz);
+                        if (positionType3 == PositionType.INVALID) {
+                            openWaterViolations.add(pos2);
+                        } else if (positionType3 == PositionType.ABOVE_WATER) {
+                            aboveWaterBlocks.add(pos2);
+                        } else if (positionType3 == PositionType.INSIDE_WATER) {
+                            foundWater = true;
+                        }
+                    }
+                }
+                if (foundWater) {
+                    for (int j = 0; j < aboveWaterBlocks.size(); j++) {
+                        openWaterViolations.add(aboveWaterBlocks.getLong(j));
+                    }
+                }
+            }
+
+            positionType = positionType2;
+        }
+
+        return valid;
+    }
+
+    /**
+     * Returns the position type of the layer of blocks if they're all the same, or {@link PositionType#INVALID} if not
+     */
+    private PositionType getPositionType(int fromX, int y, int fromZ, int toX, int toZ) {
+        PositionType result = null;
+        for (int x = fromX; x <= toX; x++) {
+            for (int z = fromZ; z <= toZ; z++) {
+                PositionType positionType = getPositionType(x, y, z);
+                if (result == null) {
+                    result = positionType;
+                } else if (result != positionType) {
+                    return PositionType.INVALID;
+                }
+            }
+        }
+        return result == null ? PositionType.INVALID : result;
+    }
+
+    private PositionType getPositionType(int x, int y, int z) {
+        BlockState blockState = environment.getBlockState(mutablePos.set(x, y, z));
+        if (!blockState.isAir() && !blockState.is(Blocks.LILY_PAD)) {
+            FluidState fluidState = blockState.getFluidState();
+            return isWater(fluidState) && fluidState.isSource() && blockState.getCollisionShape(environment, mutablePos).isEmpty() ? PositionType.INSIDE_WATER : PositionType.INVALID;
+        } else {
+            return PositionType.ABOVE_WATER;
+        }
+    }
+
+    private void tickFishingLogic(int blockX, int blockY, int blockZ) {
+        int i = 1;
+        mutablePos.set(blockX, blockY + 1, blockZ);
+        if (this.random.nextFloat() < 0.25F && environment.isRainingAt(mutablePos)) {
+            ++i;
+        }
+
+        if (this.random.nextFloat() < 0.5F && !environment.canSeeSky(mutablePos)) {
+            --i;
+        }
+
+        if (this.hookCountdown > 0) {
+            --this.hookCountdown;
+            if (this.hookCountdown <= 0) {
+                this.waitCountdown = 0;
+                this.fishTravelCountdown = 0;
+                this.caughtFish = false;
+            }
+        } else {
+            float n;
+            float o;
+            float p;
+            double q;
+            double r;
+            double s;
+            BlockState blockState2;
+            if (this.fishTravelCountdown > 0) {
+                this.fishTravelCountdown -= i;
+                if (this.fishTravelCountdown > 0) {
+                    this.fishAngle += random.triangle(0, 9.188);
+                    n = this.fishAngle * 0.017453292F;
+                    o = Mth.sin(n);
+                    p = Mth.cos(n);
+                    q = this.x + (double) (o * (float) this.fishTravelCountdown * 0.1F);
+                    r = (float) Mth.floor(this.y) + 1.0F;
+                    s = this.z + (double) (p * (float) this.fishTravelCountdown * 0.1F);
+                    blockState2 = environment.getBlockState(mutablePos.set(Mth.floor(q), Mth.floor(r - 1.0D), Mth.floor(s)));
+                    if (blockState2.is(Blocks.WATER)) {
+                        // bubble particles
+                        this.random.nextFloat();
+                    }
+                } else {
+                    // splash sound volume and pitch
+                    random.nextFloat();
+                    random.nextFloat();
+                    this.hookCountdown = Mth.nextInt(this.random, 20, 40);
+                    this.caughtFish = true;
+                }
+            } else if (this.waitCountdown > 0) {
+                this.waitCountdown -= i;
+                n = 0.15F;
+                if (this.waitCountdown < 20) {
+                    n = (float) ((double) n + (double) (20 - this.waitCountdown) * 0.05D);
+                } else if (this.waitCountdown < 40) {
+                    n = (float) ((double) n + (double) (40 - this.waitCountdown) * 0.02D);
+                } else if (this.waitCountdown < 60) {
+                    n = (float) ((double) n + (double) (60 - this.waitCountdown) * 0.01D);
+                }
+
+                if (this.random.nextFloat() < n) {
+                    o = Mth.nextFloat(this.random, 0.0F, 360.0F) * 0.017453292F;
+                    p = Mth.nextFloat(this.random, 25.0F, 60.0F);
+                    q = this.x + (double) (Mth.sin(o) * p * 0.1F);
+                    r = (float) Mth.floor(this.y) + 1.0F;
+                    s = this.z + (double) (Mth.cos(o) * p * 0.1F);
+                    blockState2 = environment.getBlockState(mutablePos.set(Mth.floor(q), Mth.floor(r - 1.0D), Mth.floor(s)));
+                    if (blockState2.is(Blocks.WATER)) {
+                        // splash particle count
+                        random.nextInt(2);
+                    }
+                }
+
+                if (this.waitCountdown <= 0) {
+                    this.fishAngle = Mth.nextFloat(this.random, 0.0F, 360.0F);
+                    this.fishTravelCountdown = Mth.nextInt(this.random, 20, 80);
+                }
+            } else {
+                this.waitCountdown = Mth.nextInt(this.random, 100, 600);
+                this.waitCountdown -= this.lureLevel * 20 * 5;
+            }
+        }
+    }
+
+    /**
+     * The world the bobber is simulated in
+     */
+    public interface Environment extends BlockGetter {
+        boolean hasChunksAt(int minX, int minY, int minZ, int maxX, int maxY, int maxZ);
+
+        boolean isRainingAt(BlockPos pos);
+
+        boolean canSeeSky(BlockPos pos);
+
+        /**
+         * Returns the collision shape of the block as seen by the bobber at the given position
+         */
+        VoxelShape getCollisionShape(BlockState state, BlockPos pos, double x, double y, double z);
+
+        /**
+         * Returns whether anything other than blocks, such as entities or the world border, could collide with the
+         * bobber inside the given box
+         */
+        boolean hasNonBlockColliders(AABB box);
+
+        /**
+         * Returns the movement of the bobber after vanilla collision checks
+         */
+        Vec3 collide(AABB boundingBox, Vec3 pos, Vec3 velocity, Vec3 movement);
+
+        /**
+         * Returns whether the bobber would hit something while flying, which would make it fail
+         */
+        boolean hitsSomethingWhileFlying(Vec3 pos, Vec3 velocity);
+    }
+
+    private record LevelEnvironment(Level level, FishingHook fakeEntity) implements Environment {
+        @Nullable
+        @Override
+        public BlockEntity getBlockEntity(BlockPos pos) {
+            return level.getBlockEntity(pos);
+        }
+
+        @Override
+        public BlockState getBlockState(BlockPos pos) {
+            return level.getBlockState(pos);
+        }
+
+        @Override
+        public FluidState getFluidState(BlockPos pos) {
+            return level.getFluidState(pos);
+        }
+
+        @Override
+        public int getHeight() {
+            return level.getHeight();
+        }
+
+        @Override
+        public int getMinY() {
+            return level.getMinY();
+        }
+
+        @Override
+        public boolean hasChunksAt(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+            return level.hasChunksAt(minX, minY, minZ, maxX, maxY, maxZ);
+        }
+
+        @Override
+        public boolean isRainingAt(BlockPos pos) {
+            return level.isRainingAt(pos);
+        }
+
+        @Override
+        public boolean canSeeSky(BlockPos pos) {
+            return level.canSeeSky(pos);
+        }
+
+        @Override
+        public VoxelShape getCollisionShape(BlockState state, BlockPos pos, double x, double y, double z) {
+            // the context remembers where the entity is when it's created
+            fakeEntity.absMoveTo(x, y, z);
+            return state.getCollisionShape(level, pos, CollisionContext.of(fakeEntity));
+        }
+
+        @Override
+        public boolean hasNonBlockColliders(AABB box) {
+            WorldBorder worldBorder = level.getWorldBorder();
+            if (box.minX - 1 <= worldBorder.getMinX() || box.maxX + 1 >= worldBorder.getMaxX() || box.minZ - 1 <= worldBorder.getMinZ() || box.maxZ + 1 >= worldBorder.getMaxZ()) {
+                return true;
+            }
+            return !level.getEntityCollisions(fakeEntity, box).isEmpty();
+        }
+
+        @Override
+        public Vec3 collide(AABB boundingBox, Vec3 pos, Vec3 velocity, Vec3 movement) {
+            fakeEntity.absMoveTo(pos.x, pos.y, pos.z);
+            fakeEntity.setDeltaMovement(velocity);
+
+            VoxelShape voxelShape = level.getWorldBorder().getCollisionShape();
+            List<VoxelShape> voxelShapes = new ArrayList<>();
+            if (!Shapes.joinIsNotEmpty(voxelShape, Shapes.create(boundingBox.deflate(1.0E-7D)), BooleanOp.AND)) {
+                voxelShapes.add(voxelShape);
+            }
+            voxelShapes.addAll(level.getEntityCollisions(fakeEntity, boundingBox.expandTowards(movement)));
+
+            return Entity.collideBoundingBox(fakeEntity, movement, boundingBox, level, voxelShapes);
+        }
+
+        @Override
+        public boolean hitsSomethingWhileFlying(Vec3 pos, Vec3 velocity) {
+            fakeEntity.absMoveTo(pos.x, pos.y, pos.z);
+            fakeEntity.setDeltaMovement(velocity);
+            HitResult hitResult = ProjectileUtil.getHitResultOnMoveVector(fakeEntity, fakeEntity::canHitEntity);
+            return hitResult.getType() != HitResult.Type.MISS;
+        }
+    }
+
+    private enum PositionType {
+        ABOVE_WATER,
+        INSIDE_WATER,
+        INVALID;
+    }
+
+    private enum State {
+        FLYING,
+        BOBBING;
+    }
+}
@@ -0,0 +1,89 @@
+package net.earthcomputer.clientcommands.features;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.ChunkPos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The waypoints of one dimension, grouped by chunk, so that only the waypoints near the camera need to be visited
+ * each frame. The index is immutable and is rebuilt whenever the waypoints change.
+ */
+public final class WaypointIndex {
+    private final Long2ObjectMap<List<Waypoint>> chunks = new Long2ObjectOpenHashMap<>();
+    private final List<Waypoint> waypoints = new ArrayList<>();
+
+    private WaypointIndex() {
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int size() {
+        return waypoints.size();
+    }
+
+    public Waypoint get(int index) {
+        return waypoints.get(index);
+    }
+
+    public void forEach(Consumer<Waypoint> consumer) {
+        waypoints.forEach(consumer);
+    }
+
+    /**
+     * Visits the waypoints in the chunks at most {@code chunkRadius} chunks away from the given chunk on each axis
+     */
+    public void forEachInRange(int chunkX, int chunkZ, int chunkRadius, Consumer<Waypoint> consumer) {
+        long side = 2L * chunkRadius + 1;
+        if (side * side > chunks.size()) {
+            // fewer chunks have waypoints than there are chunks in range
+            for (Long2ObjectMap.Entry<List<Waypoint>> entry : chunks.long2ObjectEntrySet()) {
+                long key = entry.getLongKey();
+                if (Math.abs(ChunkPos.getX(key) - chunkX) <= chunkRadius && Math.abs(ChunkPos.getZ(key) - chunkZ) <= chunkRadius) {
+                    entry.getValue().forEach(consumer);
+                }
+            }
+        } else {
+            for (int z = chunkZ - chunkRadius; z <= chunkZ + chunkRadius; z++) {
+                for (int x = chunkX - chunkRadius; x <= chunkX + chunkRadius; x++) {
+                    List<Waypoint> chunkWaypoints = chunks.get(ChunkPos.asLong(x, z));
+                    if (chunkWaypoints != null) {
+                        chunkWaypoints.forEach(consumer);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A waypoint, and its position in the index so that per-waypoint data can be kept in arrays
+     */
+    public record Waypoint(int id, String name, BlockPos pos) {
+    }
+
+    public static final class Builder {
+        private final WaypointIndex index = new WaypointIndex();
+
+        private Builder() {
+        }
+
+        public Builder add(String name, BlockPos pos) {
+            Waypoint waypoint = new Waypoint(index.waypoints.size(), name, pos);
+            index.waypoints.add(waypoint);
+            long key = ChunkPos.asLong(SectionPos.blockToSectionCoord(pos.getX()), SectionPos.blockToSectionCoord(pos.getZ()));
+            index.chunks.computeIfAbsent(key, k -> new ArrayList<>()).add(waypoint);
+            return this;
+        }
+
+        public WaypointIndex build() {
+            return index;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package net.earthcomputer.clientcommands.features;
+
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.earthcomputer.clientcommands.util.CrackerExecutor;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+/**
+ * Filters an {@link XpSeedSpace} in parallel. The candidate space is split into chunks which are evaluated on the
+ * {@link CrackerExecutor} pool, and the survivors are collected into a mask which is merged back on the main thread.
+ */
+public final class XpSeedFilterEngine {
+    /**
+     * The number of positions evaluated by a single leaf task. Must be a multiple of 64 so that no two leaves write to
+     * the same word of the survivor mask.
+     */
+    private static final int CHUNK_SIZE = 1 << 12;
+
+    private XpSeedFilterEngine() {
+    }
+
+    /**
+     * Starts filtering a snapshot of the given candidates. The filter factory is called once per worker thread, so the
+     * filters it creates may hold mutable per-worker state such as a {@code RandomSource}. Seeds for which the filter
+     * returns {@code false} are removed.
+     */
+    public static Job submit(XpSeedSpace candidates, Supplier<? extends IntPredicate> workerFilterFactory) throws CommandSyntaxException {
+        Job job = new Job(candidates.copy(), workerFilterFactory);
+        job.executorJob = CrackerExecutor.submit(CrackerExecutor.Priority.HIGH, token -> {
+            // forks onto the cracker pool, since we are running on it
+            new FilterAction(job, token, 0, job.candidates.positionCount()).invoke();
+            token.throwIfCancelled();
+            XpSeedSpace result = job.candidates.copy();
+            result.retainPositions(job.survivors);
+            return result;
+        });
+        return job;
+    }
+
+    public static final class Job {
+        private final XpSeedSpace candidates;
+        private final long[] survivors;
+        private final ThreadLocal<IntPredicate> workerFilter;
+        private final AtomicInteger processed = new AtomicInteger();
+        private CrackerExecutor.Job<XpSeedSpace> executorJob;
+
+        private Job(XpSeedSpace candidates, Supplier<? extends IntPredicate> workerFilterFactory) {
+            this.candidates = candidates;
+            this.survivors = new long[(candidates.positionCount() + Long.SIZE - 1) / Long.SIZE];
+            this.workerFilter = ThreadLocal.withInitial(workerFilterFactory);
+        }
+
+        public CrackerExecutor.Job<XpSeedSpace> getExecutorJob() {
+            return executorJob;
+        }
+
+        public void cancel() {
+            executorJob.cancel();
+        }
+
+        public float getProgress() {
+            int total = candidates.positionCount();
+            return total == 0 ? 1 : (float) processed.get() / total;
+        }
+    }
+
+    private static final class FilterAction extends RecursiveAction {
+        private final Job job;
+        private final CrackerExecutor.CancellationToken token;
+        private final int from;
+        private final int to;
+
+        private FilterAction(Job job, CrackerExecutor.CancellationToken token, int from, int to) {
+            this.job = job;
+            this.token = token;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (token.isCancelled()) {
+                return;
+            }
+
+            if (to - from > CHUNK_SIZE) {
+                int chunks = (to - from + CHUNK_SIZE - 1) / CHUNK_SIZE;
+                int mid = from + (chunks / 2) * CHUNK_SIZE;
+                invokeAll(new FilterAction(job, token, from, mid), new FilterAction(job, token, mid, to));
+                return;
+            }
+
+            XpSeedSpace candidates = job.candidates;
+            long[] survivors = job.survivors;
+            IntPredicate filter = job.workerFilter.get();
+            for (int position = from; position < to; position++) {
+                if ((position & 63) == 0 && token.isCancelled()) {
+                    return;
+                }
+                if (candidates.hasPosition(position) && filter.test(candidates.seedAtPosition(position))) {
+                    survivors[position >>> 6] |= 1L << position;
+                }
+            }
+            job.processed.addAndGet(to - from);
+        }
+    }
+}
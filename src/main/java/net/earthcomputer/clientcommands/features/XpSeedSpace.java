@@ -0,0 +1,360 @@
+package net.earthcomputer.clientcommands.features;
+
+import it.unimi.dsi.fastutil.ints.IntIterable;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.IntPredicate;
+
+/**
+ * A set of candidate XP seeds, stored without boxing.
+ *
+ * <p>When the server tells us bits 4-15 of the XP seed, the remaining 20 bits are stored in a dense bitset of
+ * {@code 2^20} bits (128 KB). Once few enough candidates remain, the set switches to a sorted {@code int[]}, which can
+ * also hold arbitrary seeds that don't share the same known bits.
+ */
+public final class XpSeedSpace implements IntIterable {
+    public static final int KNOWN_MASK = 0x0000fff0;
+    private static final int UNKNOWN_BIT_COUNT = 20;
+    static final int DENSE_CAPACITY = 1 << UNKNOWN_BIT_COUNT;
+    private static final int WORD_COUNT = DENSE_CAPACITY / Long.SIZE;
+    private static final int SPARSE_THRESHOLD = 1 << 12;
+
+    private static final byte FORMAT_DENSE = 0;
+    private static final byte FORMAT_SPARSE = 1;
+
+    private int knownBits;
+    private long[] words;
+    private int[] sparse = new int[0];
+    private int size;
+
+    public XpSeedSpace() {
+    }
+
+    private XpSeedSpace(XpSeedSpace other) {
+        this.knownBits = other.knownBits;
+        this.words = other.words == null ? null : other.words.clone();
+        this.sparse = other.sparse.clone();
+        this.size = other.size;
+    }
+
+    public static int toDenseIndex(int seed) {
+        return ((seed >>> 16) << 4) | (seed & 0xf);
+    }
+
+    public static int fromDenseIndex(int knownBits, int index) {
+        return ((index >>> 4) << 16) | (knownBits & KNOWN_MASK) | (index & 0xf);
+    }
+
+    /**
+     * Sets this space to every seed consistent with the 12 bits of the XP seed reported by the server.
+     */
+    public void fill(int serverReportedXpSeed) {
+        knownBits = serverReportedXpSeed & KNOWN_MASK;
+        if (words == null) {
+            words = new long[WORD_COUNT];
+        }
+        Arrays.fill(words, -1L);
+        sparse = new int[0];
+        size = DENSE_CAPACITY;
+    }
+
+    /**
+     * Sets this space to contain exactly one seed.
+     */
+    public void set(int seed) {
+        words = null;
+        sparse = new int[] {seed};
+        size = 1;
+    }
+
+    public void clear() {
+        words = null;
+        sparse = new int[0];
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isDense() {
+        return words != null;
+    }
+
+    public int getKnownBits() {
+        return knownBits;
+    }
+
+    public int first() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        if (words == null) {
+            return sparse[0];
+        }
+        for (int i = 0; i < WORD_COUNT; i++) {
+            if (words[i] != 0) {
+                return fromDenseIndex(knownBits, i * Long.SIZE + Long.numberOfTrailingZeros(words[i]));
+            }
+        }
+        throw new IllegalStateException("Size is inconsistent with the bitset");
+    }
+
+    public boolean contains(int seed) {
+        if (words == null) {
+            return Arrays.binarySearch(sparse, seed) >= 0;
+        }
+        if ((seed & KNOWN_MASK) != knownBits) {
+            return false;
+        }
+        int index = toDenseIndex(seed);
+        return (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Removes all seeds matching the given predicate, returning the number of seeds removed.
+     */
+    public int removeIf(IntPredicate predicate) {
+        int oldSize = size;
+        if (words == null) {
+            int newSize = 0;
+            for (int i = 0; i < size; i++) {
+                if (!predicate.test(sparse[i])) {
+                    sparse[newSize++] = sparse[i];
+                }
+            }
+            sparse = Arrays.copyOf(sparse, newSize);
+            size = newSize;
+        } else {
+            int newSize = 0;
+            for (int wordIndex = 0; wordIndex < WORD_COUNT; wordIndex++) {
+                long word = words[wordIndex];
+                long remaining = word;
+                while (remaining != 0) {
+                    int bit = Long.numberOfTrailingZeros(remaining);
+                    remaining &= remaining - 1;
+                    if (predicate.test(fromDenseIndex(knownBits, wordIndex * Long.SIZE + bit))) {
+                        word &= ~(1L << bit);
+                    }
+                }
+                words[wordIndex] = word;
+                newSize += Long.bitCount(word);
+            }
+            size = newSize;
+            compact();
+        }
+        return oldSize - size;
+    }
+
+    /**
+     * Removes all seeds from this space that are not also in the other space.
+     */
+    public void retainAll(XpSeedSpace other) {
+        if (words != null && other.words != null && knownBits == other.knownBits) {
+            int newSize = 0;
+            for (int i = 0; i < WORD_COUNT; i++) {
+                words[i] &= other.words[i];
+                newSize += Long.bitCount(words[i]);
+            }
+            size = newSize;
+            compact();
+        } else {
+            removeIf(seed -> !other.contains(seed));
+        }
+    }
+
+    /**
+     * Switches to the sparse representation if there are few enough seeds left
+     */
+    private void compact() {
+        if (words == null || size > SPARSE_THRESHOLD) {
+            return;
+        }
+        int[] seeds = new int[size];
+        int i = 0;
+        for (IntIterator itr = iterator(); itr.hasNext(); ) {
+            seeds[i++] = itr.nextInt();
+        }
+        Arrays.sort(seeds);
+        words = null;
+        sparse = seeds;
+    }
+
+    public void copyFrom(XpSeedSpace other) {
+        knownBits = other.knownBits;
+        words = other.words == null ? null : other.words.clone();
+        sparse = other.sparse.clone();
+        size = other.size;
+    }
+
+    /**
+     * Positions index the underlying storage: bit indices in the dense representation, or array indices in the
+     * sparse representation. Not every position necessarily holds a seed; check {@link #hasPosition(int)} first.
+     */
+    int positionCount() {
+        return words == null ? size : DENSE_CAPACITY;
+    }
+
+    boolean hasPosition(int position) {
+        return words == null || (words[position >>> 6] & (1L << position)) != 0;
+    }
+
+    int seedAtPosition(int position) {
+        return words == null ? sparse[position] : fromDenseIndex(knownBits, position);
+    }
+
+    /**
+     * Keeps only the seeds whose positions are set in the given mask, which must have been computed against this
+     * exact representation.
+     */
+    void retainPositions(long[] mask) {
+        if (words == null) {
+            int newSize = 0;
+            for (int i = 0; i < size; i++) {
+                if ((mask[i >>> 6] & (1L << i)) != 0) {
+                    sparse[newSize++] = sparse[i];
+                }
+            }
+            sparse = Arrays.copyOf(sparse, newSize);
+            size = newSize;
+        } else {
+            int newSize = 0;
+            for (int i = 0; i < WORD_COUNT; i++) {
+                words[i] &= mask[i];
+                newSize += Long.bitCount(words[i]);
+            }
+            size = newSize;
+            compact();
+        }
+    }
+
+    public XpSeedSpace copy() {
+        return new XpSeedSpace(this);
+    }
+
+    public int[] toIntArray() {
+        int[] result = new int[size];
+        int i = 0;
+        for (IntIterator itr = iterator(); itr.hasNext(); ) {
+            result[i++] = itr.nextInt();
+        }
+        return result;
+    }
+
+    @Override
+    public IntIterator iterator() {
+        if (words == null) {
+            return new IntIterator() {
+                private final int[] seeds = sparse;
+                private int index = 0;
+
+                @Override
+                public int nextInt() {
+                    if (index >= seeds.length) {
+                        throw new NoSuchElementException();
+                    }
+                    return seeds[index++];
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return index < seeds.length;
+                }
+            };
+        }
+
+        return new IntIterator() {
+            private final long[] bits = words;
+            private final int known = knownBits;
+            private int wordIndex = -1;
+            private long remaining = 0;
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int bit = Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                return fromDenseIndex(known, wordIndex * Long.SIZE + bit);
+            }
+
+            @Override
+            public boolean hasNext() {
+                while (remaining == 0) {
+                    if (++wordIndex >= WORD_COUNT) {
+                        wordIndex = WORD_COUNT;
+                        return false;
+                    }
+                    remaining = bits[wordIndex];
+                }
+                return true;
+            }
+        };
+    }
+
+    public byte[] toByteArray() {
+        if (words == null) {
+            ByteBuffer buf = ByteBuffer.allocate(1 + 4 + 4 + size * 4);
+            buf.put(FORMAT_SPARSE).putInt(knownBits).putInt(size);
+            for (int i = 0; i < size; i++) {
+                buf.putInt(sparse[i]);
+            }
+            return buf.array();
+        } else {
+            ByteBuffer buf = ByteBuffer.allocate(1 + 4 + 4 + WORD_COUNT * 8);
+            buf.put(FORMAT_DENSE).putInt(knownBits).putInt(size);
+            for (long word : words) {
+                buf.putLong(word);
+            }
+            return buf.array();
+        }
+    }
+
+    public static XpSeedSpace fromByteArray(byte[] bytes) {
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        XpSeedSpace space = new XpSeedSpace();
+        byte format = buf.get();
+        space.knownBits = buf.getInt() & KNOWN_MASK;
+        int size = buf.getInt();
+        switch (format) {
+            case FORMAT_SPARSE -> {
+                int[] seeds = new int[size];
+                for (int i = 0; i < size; i++) {
+                    seeds[i] = buf.getInt();
+                }
+                Arrays.sort(seeds);
+                space.sparse = seeds;
+                space.size = size;
+            }
+            case FORMAT_DENSE -> {
+                long[] words = new long[WORD_COUNT];
+                int actualSize = 0;
+                for (int i = 0; i < WORD_COUNT; i++) {
+                    words[i] = buf.getLong();
+                    actualSize += Long.bitCount(words[i]);
+                }
+                if (actualSize != size) {
+                    throw new IllegalArgumentException("Corrupt XP seed space: expected " + size + " seeds, found " + actualSize);
+                }
+                space.words = words;
+                space.size = size;
+                space.compact();
+            }
+            default -> throw new IllegalArgumentException("Unknown XP seed space format " + format);
+        }
+        return space;
+    }
+
+    @Override
+    public String toString() {
+        return "XpSeedSpace[size=" + size + ",dense=" + isDense() + "]";
+    }
+}
@@ -0,0 +1,16 @@
+package net.earthcomputer.clientcommands.interfaces;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.PacketFlow;
+import org.jetbrains.annotations.Nullable;
+
+public interface IConnection_Codecs {
+    /**
+     * Gets the codec of the connection's current protocol in the given direction, or {@code null} if it isn't known
+     * because the protocol is being changed.
+     */
+    @Nullable
+    StreamCodec<ByteBuf, Packet<?>> clientcommands_getCodec(PacketFlow flow);
+}
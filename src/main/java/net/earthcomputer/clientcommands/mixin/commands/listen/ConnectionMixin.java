@@ -1,34 +1,93 @@
 package net.earthcomputer.clientcommands.mixin.commands.listen;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import net.earthcomputer.clientcommands.command.ListenCommand;
+import net.earthcomputer.clientcommands.interfaces.IConnection_Codecs;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.multiplayer.ClientPacketListener;
 import net.minecraft.network.Connection;
+import net.minecraft.network.PacketListener;
 import net.minecraft.network.PacketSendListener;
+import net.minecraft.network.ProtocolInfo;
+import net.minecraft.network.codec.StreamCodec;
 import net.minecraft.network.protocol.Packet;
 import net.minecraft.network.protocol.PacketFlow;
 import org.jetbrains.annotations.Nullable;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 @Mixin(Connection.class)
-public class ConnectionMixin {
+public class ConnectionMixin implements IConnection_Codecs {
     @Shadow @Final private PacketFlow receiving;
 
+    @Unique
+    @Nullable
+    private volatile StreamCodec<ByteBuf, Packet<?>> inboundCodec;
+    @Unique
+    @Nullable
+    private volatile StreamCodec<ByteBuf, Packet<?>> outboundCodec;
+
     @Inject(method = "channelRead0(Lio/netty/channel/ChannelHandlerContext;Lnet/minecraft/network/protocol/Packet;)V", at = @At(value = "INVOKE", target = "Lnet/minecraft/network/Connection;genericsFtw(Lnet/minecraft/network/protocol/Packet;Lnet/minecraft/network/PacketListener;)V"))
     private void onPacketReceive(ChannelHandlerContext context, Packet<?> packet, CallbackInfo ci) {
-        if (this.receiving == PacketFlow.CLIENTBOUND) {
+        if (isGameConnection()) {
             ListenCommand.onPacket(packet, ListenCommand.PacketFlow.CLIENTBOUND);
         }
     }
 
     @Inject(method = "doSendPacket", at = @At("HEAD"))
     private void onPacketSend(Packet<?> packet, @Nullable PacketSendListener sendListener, boolean flush, CallbackInfo ci) {
-        if (this.receiving == PacketFlow.CLIENTBOUND) {
+        if (isGameConnection()) {
             ListenCommand.onPacket(packet, ListenCommand.PacketFlow.SERVERBOUND);
         }
     }
+
+    /**
+     * Whether this is the client's connection to the server it's playing on. Other client connections, such as server
+     * list pings, run on their own threads, and each packet flow must only be captured from one thread.
+     */
+    @Unique
+    private boolean isGameConnection() {
+        if (this.receiving != PacketFlow.CLIENTBOUND) {
+            return false;
+        }
+        ClientPacketListener listener = Minecraft.getInstance().getConnection();
+        return listener != null && listener.getConnection() == (Object) this;
+    }
+
+    // The new codec is installed in the pipeline on the netty thread while these methods wait for it, so forget the old
+    // codec first and only remember the new one once it's in use.
+
+    @Inject(method = "setupInboundProtocol", at = @At("HEAD"))
+    private void onSetupInboundProtocolStart(CallbackInfo ci) {
+        this.inboundCodec = null;
+    }
+
+    @Inject(method = "setupInboundProtocol", at = @At("RETURN"))
+    @SuppressWarnings("unchecked")
+    private void onSetupInboundProtocolEnd(ProtocolInfo<?> protocolInfo, PacketListener packetListener, CallbackInfo ci) {
+        this.inboundCodec = (StreamCodec<ByteBuf, Packet<?>>) (StreamCodec<?, ?>) protocolInfo.codec();
+    }
+
+    @Inject(method = "setupOutboundProtocol", at = @At("HEAD"))
+    private void onSetupOutboundProtocolStart(CallbackInfo ci) {
+        this.outboundCodec = null;
+    }
+
+    @Inject(method = "setupOutboundProtocol", at = @At("RETURN"))
+    @SuppressWarnings("unchecked")
+    private void onSetupOutboundProtocolEnd(ProtocolInfo<?> protocolInfo, CallbackInfo ci) {
+        this.outboundCodec = (StreamCodec<ByteBuf, Packet<?>>) (StreamCodec<?, ?>) protocolInfo.codec();
+    }
+
+    @Override
+    @Nullable
+    public StreamCodec<ByteBuf, Packet<?>> clientcommands_getCodec(PacketFlow flow) {
+        return flow == this.receiving ? this.inboundCodec : this.outboundCodec;
+    }
 }
@@ -45,4 +45,9 @@ public class Cuboid extends Shape {
         return start;
     }
 
+    @Override
+    public AABB getBoundingBox() {
+        return new AABB(start, start.add(size));
+    }
+
 }
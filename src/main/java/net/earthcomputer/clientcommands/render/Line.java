@@ -2,6 +2,7 @@ package net.earthcomputer.clientcommands.render;
 
 import com.mojang.blaze3d.vertex.PoseStack;
 import com.mojang.blaze3d.vertex.VertexConsumer;
+import net.minecraft.world.phys.AABB;
 import net.minecraft.world.phys.Vec3;
 
 public class Line extends Shape {
@@ -51,4 +52,9 @@ public class Line extends Shape {
         return start;
     }
 
+    @Override
+    public AABB getBoundingBox() {
+        return new AABB(start, end);
+    }
+
 }
@@ -1,15 +1,21 @@
 package net.earthcomputer.clientcommands.render;
 
+import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.blaze3d.vertex.DefaultVertexFormat;
 import com.mojang.blaze3d.vertex.PoseStack;
 import com.mojang.blaze3d.vertex.VertexConsumer;
 import com.mojang.blaze3d.vertex.VertexFormat;
+import net.earthcomputer.clientcommands.Configs;
+import net.earthcomputer.clientcommands.event.ClientLevelEvents;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
 import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderEvents;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.RenderType;
+import net.minecraft.client.renderer.culling.Frustum;
 import net.minecraft.world.phys.AABB;
 import net.minecraft.world.phys.Vec3;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Matrix4f;
 
 import java.util.ArrayList;
 import java.util.EnumMap;
@@ -25,15 +31,18 @@ public class RenderQueue {
     private static final List<AddQueueEntry> addQueue = new ArrayList<>();
     private static final List<RemoveQueueEntry> removeQueue = new ArrayList<>();
     private static final EnumMap<Layer, Map<Object, Shape>> queue = new EnumMap<>(Layer.class);
+    private static final EnumMap<Layer, ShapeGrid> grids = new EnumMap<>(Layer.class);
 
     static {
         ClientTickEvents.START_CLIENT_TICK.register(RenderQueue::tick);
+        ClientLevelEvents.UNLOAD_LEVEL.register(isDisconnect -> clear());
         WorldRenderEvents.AFTER_ENTITIES.register(context -> {
             context.matrixStack().pushPose();
 
             Vec3 cameraPos = context.camera().getPosition();
+            Matrix4f modelView = new Matrix4f(RenderSystem.getModelViewMatrix()).mul(context.matrixStack().last().pose());
             context.matrixStack().translate(-cameraPos.x, -cameraPos.y, -cameraPos.z);
-            RenderQueue.render(RenderQueue.Layer.ON_TOP, Objects.requireNonNull(context.consumers()).getBuffer(RenderQueue.NO_DEPTH_LAYER), context.matrixStack(), context.tickCounter().getRealtimeDeltaTicks());
+            RenderQueue.render(RenderQueue.Layer.ON_TOP, context.frustum(), cameraPos, modelView, Objects.requireNonNull(context.consumers()).getBuffer(RenderQueue.NO_DEPTH_LAYER), context.matrixStack(), context.tickCounter().getRealtimeDeltaTicks());
 
             context.matrixStack().popPose();
         });
@@ -61,21 +70,39 @@ public class RenderQueue {
 
     private static void doAdd(AddQueueEntry entry) {
         Map<Object, Shape> shapes = queue.computeIfAbsent(entry.layer(), k -> new LinkedHashMap<>());
+        ShapeGrid grid = grids.computeIfAbsent(entry.layer(), k -> new ShapeGrid());
         Shape oldShape = shapes.get(entry.key());
         if (oldShape != null) {
             entry.shape().prevPos = oldShape.prevPos;
+            grid.remove(oldShape);
         } else {
             entry.shape().prevPos = entry.shape().getPos();
         }
+        entry.shape().addTime = tickCounter;
         entry.shape().deathTime = tickCounter + entry.life();
         shapes.put(entry.key(), entry.shape());
+        grid.add(entry.shape());
+    }
+
+    /**
+     * Removes every shape, since they belong to the level being unloaded, and frees the grids' vertex buffers
+     */
+    private static void clear() {
+        addQueue.clear();
+        removeQueue.clear();
+        queue.clear();
+        grids.values().forEach(ShapeGrid::clear);
+        grids.clear();
     }
 
     private static void tick(Minecraft mc) {
         for (RemoveQueueEntry entry : removeQueue) {
             Map<Object, Shape> shapes = queue.get(entry.layer());
             if (shapes != null) {
-                shapes.remove(entry.key());
+                Shape shape = shapes.remove(entry.key());
+                if (shape != null) {
+                    grids.get(entry.layer()).remove(shape);
+                }
             }
         }
         removeQueue.clear();
@@ -86,23 +113,31 @@ public class RenderQueue {
             doAdd(entry);
         }
         addQueue.clear();
-        for (Map<Object, Shape> shapes : queue.values()) {
+        queue.forEach((layer, shapes) -> {
+            ShapeGrid grid = grids.get(layer);
             Iterator<Shape> itr = shapes.values().iterator();
             while (itr.hasNext()) {
                 Shape shape = itr.next();
-                if (tickCounter == shape.deathTime) {
+                boolean dead = tickCounter == shape.deathTime;
+                if (dead) {
                     itr.remove();
+                    grid.remove(shape);
                 }
                 shape.tick();
+                if (!dead) {
+                    // shapes that haven't changed since the last tick can be drawn from a cached vertex buffer
+                    grid.update(shape, shape.addTime < tickCounter && shape.getPos().equals(shape.prevPos));
+                }
             }
-        }
+        });
     }
 
-    public static void render(Layer layer, VertexConsumer vertexConsumer, PoseStack poseStack, float delta) {
-        if (!queue.containsKey(layer)) {
+    public static void render(Layer layer, @Nullable Frustum frustum, Vec3 cameraPos, Matrix4f modelView, VertexConsumer vertexConsumer, PoseStack poseStack, float delta) {
+        ShapeGrid grid = grids.get(layer);
+        if (grid == null) {
             return;
         }
-        queue.get(layer).values().forEach(shape -> shape.render(poseStack, vertexConsumer, delta));
+        grid.render(frustum, cameraPos, modelView, poseStack, vertexConsumer, NO_DEPTH_LAYER, delta, Configs.getMaxRenderedShapes());
     }
 
     public enum Layer {
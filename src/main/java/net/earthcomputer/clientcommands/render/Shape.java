@@ -2,10 +2,15 @@ package net.earthcomputer.clientcommands.render;
 
 import com.mojang.blaze3d.vertex.PoseStack;
 import com.mojang.blaze3d.vertex.VertexConsumer;
+import net.minecraft.world.phys.AABB;
 import net.minecraft.world.phys.Vec3;
+import org.jetbrains.annotations.Nullable;
 
 public abstract class Shape {
+    int addTime;
     int deathTime;
+    @Nullable
+    ShapeGrid.Cell cell;
     protected Vec3 prevPos;
 
     public void tick() {
@@ -15,4 +20,11 @@ public abstract class Shape {
 
     public abstract Vec3 getPos();
 
+    /**
+     * The box containing the shape at its current position, used for culling
+     */
+    public AABB getBoundingBox() {
+        return new AABB(getPos(), getPos());
+    }
+
 }
@@ -0,0 +1,253 @@
+package net.earthcomputer.clientcommands.render;
+
+import com.mojang.blaze3d.buffers.BufferUsage;
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.blaze3d.vertex.BufferBuilder;
+import com.mojang.blaze3d.vertex.DefaultVertexFormat;
+import com.mojang.blaze3d.vertex.MeshData;
+import com.mojang.blaze3d.vertex.PoseStack;
+import com.mojang.blaze3d.vertex.Tesselator;
+import com.mojang.blaze3d.vertex.VertexBuffer;
+import com.mojang.blaze3d.vertex.VertexConsumer;
+import com.mojang.blaze3d.vertex.VertexFormat;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceLinkedOpenHashSet;
+import net.minecraft.client.renderer.RenderType;
+import net.minecraft.client.renderer.culling.Frustum;
+import net.minecraft.core.SectionPos;
+import net.minecraft.util.Mth;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.Vec3;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Matrix4f;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The shapes of one render layer, split into those which are moving or have just been added, and those which haven't
+ * changed since the last tick. Moving shapes are culled one at a time and rendered into the frame's line buffer as
+ * usual.
+ *
+ * <p>Unchanged shapes are stored in a loose spatial hash grid of chunk sections, keyed by the section containing the
+ * center of each shape. Each cell's bounds grow to cover the shapes that stick out of it, so whole cells can be culled
+ * against the frustum at once. Each cell also keeps a vertex buffer of its shapes which is only rebuilt when they
+ * change, so thousands of highlighted blocks cost a handful of draw calls per frame.
+ *
+ * <p>At most a given number of shapes are rendered per frame, nearest to the camera first.
+ */
+final class ShapeGrid {
+    private final Set<Shape> movingShapes = new ReferenceLinkedOpenHashSet<>();
+    private final Long2ObjectMap<Cell> cells = new Long2ObjectOpenHashMap<>();
+
+    void add(Shape shape) {
+        movingShapes.add(shape);
+    }
+
+    void remove(Shape shape) {
+        Cell cell = shape.cell;
+        if (cell == null) {
+            movingShapes.remove(shape);
+            return;
+        }
+
+        shape.cell = null;
+        cell.shapes.remove(shape);
+        if (cell.shapes.isEmpty()) {
+            cells.remove(cell.key);
+            cell.close();
+        } else {
+            cell.markDirty();
+        }
+    }
+
+    /**
+     * Moves a shape into the grid if it hasn't changed since the last tick, or out of it if it has started moving
+     */
+    void update(Shape shape, boolean unchanged) {
+        if (unchanged == (shape.cell != null)) {
+            return;
+        }
+
+        remove(shape);
+        if (!unchanged) {
+            movingShapes.add(shape);
+            return;
+        }
+
+        Vec3 center = shape.getBoundingBox().getCenter();
+        int x = SectionPos.blockToSectionCoord(Mth.floor(center.x));
+        int y = SectionPos.blockToSectionCoord(Mth.floor(center.y));
+        int z = SectionPos.blockToSectionCoord(Mth.floor(center.z));
+        Cell cell = cells.computeIfAbsent(SectionPos.asLong(x, y, z), key -> new Cell(key, new Vec3(SectionPos.sectionToBlockCoord(x), SectionPos.sectionToBlockCoord(y), SectionPos.sectionToBlockCoord(z))));
+        cell.shapes.add(shape);
+        cell.markDirty();
+        shape.cell = cell;
+    }
+
+    void clear() {
+        movingShapes.clear();
+        for (Cell cell : cells.values()) {
+            for (Shape shape : cell.shapes) {
+                shape.cell = null;
+            }
+            cell.close();
+        }
+        cells.clear();
+    }
+
+    /**
+     * Renders the visible shapes, up to the given budget
+     *
+     * @param frustum The camera frustum, or {@code null} to render shapes in every direction
+     * @param cameraPos The camera position
+     * @param modelView The model view matrix, before it's translated by the camera position
+     * @param poseStack The pose stack for moving shapes, translated by the camera position
+     * @param vertexConsumer The line buffer for moving shapes
+     * @param renderType The render type to draw the cached vertex buffers with
+     */
+    void render(@Nullable Frustum frustum, Vec3 cameraPos, Matrix4f modelView, PoseStack poseStack, VertexConsumer vertexConsumer, RenderType renderType, float delta, int budget) {
+        // moving shapes are few and are usually the ones the player is watching, so they're rendered first
+        List<Shape> visibleShapes = new ArrayList<>();
+        for (Shape shape : movingShapes) {
+            if (frustum == null || frustum.isVisible(getInterpolatedBounds(shape))) {
+                visibleShapes.add(shape);
+            }
+        }
+        budget -= renderNearest(visibleShapes, cameraPos, poseStack, vertexConsumer, delta, budget);
+
+        List<Cell> visibleCells = new ArrayList<>();
+        for (Cell cell : cells.values()) {
+            if (frustum == null || frustum.isVisible(cell.getBounds())) {
+                visibleCells.add(cell);
+            }
+        }
+        if (visibleCells.isEmpty() || budget <= 0) {
+            return;
+        }
+        visibleCells.sort(Comparator.comparingDouble(cell -> distanceToSqr(cell.getBounds(), cameraPos)));
+
+        renderType.setupRenderState();
+        for (Cell cell : visibleCells) {
+            if (cell.shapes.size() > budget) {
+                // the cell doesn't fit in whole, so fill the rest of the budget with its nearest shapes
+                visibleShapes.clear();
+                for (Shape shape : cell.shapes) {
+                    if (frustum == null || frustum.isVisible(shape.getBoundingBox())) {
+                        visibleShapes.add(shape);
+                    }
+                }
+                renderNearest(visibleShapes, cameraPos, poseStack, vertexConsumer, delta, budget);
+                break;
+            }
+            budget -= cell.shapes.size();
+            cell.draw(modelView, cameraPos);
+        }
+        VertexBuffer.unbind();
+        renderType.clearRenderState();
+    }
+
+    private static int renderNearest(List<Shape> shapes, Vec3 cameraPos, PoseStack poseStack, VertexConsumer vertexConsumer, float delta, int budget) {
+        if (budget <= 0) {
+            return 0;
+        }
+        if (shapes.size() > budget) {
+            shapes.sort(Comparator.comparingDouble(shape -> distanceToSqr(shape.getBoundingBox(), cameraPos)));
+            shapes = shapes.subList(0, budget);
+        }
+        for (Shape shape : shapes) {
+            shape.render(poseStack, vertexConsumer, delta);
+        }
+        return shapes.size();
+    }
+
+    private static AABB getInterpolatedBounds(Shape shape) {
+        AABB bounds = shape.getBoundingBox();
+        Vec3 prevPosOffset = shape.prevPos.subtract(shape.getPos());
+        return bounds.minmax(bounds.move(prevPosOffset));
+    }
+
+    private static double distanceToSqr(AABB box, Vec3 pos) {
+        double dx = Math.max(0, Math.max(box.minX - pos.x, pos.x - box.maxX));
+        double dy = Math.max(0, Math.max(box.minY - pos.y, pos.y - box.maxY));
+        double dz = Math.max(0, Math.max(box.minZ - pos.z, pos.z - box.maxZ));
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    static final class Cell {
+        private final long key;
+        private final Vec3 origin;
+        private final Set<Shape> shapes = new ReferenceLinkedOpenHashSet<>();
+        private boolean dirty = true;
+        private boolean boundsDirty = true;
+        @Nullable
+        private AABB bounds;
+        @Nullable
+        private VertexBuffer buffer;
+
+        private Cell(long key, Vec3 origin) {
+            this.key = key;
+            this.origin = origin;
+        }
+
+        private void markDirty() {
+            dirty = true;
+            boundsDirty = true;
+        }
+
+        private AABB getBounds() {
+            if (boundsDirty) {
+                boundsDirty = false;
+                bounds = null;
+                for (Shape shape : shapes) {
+                    AABB shapeBounds = shape.getBoundingBox();
+                    bounds = bounds == null ? shapeBounds : bounds.minmax(shapeBounds);
+                }
+            }
+            assert bounds != null;
+            return bounds;
+        }
+
+        private void draw(Matrix4f modelView, Vec3 cameraPos) {
+            if (dirty) {
+                rebuild();
+            }
+            if (buffer == null) {
+                return;
+            }
+            // the buffer's vertices are relative to the cell origin
+            Matrix4f matrix = new Matrix4f(modelView).translate((float) (origin.x - cameraPos.x), (float) (origin.y - cameraPos.y), (float) (origin.z - cameraPos.z));
+            buffer.bind();
+            buffer.drawWithShader(matrix, RenderSystem.getProjectionMatrix(), RenderSystem.getShader());
+        }
+
+        private void rebuild() {
+            dirty = false;
+            close();
+
+            BufferBuilder builder = Tesselator.getInstance().begin(VertexFormat.Mode.LINES, DefaultVertexFormat.POSITION_COLOR_NORMAL);
+            PoseStack poseStack = new PoseStack();
+            poseStack.translate(-origin.x, -origin.y, -origin.z);
+            for (Shape shape : shapes) {
+                shape.render(poseStack, builder, 1);
+            }
+            MeshData meshData = builder.build();
+            if (meshData == null) {
+                return;
+            }
+            buffer = new VertexBuffer(BufferUsage.STATIC_WRITE);
+            buffer.bind();
+            buffer.upload(meshData);
+        }
+
+        private void close() {
+            if (buffer != null) {
+                buffer.close();
+                buffer = null;
+            }
+        }
+    }
+}
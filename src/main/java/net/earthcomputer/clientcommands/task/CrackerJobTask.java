@@ -0,0 +1,63 @@
+package net.earthcomputer.clientcommands.task;
+
+import com.mojang.logging.LogUtils;
+import net.earthcomputer.clientcommands.util.CrackerExecutor;
+import org.slf4j.Logger;
+
+import java.util.concurrent.CompletionException;
+
+/**
+ * Waits for a {@link CrackerExecutor} job to finish, and hands its result back to the main thread. If the task is
+ * stopped before the job has finished, the job is cancelled.
+ */
+public abstract class CrackerJobTask<T> extends SimpleTask {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    protected final CrackerExecutor.Job<T> job;
+
+    protected CrackerJobTask(CrackerExecutor.Job<T> job) {
+        this.job = job;
+    }
+
+    @Override
+    public boolean condition() {
+        return !job.isDone();
+    }
+
+    @Override
+    protected void onTick() {
+    }
+
+    @Override
+    public boolean stopOnLevelUnload(boolean isDisconnect) {
+        job.cancel();
+        return true;
+    }
+
+    @Override
+    public void onCompleted() {
+        if (!job.isDone() || job.isCancelled()) {
+            job.cancel();
+            onCancelled();
+            return;
+        }
+
+        T result;
+        try {
+            result = job.getResult();
+        } catch (CompletionException e) {
+            onFailure(e.getCause());
+            return;
+        }
+        onResult(result);
+    }
+
+    protected abstract void onResult(T result);
+
+    protected void onFailure(Throwable e) {
+        LOGGER.error("Cracker job {} failed", this, e);
+    }
+
+    protected void onCancelled() {
+    }
+}
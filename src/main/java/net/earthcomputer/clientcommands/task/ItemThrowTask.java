@@ -55,7 +55,7 @@ public class ItemThrowTask extends SimpleTask {
     protected void onTick() {
         itemThrowsAllowedThisTick += Configs.itemThrowsPerTick;
 
-        while (((flags & FLAG_URGENT) != 0 || itemThrowsAllowedThisTick >= 1) && sentItemThrows < totalItemsToThrow) {
+        while (((flags & FLAG_URGENT) != 0 || (itemThrowsAllowedThisTick >= 1 && !shouldYield())) && sentItemThrows < totalItemsToThrow) {
             itemThrowsAllowedThisTick--;
             if (!PlayerRandCracker.throwItem()) {
                 if ((flags & FLAG_WAIT_FOR_ITEMS) != 0) {
@@ -102,6 +102,11 @@ public class ItemThrowTask extends SimpleTask {
         return MUTEX_KEYS;
     }
 
+    @Override
+    public Priority getPriority() {
+        return Priority.HIGH;
+    }
+
     protected void onFailedToThrowItem() {
     }
 
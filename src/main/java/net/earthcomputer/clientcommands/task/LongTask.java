@@ -10,6 +10,8 @@ public abstract class LongTask {
     boolean isInitialized = false;
     private boolean delayScheduled;
     private boolean broken = false;
+    long cpuTimeNanos = 0;
+    long tickTimeNanos = 0;
 
     public abstract void initialize();
 
@@ -52,4 +54,42 @@ public abstract class LongTask {
     public final boolean conflictsWith(LongTask other) {
         return getMutexKeys().stream().anyMatch(other.getMutexKeys()::contains);
     }
+
+    public Priority getPriority() {
+        return Priority.NORMAL;
+    }
+
+    /**
+     * Returns whether this task has used up its share of the current tick's time budget. Tasks which do a lot of work
+     * in a single {@link #body()} should check this periodically, and return to continue next tick once it's true.
+     */
+    protected final boolean shouldYield() {
+        return TaskManager.shouldYield();
+    }
+
+    /**
+     * The total time spent running this task on the client thread, in nanoseconds
+     */
+    public final long getCpuTimeNanos() {
+        return cpuTimeNanos;
+    }
+
+    public enum Priority {
+        /**
+         * For timing-sensitive tasks. These run first, and keep running each tick until they schedule a delay.
+         */
+        HIGH(4),
+        NORMAL(2),
+        /**
+         * For long-running scans, which get the smallest share of the time budget.
+         */
+        BACKGROUND(1),
+        ;
+
+        final int weight;
+
+        Priority(int weight) {
+            this.weight = weight;
+        }
+    }
 }
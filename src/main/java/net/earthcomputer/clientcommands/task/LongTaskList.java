@@ -78,6 +78,11 @@ public class LongTaskList extends LongTask {
         return union;
     }
 
+    @Override
+    public Priority getPriority() {
+        return children.isEmpty() ? Priority.NORMAL : children.getFirst().getPriority();
+    }
+
     @Override
     public String toString() {
         Class<?> thisClass = getClass();
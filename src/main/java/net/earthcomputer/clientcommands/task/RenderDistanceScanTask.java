@@ -4,6 +4,9 @@ import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
 import net.earthcomputer.clientcommands.command.ClientCommandHelper;
 import net.earthcomputer.clientcommands.event.ClientLevelEvents;
+import net.earthcomputer.clientcommands.features.BlockEntityIndex;
+import net.earthcomputer.clientcommands.features.ChunkBlockIndex;
+import net.earthcomputer.clientcommands.util.PaletteScanner;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.multiplayer.ClientLevel;
 import net.minecraft.core.BlockPos;
@@ -20,48 +23,41 @@ import net.minecraft.world.level.chunk.status.ChunkStatus;
 import net.minecraft.world.phys.Vec3;
 import org.jetbrains.annotations.Nullable;
 
-import java.lang.ref.WeakReference;
+import java.util.Collections;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.function.Predicate;
 
 public abstract class RenderDistanceScanTask extends SimpleTask {
-    private static final long MAX_SCAN_TIME = 30_000_000L; // 30ms
-    private static final Set<Object> MUTEX_KEYS = Set.of(TaskManager.INTENSIVE_TASK_MUTEX);
+    /**
+     * The scans currently running, which are notified of block and chunk updates. Several scans can run at once, each
+     * getting its own share of the tick time budget.
+     */
+    private static final Set<RenderDistanceScanTask> activeScanTasks = Collections.newSetFromMap(new WeakHashMap<>());
 
     static {
         ClientLevelEvents.CHUNK_UPDATE.register((level, pos, oldState, newState) -> {
-            WeakReference<RenderDistanceScanTask> currentScanTask = RenderDistanceScanTask.currentScanTask;
-            if (currentScanTask != null) {
-                RenderDistanceScanTask scanTask = currentScanTask.get();
-                if (scanTask != null) {
-                    scanTask.onBlockStateUpdate(level, pos, oldState, newState);
-                }
+            for (RenderDistanceScanTask scanTask : activeScanTasks) {
+                scanTask.onBlockStateUpdate(level, pos, oldState, newState);
             }
         });
         ClientLevelEvents.UNLOAD_CHUNK.register((level, pos) -> {
-            WeakReference<RenderDistanceScanTask> currentScanTask = RenderDistanceScanTask.currentScanTask;
-            if (currentScanTask != null) {
-                RenderDistanceScanTask scanTask = currentScanTask.get();
-                if (scanTask != null) {
-                    scanTask.onUnloadChunk(level, pos);
-                }
+            for (RenderDistanceScanTask scanTask : activeScanTasks) {
+                scanTask.onUnloadChunk(level, pos);
             }
         });
         ClientLevelEvents.LOAD_CHUNK.register((level, pos) -> {
-            WeakReference<RenderDistanceScanTask> currentScanTask = RenderDistanceScanTask.currentScanTask;
-            if (currentScanTask != null) {
-                RenderDistanceScanTask scanTask = currentScanTask.get();
-                if (scanTask != null) {
-                    scanTask.onLoadChunk(level, pos);
-                }
+            for (RenderDistanceScanTask scanTask : activeScanTasks) {
+                scanTask.onLoadChunk(level, pos);
             }
         });
     }
 
-    @Nullable
-    private static WeakReference<RenderDistanceScanTask> currentScanTask = null;
     protected boolean keepSearching;
     private LongLinkedOpenHashSet remainingChunks;
+    private final int[] matchingIndices = new int[PaletteScanner.SECTION_VOLUME];
+    @Nullable
+    private ChunkBlockIndex.StateSet indexedStates;
 
     protected RenderDistanceScanTask(boolean keepSearching) {
         this.keepSearching = keepSearching;
@@ -76,7 +72,7 @@ public abstract class RenderDistanceScanTask extends SimpleTask {
             return;
         }
         BlockPos.spiralAround(new BlockPos(Mth.floor(cameraEntity.getX()) >> 4, 0, Mth.floor(cameraEntity.getZ()) >> 4), Minecraft.getInstance().options.renderDistance().get(), Direction.EAST, Direction.SOUTH).iterator().forEachRemaining(pos -> remainingChunks.add(ChunkPos.asLong(pos.getX(), pos.getZ())));
-        currentScanTask = new WeakReference<>(this);
+        activeScanTasks.add(this);
     }
 
     @Override
@@ -107,22 +103,28 @@ public abstract class RenderDistanceScanTask extends SimpleTask {
         ClientLevel level = Minecraft.getInstance().level;
         assert level != null;
 
-        long startTime = System.nanoTime();
+        ChunkBlockIndex.StateSet indexedStates = getIndexedStates();
+
         while (hasChunksRemaining()) {
             ChunkPos chunkPos = new ChunkPos(remainingChunks.removeFirst());
 
-            if (canScanChunk(cameraEntity, chunkPos)) {
-                int minSection = level.getMinSectionY();
-                int maxSection = level.getMaxSectionY();
-                for (int sectionY = minSection; sectionY < maxSection; sectionY++) {
-                    SectionPos sectionPos = SectionPos.of(chunkPos, sectionY);
-                    if (canScanChunkSection(cameraEntity, sectionPos)) {
-                        scanChunkSection(cameraEntity, sectionPos);
+            if (canScanChunk(cameraEntity, chunkPos) && (indexedStates == null || ChunkBlockIndex.mayContain(level, chunkPos, indexedStates))) {
+                BlockEntityIndex.Category blockEntityCategory = getBlockEntityCategory();
+                if (blockEntityCategory != null) {
+                    scanBlockEntities(cameraEntity, chunkPos, blockEntityCategory);
+                } else {
+                    int minSection = level.getMinSectionY();
+                    int maxSection = level.getMaxSectionY();
+                    for (int sectionY = minSection; sectionY < maxSection; sectionY++) {
+                        SectionPos sectionPos = SectionPos.of(chunkPos, sectionY);
+                        if ((indexedStates == null || ChunkBlockIndex.mayContain(level, sectionPos, indexedStates)) && canScanChunkSection(cameraEntity, sectionPos)) {
+                            scanChunkSection(cameraEntity, sectionPos);
+                        }
                     }
                 }
             }
 
-            if (System.nanoTime() - startTime > MAX_SCAN_TIME) {
+            if (shouldYield()) {
                 // wait till next tick
                 return;
             }
@@ -131,12 +133,12 @@ public abstract class RenderDistanceScanTask extends SimpleTask {
 
     @Override
     public void onCompleted() {
-        currentScanTask = null;
+        activeScanTasks.remove(this);
     }
 
     @Override
-    public Set<Object> getMutexKeys() {
-        return MUTEX_KEYS;
+    public Priority getPriority() {
+        return Priority.BACKGROUND;
     }
 
     protected void onBlockStateUpdate(ClientLevel level, BlockPos pos, BlockState oldState, BlockState newState) {
@@ -199,9 +201,69 @@ public abstract class RenderDistanceScanTask extends SimpleTask {
         return section.maybeHas(stateTest);
     }
 
+    /**
+     * If this returns non-null, only blocks whose state matches the filter are passed to {@link #scanBlock}. The filter
+     * is tested once per entry in each section's palette rather than once per block.
+     */
+    @Nullable
+    protected Predicate<BlockState> getBlockStateFilter() {
+        return null;
+    }
+
+    /**
+     * If this returns non-null, only blocks with a block entity in this category are passed to {@link #scanBlock},
+     * which are found from the {@link BlockEntityIndex} rather than by scanning the chunk.
+     */
+    @Nullable
+    protected BlockEntityIndex.Category getBlockEntityCategory() {
+        return null;
+    }
+
+    @Nullable
+    private ChunkBlockIndex.StateSet getIndexedStates() {
+        if (!ChunkBlockIndex.isEnabled()) {
+            return null;
+        }
+        if (indexedStates == null) {
+            Predicate<BlockState> filter = getBlockStateFilter();
+            if (filter == null) {
+                return null;
+            }
+            indexedStates = ChunkBlockIndex.StateSet.of(filter);
+        }
+        return indexedStates;
+    }
+
+    private void scanBlockEntities(Entity cameraEntity, ChunkPos chunkPos, BlockEntityIndex.Category category) throws CommandSyntaxException {
+        ClientLevel level = Minecraft.getInstance().level;
+        assert level != null;
+
+        Predicate<BlockState> filter = getBlockStateFilter();
+        for (BlockPos pos : BlockEntityIndex.getPositions(level, chunkPos, category)) {
+            if ((filter == null || filter.test(level.getBlockState(pos))) && canScanChunkSection(cameraEntity, SectionPos.of(pos))) {
+                scanBlock(cameraEntity, pos);
+            }
+        }
+    }
+
     private void scanChunkSection(Entity cameraEntity, SectionPos sectionPos) throws CommandSyntaxException {
         ClientLevel level = Minecraft.getInstance().level;
         assert level != null;
+
+        Predicate<BlockState> filter = getBlockStateFilter();
+        if (filter != null) {
+            LevelChunk chunk = level.getChunk(sectionPos.getX(), sectionPos.getZ());
+            LevelChunkSection section = chunk.getSection(chunk.getSectionIndexFromSectionY(sectionPos.getY()));
+            int matchCount = PaletteScanner.findMatchingIndices(section.getStates(), filter, matchingIndices);
+            BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+            for (int i = 0; i < matchCount; i++) {
+                int index = matchingIndices[i];
+                pos.set(sectionPos.minBlockX() + PaletteScanner.getX(index), sectionPos.minBlockY() + PaletteScanner.getY(index), sectionPos.minBlockZ() + PaletteScanner.getZ(index));
+                scanBlock(cameraEntity, pos);
+            }
+            return;
+        }
+
         for (BlockPos pos : BlockPos.betweenClosed(sectionPos.minBlockX(), sectionPos.minBlockY(), sectionPos.minBlockZ(), sectionPos.maxBlockX(), sectionPos.maxBlockY(), sectionPos.maxBlockZ())) {
             scanBlock(cameraEntity, pos);
         }
@@ -3,6 +3,7 @@ package net.earthcomputer.clientcommands.task;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import com.mojang.brigadier.exceptions.Dynamic2CommandExceptionType;
 import com.mojang.logging.LogUtils;
+import net.earthcomputer.clientcommands.Configs;
 import net.earthcomputer.clientcommands.command.ClientCommandHelper;
 import net.earthcomputer.clientcommands.event.ClientLevelEvents;
 import net.earthcomputer.clientcommands.features.Relogger;
@@ -13,7 +14,9 @@ import net.minecraft.network.chat.Component;
 import org.slf4j.Logger;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class TaskManager {
@@ -27,29 +30,54 @@ public class TaskManager {
         ClientLevelEvents.UNLOAD_LEVEL.register(TaskManager::onLevelUnload);
     }
 
-    /**
-     * The mutex for all intensive tasks, to make sure only one can run at a time
-     */
-    public static final Object INTENSIVE_TASK_MUTEX = new Object();
-
     private static final Map<String, LongTask> tasks = new LinkedHashMap<>();
     private static long nextTaskId = 1;
     private static String forceAddedTaskName = null;
 
+    private static final Comparator<Map.Entry<String, LongTask>> PRIORITY_ORDER = Comparator.comparing(entry -> entry.getValue().getPriority());
+    private static final List<Map.Entry<String, LongTask>> tickingTasks = new ArrayList<>();
+    private static boolean isTicking = false;
+    private static long sliceEndTime;
+
+    /**
+     * Ticks all tasks within the time budget from {@link Configs#getTaskTickBudgetMillis()}. Each task gets a share of
+     * the budget weighted by its {@link LongTask.Priority}, and once it has used up its share it doesn't run again until
+     * the next tick. Every task still runs at least once per tick, and {@link LongTask.Priority#HIGH} tasks keep running
+     * until they schedule a delay.
+     */
     private static void tick(Minecraft mc) {
         if (tasks.isEmpty()) {
             return;
         }
 
+        long budget = Configs.getTaskTickBudgetMillis() * 1_000_000L;
+        long tickEndTime = System.nanoTime() + budget;
+
+        tickingTasks.clear();
+        tickingTasks.addAll(tasks.entrySet());
+        tickingTasks.sort(PRIORITY_ORDER);
+        int totalWeight = 0;
+        for (var taskEntry : tickingTasks) {
+            taskEntry.getValue().tickTimeNanos = 0;
+            totalWeight += taskEntry.getValue().getPriority().weight;
+        }
+
+        isTicking = true;
         int iterationCount = 0;
-        var iteratingTasks = new ArrayList<>(tasks.entrySet());
-        while (!iteratingTasks.isEmpty()) {
-            var itr = iteratingTasks.iterator();
-            boolean tickedAnyTask = false;
+        while (!tickingTasks.isEmpty()) {
+            var itr = tickingTasks.iterator();
             while (itr.hasNext()) {
                 var taskEntry = itr.next();
                 LongTask task = taskEntry.getValue();
-                tickedAnyTask = true;
+                boolean isHighPriority = task.getPriority() == LongTask.Priority.HIGH;
+                long slice = isHighPriority ? budget : budget * task.getPriority().weight / totalWeight;
+                long startTime = System.nanoTime();
+                sliceEndTime = isHighPriority ? tickEndTime : startTime + slice - task.tickTimeNanos;
+                if (sliceEndTime - tickEndTime > 0) {
+                    sliceEndTime = tickEndTime;
+                }
+
+                boolean doneThisTick;
                 if (!task.isInitialized) {
                     task.initialize();
                     task.isInitialized = true;
@@ -60,21 +88,28 @@ public class TaskManager {
                     if (!taskEntry.getKey().equals(forceAddedTaskName)) {
                         tasks.remove(taskEntry.getKey());
                     }
-                    itr.remove();
+                    doneThisTick = true;
                 } else {
                     task.body();
                     if (!task.isCompleted()) {
                         task.increment();
                     }
-                    if (task.isDelayScheduled()) {
+                    doneThisTick = task.isDelayScheduled();
+                    if (doneThisTick) {
                         task.unscheduleDelay();
-                        itr.remove();
                     }
                 }
-            }
 
-            if (!tickedAnyTask) {
-                break;
+                long endTime = System.nanoTime();
+                task.tickTimeNanos += endTime - startTime;
+                task.cpuTimeNanos += endTime - startTime;
+                if (!isHighPriority && (task.tickTimeNanos >= slice || endTime - tickEndTime >= 0)) {
+                    // out of time, carry on next tick
+                    doneThisTick = true;
+                }
+                if (doneThisTick) {
+                    itr.remove();
+                }
             }
 
             if (FabricLoader.getInstance().isDevelopmentEnvironment() && ++iterationCount == 1000) {
@@ -82,6 +117,11 @@ public class TaskManager {
                 LOGGER.warn("Remember you can use ctrl+F2 in IntelliJ to terminate the game while it has your cursor grabbed.");
             }
         }
+        isTicking = false;
+    }
+
+    static boolean shouldYield() {
+        return isTicking && System.nanoTime() - sliceEndTime >= 0;
     }
 
     private static void onLevelUnload(boolean isDisconnect) {
@@ -146,6 +186,11 @@ public class TaskManager {
         return tasks.keySet();
     }
 
+    public static long getCpuTimeNanos(String name) {
+        LongTask task = tasks.get(name);
+        return task == null ? 0 : task.getCpuTimeNanos();
+    }
+
     public static void removeTask(String name) {
         LongTask task = tasks.get(name);
         if (task != null) {
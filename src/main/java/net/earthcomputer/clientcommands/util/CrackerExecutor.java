@@ -0,0 +1,213 @@
+package net.earthcomputer.clientcommands.util;
+
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.mojang.brigadier.exceptions.SimpleCommandExceptionType;
+import com.mojang.logging.LogUtils;
+import net.minecraft.Util;
+import net.minecraft.network.chat.Component;
+import org.slf4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Function;
+
+/**
+ * The shared compute pool for all RNG crackers and other heavy client-side computations. Jobs are queued in bounded
+ * per-priority queues, and at most one job per worker thread is running at a time, so crackers can't oversubscribe the
+ * CPU. Jobs running on the pool may themselves fork work onto it via {@link ForkJoinPool} tasks.
+ */
+public final class CrackerExecutor {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private static final SimpleCommandExceptionType QUEUE_FULL_EXCEPTION = new SimpleCommandExceptionType(Component.translatable("commands.client.crackerQueueFull"));
+
+    private static final int PARALLELISM = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private static final int MAX_QUEUED_JOBS_PER_PRIORITY = 1024;
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+        PARALLELISM,
+        pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("Cracker Worker #" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        },
+        (thread, e) -> LOGGER.error("Uncaught exception in cracker worker {}", thread.getName(), e),
+        false
+    );
+
+    private static final Object LOCK = new Object();
+    private static final EnumMap<Priority, ArrayDeque<Job<?>>> queues = Util.make(new EnumMap<>(Priority.class), map -> {
+        for (Priority priority : Priority.values()) {
+            map.put(priority, new ArrayDeque<>());
+        }
+    });
+    private static int runningJobs = 0;
+
+    private CrackerExecutor() {
+    }
+
+    /**
+     * Queues a computation to be run on the cracker pool. The computation should regularly check its cancellation
+     * token and return early if it has been cancelled.
+     */
+    public static <T> Job<T> submit(Priority priority, Function<CancellationToken, ? extends T> computation) throws CommandSyntaxException {
+        Job<T> job = new Job<>(priority, computation);
+        synchronized (LOCK) {
+            ArrayDeque<Job<?>> queue = queues.get(priority);
+            if (queue.size() >= MAX_QUEUED_JOBS_PER_PRIORITY) {
+                throw QUEUE_FULL_EXCEPTION.create();
+            }
+            queue.add(job);
+            dispatch();
+        }
+        return job;
+    }
+
+    public static int getParallelism() {
+        return PARALLELISM;
+    }
+
+    public static int getQueuedJobCount() {
+        synchronized (LOCK) {
+            return queues.values().stream().mapToInt(ArrayDeque::size).sum();
+        }
+    }
+
+    private static void dispatch() {
+        while (runningJobs < PARALLELISM) {
+            Job<?> job = pollNextJob();
+            if (job == null) {
+                break;
+            }
+            runningJobs++;
+            POOL.execute(job::run);
+        }
+    }
+
+    private static Job<?> pollNextJob() {
+        for (Priority priority : Priority.values()) {
+            ArrayDeque<Job<?>> queue = queues.get(priority);
+            Job<?> job;
+            while ((job = queue.poll()) != null) {
+                if (!job.token.isCancelled()) {
+                    return job;
+                }
+                job.future.cancel(false);
+            }
+        }
+        return null;
+    }
+
+    private static void onJobFinished() {
+        synchronized (LOCK) {
+            runningJobs--;
+            dispatch();
+        }
+    }
+
+    /**
+     * Job priorities, in order from highest to lowest
+     */
+    public enum Priority {
+        /**
+         * For jobs the player is actively waiting on, e.g. cracking after throwing items
+         */
+        HIGH,
+        NORMAL,
+        /**
+         * For speculative background searches
+         */
+        LOW,
+    }
+
+    public static final class CancellationToken {
+        private volatile boolean cancelled = false;
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public void throwIfCancelled() {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+        }
+    }
+
+    public static final class Job<T> {
+        private final Priority priority;
+        private final Function<CancellationToken, ? extends T> computation;
+        private final CancellationToken token = new CancellationToken();
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Job(Priority priority, Function<CancellationToken, ? extends T> computation) {
+            this.priority = priority;
+            this.computation = computation;
+        }
+
+        private void run() {
+            try {
+                if (token.isCancelled()) {
+                    future.cancel(false);
+                } else {
+                    T result = computation.apply(token);
+                    if (token.isCancelled()) {
+                        future.cancel(false);
+                    } else {
+                        future.complete(result);
+                    }
+                }
+            } catch (CancellationException e) {
+                future.cancel(false);
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                onJobFinished();
+            }
+        }
+
+        public void cancel() {
+            token.cancel();
+            synchronized (LOCK) {
+                if (queues.get(priority).remove(this)) {
+                    future.cancel(false);
+                }
+            }
+        }
+
+        public boolean isCancelled() {
+            return token.isCancelled();
+        }
+
+        public boolean isDone() {
+            return future.isDone();
+        }
+
+        public CancellationToken getToken() {
+            return token;
+        }
+
+        /**
+         * Returns the result of the job, which must be done and not cancelled. Exceptions thrown by the computation
+         * are rethrown wrapped in a {@link CompletionException}.
+         */
+        public T getResult() {
+            return future.join();
+        }
+
+        public CompletableFuture<T> future() {
+            return future;
+        }
+    }
+}
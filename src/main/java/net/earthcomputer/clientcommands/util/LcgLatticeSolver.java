@@ -0,0 +1,146 @@
+package net.earthcomputer.clientcommands.util;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+/**
+ * Finds the seeds of a 48-bit LCG, such as {@link java.util.Random}, from bounds on some of its internal states. The
+ * states are all affine functions of the first one modulo 2<sup>48</sup>, so the candidates for the first state form a
+ * lattice, and the bounds form a box which the lattice points are searched for in.
+ *
+ * <p>The lattice basis is reduced ahead of time by the code generator, which also precomputes its inverse and its
+ * Gram-Schmidt orthogonalization. A search enumerates the lattice points in the smallest ball around the box, using
+ * doubles to find the candidates and wrapping long arithmetic to check them exactly, so it doesn't allocate any big
+ * numbers.
+ */
+public final class LcgLatticeSolver {
+    private static final long MASK = (1L << 48) - 1;
+    private static final double RADIUS_TOLERANCE = 1e-6;
+
+    private final int dimensions;
+    private final long[] multipliers;
+    private final long[] addends;
+    private final long[] basis;
+    private final double[] inverse;
+    private final double[] mu;
+    private final double[] normsSq;
+    private final long seedMultiplier;
+    private final long seedAddend;
+    private final long maxWidth;
+
+    /**
+     * @param multipliers The multiplier of each state relative to the first, the first being 1
+     * @param addends The addend of each state relative to the first, the first being 0
+     * @param basis The reduced lattice basis, by row
+     * @param inverse The inverse of the basis, by row
+     * @param mu The Gram-Schmidt coefficients of the basis, by row
+     * @param normsSq The squared norms of the Gram-Schmidt vectors
+     * @param seedMultiplier The multiplier of the returned seed relative to the first state
+     * @param seedAddend The addend of the returned seed relative to the first state
+     * @param maxWidth The widest bounds on each state that the search is guaranteed to be fast for
+     */
+    public LcgLatticeSolver(long[] multipliers, long[] addends, long[] basis, double[] inverse, double[] mu, double[] normsSq, long seedMultiplier, long seedAddend, long maxWidth) {
+        this.dimensions = multipliers.length;
+        this.multipliers = multipliers;
+        this.addends = addends;
+        this.basis = basis;
+        this.inverse = inverse;
+        this.mu = mu;
+        this.normsSq = normsSq;
+        this.seedMultiplier = seedMultiplier;
+        this.seedAddend = seedAddend;
+        this.maxWidth = maxWidth;
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Returns whether all the bounds are narrow enough for a fast search
+     */
+    public boolean canSolve(long[] minStates, long[] maxStates) {
+        for (int i = 0; i < dimensions; i++) {
+            if (maxStates[i] - minStates[i] > maxWidth) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the seeds for which each state {@code i} is at least {@code minStates[i]} and less than
+     * {@code maxStates[i]}.
+     */
+    public long[] findSeeds(long[] minStates, long[] maxStates) {
+        LongArrayList seeds = new LongArrayList();
+        for (int i = 0; i < dimensions; i++) {
+            if (minStates[i] >= maxStates[i]) {
+                return seeds.toLongArray();
+            }
+        }
+
+        // the center of the box, relative to the lattice, in terms of the basis
+        double[] target = new double[dimensions];
+        double radiusSq = 0;
+        for (int i = 0; i < dimensions; i++) {
+            target[i] = (minStates[i] + maxStates[i]) * 0.5 - addends[i];
+            double halfWidth = (maxStates[i] - minStates[i]) * 0.5;
+            radiusSq += halfWidth * halfWidth;
+        }
+        radiusSq *= 1 + RADIUS_TOLERANCE;
+        double[] center = new double[dimensions];
+        for (int j = 0; j < dimensions; j++) {
+            double sum = 0;
+            for (int i = 0; i < dimensions; i++) {
+                sum += target[i] * inverse[i * dimensions + j];
+            }
+            center[j] = sum;
+        }
+
+        long[] coefficients = new long[dimensions];
+        double[] offsets = new double[dimensions];
+        enumerate(dimensions - 1, radiusSq, center, coefficients, offsets, minStates, maxStates, seeds);
+        return seeds.toLongArray();
+    }
+
+    /**
+     * Chooses the coefficient of the given basis vector, having chosen those of the later ones
+     */
+    private void enumerate(int index, double remainingSq, double[] center, long[] coefficients, double[] offsets, long[] minStates, long[] maxStates, LongArrayList seeds) {
+        if (index < 0) {
+            checkCandidate(coefficients, minStates, maxStates, seeds);
+            return;
+        }
+
+        double projectedCenter = center[index];
+        for (int j = index + 1; j < dimensions; j++) {
+            projectedCenter -= mu[j * dimensions + index] * offsets[j];
+        }
+        double range = Math.sqrt(remainingSq / normsSq[index]);
+        long from = (long) Math.ceil(projectedCenter - range);
+        long to = (long) Math.floor(projectedCenter + range);
+        for (long coefficient = from; coefficient <= to; coefficient++) {
+            double distance = coefficient - projectedCenter;
+            coefficients[index] = coefficient;
+            offsets[index] = coefficient - center[index];
+            enumerate(index - 1, Math.max(0, remainingSq - distance * distance * normsSq[index]), center, coefficients, offsets, minStates, maxStates, seeds);
+        }
+    }
+
+    private void checkCandidate(long[] coefficients, long[] minStates, long[] maxStates, LongArrayList seeds) {
+        // only the low 48 bits matter, so overflow is harmless
+        long firstState = 0;
+        for (int i = 0; i < dimensions; i++) {
+            firstState += coefficients[i] * basis[i * dimensions];
+        }
+        firstState &= MASK;
+
+        for (int i = 0; i < dimensions; i++) {
+            long state = (firstState * multipliers[i] + addends[i]) & MASK;
+            if (state < minStates[i] || state >= maxStates[i]) {
+                return;
+            }
+        }
+        seeds.add((firstState * seedMultiplier + seedAddend) & MASK);
+    }
+}
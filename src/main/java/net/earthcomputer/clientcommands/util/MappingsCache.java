@@ -0,0 +1,510 @@
+package net.earthcomputer.clientcommands.util;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.fabricmc.mappingio.tree.MappingTree;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact binary form of the class and field mappings, which can be memory-mapped on later launches instead of
+ * parsing the mappings text files again. Every name is stored once in a sorted string table, and classes and fields
+ * refer to names by their index in the table. For each namespace, the classes and fields are also stored in order of
+ * their name in that namespace, so that lookups are binary searches over the mapped file.
+ *
+ * <p>The file layout, with all numbers as big-endian ints:
+ * <pre>
+ * header:  magic "CCMC", format version, key length, UTF-8 key
+ * strings: count, count + 1 offsets into the data, UTF-8 data sorted by unsigned bytes
+ * classes: count, for each class a string index per namespace (-1 if absent),
+ *          then for each namespace the class indices in order of their name
+ * fields:  count, for each field its class index and a string index per namespace,
+ *          then for each namespace the field indices in order of their class name then field name
+ * </pre>
+ *
+ * <p>Only absolute reads are used on the buffer, so lookups are safe from any thread.
+ */
+public final class MappingsCache {
+    public static final int OFFICIAL = 0;
+    public static final int MOJMAP = 1;
+    public static final int INTERMEDIARY = 2;
+    public static final int NAMED = 3;
+    private static final int NAMESPACE_COUNT = 4;
+
+    private static final int MAGIC = 0x43434D43; // CCMC
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int MAX_KEY_LENGTH = 4096;
+
+    // destination namespaces of the mappings trees that are joined
+    private static final int PROGUARD_OFFICIAL = 0;
+    private static final int TINY_INTERMEDIARY = 0;
+    private static final int TINY_NAMED = 1;
+
+    private final ByteBuffer buffer;
+    private final int stringCount;
+    private final int stringOffsetsStart;
+    private final int stringDataStart;
+    private final int classCount;
+    private final int classNamesStart;
+    private final int classOrderStart;
+    private final int fieldCount;
+    private final int fieldsStart;
+    private final int fieldOrderStart;
+
+    private MappingsCache(ByteBuffer buffer, int start) throws IOException {
+        this.buffer = buffer;
+        int position = start;
+        try {
+            this.stringCount = checkCount(buffer.getInt(position));
+            this.stringOffsetsStart = position + 4;
+            this.stringDataStart = stringOffsetsStart + (stringCount + 1) * 4;
+            position = stringDataStart + buffer.getInt(stringOffsetsStart + stringCount * 4);
+
+            this.classCount = checkCount(buffer.getInt(position));
+            this.classNamesStart = position + 4;
+            this.classOrderStart = classNamesStart + classCount * NAMESPACE_COUNT * 4;
+            position = classOrderStart + classCount * NAMESPACE_COUNT * 4;
+
+            this.fieldCount = checkCount(buffer.getInt(position));
+            this.fieldsStart = position + 4;
+            this.fieldOrderStart = fieldsStart + fieldCount * (1 + NAMESPACE_COUNT) * 4;
+            position = fieldOrderStart + fieldCount * NAMESPACE_COUNT * 4;
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated mappings cache", e);
+        }
+        if (position != buffer.limit()) {
+            throw new IOException("Mappings cache has the wrong size");
+        }
+    }
+
+    private static int checkCount(int count) throws IOException {
+        if (count < 0 || count > 1 << 26) {
+            throw new IOException("Corrupt mappings cache");
+        }
+        return count;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Joins the mojmap classes and fields with their intermediary and named names through their official names
+     *
+     * @param mojmapOfficial The ProGuard mappings, from mojmap to official names
+     * @param officialIntermediaryNamed The tiny mappings, from official to intermediary and optionally named names
+     */
+    public static Builder join(MappingTree mojmapOfficial, @Nullable MappingTree officialIntermediaryNamed) {
+        Builder builder = builder();
+        boolean hasNamed = officialIntermediaryNamed != null && officialIntermediaryNamed.getDstNamespaces().size() > TINY_NAMED;
+        for (MappingTree.ClassMapping mojmapClass : mojmapOfficial.getClasses()) {
+            String officialClass = mojmapClass.getDstName(PROGUARD_OFFICIAL);
+            MappingTree.ClassMapping tinyClass = officialIntermediaryNamed == null || officialClass == null ? null : officialIntermediaryNamed.getClass(officialClass);
+            int classIndex = builder.addClass(
+                officialClass,
+                mojmapClass.getSrcName(),
+                tinyClass == null ? null : tinyClass.getDstName(TINY_INTERMEDIARY),
+                tinyClass == null || !hasNamed ? null : tinyClass.getDstName(TINY_NAMED)
+            );
+
+            for (MappingTree.FieldMapping mojmapField : mojmapClass.getFields()) {
+                String officialField = mojmapField.getDstName(PROGUARD_OFFICIAL);
+                MappingTree.FieldMapping tinyField = null;
+                if (tinyClass != null && officialField != null) {
+                    // obfuscated fields can share a name if their types differ
+                    tinyField = tinyClass.getField(officialField, mojmapField.getDstDesc(PROGUARD_OFFICIAL));
+                    if (tinyField == null) {
+                        tinyField = tinyClass.getField(officialField, null);
+                    }
+                }
+                builder.addField(
+                    classIndex,
+                    officialField,
+                    mojmapField.getSrcName(),
+                    tinyField == null ? null : tinyField.getDstName(TINY_INTERMEDIARY),
+                    tinyField == null || !hasNamed ? null : tinyField.getDstName(TINY_NAMED)
+                );
+            }
+        }
+        return builder;
+    }
+
+    /**
+     * Memory-maps a cache file written by {@link #write}, or returns {@code null} if the file doesn't exist or
+     * was written with a different key or format version
+     */
+    @Nullable
+    public static MappingsCache open(Path file, String key) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // check the header before mapping the file, so a stale file isn't left mapped while it's being replaced
+            byte[] expectedKey = key.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + expectedKey.length);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    return null;
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != expectedKey.length) {
+                return null;
+            }
+            if (!header.equals(ByteBuffer.wrap(expectedKey))) {
+                return null;
+            }
+
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappingsCache(mapped, HEADER_SIZE + expectedKey.length);
+        }
+    }
+
+    /**
+     * Reads a cache from a buffer holding the contents of a cache file, or returns {@code null} if it was written with
+     * a different key or format version
+     */
+    @Nullable
+    public static MappingsCache read(ByteBuffer buffer, String key) throws IOException {
+        byte[] expectedKey = key.getBytes(StandardCharsets.UTF_8);
+        if (buffer.limit() < HEADER_SIZE + expectedKey.length) {
+            return null;
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != expectedKey.length) {
+            return null;
+        }
+        if (!buffer.slice(HEADER_SIZE, expectedKey.length).equals(ByteBuffer.wrap(expectedKey))) {
+            return null;
+        }
+        return new MappingsCache(buffer, HEADER_SIZE + expectedKey.length);
+    }
+
+    /**
+     * Writes the contents of a cache file built by {@link Builder#build}, replacing the file atomically where possible
+     */
+    public static void write(Path file, ByteBuffer contents) throws IOException {
+        ByteBuffer buffer = contents.duplicate();
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        try {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Maps a class name from one namespace to another
+     */
+    @Nullable
+    public String mapClass(int fromNamespace, int toNamespace, String name) {
+        int nameId = findString(name);
+        if (nameId < 0) {
+            return null;
+        }
+
+        int orderStart = classOrderStart + fromNamespace * classCount * 4;
+        int low = 0;
+        int high = classCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int classIndex = buffer.getInt(orderStart + mid * 4);
+            int midNameId = getClassName(classIndex, fromNamespace);
+            if (midNameId < nameId) {
+                low = mid + 1;
+            } else if (midNameId > nameId) {
+                high = mid - 1;
+            } else {
+                return getStringOrNull(getClassName(classIndex, toNamespace));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Maps a field name from one namespace to another, given the name of its class in the first namespace. If there
+     * are several fields with the same name, such as obfuscated fields with different types, the first one is used.
+     */
+    @Nullable
+    public String mapField(int fromNamespace, int toNamespace, String owner, String name) {
+        int ownerId = findString(owner);
+        int nameId = findString(name);
+        if (ownerId < 0 || nameId < 0) {
+            return null;
+        }
+        long key = fieldKey(ownerId, nameId);
+
+        // find the first field with the key
+        int orderStart = fieldOrderStart + fromNamespace * fieldCount * 4;
+        int low = 0;
+        int high = fieldCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getFieldKey(buffer.getInt(orderStart + mid * 4), fromNamespace) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low == fieldCount) {
+            return null;
+        }
+        int fieldIndex = buffer.getInt(orderStart + low * 4);
+        if (getFieldKey(fieldIndex, fromNamespace) != key) {
+            return null;
+        }
+        return getStringOrNull(getFieldName(fieldIndex, toNamespace));
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * The names of the classes in a namespace, decoded when accessed. Contains {@code null} for classes which don't
+     * exist in the namespace.
+     */
+    public List<String> getClassNames(int namespace) {
+        return new AbstractList<>() {
+            @Override
+            public @Nullable String get(int index) {
+                if (index < 0 || index >= classCount) {
+                    throw new IndexOutOfBoundsException(index);
+                }
+                return getStringOrNull(getClassName(index, namespace));
+            }
+
+            @Override
+            public int size() {
+                return classCount;
+            }
+        };
+    }
+
+    private int getClassName(int classIndex, int namespace) {
+        return buffer.getInt(classNamesStart + (classIndex * NAMESPACE_COUNT + namespace) * 4);
+    }
+
+    private int getFieldName(int fieldIndex, int namespace) {
+        return buffer.getInt(fieldsStart + (fieldIndex * (1 + NAMESPACE_COUNT) + 1 + namespace) * 4);
+    }
+
+    private long getFieldKey(int fieldIndex, int namespace) {
+        int classIndex = buffer.getInt(fieldsStart + fieldIndex * (1 + NAMESPACE_COUNT) * 4);
+        return fieldKey(getClassName(classIndex, namespace), getFieldName(fieldIndex, namespace));
+    }
+
+    private static long fieldKey(int ownerId, int nameId) {
+        // absent names are -1, which sort before all present ones
+        return (long) ownerId << 32 | (nameId + 1L);
+    }
+
+    private int findString(String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = stringCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareString(mid, bytes);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compareString(int id, byte[] bytes) {
+        int start = stringDataStart + buffer.getInt(stringOffsetsStart + id * 4);
+        int length = stringDataStart + buffer.getInt(stringOffsetsStart + id * 4 + 4) - start;
+        int commonLength = Math.min(length, bytes.length);
+        for (int i = 0; i < commonLength; i++) {
+            int cmp = Byte.compareUnsigned(buffer.get(start + i), bytes[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, bytes.length);
+    }
+
+    @Nullable
+    private String getStringOrNull(int id) {
+        if (id < 0) {
+            return null;
+        }
+        int start = stringDataStart + buffer.getInt(stringOffsetsStart + id * 4);
+        byte[] bytes = new byte[stringDataStart + buffer.getInt(stringOffsetsStart + id * 4 + 4) - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static final class Builder {
+        private final Object2IntOpenHashMap<String> stringIds = new Object2IntOpenHashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private final IntArrayList classNames = new IntArrayList();
+        private final IntArrayList fields = new IntArrayList();
+
+        private Builder() {
+            stringIds.defaultReturnValue(-1);
+        }
+
+        /**
+         * @return The index of the class, to pass to {@link #addField}
+         */
+        public int addClass(@Nullable String official, @Nullable String mojmap, @Nullable String intermediary, @Nullable String named) {
+            int classIndex = classNames.size() / NAMESPACE_COUNT;
+            classNames.add(intern(official));
+            classNames.add(intern(mojmap));
+            classNames.add(intern(intermediary));
+            classNames.add(intern(named));
+            return classIndex;
+        }
+
+        public void addField(int classIndex, @Nullable String official, @Nullable String mojmap, @Nullable String intermediary, @Nullable String named) {
+            fields.add(classIndex);
+            fields.add(intern(official));
+            fields.add(intern(mojmap));
+            fields.add(intern(intermediary));
+            fields.add(intern(named));
+        }
+
+        private int intern(@Nullable String string) {
+            if (string == null) {
+                return -1;
+            }
+            int id = stringIds.getInt(string);
+            if (id < 0) {
+                id = strings.size();
+                stringIds.put(string, id);
+                strings.add(string);
+            }
+            return id;
+        }
+
+        /**
+         * Builds the contents of a cache file
+         */
+        public ByteBuffer build(String key) {
+            // sort the strings, so that string ids are in the same order as the strings
+            int stringCount = strings.size();
+            byte[][] stringBytes = new byte[stringCount][];
+            for (int i = 0; i < stringCount; i++) {
+                stringBytes[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+            }
+            int[] sortedStrings = new int[stringCount];
+            Arrays.setAll(sortedStrings, i -> i);
+            IntArrays.mergeSort(sortedStrings, (a, b) -> Arrays.compareUnsigned(stringBytes[a], stringBytes[b]));
+            int[] newIds = new int[stringCount];
+            for (int i = 0; i < stringCount; i++) {
+                newIds[sortedStrings[i]] = i;
+            }
+
+            int classCount = classNames.size() / NAMESPACE_COUNT;
+            int[] classes = classNames.toIntArray();
+            for (int i = 0; i < classes.length; i++) {
+                classes[i] = remap(classes[i], newIds);
+            }
+            int fieldCount = fields.size() / (1 + NAMESPACE_COUNT);
+            int[] fieldData = fields.toIntArray();
+            for (int i = 0; i < fieldCount; i++) {
+                for (int ns = 0; ns < NAMESPACE_COUNT; ns++) {
+                    int index = i * (1 + NAMESPACE_COUNT) + 1 + ns;
+                    fieldData[index] = remap(fieldData[index], newIds);
+                }
+            }
+
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            if (keyBytes.length > MAX_KEY_LENGTH) {
+                throw new IllegalArgumentException("Key is too long");
+            }
+            int stringDataLength = 0;
+            for (byte[] bytes : stringBytes) {
+                stringDataLength += bytes.length;
+            }
+            int size = HEADER_SIZE + keyBytes.length
+                + 4 + (stringCount + 1) * 4 + stringDataLength
+                + 4 + classCount * NAMESPACE_COUNT * 4 * 2
+                + 4 + fieldCount * (1 + NAMESPACE_COUNT) * 4 + fieldCount * NAMESPACE_COUNT * 4;
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(keyBytes.length).put(keyBytes);
+
+            buffer.putInt(stringCount);
+            int offset = 0;
+            for (int id : sortedStrings) {
+                buffer.putInt(offset);
+                offset += stringBytes[id].length;
+            }
+            buffer.putInt(offset);
+            for (int id : sortedStrings) {
+                buffer.put(stringBytes[id]);
+            }
+
+            buffer.putInt(classCount);
+            for (int name : classes) {
+                buffer.putInt(name);
+            }
+            for (int ns = 0; ns < NAMESPACE_COUNT; ns++) {
+                int namespace = ns;
+                int[] order = new int[classCount];
+                Arrays.setAll(order, i -> i);
+                IntArrays.mergeSort(order, (a, b) -> Integer.compare(classes[a * NAMESPACE_COUNT + namespace], classes[b * NAMESPACE_COUNT + namespace]));
+                for (int classIndex : order) {
+                    buffer.putInt(classIndex);
+                }
+            }
+
+            buffer.putInt(fieldCount);
+            for (int value : fieldData) {
+                buffer.putInt(value);
+            }
+            for (int ns = 0; ns < NAMESPACE_COUNT; ns++) {
+                int namespace = ns;
+                long[] keys = new long[fieldCount];
+                for (int i = 0; i < fieldCount; i++) {
+                    int classIndex = fieldData[i * (1 + NAMESPACE_COUNT)];
+                    keys[i] = fieldKey(classes[classIndex * NAMESPACE_COUNT + namespace], fieldData[i * (1 + NAMESPACE_COUNT) + 1 + namespace]);
+                }
+                int[] order = new int[fieldCount];
+                Arrays.setAll(order, i -> i);
+                // stable, so that the first of several fields with the same name is found first
+                IntArrays.mergeSort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+                for (int fieldIndex : order) {
+                    buffer.putInt(fieldIndex);
+                }
+            }
+
+            return buffer.flip();
+        }
+
+        private static int remap(int id, int[] newIds) {
+            return id < 0 ? id : newIds[id];
+        }
+    }
+}
@@ -9,30 +9,33 @@ import net.earthcomputer.clientcommands.command.ListenCommand;
 import net.fabricmc.loader.api.FabricLoader;
 import net.fabricmc.mappingio.MappingReader;
 import net.fabricmc.mappingio.format.MappingFormat;
-import net.fabricmc.mappingio.tree.MappingTree;
 import net.fabricmc.mappingio.tree.MemoryMappingTree;
 import net.minecraft.DetectedVersion;
 import net.minecraft.Optionull;
-import net.minecraft.Util;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.StringReader;
 import java.io.UncheckedIOException;
 import java.net.URI;
+import java.net.URL;
+import java.net.URLConnection;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.util.Collection;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
@@ -58,8 +61,47 @@ public final class MappingsHelper {
         }
     }
 
-    private static final CompletableFuture<MemoryMappingTree> mojmapOfficial = Util.make(() -> {
+    private static final CompletableFuture<MappingsCache> mappings = loadMappings();
+
+    /**
+     * Memory-maps the mappings cache if it's up to date. Otherwise parses the mappings text files, which is much slower,
+     * and writes the cache for next time.
+     */
+    private static CompletableFuture<MappingsCache> loadMappings() {
         String version = DetectedVersion.BUILT_IN.getName();
+        Path cacheFile = MAPPINGS_DIR.resolve(version + ".cache");
+        URL tinyMappingsUrl = FabricLoader.class.getClassLoader().getResource("mappings/mappings.tiny");
+        if (tinyMappingsUrl == null) {
+            LOGGER.error("Could not find mappings.tiny");
+            ListenCommand.disable();
+        }
+        String cacheKey = version + ";dev=" + IS_DEV_ENV + ";tiny=" + getTinyMappingsKey(tinyMappingsUrl);
+
+        try {
+            MappingsCache cache = MappingsCache.open(cacheFile, cacheKey);
+            if (cache != null) {
+                return CompletableFuture.completedFuture(cache);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not read mappings cache, rebuilding it", e);
+        }
+
+        return loadMojmapOfficial(version).thenApply(mojmapOfficial -> {
+            ByteBuffer contents = MappingsCache.join(mojmapOfficial, readOfficialIntermediaryNamed(tinyMappingsUrl)).build(cacheKey);
+            try {
+                MappingsCache.write(cacheFile, contents);
+            } catch (IOException e) {
+                LOGGER.error("Could not write mappings cache", e);
+            }
+            try {
+                return Objects.requireNonNull(MappingsCache.read(contents, cacheKey));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static CompletableFuture<MemoryMappingTree> loadMojmapOfficial(String version) {
         try (BufferedReader reader = Files.newBufferedReader(MAPPINGS_DIR.resolve(version + ".txt"))) {
             MemoryMappingTree tree = new MemoryMappingTree();
             MappingReader.read(reader, MappingFormat.PROGUARD_FILE, tree);
@@ -127,95 +169,70 @@ public final class MappingsHelper {
                     }
                 });
         }
-    });
-    private static final int SRC_OFFICIAL = 0;
-    private static final int DEST_OFFICIAL = 0;
-
-    private static final MemoryMappingTree officialIntermediaryNamed = Util.make(() -> {
-        try (InputStream stream = FabricLoader.class.getClassLoader().getResourceAsStream("mappings/mappings.tiny")) {
-            if (stream == null) {
-                throw new IOException("Could not find mappings.tiny");
-            }
+    }
+
+    /**
+     * Identifies the tiny mappings without reading them, so that loading the cache doesn't have to. The URL names the
+     * jar the mappings are in, which includes their version, and the size and modification time catch the jar being
+     * replaced in place.
+     */
+    private static String getTinyMappingsKey(@Nullable URL tinyMappingsUrl) {
+        if (tinyMappingsUrl == null) {
+            return "none";
+        }
+        try {
+            URLConnection connection = tinyMappingsUrl.openConnection();
+            return tinyMappingsUrl + ";size=" + connection.getContentLengthLong() + ";modified=" + connection.getLastModified();
+        } catch (IOException e) {
+            LOGGER.warn("Could not check mappings.tiny, the mappings cache will be rebuilt", e);
+            return "unknown;" + System.nanoTime();
+        }
+    }
+
+    private static @Nullable MemoryMappingTree readOfficialIntermediaryNamed(@Nullable URL tinyMappingsUrl) {
+        if (tinyMappingsUrl == null) {
+            return null;
+        }
+        try (Reader reader = new InputStreamReader(tinyMappingsUrl.openStream(), StandardCharsets.UTF_8)) {
             MemoryMappingTree tree = new MemoryMappingTree();
-            MappingReader.read(new InputStreamReader(stream), IS_DEV_ENV ? MappingFormat.TINY_2_FILE : MappingFormat.TINY_FILE, tree);
+            MappingReader.read(reader, IS_DEV_ENV ? MappingFormat.TINY_2_FILE : MappingFormat.TINY_FILE, tree);
             return tree;
         } catch (IOException e) {
             LOGGER.error("Could not read mappings.tiny", e);
             ListenCommand.disable();
             return null;
         }
-    });
-    private static final int SRC_INTERMEDIARY = 0;
-    private static final int DEST_INTERMEDIARY = 0;
-    private static final int SRC_NAMED = 1;
-    private static final int DEST_NAMED = 1;
-
-    public static @Nullable Collection<? extends MappingTree.ClassMapping> mojmapClasses() {
-        return Optionull.map(getMojmapOfficial(), MemoryMappingTree::getClasses);
+    }
+
+    /**
+     * The mojmap names of all classes
+     */
+    public static @Nullable Collection<String> mojmapClasses() {
+        return Optionull.map(getMappings(), cache -> cache.getClassNames(MappingsCache.MOJMAP));
     }
 
     public static @Nullable String mojmapToOfficial_class(String mojmapClass) {
-        MappingTree.ClassMapping officialClass = Optionull.map(getMojmapOfficial(), tree -> tree.getClass(mojmapClass));
-        if (officialClass == null) {
-            return null;
-        }
-        return officialClass.getDstName(DEST_OFFICIAL);
+        return mapClass(MappingsCache.MOJMAP, MappingsCache.OFFICIAL, mojmapClass);
     }
 
     public static @Nullable String officialToMojmap_class(String officialClass) {
-        MappingTree.ClassMapping mojmapClass = Optionull.map(getMojmapOfficial(), tree -> tree.getClass(officialClass, SRC_OFFICIAL));
-        if (mojmapClass == null) {
-            return null;
-        }
-        return mojmapClass.getSrcName();
+        return mapClass(MappingsCache.OFFICIAL, MappingsCache.MOJMAP, officialClass);
     }
 
     public static @Nullable String mojmapToNamed_class(String mojmapClass) {
-        String officialClass = mojmapToOfficial_class(mojmapClass);
-        if (officialClass == null) {
-            return null;
-        }
-        MappingTree.ClassMapping namedClass = officialIntermediaryNamed.getClass(officialClass);
-        if (namedClass == null) {
-            return null;
-        }
-        return namedClass.getDstName(DEST_NAMED);
+        return mapClass(MappingsCache.MOJMAP, MappingsCache.NAMED, mojmapClass);
     }
 
     public static @Nullable String namedToMojmap_class(String namedClass) {
-        MappingTree.ClassMapping officialClass = officialIntermediaryNamed.getClass(namedClass, SRC_NAMED);
-        if (officialClass == null) {
-            return null;
-        }
-        MappingTree.ClassMapping mojmapClass = Optionull.map(getMojmapOfficial(), tree -> tree.getClass(officialClass.getSrcName(), SRC_OFFICIAL));
-        if (mojmapClass == null) {
-            return null;
-        }
-        return mojmapClass.getSrcName();
+        return mapClass(MappingsCache.NAMED, MappingsCache.MOJMAP, namedClass);
     }
 
     public static @Nullable String mojmapToIntermediary_class(String mojmapClass) {
-        String officialClass = mojmapToOfficial_class(mojmapClass);
-        if (officialClass == null) {
-            return null;
-        }
-        MappingTree.ClassMapping intermediaryClass = officialIntermediaryNamed.getClass(officialClass);
-        if (intermediaryClass == null) {
-            return null;
-        }
-        return intermediaryClass.getDstName(DEST_INTERMEDIARY);
+        return mapClass(MappingsCache.MOJMAP, MappingsCache.INTERMEDIARY, mojmapClass);
     }
 
     public static @Nullable String intermediaryToMojmap_class(String intermediaryClass) {
-        MappingTree.ClassMapping officialClass = officialIntermediaryNamed.getClass(intermediaryClass, SRC_INTERMEDIARY);
-        if (officialClass == null) {
-            return null;
-        }
-        MappingTree.ClassMapping mojmapClass = Optionull.map(getMojmapOfficial(), tree -> tree.getClass(officialClass.getSrcName(), SRC_OFFICIAL));
-        if (mojmapClass == null) {
-            return null;
-        }
-        return mojmapClass.getSrcName();
+        return mapClass(MappingsCache.INTERMEDIARY, MappingsCache.MOJMAP, intermediaryClass);
     }
 
     public static @Nullable String namedOrIntermediaryToMojmap_class(String namedOrIntermediaryClass) {
@@ -233,43 +250,15 @@ public final class MappingsHelper {
     }
 
     public static @Nullable String officialToMojmap_field(String officialClass, String officialField) {
-        MappingTree.FieldMapping mojmapField = Optionull.map(getMojmapOfficial(), tree -> tree.getField(officialClass, officialField, null));
-        if (mojmapField == null) {
-            return null;
-        }
-        return mojmapField.getSrcName();
+        return mapField(MappingsCache.OFFICIAL, MappingsCache.MOJMAP, officialClass, officialField);
     }
 
     public static @Nullable String namedToMojmap_field(String namedClass, String namedField) {
-        MappingTree.ClassMapping officialClass = officialIntermediaryNamed.getClass(namedClass, SRC_NAMED);
-        if (officialClass == null) {
-            return null;
-        }
-        MappingTree.FieldMapping officialField = officialIntermediaryNamed.getField(namedClass, namedField, null, SRC_NAMED);
-        if (officialField == null) {
-            return null;
-        }
-        MappingTree.FieldMapping mojmapField = Optionull.map(getMojmapOfficial(), tree -> tree.getField(officialClass.getSrcName(), officialField.getSrcName(), null, SRC_OFFICIAL));
-        if (mojmapField == null) {
-            return null;
-        }
-        return mojmapField.getSrcName();
+        return mapField(MappingsCache.NAMED, MappingsCache.MOJMAP, namedClass, namedField);
     }
 
     public static @Nullable String intermediaryToMojmap_field(String intermediaryClass, String intermediaryField) {
-        MappingTree.ClassMapping officialClass = officialIntermediaryNamed.getClass(intermediaryClass, SRC_INTERMEDIARY);
-        if (officialClass == null) {
-            return null;
-        }
-        MappingTree.FieldMapping officialField = officialIntermediaryNamed.getField(intermediaryClass, intermediaryField, null, SRC_INTERMEDIARY);
-        if (officialField == null) {
-            return null;
-        }
-        MappingTree.FieldMapping mojmapField = Optionull.map(getMojmapOfficial(), tree -> tree.getField(officialClass.getSrcName(), officialField.getSrcName(), null, SRC_OFFICIAL));
-        if (mojmapField == null) {
-            return null;
-        }
-        return mojmapField.getSrcName();
+        return mapField(MappingsCache.INTERMEDIARY, MappingsCache.MOJMAP, intermediaryClass, intermediaryField);
     }
 
     public static @Nullable String namedOrIntermediaryToMojmap_field(String namedOrIntermediaryClass, String namedOrIntermediaryField) {
@@ -279,9 +268,19 @@ public final class MappingsHelper {
         return intermediaryToMojmap_field(namedOrIntermediaryClass, namedOrIntermediaryField);
     }
 
-    private static MemoryMappingTree getMojmapOfficial() {
+    private static @Nullable String mapClass(int fromNamespace, int toNamespace, String name) {
+        MappingsCache cache = getMappings();
+        return cache == null ? null : cache.mapClass(fromNamespace, toNamespace, name);
+    }
+
+    private static @Nullable String mapField(int fromNamespace, int toNamespace, String owner, String name) {
+        MappingsCache cache = getMappings();
+        return cache == null ? null : cache.mapField(fromNamespace, toNamespace, owner, name);
+    }
+
+    private static @Nullable MappingsCache getMappings() {
         try {
-            return mojmapOfficial.get();
+            return mappings.get();
         } catch (ExecutionException | InterruptedException e) {
             LOGGER.error("mojmap mappings were not available", e);
             ListenCommand.disable();
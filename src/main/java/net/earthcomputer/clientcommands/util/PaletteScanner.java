@@ -0,0 +1,120 @@
+package net.earthcomputer.clientcommands.util;
+
+import it.unimi.dsi.fastutil.ints.Int2BooleanOpenHashMap;
+import net.minecraft.util.BitStorage;
+import net.minecraft.world.level.chunk.Palette;
+import net.minecraft.world.level.chunk.PalettedContainer;
+
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Reads chunk sections through their palette, so that predicates are tested once per distinct value rather than once
+ * per position.
+ *
+ * <p>Indices are in the order used by {@link PalettedContainer.Strategy#SECTION_STATES}, i.e. {@code (y << 8) | (z << 4) | x}.
+ */
+public final class PaletteScanner {
+    public static final int SECTION_VOLUME = 16 * 16 * 16;
+
+    private PaletteScanner() {
+    }
+
+    public static int getX(int index) {
+        return index & 15;
+    }
+
+    public static int getY(int index) {
+        return index >> 8;
+    }
+
+    public static int getZ(int index) {
+        return (index >> 4) & 15;
+    }
+
+    /**
+     * Writes the indices of every value in the container that matches the filter into {@code result}, in ascending
+     * order, and returns how many were written. {@code result} must have room for {@link #SECTION_VOLUME} indices.
+     */
+    public static <T> int findMatchingIndices(PalettedContainer<T> container, Predicate<? super T> filter, int[] result) {
+        PalettedContainer.Data<T> data = container.data;
+        Palette<T> palette = data.palette();
+        BitStorage storage = data.storage();
+        int paletteSize = palette.getSize();
+
+        if (paletteSize > SECTION_VOLUME) {
+            // the global palette has more entries than the section has positions, test each distinct id lazily
+            Int2BooleanOpenHashMap matchesById = new Int2BooleanOpenHashMap();
+            IndexCollector collector = new IndexCollector(result, id -> matchesById.computeIfAbsent(id, k -> filter.test(palette.valueFor(k))));
+            storage.getAll(collector);
+            return collector.count;
+        }
+
+        boolean[] matchesById = new boolean[paletteSize];
+        boolean anyMatch = false;
+        boolean allMatch = true;
+        for (int id = 0; id < paletteSize; id++) {
+            boolean matches = filter.test(palette.valueFor(id));
+            matchesById[id] = matches;
+            anyMatch |= matches;
+            allMatch &= matches;
+        }
+
+        if (!anyMatch) {
+            return 0;
+        }
+        if (allMatch) {
+            for (int i = 0; i < SECTION_VOLUME; i++) {
+                result[i] = i;
+            }
+            return SECTION_VOLUME;
+        }
+
+        IndexCollector collector = new IndexCollector(result, id -> matchesById[id]);
+        storage.getAll(collector);
+        return collector.count;
+    }
+
+    /**
+     * Calls the consumer once with every distinct value in the container. Values which have since been replaced in the
+     * container may also be included, if they are still in the palette.
+     */
+    public static <T> void forEachDistinctValue(PalettedContainer<T> container, Consumer<? super T> consumer) {
+        Palette<T> palette = container.data.palette();
+        int paletteSize = palette.getSize();
+        if (paletteSize > SECTION_VOLUME) {
+            container.count((value, count) -> consumer.accept(value));
+            return;
+        }
+
+        for (int id = 0; id < paletteSize; id++) {
+            consumer.accept(palette.valueFor(id));
+        }
+    }
+
+    private static final class IndexCollector implements IntConsumer {
+        private final int[] result;
+        private final IdFilter filter;
+        private int index = 0;
+        private int count = 0;
+
+        private IndexCollector(int[] result, IdFilter filter) {
+            this.result = result;
+            this.filter = filter;
+        }
+
+        @Override
+        public void accept(int id) {
+            if (filter.test(id)) {
+                result[count++] = index;
+            }
+            index++;
+        }
+    }
+
+    @FunctionalInterface
+    private interface IdFilter {
+        boolean test(int id);
+    }
+}
@@ -0,0 +1,393 @@
+package net.earthcomputer.clientcommands.util;
+
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs actions at precise {@link System#nanoTime()} deadlines, e.g. to send a packet at a particular point in a server
+ * tick. The worker thread parks for the bulk of each wait and only spins for the last moment. The length of the spin
+ * is calibrated from how far {@link LockSupport#parkNanos} overshoots on this platform, which is measured when the
+ * worker starts and kept up to date from every park after that.
+ *
+ * <p>Pending actions are kept in a timing wheel with one bucket per millisecond, and only move to a queue ordered by
+ * deadline shortly before they are due, so any number of actions can be pending at once.
+ */
+public final class PrecisionScheduler {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private static final long TICK_NANOS = 1_000_000;
+    private static final int WHEEL_SIZE = 512; // must be a power of two
+    private static final long MIN_SPIN_NANOS = 20_000;
+    private static final long MAX_SPIN_NANOS = 5_000_000;
+    private static final long INITIAL_SPIN_NANOS = 2_000_000;
+    private static final int CALIBRATION_PARKS = 16;
+    private static final long CALIBRATION_PARK_NANOS = 100_000;
+    private static final int OVERSHOOT_WINDOW = 64;
+
+    private final String name;
+    private final ConcurrentLinkedQueue<Action> newActions = new ConcurrentLinkedQueue<>();
+    private volatile Thread worker;
+    private volatile boolean shutdown = false;
+    private volatile long spinNanos = INITIAL_SPIN_NANOS;
+
+    private final Histogram latencyHistogram = new Histogram();
+    private final Histogram overshootHistogram = new Histogram();
+
+    // only accessed by the worker thread
+    @SuppressWarnings("unchecked")
+    private final ArrayList<Action>[] wheel = new ArrayList[WHEEL_SIZE];
+    private int actionsInWheel = 0;
+    private long startTime;
+    private long currentTick = 0;
+    private final PriorityQueue<Action> dueActions = new PriorityQueue<>(Comparator.comparingLong((Action action) -> action.deadline).thenComparingLong(action -> action.sequence));
+    private final long[] recentOvershoots = new long[OVERSHOOT_WINDOW];
+    private final long[] sortedOvershoots = new long[OVERSHOOT_WINDOW];
+    private int overshootCount = 0;
+    private long nextSequence = 0;
+
+    public PrecisionScheduler(String name) {
+        this.name = name;
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ArrayList<>(0);
+        }
+    }
+
+    /**
+     * Runs the action on the scheduler's thread as soon as possible after the given {@link System#nanoTime()}
+     * deadline. Actions should be quick, since they delay any actions due after them.
+     */
+    public Action schedule(long deadline, Runnable runnable) {
+        if (shutdown) {
+            throw new IllegalStateException("Scheduler " + name + " has been shut down");
+        }
+        Action action = new Action(deadline, runnable);
+        newActions.add(action);
+        Thread worker = this.worker;
+        if (worker == null) {
+            worker = startWorker();
+        }
+        LockSupport.unpark(worker);
+        return action;
+    }
+
+    private synchronized Thread startWorker() {
+        if (worker == null) {
+            Thread thread = new Thread(this::run, name);
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MAX_PRIORITY);
+            worker = thread;
+            thread.start();
+        }
+        return worker;
+    }
+
+    /**
+     * Stops the worker thread. Pending actions are not run.
+     */
+    public void shutdown() {
+        shutdown = true;
+        Thread worker = this.worker;
+        if (worker != null) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    /**
+     * How late actions have run after their deadline, in nanoseconds
+     */
+    public Histogram getLatencyHistogram() {
+        return latencyHistogram;
+    }
+
+    /**
+     * How far parks have overshot the time they were asked to wake up at, in nanoseconds
+     */
+    public Histogram getOvershootHistogram() {
+        return overshootHistogram;
+    }
+
+    /**
+     * How long the worker currently spins before a deadline, in nanoseconds
+     */
+    public long getSpinNanos() {
+        return spinNanos;
+    }
+
+    /**
+     * The CPU time used by the worker thread so far, or -1 if it isn't available
+     */
+    public long getWorkerCpuTimeNanos() {
+        Thread worker = this.worker;
+        if (worker == null) {
+            return 0;
+        }
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        return threadBean.isThreadCpuTimeSupported() ? threadBean.getThreadCpuTime(worker.threadId()) : -1;
+    }
+
+    private void run() {
+        startTime = System.nanoTime();
+        calibrate();
+
+        while (!shutdown) {
+            long now = System.nanoTime();
+            addNewActions();
+            advanceWheel(now);
+
+            Action next;
+            while ((next = dueActions.peek()) != null && next.state.get() != Action.PENDING) {
+                dueActions.poll();
+            }
+
+            if (next == null || next.deadline - now > spinNanos) {
+                if (next == null && actionsInWheel == 0) {
+                    if (newActions.isEmpty()) {
+                        LockSupport.park(this);
+                    }
+                    continue;
+                }
+                // park until either the next action or the wheel needs attention, then go round the loop again in
+                // case something else has been scheduled in the meantime
+                long wakeTime = next == null ? Long.MAX_VALUE : next.deadline - spinNanos;
+                if (actionsInWheel > 0) {
+                    wakeTime = Math.min(wakeTime, tickStart(nextWheelTick()) - TICK_NANOS - spinNanos);
+                }
+                parkUntil(wakeTime);
+                continue;
+            }
+
+            while (System.nanoTime() - next.deadline < 0) {
+                Thread.onSpinWait();
+            }
+            dueActions.poll();
+            if (next.state.compareAndSet(Action.PENDING, Action.RUNNING)) {
+                latencyHistogram.record(System.nanoTime() - next.deadline);
+                try {
+                    next.runnable.run();
+                } catch (Throwable e) {
+                    LOGGER.error("Error running scheduled action on {}", name, e);
+                }
+                next.state.set(Action.DONE);
+            }
+        }
+    }
+
+    /**
+     * Measures the park overshoot with a few short parks, as long as that doesn't delay the first actions
+     */
+    private void calibrate() {
+        for (int i = 0; i < CALIBRATION_PARKS; i++) {
+            long now = System.nanoTime();
+            addNewActions();
+            advanceWheel(now);
+            if (!dueActions.isEmpty()) {
+                return;
+            }
+            parkUntil(now + CALIBRATION_PARK_NANOS);
+        }
+    }
+
+    private void parkUntil(long wakeTime) {
+        long parkTime = wakeTime - System.nanoTime();
+        if (parkTime <= 0) {
+            return;
+        }
+        LockSupport.parkNanos(this, parkTime);
+        long overshoot = System.nanoTime() - wakeTime;
+        // a negative overshoot means we were woken early, by a new action or spuriously
+        if (overshoot >= 0) {
+            recordOvershoot(overshoot);
+        }
+    }
+
+    private void recordOvershoot(long overshoot) {
+        overshootHistogram.record(overshoot);
+        recentOvershoots[overshootCount++ % OVERSHOOT_WINDOW] = overshoot;
+
+        // spin for a bit longer than the 90th percentile of recent overshoots
+        int count = Math.min(overshootCount, OVERSHOOT_WINDOW);
+        System.arraycopy(recentOvershoots, 0, sortedOvershoots, 0, count);
+        Arrays.sort(sortedOvershoots, 0, count);
+        long percentile = sortedOvershoots[(count - 1) * 9 / 10];
+        spinNanos = Math.clamp(percentile + percentile / 2 + MIN_SPIN_NANOS, MIN_SPIN_NANOS, MAX_SPIN_NANOS);
+    }
+
+    private long tickStart(long tick) {
+        return startTime + tick * TICK_NANOS;
+    }
+
+    private long tickOf(long time) {
+        return Math.max(currentTick, Math.floorDiv(time - startTime, TICK_NANOS));
+    }
+
+    private void addNewActions() {
+        Action action;
+        while ((action = newActions.poll()) != null) {
+            action.sequence = nextSequence++;
+            // the wheel has already been advanced past the ticks before the current tick, so those actions go
+            // straight to the due queue, which keeps every action in the wheel later than every due action
+            action.tick = Math.floorDiv(action.deadline - startTime, TICK_NANOS);
+            if (action.tick < currentTick) {
+                dueActions.add(action);
+            } else {
+                wheel[(int) (action.tick & (WHEEL_SIZE - 1))].add(action);
+                actionsInWheel++;
+            }
+        }
+    }
+
+    /**
+     * Moves the actions which will be due within the next tick, plus the spin time, from the wheel to the due queue
+     */
+    private void advanceWheel(long now) {
+        if (actionsInWheel == 0) {
+            currentTick = tickOf(now);
+            return;
+        }
+
+        long lastTick = Math.floorDiv(now + TICK_NANOS + spinNanos - startTime, TICK_NANOS);
+        for (; currentTick <= lastTick && actionsInWheel > 0; currentTick++) {
+            ArrayList<Action> bucket = wheel[(int) (currentTick & (WHEEL_SIZE - 1))];
+            for (int i = bucket.size() - 1; i >= 0; i--) {
+                Action action = bucket.get(i);
+                if (action.tick <= currentTick) {
+                    bucket.set(i, bucket.getLast());
+                    bucket.removeLast();
+                    actionsInWheel--;
+                    if (action.state.get() == Action.PENDING) {
+                        dueActions.add(action);
+                    }
+                }
+            }
+        }
+        if (actionsInWheel == 0) {
+            currentTick = Math.max(currentTick, tickOf(now));
+        }
+    }
+
+    private long nextWheelTick() {
+        long nextTick = Long.MAX_VALUE;
+        for (ArrayList<Action> bucket : wheel) {
+            for (Action action : bucket) {
+                nextTick = Math.min(nextTick, action.tick);
+            }
+        }
+        return nextTick;
+    }
+
+    public static final class Action {
+        private static final int PENDING = 0;
+        private static final int RUNNING = 1;
+        private static final int DONE = 2;
+        private static final int CANCELLED = 3;
+
+        private final long deadline;
+        private final Runnable runnable;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private long tick;
+        private long sequence;
+
+        private Action(long deadline, Runnable runnable) {
+            this.deadline = deadline;
+            this.runnable = runnable;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        /**
+         * Stops the action from running, and returns whether it was stopped in time
+         */
+        public boolean cancel() {
+            return state.compareAndSet(PENDING, CANCELLED);
+        }
+
+        public boolean isDone() {
+            int state = this.state.get();
+            return state == DONE || state == CANCELLED;
+        }
+    }
+
+    /**
+     * A histogram of nanosecond durations, with power of two bucket sizes. Values are recorded by the scheduler thread
+     * and may be read from any thread.
+     */
+    public static final class Histogram {
+        public static final int BUCKET_COUNT = Long.SIZE;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+        private void record(long nanos) {
+            buckets.incrementAndGet(bucketOf(nanos));
+        }
+
+        /**
+         * The index of the bucket containing the given value. Bucket 0 contains values up to 1, and bucket {@code i}
+         * contains values from {@code 2^(i-1)} exclusive to {@code 2^i} inclusive.
+         */
+        public static int bucketOf(long nanos) {
+            return nanos <= 1 ? 0 : Long.SIZE - Long.numberOfLeadingZeros(nanos - 1);
+        }
+
+        public static long bucketUpperBound(int bucket) {
+            return bucket >= Long.SIZE - 1 ? Long.MAX_VALUE : 1L << bucket;
+        }
+
+        public long[] getCounts() {
+            long[] counts = new long[BUCKET_COUNT];
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] = buckets.get(i);
+            }
+            return counts;
+        }
+
+        public long getTotalCount() {
+            long total = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                total += buckets.get(i);
+            }
+            return total;
+        }
+
+        /**
+         * Returns an upper bound of the given percentile, between 0 and 100, or 0 if nothing has been recorded
+         */
+        public long getPercentile(double percentile) {
+            long[] counts = getCounts();
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(1, target)) {
+                    return bucketUpperBound(i);
+                }
+            }
+            return bucketUpperBound(BUCKET_COUNT - 1);
+        }
+
+        public void reset() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                buckets.set(i, 0);
+            }
+        }
+    }
+}
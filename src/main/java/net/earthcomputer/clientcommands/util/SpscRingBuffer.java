@@ -0,0 +1,94 @@
+package net.earthcomputer.clientcommands.util;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded lock-free queue for exactly one producer thread and one consumer thread. Each side only writes its own
+ * index, publishing it with a release store, and keeps a cached copy of the other side's index so that it only reads
+ * the shared one when the queue looks full or empty.
+ */
+public final class SpscRingBuffer<E> {
+    private final Object[] elements;
+    private final int mask;
+
+    // the index of the next element to poll, only written by the consumer
+    private final AtomicLong head = new AtomicLong();
+    // the index of the next element to offer, only written by the producer
+    private final AtomicLong tail = new AtomicLong();
+
+    // only accessed by the producer
+    private long cachedHead = 0;
+    // only accessed by the consumer
+    private long cachedTail = 0;
+
+    /**
+     * @param capacity The minimum capacity, which is rounded up to a power of two
+     */
+    public SpscRingBuffer(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.elements = new Object[size];
+        this.mask = size - 1;
+    }
+
+    public int capacity() {
+        return elements.length;
+    }
+
+    /**
+     * Adds an element to the queue, or returns {@code false} if the queue is full. Must only be called by the producer.
+     */
+    public boolean offer(E element) {
+        long tail = this.tail.get();
+        if (tail - cachedHead >= elements.length) {
+            cachedHead = head.get();
+            if (tail - cachedHead >= elements.length) {
+                return false;
+            }
+        }
+        elements[(int) tail & mask] = element;
+        this.tail.lazySet(tail + 1);
+        return true;
+    }
+
+    /**
+     * Removes the oldest element from the queue, or returns {@code null} if the queue is empty. Must only be called by
+     * the consumer.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long head = this.head.get();
+        if (head >= cachedTail) {
+            cachedTail = tail.get();
+            if (head >= cachedTail) {
+                return null;
+            }
+        }
+        int index = (int) head & mask;
+        E element = (E) elements[index];
+        // clear the slot so the queue doesn't keep the element alive
+        elements[index] = null;
+        this.head.lazySet(head + 1);
+        return element;
+    }
+
+    /**
+     * The number of elements in the queue, which may be out of date by the time it returns if called by neither side
+     */
+    public int size() {
+        long head = this.head.get();
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+}
@@ -0,0 +1,91 @@
+package net.earthcomputer.clientcommands.test;
+
+import net.earthcomputer.clientcommands.features.CCrackRng;
+import net.earthcomputer.clientcommands.features.CCrackRngGen;
+import net.earthcomputer.clientcommands.features.PlayerRandCracker;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class CCrackRngTest {
+    @Test
+    public void testFindSeedsMinThrows() {
+        assertFindsSeeds(CCrackRng.MIN_THROWS, 1000);
+    }
+
+    @Test
+    public void testFindSeedsMaxThrows() {
+        assertFindsSeeds(CCrackRng.MAX_THROWS, 1000);
+    }
+
+    @Test
+    public void testFindSeedsMatchesLattiCG() {
+        Random random = new Random(1);
+        for (int trial = 0; trial < 20; trial++) {
+            long seed = random.nextLong() & PlayerRandCracker.MASK;
+            float[] nextFloats = throwItems(seed, CCrackRng.MAX_THROWS);
+            float error = CCrackRng.MAX_ERROR;
+            long[] expected = CCrackRngGen.getSeeds(
+                Math.max(0, nextFloats[0] - error), Math.min(1, nextFloats[0] + error),
+                Math.max(0, nextFloats[1] - error), Math.min(1, nextFloats[1] + error),
+                Math.max(0, nextFloats[2] - error), Math.min(1, nextFloats[2] + error),
+                Math.max(0, nextFloats[3] - error), Math.min(1, nextFloats[3] + error),
+                Math.max(0, nextFloats[4] - error), Math.min(1, nextFloats[4] + error),
+                Math.max(0, nextFloats[5] - error), Math.min(1, nextFloats[5] + error),
+                Math.max(0, nextFloats[6] - error), Math.min(1, nextFloats[6] + error),
+                Math.max(0, nextFloats[7] - error), Math.min(1, nextFloats[7] + error),
+                Math.max(0, nextFloats[8] - error), Math.min(1, nextFloats[8] + error),
+                Math.max(0, nextFloats[9] - error), Math.min(1, nextFloats[9] + error)
+            ).sorted().toArray();
+            long[] actual = CCrackRng.findSeeds(nextFloats);
+            Arrays.sort(actual);
+            assertArrayEquals(expected, actual, "seed " + seed);
+        }
+    }
+
+    @Test
+    public void testFindSeedsAtBounds() {
+        // the bounds are clamped to [0, 1], so they are narrower than usual and the solver must still accept them
+        for (float nextFloat : new float[] {0, 0.001f, 0.999f, 1 - 0x1.0p-24f}) {
+            float[] nextFloats = new float[CCrackRng.MAX_THROWS];
+            Arrays.fill(nextFloats, nextFloat);
+            assertDoesNotThrow(() -> CCrackRng.findSeeds(nextFloats), "nextFloat " + nextFloat);
+        }
+    }
+
+    @Test
+    public void testFindSeedsUnsupportedThrows() {
+        assertThrows(IllegalArgumentException.class, () -> CCrackRng.findSeeds(new float[CCrackRng.MIN_THROWS - 1]));
+        assertThrows(IllegalArgumentException.class, () -> CCrackRng.findSeeds(new float[CCrackRng.MAX_THROWS + 1]));
+    }
+
+    private static void assertFindsSeeds(int throwCount, int trials) {
+        Random random = new Random(0);
+        for (int trial = 0; trial < trials; trial++) {
+            long seed = random.nextLong() & PlayerRandCracker.MASK;
+            long[] seeds = CCrackRng.findSeeds(throwItems(seed, throwCount));
+            long expected = PlayerRandCracker.advanceSeedByThrows(seed, throwCount);
+            assertTrue(Arrays.stream(seeds).anyMatch(s -> s == expected), "seed " + seed + " after " + throwCount + " throws");
+        }
+    }
+
+    /**
+     * Makes the random calls of the given number of item throws from the given internal seed, returning the observed
+     * calls
+     */
+    private static float[] throwItems(long seed, int throwCount) {
+        // each item throw makes 4 random calls, of which we observe the second
+        Random rand = new Random(seed ^ PlayerRandCracker.MULTIPLIER);
+        float[] nextFloats = new float[throwCount];
+        for (int i = 0; i < throwCount; i++) {
+            rand.nextInt();
+            nextFloats[i] = rand.nextFloat();
+            rand.nextInt();
+            rand.nextInt();
+        }
+        return nextFloats;
+    }
+}
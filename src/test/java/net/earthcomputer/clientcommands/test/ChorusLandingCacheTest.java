@@ -0,0 +1,260 @@
+package net.earthcomputer.clientcommands.test;
+
+import net.earthcomputer.clientcommands.event.ClientLevelEvents;
+import net.earthcomputer.clientcommands.features.ChorusLandingCache;
+import net.earthcomputer.clientcommands.features.ChorusManipulation;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.util.Mth;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.SlabBlock;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.block.state.properties.SlabType;
+import net.minecraft.world.level.material.FluidState;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.Vec3;
+import net.minecraft.world.phys.shapes.BooleanOp;
+import net.minecraft.world.phys.shapes.Shapes;
+import net.minecraft.world.phys.shapes.VoxelShape;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class ChorusLandingCacheTest {
+    private static final int LAYOUT_COUNT = 50;
+    private static final int GOALS_PER_LAYOUT = 2000;
+
+    @BeforeAll
+    public static void setup() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+        ChorusLandingCache.registerEvents();
+    }
+
+    @BeforeEach
+    public void resetCache() {
+        ClientLevelEvents.UNLOAD_LEVEL.invoker().onUnloadLevel(false);
+    }
+
+    @Test
+    public void testMatchesCanTeleport() {
+        Random rand = new Random(0);
+        for (int layout = 0; layout < LAYOUT_COUNT; layout++) {
+            RandomTerrain terrain = new RandomTerrain(rand);
+            Vec3 pos = terrain.randomPlayerPos(rand);
+            ChorusLandingCache.prepare(terrain, pos);
+            // the second pass is answered from the cache filled by the first
+            for (int pass = 0; pass < 2; pass++) {
+                assertMatchesCanTeleport(terrain, pos, new Random(layout), "layout " + layout + " pass " + pass);
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidatedByBlockChange() {
+        Random rand = new Random(1);
+        for (int layout = 0; layout < LAYOUT_COUNT; layout++) {
+            RandomTerrain terrain = new RandomTerrain(rand);
+            Vec3 pos = terrain.randomPlayerPos(rand);
+            ChorusLandingCache.prepare(terrain, pos);
+            assertMatchesCanTeleport(terrain, pos, new Random(layout), "layout " + layout);
+
+            // change blocks in and below the box, as the level would when a block update arrives
+            for (int i = 0; i < 20; i++) {
+                BlockPos changed = BlockPos.containing(pos).offset(rand.nextInt(17) - 8, -rand.nextInt(24), rand.nextInt(17) - 8);
+                BlockState oldState = terrain.getBlockState(changed);
+                BlockState newState = RandomTerrain.randomState(rand);
+                terrain.setBlockState(changed, newState);
+                ClientLevelEvents.CHUNK_UPDATE.invoker().onBlockStateUpdate(null, changed, oldState, newState);
+            }
+            ChorusLandingCache.prepare(terrain, pos);
+            assertMatchesCanTeleport(terrain, pos, new Random(layout), "layout " + layout + " after block changes");
+        }
+    }
+
+    @Test
+    public void testMovingToAnotherBlock() {
+        Random rand = new Random(2);
+        RandomTerrain terrain = new RandomTerrain(rand);
+        Vec3 pos = terrain.randomPlayerPos(rand);
+        ChorusLandingCache.prepare(terrain, pos);
+        assertMatchesCanTeleport(terrain, pos, new Random(0), "first position");
+
+        Vec3 newPos = pos.add(3, -1, -2);
+        ChorusLandingCache.prepare(terrain, newPos);
+        assertMatchesCanTeleport(terrain, newPos, new Random(0), "second position");
+    }
+
+    @Test
+    public void testEntityCollisions() {
+        Random rand = new Random(3);
+        for (int layout = 0; layout < LAYOUT_COUNT; layout++) {
+            RandomTerrain terrain = new RandomTerrain(rand);
+            Vec3 pos = terrain.randomPlayerPos(rand);
+            for (int i = 0; i < 5; i++) {
+                Vec3 entityPos = pos.add(rand.nextDouble() * 16 - 8, rand.nextInt(16) - 8, rand.nextDouble() * 16 - 8);
+                terrain.entityBoxes.add(AABB.ofSize(entityPos, 1.375, 0.5625, 1.375));
+            }
+            ChorusLandingCache.prepare(terrain, pos);
+            assertMatchesCanTeleport(terrain, pos, new Random(layout), "layout " + layout);
+        }
+    }
+
+    private static void assertMatchesCanTeleport(RandomTerrain terrain, Vec3 pos, Random rand, String message) {
+        AABB[] goalAreas = {
+            new AABB(pos.add(-8, -8, -8), pos.add(8, 8, 8)),
+            new AABB(pos.add(-3, -6, 1), pos.add(4, 0, 6)),
+        };
+        for (int i = 0; i < GOALS_PER_LAYOUT; i++) {
+            // the same distribution as ChorusManipulation.getLandingArea
+            double x = (rand.nextDouble() - 0.5) * 16 + pos.x();
+            double y = Mth.clamp(pos.y() + (rand.nextInt(16) - 8), terrain.getMinY(), terrain.getMaxY());
+            double z = (rand.nextDouble() - 0.5) * 16 + pos.z();
+            Vec3 goalVec = new Vec3(x, y, z);
+            for (AABB goalArea : goalAreas) {
+                Vec3 expected = ChorusManipulation.canTeleport(terrain, goalArea, goalVec);
+                Vec3 actual = ChorusLandingCache.getLanding(terrain, goalArea, goalVec);
+                assertEquals(expected, actual, message + " goal " + goalVec + " in " + goalArea);
+            }
+        }
+    }
+
+    /**
+     * Randomly scattered blocks over a floor, with some unloaded chunks
+     */
+    private static final class RandomTerrain implements ChorusLandingCache.Terrain {
+        private static final int SIZE = 48;
+        private static final int HEIGHT = 48;
+        private static final BlockState AIR = Blocks.AIR.defaultBlockState();
+
+        private final Map<BlockPos, BlockState> blocks = new HashMap<>();
+        private final List<AABB> entityBoxes = new ArrayList<>();
+        private final int unloadedChunkX;
+
+        RandomTerrain(Random rand) {
+            // sometimes there is no floor, so some teleports have nowhere to land
+            boolean hasFloor = rand.nextInt(4) != 0;
+            float density = 0.02f + rand.nextFloat() * 0.2f;
+            for (int x = 0; x < SIZE; x++) {
+                for (int z = 0; z < SIZE; z++) {
+                    if (hasFloor) {
+                        blocks.put(new BlockPos(x, 0, z), Blocks.STONE.defaultBlockState());
+                    }
+                    for (int y = 1; y < HEIGHT; y++) {
+                        if (rand.nextFloat() < density) {
+                            blocks.put(new BlockPos(x, y, z), randomState(rand));
+                        }
+                    }
+                }
+            }
+            unloadedChunkX = rand.nextBoolean() ? 2 : -1;
+        }
+
+        static BlockState randomState(Random rand) {
+            return switch (rand.nextInt(8)) {
+                case 0 -> AIR;
+                case 1 -> Blocks.STONE.defaultBlockState();
+                case 2 -> Blocks.WATER.defaultBlockState();
+                case 3 -> Blocks.OAK_SLAB.defaultBlockState().setValue(SlabBlock.TYPE, SlabType.BOTTOM);
+                case 4 -> Blocks.OAK_SLAB.defaultBlockState().setValue(SlabBlock.TYPE, SlabType.TOP);
+                case 5 -> Blocks.OAK_FENCE.defaultBlockState();
+                case 6 -> Blocks.SHORT_GRASS.defaultBlockState();
+                default -> Blocks.WHITE_CARPET.defaultBlockState();
+            };
+        }
+
+        Vec3 randomPlayerPos(Random rand) {
+            return new Vec3(12 + rand.nextDouble() * 24, 10 + rand.nextInt(28) + rand.nextDouble(), 12 + rand.nextDouble() * 24);
+        }
+
+        void setBlockState(BlockPos pos, BlockState state) {
+            blocks.put(pos.immutable(), state);
+        }
+
+        @Nullable
+        @Override
+        public BlockEntity getBlockEntity(BlockPos pos) {
+            return null;
+        }
+
+        @Override
+        public BlockState getBlockState(BlockPos pos) {
+            return blocks.getOrDefault(pos, AIR);
+        }
+
+        @Override
+        public FluidState getFluidState(BlockPos pos) {
+            return getBlockState(pos).getFluidState();
+        }
+
+        @Override
+        public int getHeight() {
+            return HEIGHT;
+        }
+
+        @Override
+        public int getMinY() {
+            return 0;
+        }
+
+        @Override
+        public boolean hasChunkAt(BlockPos pos) {
+            return (pos.getX() >> 4) != unloadedChunkX;
+        }
+
+        @Override
+        public boolean noCollision(AABB box) {
+            return noBlockCollision(box) && !hasEntityCollisions(box);
+        }
+
+        @Override
+        public boolean noBlockCollision(AABB box) {
+            VoxelShape boxShape = Shapes.create(box);
+            BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+            for (int x = Mth.floor(box.minX) - 1; x <= Mth.floor(box.maxX) + 1; x++) {
+                for (int y = Mth.floor(box.minY) - 1; y <= Mth.floor(box.maxY) + 1; y++) {
+                    for (int z = Mth.floor(box.minZ) - 1; z <= Mth.floor(box.maxZ) + 1; z++) {
+                        pos.set(x, y, z);
+                        VoxelShape shape = getBlockState(pos).getCollisionShape(this, pos);
+                        if (!shape.isEmpty() && Shapes.joinIsNotEmpty(shape.move(x, y, z), boxShape, BooleanOp.AND)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean containsAnyLiquid(AABB box) {
+            // the same blocks as vanilla checks
+            BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+            for (int x = Mth.floor(box.minX); x < Mth.ceil(box.maxX); x++) {
+                for (int y = Mth.floor(box.minY); y < Mth.ceil(box.maxY); y++) {
+                    for (int z = Mth.floor(box.minZ); z < Mth.ceil(box.maxZ); z++) {
+                        if (!getFluidState(pos.set(x, y, z)).isEmpty()) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean hasEntityCollisions(AABB box) {
+            return entityBoxes.stream().anyMatch(box::intersects);
+        }
+    }
+}
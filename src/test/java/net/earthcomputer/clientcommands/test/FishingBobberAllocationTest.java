@@ -0,0 +1,52 @@
+package net.earthcomputer.clientcommands.test;
+
+import net.earthcomputer.clientcommands.features.SimulatedFishingBobber;
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+
+public final class FishingBobberAllocationTest {
+    private static final int WARMUP_TICKS = 2000;
+    private static final int MEASURED_TICKS = 5000;
+
+    @BeforeAll
+    public static void setup() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    @Test
+    public void testNoAllocationsWhileBobbing() {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        // far out to sea, where there is nothing to collide with
+        SimulatedFishingBobber bobber = new SimulatedFishingBobber(new ShoreEnvironment(), 12345, 0, -100.5, 62.5, 0.5, 0, 0, 0);
+        boolean caughtFish = false;
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            bobber.tick();
+            caughtFish |= bobber.canCatchFish();
+        }
+
+        // the cost of measuring itself, which should also be zero
+        long baseline = threadBean.getCurrentThreadAllocatedBytes();
+        baseline = threadBean.getCurrentThreadAllocatedBytes() - baseline;
+
+        long start = threadBean.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < MEASURED_TICKS; i++) {
+            bobber.tick();
+            caughtFish |= bobber.canCatchFish();
+        }
+        long allocated = threadBean.getCurrentThreadAllocatedBytes() - start - baseline;
+
+        assertTrue(caughtFish, "bobber never got a bite, so the fishing logic wasn't exercised");
+        assertEquals(0, allocated, "bytes allocated over " + MEASURED_TICKS + " ticks");
+    }
+}
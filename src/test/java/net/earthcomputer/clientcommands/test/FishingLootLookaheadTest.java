@@ -0,0 +1,100 @@
+package net.earthcomputer.clientcommands.test;
+
+import com.mojang.brigadier.StringReader;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.earthcomputer.clientcommands.command.arguments.ClientItemPredicateArgument;
+import net.earthcomputer.clientcommands.features.FishingLootLookahead;
+import net.minecraft.SharedConstants;
+import net.minecraft.commands.CommandBuildContext;
+import net.minecraft.data.registries.VanillaRegistries;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.flag.FeatureFlags;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class FishingLootLookaheadTest {
+    private static final String[] GOALS = {
+        "minecraft:cod",
+        "minecraft:saddle",
+        "minecraft:fishing_rod",
+        "minecraft:fishing_rod[damage=3]",
+        "minecraft:bow[damage=7]",
+        "minecraft:enchanted_book",
+        "minecraft:diamond",
+    };
+
+    private static ClientItemPredicateArgument argument;
+
+    @BeforeAll
+    public static void setup() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+        argument = ClientItemPredicateArgument.clientItemPredicate(CommandBuildContext.simple(VanillaRegistries.createLookup(), FeatureFlags.DEFAULT_FLAGS));
+    }
+
+    @Test
+    public void testIndexOfFirstMatch() throws CommandSyntaxException {
+        List<ClientItemPredicateArgument.ClientItemPredicate> goals = new ArrayList<>(GOALS.length);
+        for (String goal : GOALS) {
+            goals.add(argument.parse(new StringReader(goal)));
+        }
+
+        Random random = new Random(0);
+        for (int trial = 0; trial < 500; trial++) {
+            List<ItemStack> loot = randomLoot(random, 1 + random.nextInt(200));
+            FishingLootLookahead lookahead = FishingLootLookahead.ofLoot(loot);
+            for (int i = 0; i < goals.size(); i++) {
+                assertEquals(sequentialIndexOfFirstMatch(loot, goals.get(i)), lookahead.indexOfFirstMatch(goals.get(i)), GOALS[i]);
+            }
+        }
+    }
+
+    /**
+     * Tests every item in order, as the cracker did before the lookahead
+     */
+    private static int sequentialIndexOfFirstMatch(List<ItemStack> loot, ClientItemPredicateArgument.ClientItemPredicate goal) {
+        for (int index = 0; index < loot.size(); index++) {
+            if (goal.test(loot.get(index))) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Mostly fish, with damaged tools whose item and enchantments are the same as earlier tools but which don't match
+     * them, so that they share a key in the tested loot
+     */
+    private static List<ItemStack> randomLoot(Random random, int count) {
+        List<ItemStack> loot = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int roll = random.nextInt(100);
+            ItemStack stack;
+            if (roll < 60) {
+                stack = new ItemStack(Items.COD);
+            } else if (roll < 80) {
+                stack = new ItemStack(Items.SALMON);
+            } else if (roll < 88) {
+                stack = new ItemStack(Items.FISHING_ROD);
+                stack.setDamageValue(random.nextInt(6));
+            } else if (roll < 95) {
+                stack = new ItemStack(Items.BOW);
+                stack.setDamageValue(random.nextInt(10));
+            } else if (roll < 98) {
+                stack = new ItemStack(Items.ENCHANTED_BOOK);
+            } else {
+                stack = new ItemStack(Items.SADDLE);
+            }
+            loot.add(stack);
+        }
+        return loot;
+    }
+}
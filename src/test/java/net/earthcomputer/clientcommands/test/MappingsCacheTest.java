@@ -0,0 +1,215 @@
+package net.earthcomputer.clientcommands.test;
+
+import net.earthcomputer.clientcommands.util.MappingsCache;
+import net.fabricmc.mappingio.MappingReader;
+import net.fabricmc.mappingio.format.MappingFormat;
+import net.fabricmc.mappingio.tree.MappingTree;
+import net.fabricmc.mappingio.tree.MemoryMappingTree;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class MappingsCacheTest {
+    private static final String PROGUARD = """
+        # {"fileName":"client.txt","id":"sourceFile"}
+        com.mojang.blaze3d.Blaze3D -> a:
+            1:1:void <init>() -> <init>
+        net.minecraft.util.RandomSource -> azh:
+        net.minecraft.world.entity.Entity -> bum:
+            int id -> a
+            net.minecraft.world.level.Level level -> b
+            net.minecraft.util.RandomSource random -> b
+            boolean onGround -> d
+            12:15:void tick() -> l
+        net.minecraft.world.entity.player.Inventory -> cmy:
+        net.minecraft.world.entity.player.Player -> cmz:
+            net.minecraft.world.entity.player.Inventory inventory -> b
+            java.lang.String notInTiny -> z
+        net.minecraft.world.level.Level -> dxe:
+        net.minecraft.NotInTiny -> zzz:
+            int value -> a
+        """;
+    private static final String TINY_V1 = """
+        v1	official	intermediary
+        CLASS	azh	net/minecraft/class_5819
+        CLASS	bum	net/minecraft/class_1297
+        CLASS	cmy	net/minecraft/class_1661
+        CLASS	cmz	net/minecraft/class_1657
+        CLASS	dxe	net/minecraft/class_1937
+        CLASS	notInProguard	net/minecraft/class_9999
+        FIELD	bum	I	a	field_5986
+        FIELD	bum	Ldxe;	b	field_6002
+        FIELD	bum	Lazh;	b	field_5974
+        FIELD	bum	Z	d	field_5952
+        FIELD	cmz	Lcmy;	b	field_7514
+        FIELD	notInProguard	I	a	field_9999
+        METHOD	bum	()V	l	method_5773
+        """;
+    private static final String TINY_V2 = """
+        tiny	2	0	official	intermediary	named
+        c	azh	net/minecraft/class_5819	net/minecraft/util/math/random/Random
+        c	bum	net/minecraft/class_1297	net/minecraft/entity/Entity
+        	f	I	a	field_5986	id
+        	f	Ldxe;	b	field_6002	world
+        	f	Lazh;	b	field_5974	random
+        	f	Z	d	field_5952	onGround
+        	m	()V	l	method_5773	tick
+        c	cmy	net/minecraft/class_1661	net/minecraft/entity/player/PlayerInventory
+        c	cmz	net/minecraft/class_1657	net/minecraft/entity/player/PlayerEntity
+        	f	Lcmy;	b	field_7514	inventory
+        c	dxe	net/minecraft/class_1937	net/minecraft/world/World
+        c	notInProguard	net/minecraft/class_9999	net/minecraft/NotInProguard
+        	f	I	a	field_9999	notInProguard
+        """;
+    private static final int SRC_OFFICIAL = 0;
+    private static final int SRC_INTERMEDIARY = 0;
+    private static final int SRC_NAMED = 1;
+
+    @TempDir
+    Path tempDir;
+
+    private static MappingsCache.Builder createBuilder() {
+        MappingsCache.Builder builder = MappingsCache.builder();
+        int player = builder.addClass("cmz", "net/minecraft/world/entity/player/Player", "net/minecraft/class_1657", "net/minecraft/entity/player/PlayerEntity");
+        builder.addField(player, "b", "inventory", "field_7514", "inventory");
+        builder.addField(player, "c", "enderChestInventory", "field_7486", "enderChestInventory");
+        int entity = builder.addClass("bum", "net/minecraft/world/entity/Entity", "net/minecraft/class_1297", "net/minecraft/entity/Entity");
+        // obfuscated fields with the same name but different types
+        builder.addField(entity, "b", "level", "field_6002", "world");
+        builder.addField(entity, "b", "random", "field_5974", "random");
+        builder.addField(entity, "é", "unicodeField", null, null);
+        builder.addClass("a", "com/mojang/blaze3d/Blaze3D", null, null);
+        return builder;
+    }
+
+    @Test
+    public void testClassLookups() throws IOException {
+        MappingsCache cache = MappingsCache.read(createBuilder().build("key"), "key");
+        assertNotNull(cache);
+        assertEquals(3, cache.getClassCount());
+
+        assertEquals("net/minecraft/world/entity/player/Player", cache.mapClass(MappingsCache.INTERMEDIARY, MappingsCache.MOJMAP, "net/minecraft/class_1657"));
+        assertEquals("net/minecraft/world/entity/Entity", cache.mapClass(MappingsCache.NAMED, MappingsCache.MOJMAP, "net/minecraft/entity/Entity"));
+        assertEquals("cmz", cache.mapClass(MappingsCache.MOJMAP, MappingsCache.OFFICIAL, "net/minecraft/world/entity/player/Player"));
+        assertEquals("com/mojang/blaze3d/Blaze3D", cache.mapClass(MappingsCache.OFFICIAL, MappingsCache.MOJMAP, "a"));
+        assertNull(cache.mapClass(MappingsCache.MOJMAP, MappingsCache.INTERMEDIARY, "com/mojang/blaze3d/Blaze3D"));
+        assertNull(cache.mapClass(MappingsCache.INTERMEDIARY, MappingsCache.MOJMAP, "net/minecraft/class_9999"));
+        // a name which exists, but in a different namespace
+        assertNull(cache.mapClass(MappingsCache.INTERMEDIARY, MappingsCache.MOJMAP, "cmz"));
+    }
+
+    @Test
+    public void testFieldLookups() throws IOException {
+        MappingsCache cache = MappingsCache.read(createBuilder().build("key"), "key");
+        assertNotNull(cache);
+        assertEquals(5, cache.getFieldCount());
+
+        assertEquals("inventory", cache.mapField(MappingsCache.INTERMEDIARY, MappingsCache.MOJMAP, "net/minecraft/class_1657", "field_7514"));
+        assertEquals("random", cache.mapField(MappingsCache.NAMED, MappingsCache.MOJMAP, "net/minecraft/entity/Entity", "random"));
+        assertEquals("level", cache.mapField(MappingsCache.OFFICIAL, MappingsCache.MOJMAP, "bum", "b"));
+        assertEquals("inventory", cache.mapField(MappingsCache.OFFICIAL, MappingsCache.MOJMAP, "cmz", "b"));
+        assertEquals("unicodeField", cache.mapField(MappingsCache.OFFICIAL, MappingsCache.MOJMAP, "bum", "é"));
+        assertNull(cache.mapField(MappingsCache.OFFICIAL, MappingsCache.MOJMAP, "bum", "c"));
+        assertNull(cache.mapField(MappingsCache.INTERMEDIARY, MappingsCache.MOJMAP, "net/minecraft/class_1297", "field_7514"));
+    }
+
+    @Test
+    public void testMappedFile() throws IOException {
+        Path file = tempDir.resolve("mappings.cache");
+        MappingsCache.write(file, createBuilder().build("1.21.4;tiny=1234"));
+
+        assertNull(MappingsCache.open(file, "1.21.4;tiny=5678"));
+        assertNull(MappingsCache.open(tempDir.resolve("missing.cache"), "1.21.4;tiny=1234"));
+
+        MappingsCache cache = MappingsCache.open(file, "1.21.4;tiny=1234");
+        assertNotNull(cache);
+        assertEquals("net/minecraft/world/entity/player/Player", cache.mapClass(MappingsCache.INTERMEDIARY, MappingsCache.MOJMAP, "net/minecraft/class_1657"));
+        assertEquals("enderChestInventory", cache.mapField(MappingsCache.INTERMEDIARY, MappingsCache.MOJMAP, "net/minecraft/class_1657", "field_7486"));
+    }
+
+    @Test
+    public void testJoinMatchesTreesIntermediary() throws IOException {
+        assertJoinMatchesTrees(TINY_V1, MappingFormat.TINY_FILE, List.of(MappingsCache.INTERMEDIARY));
+    }
+
+    @Test
+    public void testJoinMatchesTreesNamed() throws IOException {
+        assertJoinMatchesTrees(TINY_V2, MappingFormat.TINY_2_FILE, List.of(MappingsCache.INTERMEDIARY, MappingsCache.NAMED));
+    }
+
+    /**
+     * Checks that the joined cache maps intermediary and named names to mojmap the same way as looking them up in the
+     * mappings trees, as was done before there was a cache
+     */
+    private static void assertJoinMatchesTrees(String tinyMappings, MappingFormat tinyFormat, List<Integer> namespaces) throws IOException {
+        MemoryMappingTree mojmapOfficial = new MemoryMappingTree();
+        MappingReader.read(new StringReader(PROGUARD), MappingFormat.PROGUARD_FILE, mojmapOfficial);
+        MemoryMappingTree officialIntermediaryNamed = new MemoryMappingTree();
+        MappingReader.read(new StringReader(tinyMappings), tinyFormat, officialIntermediaryNamed);
+        MappingsCache cache = MappingsCache.read(MappingsCache.join(mojmapOfficial, officialIntermediaryNamed).build("key"), "key");
+        assertNotNull(cache);
+
+        for (int namespace : namespaces) {
+            int treeNamespace = namespace == MappingsCache.NAMED ? SRC_NAMED : SRC_INTERMEDIARY;
+            for (MappingTree.ClassMapping tinyClass : officialIntermediaryNamed.getClasses()) {
+                String className = tinyClass.getDstName(treeNamespace);
+                assertEquals(treeToMojmapClass(mojmapOfficial, officialIntermediaryNamed, treeNamespace, className), cache.mapClass(namespace, MappingsCache.MOJMAP, className), className);
+                for (MappingTree.FieldMapping tinyField : tinyClass.getFields()) {
+                    String fieldName = tinyField.getDstName(treeNamespace);
+                    // the trees were looked up without descriptors, so they can't tell these fields apart
+                    if (Set.of("field_6002", "field_5974", "world", "random").contains(fieldName)) {
+                        continue;
+                    }
+                    assertEquals(treeToMojmapField(mojmapOfficial, officialIntermediaryNamed, treeNamespace, className, fieldName), cache.mapField(namespace, MappingsCache.MOJMAP, className, fieldName), className + "." + fieldName);
+                }
+            }
+            assertNull(cache.mapClass(namespace, MappingsCache.MOJMAP, "net/minecraft/class_1"));
+        }
+
+        assertEquals("net/minecraft/world/entity/Entity", cache.mapClass(MappingsCache.INTERMEDIARY, MappingsCache.MOJMAP, "net/minecraft/class_1297"));
+        assertNull(cache.mapClass(MappingsCache.INTERMEDIARY, MappingsCache.MOJMAP, "net/minecraft/class_9999"));
+        assertEquals("level", cache.mapField(MappingsCache.INTERMEDIARY, MappingsCache.MOJMAP, "net/minecraft/class_1297", "field_6002"));
+        assertEquals("random", cache.mapField(MappingsCache.INTERMEDIARY, MappingsCache.MOJMAP, "net/minecraft/class_1297", "field_5974"));
+        assertEquals("com/mojang/blaze3d/Blaze3D", cache.mapClass(MappingsCache.OFFICIAL, MappingsCache.MOJMAP, "a"));
+        assertEquals("notInTiny", cache.mapField(MappingsCache.OFFICIAL, MappingsCache.MOJMAP, "cmz", "z"));
+        if (namespaces.contains(MappingsCache.NAMED)) {
+            assertEquals("net/minecraft/world/entity/player/Player", cache.mapClass(MappingsCache.NAMED, MappingsCache.MOJMAP, "net/minecraft/entity/player/PlayerEntity"));
+            assertEquals("level", cache.mapField(MappingsCache.NAMED, MappingsCache.MOJMAP, "net/minecraft/entity/Entity", "world"));
+            assertEquals("random", cache.mapField(MappingsCache.NAMED, MappingsCache.MOJMAP, "net/minecraft/entity/Entity", "random"));
+        } else {
+            assertNull(cache.mapClass(MappingsCache.NAMED, MappingsCache.MOJMAP, "net/minecraft/entity/player/PlayerEntity"));
+        }
+    }
+
+    @Nullable
+    private static String treeToMojmapClass(MappingTree mojmapOfficial, MappingTree officialIntermediaryNamed, int namespace, String className) {
+        MappingTree.ClassMapping officialClass = officialIntermediaryNamed.getClass(className, namespace);
+        if (officialClass == null) {
+            return null;
+        }
+        MappingTree.ClassMapping mojmapClass = mojmapOfficial.getClass(officialClass.getSrcName(), SRC_OFFICIAL);
+        return mojmapClass == null ? null : mojmapClass.getSrcName();
+    }
+
+    @Nullable
+    private static String treeToMojmapField(MappingTree mojmapOfficial, MappingTree officialIntermediaryNamed, int namespace, String className, String fieldName) {
+        MappingTree.ClassMapping officialClass = officialIntermediaryNamed.getClass(className, namespace);
+        if (officialClass == null) {
+            return null;
+        }
+        MappingTree.FieldMapping officialField = officialIntermediaryNamed.getField(className, fieldName, null, namespace);
+        if (officialField == null) {
+            return null;
+        }
+        MappingTree.FieldMapping mojmapField = mojmapOfficial.getField(officialClass.getSrcName(), officialField.getSrcName(), null, SRC_OFFICIAL);
+        return mojmapField == null ? null : mojmapField.getSrcName();
+    }
+}
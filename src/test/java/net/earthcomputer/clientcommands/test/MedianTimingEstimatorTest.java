@@ -0,0 +1,252 @@
+package net.earthcomputer.clientcommands.test;
+
+import net.earthcomputer.clientcommands.features.MedianTimingEstimator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class MedianTimingEstimatorTest {
+    private static final int MSPT = 50;
+    private static final int HALF_WINDOW = 10;
+    private static final int CATCHES = 500;
+    private static final int SETTLING_CATCHES = 50;
+
+    @Test
+    public void testMedian() {
+        Random random = new Random(0);
+        for (int count = 1; count <= 50; count++) {
+            double[] values = new double[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = random.nextInt(20);
+            }
+            double[] sorted = values.clone();
+            Arrays.sort(sorted);
+            double expected = (count & 1) == 1 ? sorted[count / 2] : (sorted[count / 2 - 1] + sorted[count / 2]) / 2;
+            assertEquals(expected, MedianTimingEstimator.median(values, count), "median of " + count + " values");
+        }
+    }
+
+    @Test
+    public void testSteadyLag() {
+        TraceResult result = runTrace(new Random(1), 137, 0, 20, 0, 0);
+        assertTrue(result.meanError < MSPT / 2.0, "mean error " + result.meanError);
+    }
+
+    @Test
+    public void testJitteryLagWithDropouts() {
+        TraceResult result = runTrace(new Random(2), -260, 0, 60, 0.2, 0.3);
+        assertTrue(result.meanError < MSPT, "mean error " + result.meanError);
+    }
+
+    @Test
+    public void testLagShift() {
+        // the offset jumps halfway through, and the estimator has to follow it once the old samples are gone
+        TraceResult result = runTrace(new Random(3), 40, 300, 30, 0.1, 0.1);
+        assertTrue(result.meanError < MSPT, "mean error " + result.meanError);
+    }
+
+    @Test
+    public void testAgreesWithCombinedMedianEM() {
+        assertAgreesWithCombinedMedianEM(new Random(4), 137, 0, 20, 0, 0);
+        assertAgreesWithCombinedMedianEM(new Random(5), -260, 0, 60, 0.2, 0.3);
+        assertAgreesWithCombinedMedianEM(new Random(6), 40, 300, 30, 0.1, 0.1);
+        assertAgreesWithCombinedMedianEM(new Random(7), 0, -150, 120, 0.3, 0.5);
+    }
+
+    /**
+     * Feeds the same trace to the estimator and to the original algorithm, with the correction following the original
+     * as the fishing cracker used to, and compares their estimates after each catch
+     */
+    private static void assertAgreesWithCombinedMedianEM(Random random, double offset, double shift, double jitter, double dropRate, double duplicateLootRate) {
+        MedianTimingEstimator estimator = new MedianTimingEstimator(10, 2 * HALF_WINDOW + 1);
+        CombinedMedianEM reference = new CombinedMedianEM();
+        int correction = -100;
+        double totalDifference = 0;
+        double maxDifference = 0;
+        double[] sample = new double[2 * HALF_WINDOW + 1];
+
+        for (int catchIndex = 0; catchIndex < CATCHES; catchIndex++) {
+            int count = makeSample(random, sample, catchIndex, correction, offset, shift, jitter, dropRate, duplicateLootRate);
+            int beginTime = correction - MSPT / 2 - HALF_WINDOW * MSPT;
+            int endTime = correction + MSPT / 2 + HALF_WINDOW * MSPT;
+
+            estimator.addSample(sample, count, MSPT, beginTime, endTime);
+            if (reference.data.size() >= 10) {
+                reference.data.removeFirst();
+            }
+            List<Double> referenceSample = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                referenceSample.add(sample[i]);
+            }
+            reference.data.add(referenceSample);
+            reference.begintime = beginTime;
+            reference.endtime = endTime;
+            reference.width = MSPT;
+            reference.run();
+
+            double difference = Math.abs(estimator.getMu() - reference.mu);
+            totalDifference += difference;
+            maxDifference = Math.max(maxDifference, difference);
+            correction = (int) Math.round(reference.mu);
+        }
+
+        // the original only searches a 10 ms grid, so it can't be expected to agree more closely than that
+        assertTrue(maxDifference < 10, "max difference " + maxDifference);
+        assertTrue(totalDifference / CATCHES < 2, "mean difference " + totalDifference / CATCHES);
+    }
+
+    /**
+     * Simulates the fishing cracker adjusting its correction after each catch. The true offset is the base offset, plus
+     * the shift for the second half of the trace, plus normally distributed jitter. Dropped catches land at a random
+     * tick, and each other tick in the window has the same loot as the caught one with the given probability.
+     */
+    private static TraceResult runTrace(Random random, double offset, double shift, double jitter, double dropRate, double duplicateLootRate) {
+        MedianTimingEstimator estimator = new MedianTimingEstimator(10, 2 * HALF_WINDOW + 1);
+        int correction = -100;
+        double totalError = 0;
+        int measuredCatches = 0;
+        double[] sample = new double[2 * HALF_WINDOW + 1];
+
+        for (int catchIndex = 0; catchIndex < CATCHES; catchIndex++) {
+            double trueOffset = catchIndex < CATCHES / 2 ? offset : offset + shift;
+            int count = makeSample(random, sample, catchIndex, correction, offset, shift, jitter, dropRate, duplicateLootRate);
+
+            int beginTime = correction - MSPT / 2 - HALF_WINDOW * MSPT;
+            int endTime = correction + MSPT / 2 + HALF_WINDOW * MSPT;
+            estimator.addSample(sample, count, MSPT, beginTime, endTime);
+            correction = (int) Math.round(estimator.getMu());
+
+            boolean settling = catchIndex < SETTLING_CATCHES || (catchIndex >= CATCHES / 2 && catchIndex < CATCHES / 2 + SETTLING_CATCHES);
+            if (!settling) {
+                totalError += Math.abs(correction - trueOffset);
+                measuredCatches++;
+            }
+        }
+
+        return new TraceResult(totalError / measuredCatches);
+    }
+
+    /**
+     * Makes the sample of one catch, returning the number of points in it
+     */
+    private static int makeSample(Random random, double[] sample, int catchIndex, int correction, double offset, double shift, double jitter, double dropRate, double duplicateLootRate) {
+        double trueOffset = catchIndex < CATCHES / 2 ? offset : offset + shift;
+        int caughtTick;
+        if (random.nextDouble() < dropRate) {
+            caughtTick = random.nextInt(2 * HALF_WINDOW + 1) - HALF_WINDOW;
+        } else {
+            double arrival = trueOffset + random.nextGaussian() * jitter;
+            caughtTick = Math.clamp(Math.round((arrival - correction) / MSPT), -HALF_WINDOW, HALF_WINDOW);
+        }
+
+        int count = 0;
+        for (int tick = -HALF_WINDOW; tick <= HALF_WINDOW; tick++) {
+            if (tick == caughtTick || random.nextDouble() < duplicateLootRate / (2 * HALF_WINDOW)) {
+                sample[count++] = tick * MSPT + correction;
+            }
+        }
+        return count;
+    }
+
+    private record TraceResult(double meanError) {
+    }
+
+    /**
+     * The estimator the fishing cracker used before, by PseudoGravity:
+     * https://gist.github.com/pseudogravity/294f12225c18bf319e4c1923dd664bd5
+     */
+    private static final class CombinedMedianEM {
+        final List<List<Double>> data = new ArrayList<>();
+        double width = 50;
+        int begintime = -1000;
+        int endtime = 1000;
+
+        double packetlossrate = 0.2;
+        final double maxpacketlossrate = 0.5;
+        final double minpacketlossrate = 0.01;
+        double mu = 0.0;
+        double sigma = 500;
+        final double maxsigma = 1000;
+        final double minsigma = 10;
+
+        void run() {
+            List<Double> droprate = new ArrayList<>();
+            for (List<Double> sample : data) {
+                droprate.add(sample.size() * width / (endtime - begintime));
+            }
+
+            double besttime = 0;
+            double bestscore = Double.MAX_VALUE;
+            for (int time = begintime; time <= endtime; time += 10) {
+                double score = 0;
+                for (int i = 0; i < data.size(); i++) {
+                    double lambda = droprate.get(i) / width;
+                    double bestsubscore = Double.MAX_VALUE;
+                    for (double x : data.get(i)) {
+                        double absdev = Math.abs(x - time);
+                        absdev = (1 - Math.exp(-lambda * absdev)) / lambda;
+                        bestsubscore = Math.min(bestsubscore, absdev);
+                    }
+                    score += bestsubscore;
+                }
+                if (score < bestscore) {
+                    bestscore = score;
+                    besttime = time;
+                }
+            }
+
+            mu = besttime;
+            sigma = Math.max(Math.min(bestscore / data.size(), maxsigma), minsigma);
+
+            // E step
+            List<List<Double>> masses = new ArrayList<>();
+            for (int i = 0; i < data.size(); i++) {
+                List<Double> sample = data.get(i);
+                double sum = 0;
+                for (double x : sample) {
+                    sum += mass(x);
+                }
+                double pXandNorm = Math.min(sum, 1) * (1 - packetlossrate);
+                double pXandUnif = droprate.get(i) * packetlossrate;
+                double pNorm = pXandNorm / (pXandNorm + pXandUnif);
+                List<Double> mass = new ArrayList<>();
+                for (double x : sample) {
+                    mass.add(mass(x) / sum * pNorm);
+                }
+                masses.add(mass);
+            }
+
+            // M step
+            double weightedsum = 0;
+            double sumofweights = 0;
+            for (int i = 0; i < data.size(); i++) {
+                for (int j = 0; j < data.get(i).size(); j++) {
+                    weightedsum += data.get(i).get(j) * masses.get(i).get(j);
+                    sumofweights += masses.get(i).get(j);
+                }
+            }
+            double muNext = weightedsum / sumofweights;
+
+            double weightedsumofsquaredeviations = 0;
+            for (int i = 0; i < data.size(); i++) {
+                for (int j = 0; j < data.get(i).size(); j++) {
+                    weightedsumofsquaredeviations += Math.pow(data.get(i).get(j) - muNext, 2) * masses.get(i).get(j);
+                }
+            }
+
+            mu = muNext;
+            sigma = Math.max(Math.min(Math.sqrt(weightedsumofsquaredeviations / sumofweights), maxsigma), minsigma);
+            packetlossrate = Math.max(Math.min((data.size() - sumofweights) / data.size(), maxpacketlossrate), minpacketlossrate);
+        }
+
+        double mass(double x) {
+            double pdf = 1 / (sigma * Math.sqrt(2 * Math.PI)) * Math.exp(-Math.pow((x - mu) / sigma, 2) / 2);
+            return Math.min(pdf * width, 1);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package net.earthcomputer.clientcommands.test;
+
+import net.earthcomputer.clientcommands.features.PacketCaptureFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class PacketCaptureFileTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path file = tempDir.resolve("capture.ccpc");
+        List<PacketCaptureFile.Record> written = writeRecords(file, 5000);
+
+        try (PacketCaptureFile.Reader reader = new PacketCaptureFile.Reader(file)) {
+            assertTrue(reader.getBlockCount() > 1, "expected multiple blocks");
+            assertEquals(written.size(), reader.getRecordCount());
+            assertRecordsEqual(written, readAll(reader));
+        }
+    }
+
+    @Test
+    public void testFindBlock() throws IOException {
+        Path file = tempDir.resolve("capture.ccpc");
+        List<PacketCaptureFile.Record> written = writeRecords(file, 5000);
+
+        try (PacketCaptureFile.Reader reader = new PacketCaptureFile.Reader(file)) {
+            long timestamp = written.get(3000).timestamp();
+            int block = reader.findBlock(timestamp);
+            assertTrue(block < reader.getBlockCount());
+            List<PacketCaptureFile.Record> records = reader.readBlock(block);
+            assertTrue(records.getFirst().timestamp() <= timestamp);
+            assertTrue(records.getLast().timestamp() >= timestamp);
+            if (block > 0) {
+                assertTrue(reader.getBlock(block - 1).lastTimestamp() < timestamp);
+            }
+
+            assertEquals(reader.getBlockCount(), reader.findBlock(written.getLast().timestamp() + 1));
+        }
+    }
+
+    @Test
+    public void testRecoverUnclosedFile() throws IOException {
+        Path file = tempDir.resolve("capture.ccpc");
+        List<PacketCaptureFile.Record> written = writeRecords(file, 5000);
+
+        // cut off the index and a partially written block, as if the game had crashed while capturing
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer trailer = ByteBuffer.allocate(12);
+            channel.read(trailer, channel.size() - 12);
+            long indexOffset = trailer.flip().getLong();
+            channel.truncate(indexOffset - 10);
+        }
+
+        try (PacketCaptureFile.Reader reader = new PacketCaptureFile.Reader(file)) {
+            List<PacketCaptureFile.Record> read = readAll(reader);
+            assertTrue(read.size() > 0 && read.size() < written.size());
+            assertRecordsEqual(written.subList(0, read.size()), read);
+        }
+    }
+
+    private static List<PacketCaptureFile.Record> writeRecords(Path file, int count) throws IOException {
+        Random random = new Random(0);
+        List<PacketCaptureFile.Record> records = new ArrayList<>(count);
+        long timestamp = 1_700_000_000_000L;
+        try (PacketCaptureFile.Writer writer = new PacketCaptureFile.Writer(file)) {
+            for (int i = 0; i < count; i++) {
+                timestamp += random.nextInt(20);
+                byte[] payload = new byte[random.nextInt(100)];
+                random.nextBytes(payload);
+                PacketCaptureFile.Record record = new PacketCaptureFile.Record(timestamp, random.nextInt(4), "minecraft:packet_" + random.nextInt(10), payload);
+                assertTrue(writer.write(record.timestamp(), record.direction(), record.typeId(), record.payload()));
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private static List<PacketCaptureFile.Record> readAll(PacketCaptureFile.Reader reader) throws IOException {
+        List<PacketCaptureFile.Record> records = new ArrayList<>();
+        for (int block = 0; block < reader.getBlockCount(); block++) {
+            records.addAll(reader.readBlock(block));
+        }
+        return records;
+    }
+
+    private static void assertRecordsEqual(List<PacketCaptureFile.Record> expected, List<PacketCaptureFile.Record> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).timestamp(), actual.get(i).timestamp());
+            assertEquals(expected.get(i).direction(), actual.get(i).direction());
+            assertEquals(expected.get(i).typeId(), actual.get(i).typeId());
+            assertArrayEquals(expected.get(i).payload(), actual.get(i).payload());
+        }
+    }
+}
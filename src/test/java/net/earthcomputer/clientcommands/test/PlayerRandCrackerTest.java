@@ -0,0 +1,130 @@
+package net.earthcomputer.clientcommands.test;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.earthcomputer.clientcommands.features.PlayerRandCracker;
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class PlayerRandCrackerTest {
+    private static final long[] SEEDS = {0, 1, PlayerRandCracker.MASK, 0x123456789abcL, PlayerRandCracker.MULTIPLIER};
+    private static final long[] CALL_COUNTS = {0, 1, 2, 3, 4, 5, 7, 8, 63, 64, 65, 1023, 1024, 1025, 4095, 4096, 4097, 65536, 100003};
+
+    @BeforeAll
+    public static void setup() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    @Test
+    public void testAdvanceSeed() {
+        for (long seed : SEEDS) {
+            long expected = seed;
+            long steps = 0;
+            for (long calls : CALL_COUNTS) {
+                for (; steps < calls; steps++) {
+                    expected = (expected * PlayerRandCracker.MULTIPLIER + PlayerRandCracker.ADDEND) & PlayerRandCracker.MASK;
+                }
+                assertEquals(expected, PlayerRandCracker.advanceSeed(seed, calls), "seed " + seed + " after " + calls + " calls");
+            }
+        }
+    }
+
+    @Test
+    public void testAdvanceSeedByThrows() {
+        for (long seed : SEEDS) {
+            long expected = seed;
+            for (int throwCount = 0; throwCount <= 1025; throwCount++) {
+                assertEquals(expected, PlayerRandCracker.advanceSeedByThrows(seed, throwCount), "seed " + seed + " after " + throwCount + " throws");
+                for (int i = 0; i < 4; i++) {
+                    expected = (expected * PlayerRandCracker.MULTIPLIER + PlayerRandCracker.ADDEND) & PlayerRandCracker.MASK;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAdvanceSeedLargeCallCounts() {
+        for (long seed : SEEDS) {
+            // the generator has a period of 2^48
+            assertEquals(seed, PlayerRandCracker.advanceSeed(seed, 1L << 48));
+            assertEquals(PlayerRandCracker.advanceSeed(seed, 5), PlayerRandCracker.advanceSeed(seed, (1L << 48) + 5));
+            // the call count is treated as unsigned, and 2^63 is a multiple of the period
+            assertEquals(seed, PlayerRandCracker.advanceSeed(PlayerRandCracker.advanceSeed(seed, Long.MAX_VALUE), 1));
+            assertEquals(seed, PlayerRandCracker.advanceSeed(seed, Long.MIN_VALUE));
+            // 2^64 - 1 calls is one call short of a multiple of the period
+            assertEquals(seed, PlayerRandCracker.advanceSeed(PlayerRandCracker.advanceSeed(seed, -1), 1));
+            assertEquals(PlayerRandCracker.advanceSeed(seed, 1L << 47), PlayerRandCracker.advanceSeed(PlayerRandCracker.advanceSeed(seed, 1L << 46), 1L << 46));
+        }
+    }
+
+    @Test
+    public void testItemsNeededParallelMatchesSequential() {
+        long seed = 0x123456789abcL;
+        int[] maxes = {4095, 4096, 4097, 10000};
+        int[] targets = {0, 1, 1023, 1024, 1025, 2047, 2048, 3071, 3072, 4095, 4096, 4097, 9999, 10000, 10001};
+        for (int max : maxes) {
+            for (int target : targets) {
+                assertSameItemsNeeded(seed, matchesThrows(seed, target), max, "throw " + target + " of " + max);
+            }
+            // the earliest of several matching throws in different segments
+            assertSameItemsNeeded(seed, matchesThrows(seed, 3000, 1500, 1100), max, "several throws of " + max);
+            assertSameItemsNeeded(seed, rand -> false, max, "no throws of " + max);
+            assertSameItemsNeeded(seed, rand -> true, max, "every throw of " + max);
+        }
+    }
+
+    @Test
+    public void testItemsNeededSegmentedMatchesSequential() {
+        // getItemsNeededParallel only segments the search when there is more than one CPU to spare, so test the
+        // segmented search directly with fixed numbers of helpers
+        long seed = 0x123456789abcL;
+        int[] maxes = {0, 1023, 1024, 4097, 10000};
+        int[] targets = {0, 1, 1023, 1024, 1025, 4095, 4096, 9999, 10000, 10001};
+        for (int helpers : new int[] {0, 1, 3, 16}) {
+            for (int max : maxes) {
+                for (int target : targets) {
+                    assertSameItemsNeededSegmented(seed, matchesThrows(seed, target), max, helpers, "throw " + target + " of " + max + " with " + helpers + " helpers");
+                }
+                assertSameItemsNeededSegmented(seed, matchesThrows(seed, 3000, 1500, 1100), max, helpers, "several throws of " + max + " with " + helpers + " helpers");
+                assertSameItemsNeededSegmented(seed, rand -> false, max, helpers, "no throws of " + max + " with " + helpers + " helpers");
+            }
+        }
+    }
+
+    @Test
+    public void testItemsNeededParallelFindsTarget() {
+        long seed = 42;
+        for (int target : new int[] {0, 1023, 1024, 5000, 20000}) {
+            assertEquals(target, PlayerRandCracker.getItemsNeededParallel(seed, matchesThrows(seed, target), 20000));
+        }
+        assertEquals(20001, PlayerRandCracker.getItemsNeededParallel(seed, rand -> false, 20000));
+    }
+
+    private static void assertSameItemsNeededSegmented(long seed, Predicate<Random> condition, int max, int helpers, String message) {
+        assertEquals(PlayerRandCracker.getItemsNeeded(seed, condition, max), PlayerRandCracker.getItemsNeededSegmented(seed, condition, max, helpers), message);
+    }
+
+    private static void assertSameItemsNeeded(long seed, Predicate<Random> condition, int max, String message) {
+        assertEquals(PlayerRandCracker.getItemsNeeded(seed, condition, max), PlayerRandCracker.getItemsNeededParallel(seed, condition, max), message);
+    }
+
+    /**
+     * A condition which is only met after one of the given numbers of throws, recognised by the first value the random
+     * generates at that point
+     */
+    private static Predicate<Random> matchesThrows(long seed, int... throwCounts) {
+        LongSet expected = new LongOpenHashSet();
+        for (int throwCount : throwCounts) {
+            expected.add(new Random(PlayerRandCracker.advanceSeedByThrows(seed, throwCount) ^ PlayerRandCracker.MULTIPLIER).nextLong());
+        }
+        return rand -> expected.contains(rand.nextLong());
+    }
+}
@@ -0,0 +1,108 @@
+package net.earthcomputer.clientcommands.test;
+
+import net.earthcomputer.clientcommands.util.PrecisionScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class PrecisionSchedulerTest {
+    private PrecisionScheduler scheduler;
+
+    @BeforeEach
+    public void setup() {
+        scheduler = new PrecisionScheduler("Test Precision Scheduler");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testConcurrentDeadlines() throws InterruptedException {
+        int actionCount = 100;
+        Random random = new Random(0);
+        long start = System.nanoTime();
+        long[] deadlines = new long[actionCount];
+        long[] runTimes = new long[actionCount];
+        List<Integer> runOrder = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(actionCount);
+        for (int i = 0; i < actionCount; i++) {
+            int index = i;
+            // some deadlines are further away than the timing wheel spans
+            deadlines[i] = start + TimeUnit.MILLISECONDS.toNanos(50 + random.nextInt(i % 10 == 0 ? 800 : 100));
+            scheduler.schedule(deadlines[i], () -> {
+                runTimes[index] = System.nanoTime();
+                synchronized (runOrder) {
+                    runOrder.add(index);
+                }
+                latch.countDown();
+            });
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS), "not all actions ran");
+        for (int i = 0; i < actionCount; i++) {
+            assertTrue(runTimes[i] - deadlines[i] >= 0, "action " + i + " ran early");
+        }
+        for (int i = 1; i < actionCount; i++) {
+            assertTrue(deadlines[runOrder.get(i - 1)] <= deadlines[runOrder.get(i)], "actions ran out of order");
+        }
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        AtomicBoolean cancelledActionRan = new AtomicBoolean();
+        CountDownLatch latch = new CountDownLatch(1);
+        long now = System.nanoTime();
+        PrecisionScheduler.Action cancelled = scheduler.schedule(now + TimeUnit.MILLISECONDS.toNanos(20), () -> cancelledActionRan.set(true));
+        PrecisionScheduler.Action action = scheduler.schedule(now + TimeUnit.MILLISECONDS.toNanos(40), latch::countDown);
+        assertTrue(cancelled.cancel());
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertFalse(cancelledActionRan.get());
+        assertTrue(cancelled.isDone());
+        assertFalse(action.cancel());
+    }
+
+    @Test
+    public void testPastDeadline() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        scheduler.schedule(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(10), latch::countDown);
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testLatencyHistogramCountsEveryAction() throws InterruptedException {
+        int actionCount = 20;
+        CountDownLatch latch = new CountDownLatch(actionCount);
+        long start = System.nanoTime();
+        for (int i = 0; i < actionCount; i++) {
+            scheduler.schedule(start + TimeUnit.MILLISECONDS.toNanos(i), latch::countDown);
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS), "not all actions ran");
+        assertEquals(actionCount, scheduler.getLatencyHistogram().getTotalCount());
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+        assertEquals(0, PrecisionScheduler.Histogram.bucketOf(0));
+        assertEquals(0, PrecisionScheduler.Histogram.bucketOf(1));
+        assertEquals(1, PrecisionScheduler.Histogram.bucketOf(2));
+        assertEquals(2, PrecisionScheduler.Histogram.bucketOf(3));
+        assertEquals(2, PrecisionScheduler.Histogram.bucketOf(4));
+        assertEquals(3, PrecisionScheduler.Histogram.bucketOf(5));
+        assertEquals(20, PrecisionScheduler.Histogram.bucketOf(1 << 20));
+        assertEquals(Long.SIZE - 1, PrecisionScheduler.Histogram.bucketOf(Long.MAX_VALUE));
+        assertEquals(1 << 20, PrecisionScheduler.Histogram.bucketUpperBound(20));
+    }
+}
@@ -0,0 +1,194 @@
+package net.earthcomputer.clientcommands.test;
+
+import net.earthcomputer.clientcommands.features.SimulatedFishingBobber;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.ClipContext;
+import net.minecraft.world.level.CollisionGetter;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.FenceBlock;
+import net.minecraft.world.level.block.ScaffoldingBlock;
+import net.minecraft.world.level.block.SlabBlock;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.block.state.properties.SlabType;
+import net.minecraft.world.level.border.WorldBorder;
+import net.minecraft.world.level.material.FluidState;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.HitResult;
+import net.minecraft.world.phys.Vec3;
+import net.minecraft.world.phys.shapes.CollisionContext;
+import net.minecraft.world.phys.shapes.Shapes;
+import net.minecraft.world.phys.shapes.VoxelShape;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An endless ocean with its surface at y=62 and a stone floor below y=56, with a sandy shore rising out of the water
+ * towards positive x. The shallows have waterlogged fence posts and lily pads, and the beach has slabs and scaffolding.
+ */
+public final class ShoreEnvironment implements SimulatedFishingBobber.Environment, CollisionGetter {
+    public static final int SEA_LEVEL = 62;
+    private static final int FLOOR_Y = 55;
+
+    private static final BlockState AIR = Blocks.AIR.defaultBlockState();
+    private static final BlockState WATER = Blocks.WATER.defaultBlockState();
+    private static final BlockState STONE = Blocks.STONE.defaultBlockState();
+    private static final BlockState SAND = Blocks.SAND.defaultBlockState();
+    private static final BlockState LILY_PAD = Blocks.LILY_PAD.defaultBlockState();
+    private static final BlockState FENCE = Blocks.OAK_FENCE.defaultBlockState().setValue(FenceBlock.WATERLOGGED, true);
+    private static final BlockState SLAB = Blocks.OAK_SLAB.defaultBlockState().setValue(SlabBlock.TYPE, SlabType.BOTTOM);
+    private static final BlockState SCAFFOLDING = Blocks.SCAFFOLDING.defaultBlockState().setValue(ScaffoldingBlock.BOTTOM, true);
+
+    private final WorldBorder worldBorder = new WorldBorder();
+
+    @Nullable
+    @Override
+    public BlockEntity getBlockEntity(BlockPos pos) {
+        return null;
+    }
+
+    @Override
+    public BlockState getBlockState(BlockPos pos) {
+        int x = pos.getX();
+        int y = pos.getY();
+        int z = pos.getZ();
+        if (y <= FLOOR_Y) {
+            return STONE;
+        }
+
+        int groundY = x < 0 ? FLOOR_Y : Math.min(FLOOR_Y + x, SEA_LEVEL + 3);
+        if (y <= groundY) {
+            return SAND;
+        }
+        if (y == SEA_LEVEL - 1 && x == 4 && Math.floorMod(z, 5) == 0) {
+            // sticks out of the water, since fences are taller than a block
+            return FENCE;
+        }
+        if (y <= SEA_LEVEL) {
+            return WATER;
+        }
+        if (y == SEA_LEVEL + 1 && x == -3 && Math.floorMod(z, 7) == 0) {
+            return LILY_PAD;
+        }
+        if (y == groundY + 1 && x == 7 && Math.floorMod(z, 3) == 0) {
+            return SLAB;
+        }
+        if (y == groundY + 1 && x == 8 && Math.floorMod(z, 4) == 1) {
+            return SCAFFOLDING;
+        }
+        return AIR;
+    }
+
+    @Override
+    public FluidState getFluidState(BlockPos pos) {
+        return getBlockState(pos).getFluidState();
+    }
+
+    @Override
+    public int getHeight() {
+        return 384;
+    }
+
+    @Override
+    public int getMinY() {
+        return -64;
+    }
+
+    @Override
+    public boolean hasChunksAt(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        return true;
+    }
+
+    @Override
+    public boolean isRainingAt(BlockPos pos) {
+        return false;
+    }
+
+    @Override
+    public boolean canSeeSky(BlockPos pos) {
+        return pos.getY() > SEA_LEVEL;
+    }
+
+    @Override
+    public VoxelShape getCollisionShape(BlockState state, BlockPos pos, double x, double y, double z) {
+        // there is no entity, so this is the shape seen without one, as in the reference simulation
+        return state.getCollisionShape(this, pos, CollisionContext.empty());
+    }
+
+    @Override
+    public boolean hasNonBlockColliders(AABB box) {
+        return false;
+    }
+
+    @Override
+    public Vec3 collide(AABB boundingBox, Vec3 pos, Vec3 velocity, Vec3 movement) {
+        List<VoxelShape> shapes = new ArrayList<>();
+        shapes.add(worldBorder.getCollisionShape());
+        return collideBoundingBox(movement, boundingBox, this, shapes);
+    }
+
+    @Override
+    public boolean hitsSomethingWhileFlying(Vec3 pos, Vec3 velocity) {
+        ClipContext context = new ClipContext(pos, pos.add(velocity), ClipContext.Block.COLLIDER, ClipContext.Fluid.NONE, CollisionContext.empty());
+        return clip(context).getType() != HitResult.Type.MISS;
+    }
+
+    @Override
+    public WorldBorder getWorldBorder() {
+        return worldBorder;
+    }
+
+    @Override
+    public BlockGetter getChunkForCollisions(int chunkX, int chunkZ) {
+        return this;
+    }
+
+    @Override
+    public List<VoxelShape> getEntityCollisions(@Nullable Entity entity, AABB box) {
+        return List.of();
+    }
+
+    /**
+     * The same as {@link Entity#collideBoundingBox} without an entity, which doesn't need a level
+     */
+    public static Vec3 collideBoundingBox(Vec3 movement, AABB box, CollisionGetter collisionGetter, List<VoxelShape> shapes) {
+        List<VoxelShape> allShapes = new ArrayList<>(shapes);
+        collisionGetter.getBlockCollisions(null, box.expandTowards(movement)).forEach(allShapes::add);
+        if (allShapes.isEmpty()) {
+            return movement;
+        }
+
+        // Entity.collideWithShapes
+        double x = movement.x;
+        double y = movement.y;
+        double z = movement.z;
+        if (y != 0.0D) {
+            y = Shapes.collide(Direction.Axis.Y, box, allShapes, y);
+            if (y != 0.0D) {
+                box = box.move(0.0D, y, 0.0D);
+            }
+        }
+        boolean zFirst = Math.abs(x) < Math.abs(z);
+        if (zFirst && z != 0.0D) {
+            z = Shapes.collide(Direction.Axis.Z, box, allShapes, z);
+            if (z != 0.0D) {
+                box = box.move(0.0D, 0.0D, z);
+            }
+        }
+        if (x != 0.0D) {
+            x = Shapes.collide(Direction.Axis.X, box, allShapes, x);
+            if (!zFirst && x != 0.0D) {
+                box = box.move(x, 0.0D, 0.0D);
+            }
+        }
+        if (!zFirst && z != 0.0D) {
+            z = Shapes.collide(Direction.Axis.Z, box, allShapes, z);
+        }
+        return new Vec3(x, y, z);
+    }
+}
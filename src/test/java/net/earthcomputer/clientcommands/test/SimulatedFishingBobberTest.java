@@ -0,0 +1,476 @@
+package net.earthcomputer.clientcommands.test;
+
+import net.earthcomputer.clientcommands.features.SimulatedFishingBobber;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.util.Mth;
+import net.minecraft.util.RandomSource;
+import net.minecraft.world.level.block.BaseFireBlock;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.levelgen.LegacyRandomSource;
+import net.minecraft.world.level.material.FluidState;
+import net.minecraft.world.level.material.Fluids;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.Vec3;
+import net.minecraft.world.phys.shapes.BooleanOp;
+import net.minecraft.world.phys.shapes.Shapes;
+import net.minecraft.world.phys.shapes.VoxelShape;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class SimulatedFishingBobberTest {
+    private static final int CASTS = 200;
+    private static final int TICKS_PER_CAST = 400;
+
+    @BeforeAll
+    public static void setup() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    @Test
+    public void testMatchesPreviousSimulator() {
+        ShoreEnvironment environment = new ShoreEnvironment();
+        Random rand = new Random(0);
+        int bobbingCollisionTicks = 0;
+        for (int cast = 0; cast < CASTS; cast++) {
+            // cast towards the shore, so that some bobbers drift into the shallows or land on the beach
+            long seed = rand.nextLong();
+            int lureLevel = rand.nextInt(4);
+            Vec3 pos = new Vec3(-8 + rand.nextDouble() * 10, ShoreEnvironment.SEA_LEVEL + 1 + rand.nextDouble() * 3, rand.nextDouble() * 20 - 10);
+            Vec3 velocity = new Vec3(rand.nextDouble() * 0.8, rand.nextDouble() * 0.5 - 0.1, rand.nextDouble() * 0.6 - 0.3);
+
+            SimulatedFishingBobber bobber = new SimulatedFishingBobber(environment, seed, lureLevel, pos.x, pos.y, pos.z, velocity.x, velocity.y, velocity.z);
+            ReferenceFishingBobber reference = new ReferenceFishingBobber(environment, seed, lureLevel, pos, velocity);
+            for (int tick = 0; tick < TICKS_PER_CAST; tick++) {
+                bobber.tick();
+                reference.tick();
+                String message = "cast " + cast + " tick " + tick;
+                assertEquals(reference.pos, bobber.getPos(), message);
+                assertEquals(reference.velocity, bobber.getVelocity(), message);
+                assertEquals(((LegacyRandomSource) reference.random).seed.get(), bobber.getRandomSeed(), message);
+                assertEquals(reference.canCatchFish(), bobber.canCatchFish(), message);
+                assertEquals(reference.inOpenWater, bobber.isInOpenWater(), message);
+                assertEquals(reference.failedReason, bobber.getFailedReason(), message);
+                if (reference.state == ReferenceFishingBobber.State.BOBBING && (reference.horizontalCollision || reference.verticalCollision)) {
+                    bobbingCollisionTicks++;
+                }
+            }
+            assertEquals(List.copyOf(reference.openWaterViolations), bobber.getOpenWaterViolations(), "cast " + cast);
+        }
+
+        assertTrue(bobbingCollisionTicks > 0, "no bobber collided with a block while bobbing, so the collision cache wasn't exercised");
+    }
+
+    /**
+     * The simulation from before the bobber was made allocation-free, which went through the vanilla collision code on
+     * every tick. The fluid and fire tag checks are replaced by the equivalent block checks, since tags aren't bound
+     * in tests, and the level is replaced by the test world.
+     */
+    private static final class ReferenceFishingBobber {
+        private final ShoreEnvironment level;
+
+        // state variables
+        private Vec3 pos;
+        private AABB boundingBox;
+        private Vec3 velocity;
+        private boolean onGround;
+        private State state = State.FLYING;
+        private int hookCountdown;
+        private int fishTravelCountdown;
+        private boolean inOpenWater = true;
+        private final Set<BlockPos> openWaterViolations = new LinkedHashSet<>(0);
+        private int outOfOpenWaterTicks;
+        private boolean caughtFish;
+        private boolean horizontalCollision;
+        private boolean verticalCollision;
+        private int waitCountdown;
+        private boolean touchingWater;
+        private boolean firstUpdate;
+
+        private float fishAngle;
+
+        private final RandomSource random;
+        private final int lureLevel;
+
+        @Nullable
+        private String failedReason;
+
+        ReferenceFishingBobber(ShoreEnvironment level, long seed, int lureLevel, Vec3 pos, Vec3 velocity) {
+            this.level = level;
+            this.random = RandomSource.create(seed ^ 0x5deece66dL);
+            // entity UUID
+            Mth.createInsecureUUID(random);
+
+            // entity yaw and pitch (ProjectileEntity.setVelocity)
+            random.triangle(0, 1);
+            random.triangle(0, 1);
+            random.triangle(0, 1);
+
+            this.lureLevel = lureLevel;
+            this.pos = pos;
+            this.velocity = velocity;
+            this.boundingBox = SimulatedFishingBobber.DIMENSIONS.makeBoundingBox(pos.x, pos.y, pos.z);
+        }
+
+        boolean canCatchFish() {
+            return hookCountdown > 0;
+        }
+
+        void tick() {
+            this.checkWaterState();
+            this.firstUpdate = false;
+
+            if (this.onGround) {
+                failedReason = "onGround";
+            }
+
+            float f = 0.0F;
+            BlockPos blockPos = BlockPos.containing(this.pos);
+            FluidState fluidState = this.level.getFluidState(blockPos);
+            if (isWater(fluidState)) {
+                f = fluidState.getHeight(this.level, blockPos);
+            }
+
+            boolean bl = f > 0.0F;
+            if (this.state == State.FLYING) {
+                if (bl) {
+                    this.velocity = this.velocity.multiply(0.3D, 0.2D, 0.3D);
+                    this.state = State.BOBBING;
+                    return;
+                }
+
+                if (level.hitsSomethingWhileFlying(pos, velocity)) {
+                    failedReason = "collision";
+                }
+            } else {
+                if (this.state == State.BOBBING) {
+                    Vec3 vec3 = this.velocity;
+                    double d = this.pos.y + vec3.y - (double) blockPos.getY() - (double) f;
+                    if (Math.abs(d) < 0.01D) {
+                        d += Math.signum(d) * 0.1D;
+                    }
+
+                    this.velocity = new Vec3(vec3.x * 0.9D, vec3.y - d * (double) this.random.nextFloat() * 0.2D, vec3.z * 0.9D);
+                    if (this.hookCountdown <= 0 && this.fishTravelCountdown <= 0) {
+                        this.inOpenWater = true;
+                    } else {
+                        this.inOpenWater &= this.outOfOpenWaterTicks < 10 & this.isOpenOrWaterAround(blockPos);
+                    }
+
+                    if (bl) {
+                        this.outOfOpenWaterTicks = Math.max(0, this.outOfOpenWaterTicks - 1);
+                        this.tickFishingLogic(blockPos);
+                    } else {
+                        this.outOfOpenWaterTicks = Math.min(10, this.outOfOpenWaterTicks + 1);
+                    }
+                }
+            }
+
+            if (!isWater(fluidState)) {
+                this.velocity = this.velocity.add(0.0D, -0.03D, 0.0D);
+            }
+
+            this.move(this.velocity);
+            if (this.state == State.FLYING && (this.onGround || this.horizontalCollision)) {
+                this.velocity = Vec3.ZERO;
+            }
+
+            this.velocity = this.velocity.scale(0.92D);
+
+            boundingBox = SimulatedFishingBobber.DIMENSIONS.makeBoundingBox(pos.x, pos.y, pos.z);
+        }
+
+        private static boolean isWater(FluidState fluidState) {
+            return fluidState.getType().isSame(Fluids.WATER);
+        }
+
+        private void checkWaterState() {
+            if (this.updateMovementInWater()) {
+                if (!this.touchingWater && !this.firstUpdate) {
+                    this.onSwimmingStart();
+                }
+
+                this.touchingWater = true;
+            } else {
+                if (this.touchingWater) {
+                    failedReason = "outOfWater";
+                }
+                this.touchingWater = false;
+            }
+        }
+
+        private void onSwimmingStart() {
+            // splash sound volume and pitch
+            random.nextFloat();
+            random.nextFloat();
+
+            float width = SimulatedFishingBobber.DIMENSIONS.width();
+            for (int j = 0; (float) j < 1.0F + width * 20.0F; ++j) {
+                random.nextDouble();
+                random.nextDouble();
+                random.nextDouble();
+            }
+
+            for (int j = 0; (float) j < 1.0F + width * 20.0F; ++j) {
+                random.nextDouble();
+                random.nextDouble();
+            }
+        }
+
+        private boolean updateMovementInWater() {
+            AABB aabb = this.boundingBox.deflate(0.001D);
+            int i = Mth.floor(aabb.minX);
+            int j = Mth.ceil(aabb.maxX);
+            int k = Mth.floor(aabb.minY);
+            int l = Mth.ceil(aabb.maxY);
+            int m = Mth.floor(aabb.minZ);
+            int n = Mth.ceil(aabb.maxZ);
+            if (!this.level.hasChunksAt(i, k, m, j, l, n)) {
+                return false;
+            }
+
+            boolean touchingWater = false;
+            BlockPos.MutableBlockPos mutable = new BlockPos.MutableBlockPos();
+            for (int p = i; p < j; ++p) {
+                for (int q = k; q < l; ++q) {
+                    for (int r = m; r < n; ++r) {
+                        mutable.set(p, q, r);
+                        FluidState fluidState = this.level.getFluidState(mutable);
+                        if (isWater(fluidState)) {
+                            double f = (float) q + fluidState.getHeight(this.level, mutable);
+                            if (f >= aabb.minY) {
+                                touchingWater = true;
+                            }
+                        }
+                    }
+                }
+            }
+            return touchingWater;
+        }
+
+        private void move(Vec3 movement) {
+            Vec3 vec3 = this.adjustMovementForCollisions(movement);
+            if (vec3.lengthSqr() > 1.0E-7D) {
+                this.boundingBox = this.boundingBox.move(vec3);
+                this.pos = new Vec3((boundingBox.minX + boundingBox.maxX) / 2.0D, boundingBox.minY, (boundingBox.minZ + boundingBox.maxZ) / 2.0D);
+            }
+
+            this.horizontalCollision = !Mth.equal(movement.x, vec3.x) || !Mth.equal(movement.z, vec3.z);
+            this.verticalCollision = movement.y != vec3.y;
+            this.onGround = this.verticalCollision && movement.y < 0.0D;
+            Vec3 vec32 = this.velocity;
+            if (movement.x != vec3.x) {
+                this.velocity = new Vec3(0.0D, vec32.y, vec32.z);
+            }
+
+            if (movement.z != vec3.z) {
+                this.velocity = new Vec3(vec32.x, vec32.y, 0.0D);
+            }
+
+            if (movement.y != vec3.y) {
+                // block.onLanded
+                velocity = velocity.multiply(1.0D, 0.0D, 1.0D);
+            }
+
+            float i = this.getVelocityMultiplier();
+            this.velocity = this.velocity.multiply(i, 1.0D, i);
+            if (BlockPos.betweenClosedStream(this.boundingBox.deflate(0.001D)).map(level::getBlockState).anyMatch(blockState -> blockState.getBlock() instanceof BaseFireBlock || blockState.is(Blocks.LAVA))) {
+                failedReason = "fire";
+            }
+        }
+
+        private Vec3 adjustMovementForCollisions(Vec3 movement) {
+            AABB aabb = this.boundingBox;
+            VoxelShape voxelShape = this.level.getWorldBorder().getCollisionShape();
+            List<VoxelShape> voxelShapes = new ArrayList<>();
+            if (!Shapes.joinIsNotEmpty(voxelShape, Shapes.create(aabb.deflate(1.0E-7D)), BooleanOp.AND)) {
+                voxelShapes.add(voxelShape);
+            }
+            voxelShapes.addAll(this.level.getEntityCollisions(null, aabb.expandTowards(movement)));
+
+            return movement.lengthSqr() == 0.0D ? movement : ShoreEnvironment.collideBoundingBox(movement, aabb, this.level, voxelShapes);
+        }
+
+        private float getVelocityMultiplier() {
+            Block block = this.level.getBlockState(BlockPos.containing(pos)).getBlock();
+            float f = block.getSpeedFactor();
+            if (block != Blocks.WATER && block != Blocks.BUBBLE_COLUMN) {
+                return (double) f == 1.0D ? this.level
+                    .getBlockState(BlockPos.containing(this.pos.x, this.boundingBox.minY - 0.5000001D, this.pos.z)).getBlock().getSpeedFactor() : f;
+            } else {
+                return f;
+            }
+        }
+
+        private boolean isOpenOrWaterAround(BlockPos pos) {
+            PositionType positionType = PositionType.INVALID;
+
+            boolean valid = true;
+
+            for (int i = -1; i <= 2; ++i) {
+                PositionType positionType2 = this.getPositionType(pos.offset(-2, i, -2), pos.offset(2, i, 2));
+                switch (positionType2) {
+                    case INVALID:
+                        valid = false;
+                        break;
+                    case ABOVE_WATER:
+                        if (positionType == PositionType.INVALID) {
+                            valid = false;
+                        }
+                        break;
+                    case INSIDE_WATER:
+                        if (positionType == PositionType.ABOVE_WATER) {
+                            valid = false;
+                        }
+                        break;
+                }
+
+                if (!valid) {
+                    List<BlockPos> aboveWaterBlocks = new ArrayList<>(0);
+                    boolean foundWater = false;
+                    for (int dx = -2; dx <= 2; dx++) {
+                        for (int dz = -2; dz <= 2; dz++) {
+                            BlockPos pos2 = pos.offset(dx, i, dz);
+                            PositionType positionType3 = getPositionType(pos2);
+                            if (positionType3 == PositionType.INVALID) {
+                                openWaterViolations.add(pos2);
+                            } else if (positionType3 == PositionType.ABOVE_WATER) {
+                                aboveWaterBlocks.add(pos2);
+                            } else if (positionType3 == PositionType.INSIDE_WATER) {
+                                foundWater = true;
+                            }
+                        }
+                    }
+                    if (foundWater) {
+                        openWaterViolations.addAll(aboveWaterBlocks);
+                    }
+                }
+
+                positionType = positionType2;
+            }
+
+            return valid;
+        }
+
+        private PositionType getPositionType(BlockPos start, BlockPos end) {
+            return BlockPos.betweenClosedStream(start, end).map(this::getPositionType).reduce((positionType, positionType2) -> positionType == positionType2 ? positionType : PositionType.INVALID).orElse(PositionType.INVALID);
+        }
+
+        private PositionType getPositionType(BlockPos pos) {
+            BlockState blockState = this.level.getBlockState(pos);
+            if (!blockState.isAir() && !blockState.is(Blocks.LILY_PAD)) {
+                FluidState fluidState = blockState.getFluidState();
+                return isWater(fluidState) && fluidState.isSource() && blockState.getCollisionShape(this.level, pos).isEmpty() ? PositionType.INSIDE_WATER : PositionType.INVALID;
+            } else {
+                return PositionType.ABOVE_WATER;
+            }
+        }
+
+        private void tickFishingLogic(BlockPos pos) {
+            int i = 1;
+            BlockPos blockPos = pos.above();
+            if (this.random.nextFloat() < 0.25F && this.level.isRainingAt(blockPos)) {
+                ++i;
+            }
+
+            if (this.random.nextFloat() < 0.5F && !this.level.canSeeSky(blockPos)) {
+                --i;
+            }
+
+            if (this.hookCountdown > 0) {
+                --this.hookCountdown;
+                if (this.hookCountdown <= 0) {
+                    this.waitCountdown = 0;
+                    this.fishTravelCountdown = 0;
+                    this.caughtFish = false;
+                }
+            } else {
+                float n;
+                float o;
+                float p;
+                double q;
+                double r;
+                double s;
+                BlockState blockState2;
+                if (this.fishTravelCountdown > 0) {
+                    this.fishTravelCountdown -= i;
+                    if (this.fishTravelCountdown > 0) {
+                        this.fishAngle += random.triangle(0, 9.188);
+                        n = this.fishAngle * 0.017453292F;
+                        o = Mth.sin(n);
+                        p = Mth.cos(n);
+                        q = this.pos.x + (double) (o * (float) this.fishTravelCountdown * 0.1F);
+                        r = (float) Mth.floor(this.pos.y) + 1.0F;
+                        s = this.pos.z + (double) (p * (float) this.fishTravelCountdown * 0.1F);
+                        blockState2 = level.getBlockState(BlockPos.containing(q, r - 1.0D, s));
+                        if (blockState2.is(Blocks.WATER)) {
+                            // bubble particles
+                            this.random.nextFloat();
+                        }
+                    } else {
+                        // splash sound volume and pitch
+                        random.nextFloat();
+                        random.nextFloat();
+                        this.hookCountdown = Mth.nextInt(this.random, 20, 40);
+                        this.caughtFish = true;
+                    }
+                } else if (this.waitCountdown > 0) {
+                    this.waitCountdown -= i;
+                    n = 0.15F;
+                    if (this.waitCountdown < 20) {
+                        n = (float) ((double) n + (double) (20 - this.waitCountdown) * 0.05D);
+                    } else if (this.waitCountdown < 40) {
+                        n = (float) ((double) n + (double) (40 - this.waitCountdown) * 0.02D);
+                    } else if (this.waitCountdown < 60) {
+                        n = (float) ((double) n + (double) (60 - this.waitCountdown) * 0.01D);
+                    }
+
+                    if (this.random.nextFloat() < n) {
+                        o = Mth.nextFloat(this.random, 0.0F, 360.0F) * 0.017453292F;
+                        p = Mth.nextFloat(this.random, 25.0F, 60.0F);
+                        q = this.pos.x + (double) (Mth.sin(o) * p * 0.1F);
+                        r = (float) Mth.floor(this.pos.y) + 1.0F;
+                        s = this.pos.z + (double) (Mth.cos(o) * p * 0.1F);
+                        blockState2 = level.getBlockState(BlockPos.containing(q, r - 1.0D, s));
+                        if (blockState2.is(Blocks.WATER)) {
+                            // splash particle count
+                            random.nextInt(2);
+                        }
+                    }
+
+                    if (this.waitCountdown <= 0) {
+                        this.fishAngle = Mth.nextFloat(this.random, 0.0F, 360.0F);
+                        this.fishTravelCountdown = Mth.nextInt(this.random, 20, 80);
+                    }
+                } else {
+                    this.waitCountdown = Mth.nextInt(this.random, 100, 600);
+                    this.waitCountdown -= this.lureLevel * 20 * 5;
+                }
+            }
+        }
+
+        private enum PositionType {
+            ABOVE_WATER,
+            INSIDE_WATER,
+            INVALID;
+        }
+
+        private enum State {
+            FLYING,
+            BOBBING;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package net.earthcomputer.clientcommands.test;
+
+import net.earthcomputer.clientcommands.util.SpscRingBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class SpscRingBufferTest {
+    @Test
+    public void testFullAndEmpty() {
+        SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(3);
+        assertEquals(4, buffer.capacity());
+        assertNull(buffer.poll());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+        assertEquals(0, buffer.poll());
+        assertTrue(buffer.offer(4));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, buffer.poll());
+        }
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void testConcurrentOrder() throws InterruptedException {
+        int count = 200_000;
+        SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(64);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                while (!buffer.offer(i)) {
+                    Thread.yield();
+                }
+            }
+        });
+        Thread consumer = new Thread(() -> {
+            try {
+                for (int expected = 0; expected < count; expected++) {
+                    Integer element;
+                    while ((element = buffer.poll()) == null) {
+                        Thread.yield();
+                    }
+                    assertEquals(expected, element);
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        producer.start();
+        consumer.start();
+        producer.join(10_000);
+        consumer.join(10_000);
+
+        assertFalse(producer.isAlive() || consumer.isAlive(), "timed out");
+        assertNull(failure.get());
+        assertTrue(buffer.isEmpty());
+    }
+}
@@ -0,0 +1,41 @@
+package net.earthcomputer.clientcommands.test;
+
+import net.earthcomputer.clientcommands.features.WaypointIndex;
+import net.minecraft.core.BlockPos;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class WaypointIndexTest {
+    @Test
+    public void testRangeMatchesFullScan() {
+        Random random = new Random(0);
+        WaypointIndex.Builder builder = WaypointIndex.builder();
+        for (int i = 0; i < 1000; i++) {
+            builder.add("waypoint" + i, new BlockPos(random.nextInt(4000) - 2000, random.nextInt(384) - 64, random.nextInt(4000) - 2000));
+        }
+        WaypointIndex index = builder.build();
+        assertEquals(1000, index.size());
+
+        // small radii visit the chunks in range, large radii visit the chunks with waypoints
+        for (int radius : new int[] {0, 2, 12, 32, 200}) {
+            int chunkX = random.nextInt(250) - 125;
+            int chunkZ = random.nextInt(250) - 125;
+
+            Set<WaypointIndex.Waypoint> expected = new HashSet<>();
+            index.forEach(waypoint -> {
+                if (Math.abs((waypoint.pos().getX() >> 4) - chunkX) <= radius && Math.abs((waypoint.pos().getZ() >> 4) - chunkZ) <= radius) {
+                    expected.add(waypoint);
+                }
+            });
+            Set<WaypointIndex.Waypoint> actual = new HashSet<>();
+            index.forEachInRange(chunkX, chunkZ, radius, waypoint -> assertTrue(actual.add(waypoint), "visited " + waypoint.name() + " twice"));
+
+            assertEquals(expected, actual, "radius " + radius);
+        }
+    }
+}
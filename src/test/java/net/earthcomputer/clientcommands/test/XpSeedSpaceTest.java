@@ -0,0 +1,223 @@
+package net.earthcomputer.clientcommands.test;
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import net.earthcomputer.clientcommands.features.XpSeedSpace;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class XpSeedSpaceTest {
+    private static final int DENSE_SIZE = 1 << 20;
+    private static final int SPARSE_THRESHOLD = 1 << 12;
+
+    @Test
+    public void testFill() {
+        int serverSeed = 0x1234abcd;
+        XpSeedSpace space = new XpSeedSpace();
+        space.fill(serverSeed);
+        assertTrue(space.isDense());
+        assertEquals(DENSE_SIZE, space.size());
+        assertEquals(serverSeed & XpSeedSpace.KNOWN_MASK, space.getKnownBits());
+        assertSameSeeds(filledReference(serverSeed), space);
+
+        Random rand = new Random(0);
+        for (int i = 0; i < 10000; i++) {
+            int seed = rand.nextInt();
+            assertEquals((seed & XpSeedSpace.KNOWN_MASK) == (serverSeed & XpSeedSpace.KNOWN_MASK), space.contains(seed), "seed " + seed);
+        }
+    }
+
+    @Test
+    public void testRemoveIf() {
+        Random rand = new Random(1);
+        XpSeedSpace space = new XpSeedSpace();
+        space.fill(0x5a5a5a5a);
+        IntSet reference = filledReference(0x5a5a5a5a);
+
+        // remove roughly half the seeds each round, until the space has become sparse and then empty
+        boolean wasSparse = false;
+        while (!reference.isEmpty()) {
+            long salt = rand.nextLong();
+            IntPredicate predicate = seed -> (mix(seed, salt) & 1) == 0;
+            int expectedRemoved = 0;
+            for (int seed : reference.toIntArray()) {
+                if (predicate.test(seed)) {
+                    reference.remove(seed);
+                    expectedRemoved++;
+                }
+            }
+            assertEquals(expectedRemoved, space.removeIf(predicate));
+            assertSameSeeds(reference, space);
+            wasSparse |= !space.isDense();
+        }
+        assertTrue(wasSparse);
+        assertTrue(space.isEmpty());
+    }
+
+    @Test
+    public void testCompactionThreshold() {
+        XpSeedSpace atThreshold = new XpSeedSpace();
+        atThreshold.fill(0);
+        atThreshold.removeIf(seed -> XpSeedSpace.toDenseIndex(seed) >= SPARSE_THRESHOLD);
+        assertEquals(SPARSE_THRESHOLD, atThreshold.size());
+        assertFalse(atThreshold.isDense());
+
+        XpSeedSpace aboveThreshold = new XpSeedSpace();
+        aboveThreshold.fill(0);
+        aboveThreshold.removeIf(seed -> XpSeedSpace.toDenseIndex(seed) > SPARSE_THRESHOLD);
+        assertEquals(SPARSE_THRESHOLD + 1, aboveThreshold.size());
+        assertTrue(aboveThreshold.isDense());
+
+        // the sparse array must be sorted for contains to find every seed
+        int[] seeds = atThreshold.toIntArray();
+        int[] sorted = seeds.clone();
+        Arrays.sort(sorted);
+        assertArrayEquals(sorted, seeds);
+        for (int seed : seeds) {
+            assertTrue(atThreshold.contains(seed));
+        }
+    }
+
+    @Test
+    public void testRetainAllDense() {
+        XpSeedSpace space = randomDense(0x1230, 2);
+        XpSeedSpace other = randomDense(0x1230, 3);
+        assertRetainAll(space, other);
+        assertTrue(space.isDense());
+
+        // the intersection with a small dense space is small enough to become sparse
+        XpSeedSpace quarter = randomDense(0x1230, 4);
+        quarter.removeIf(seed -> XpSeedSpace.toDenseIndex(seed) >= 3 * SPARSE_THRESHOLD);
+        XpSeedSpace sparse = randomDense(0x1230, 5);
+        assertRetainAll(sparse, quarter);
+        assertFalse(sparse.isDense());
+    }
+
+    @Test
+    public void testRetainAllDifferentKnownBits() {
+        XpSeedSpace space = randomDense(0x1230, 6);
+        assertRetainAll(space, randomDense(0x4560, 7));
+        assertTrue(space.isEmpty());
+    }
+
+    @Test
+    public void testRetainAllMixed() {
+        XpSeedSpace sparse = randomSparse(0x1230, 8);
+        XpSeedSpace dense = randomDense(0x1230, 9);
+        assertRetainAll(sparse.copy(), dense);
+        assertRetainAll(dense.copy(), sparse);
+
+        XpSeedSpace single = new XpSeedSpace();
+        single.set(dense.first());
+        assertRetainAll(dense.copy(), single);
+        assertRetainAll(single, dense);
+        assertEquals(1, single.size());
+    }
+
+    @Test
+    public void testSerializationRoundTrip() {
+        XpSeedSpace empty = new XpSeedSpace();
+        XpSeedSpace single = new XpSeedSpace();
+        single.set(0xdeadbeef);
+        for (XpSeedSpace space : new XpSeedSpace[] {randomDense(0xfff0, 10), randomSparse(0x0010, 11), empty, single}) {
+            XpSeedSpace copy = XpSeedSpace.fromByteArray(space.toByteArray());
+            assertEquals(space.isDense(), copy.isDense(), space.toString());
+            assertEquals(space.size(), copy.size(), space.toString());
+            assertArrayEquals(space.toIntArray(), copy.toIntArray(), space.toString());
+            if (space.isDense()) {
+                assertEquals(space.getKnownBits(), copy.getKnownBits());
+            }
+        }
+    }
+
+    @Test
+    public void testSerializationCompactsSmallDenseSpaces() {
+        // a dense encoding of few seeds, as a writer without the threshold would produce
+        XpSeedSpace space = new XpSeedSpace();
+        space.fill(0x00a0);
+        byte[] bytes = space.toByteArray();
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        buf.putInt(5, 2);
+        for (int i = 9; i < bytes.length; i++) {
+            bytes[i] = 0;
+        }
+        bytes[9 + 7] = 0b101;
+
+        XpSeedSpace copy = XpSeedSpace.fromByteArray(bytes);
+        assertFalse(copy.isDense());
+        assertArrayEquals(new int[] {XpSeedSpace.fromDenseIndex(0x00a0, 0), XpSeedSpace.fromDenseIndex(0x00a0, 2)}, copy.toIntArray());
+    }
+
+    @Test
+    public void testCorruptBytesRejected() {
+        XpSeedSpace space = new XpSeedSpace();
+        space.fill(0);
+        byte[] wrongSize = space.toByteArray();
+        ByteBuffer.wrap(wrongSize).putInt(5, DENSE_SIZE - 1);
+        assertThrows(IllegalArgumentException.class, () -> XpSeedSpace.fromByteArray(wrongSize));
+
+        byte[] unknownFormat = space.toByteArray();
+        unknownFormat[0] = 2;
+        assertThrows(IllegalArgumentException.class, () -> XpSeedSpace.fromByteArray(unknownFormat));
+    }
+
+    private static void assertRetainAll(XpSeedSpace space, XpSeedSpace other) {
+        IntSet expected = new IntOpenHashSet(space.toIntArray());
+        expected.retainAll(new IntOpenHashSet(other.toIntArray()));
+        space.retainAll(other);
+        assertSameSeeds(expected, space);
+    }
+
+    private static void assertSameSeeds(IntSet expected, XpSeedSpace actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.size() > SPARSE_THRESHOLD, actual.isDense());
+        int[] expectedSeeds = expected.toIntArray();
+        Arrays.sort(expectedSeeds);
+        int[] actualSeeds = actual.toIntArray();
+        Arrays.sort(actualSeeds);
+        assertArrayEquals(expectedSeeds, actualSeeds);
+        for (int seed : expectedSeeds) {
+            assertTrue(actual.contains(seed), "seed " + seed);
+        }
+    }
+
+    private static IntSet filledReference(int serverSeed) {
+        IntSet reference = new IntOpenHashSet(DENSE_SIZE);
+        for (int index = 0; index < DENSE_SIZE; index++) {
+            reference.add(XpSeedSpace.fromDenseIndex(serverSeed, index));
+        }
+        return reference;
+    }
+
+    /**
+     * A dense space with about half of its seeds removed
+     */
+    private static XpSeedSpace randomDense(int knownBits, long salt) {
+        XpSeedSpace space = new XpSeedSpace();
+        space.fill(knownBits);
+        space.removeIf(seed -> (mix(seed, salt) & 1) == 0);
+        return space;
+    }
+
+    /**
+     * A sparse space with about a thousand seeds
+     */
+    private static XpSeedSpace randomSparse(int knownBits, long salt) {
+        XpSeedSpace space = new XpSeedSpace();
+        space.fill(knownBits);
+        space.removeIf(seed -> (mix(seed, salt) & 1023) != 0);
+        assertFalse(space.isDense());
+        return space;
+    }
+
+    private static long mix(int seed, long salt) {
+        long x = (seed ^ salt) * 0x9e3779b97f4a7c15L;
+        return x ^ (x >>> 29);
+    }
+}